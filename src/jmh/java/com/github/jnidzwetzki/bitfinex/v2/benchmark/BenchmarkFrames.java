@@ -0,0 +1,135 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.benchmark;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+
+/**
+ * Recorded frames of the bitfinex websocket API, used by the benchmarks
+ */
+public class BenchmarkFrames {
+
+	/**
+	 * The channel ids of the subscribed channels
+	 */
+	public final static int TICKER_CHANNEL = 11;
+	public final static int BOOK_CHANNEL = 12;
+	public final static int RAW_BOOK_CHANNEL = 13;
+	public final static int TRADE_CHANNEL = 14;
+	public final static int CANDLE_CHANNEL = 15;
+
+	/**
+	 * The subscribed events of the channels
+	 */
+	public final static String[] SUBSCRIBED_EVENTS = {
+		"{\"event\":\"subscribed\",\"channel\":\"ticker\",\"chanId\":11,\"symbol\":\"tBTCUSD\",\"pair\":\"BTCUSD\"}",
+		"{\"event\":\"subscribed\",\"channel\":\"book\",\"chanId\":12,\"symbol\":\"tBTCUSD\",\"prec\":\"P0\",\"freq\":\"F0\",\"len\":\"25\",\"pair\":\"BTCUSD\"}",
+		"{\"event\":\"subscribed\",\"channel\":\"book\",\"chanId\":13,\"symbol\":\"tBTCUSD\",\"prec\":\"R0\",\"pair\":\"BTCUSD\"}",
+		"{\"event\":\"subscribed\",\"channel\":\"trades\",\"chanId\":14,\"symbol\":\"tBTCUSD\",\"pair\":\"BTCUSD\"}",
+		"{\"event\":\"subscribed\",\"channel\":\"candles\",\"chanId\":15,\"key\":\"trade:1m:tBTCUSD\"}"
+	};
+
+	/**
+	 * Ticker frames
+	 */
+	public final static String[] TICKER_FRAMES = {
+		"[11,[26123,41.4645776,26129,33.68138507,2931,0.2231,26129,144327.10936387,26149,13139]]",
+		"[11,[26124,40.1645776,26128,31.68138507,2932,0.2232,26128,144328.10936387,26149,13139]]"
+	};
+
+	/**
+	 * Order book frames (insert and remove of a level, the book stays stable)
+	 */
+	public final static String[] BOOK_FRAMES = {
+		"[12,[26123.5,2,1.25]]",
+		"[12,[26130.1,1,-0.5]]",
+		"[12,[26123.5,0,1]]",
+		"[12,[26130.1,0,-1]]"
+	};
+
+	/**
+	 * Raw order book frames (insert, update and remove of orders)
+	 */
+	public final static String[] RAW_BOOK_FRAMES = {
+		"[13,[1103420186,26123.5,0.75]]",
+		"[13,[1103420187,26130.1,-0.5]]",
+		"[13,[1103420186,26123.5,0.5]]",
+		"[13,[1103420186,0,1]]",
+		"[13,[1103420187,0,-1]]"
+	};
+
+	/**
+	 * Executed trade frames
+	 */
+	public final static String[] TRADE_FRAMES = {
+		"[14,\"te\",[190631057,1518037080162,0.007,8175.9]]",
+		"[14,\"tu\",[190631057,1518037080162,0.007,8175.9]]"
+	};
+
+	/**
+	 * Candle frames
+	 */
+	public final static String[] CANDLE_FRAMES = {
+		"[15,[15134900000,15996,15997,16000,15980,318.5139342]]",
+		"[15,[15134900000,15996,15999,16001,15980,320.5139342]]"
+	};
+
+	/**
+	 * Account info frames
+	 */
+	public final static String[] ACCOUNT_FRAMES = {
+		"[0,\"wu\",[\"exchange\",\"USD\",1826.56468323,0,null]]",
+		"[0,\"bu\",[4131.85,4131.85]]"
+	};
+
+	/**
+	 * Get the frames of the given type
+	 * @param type
+	 * @return
+	 */
+	public static String[] getFrames(final String type) {
+		switch(type) {
+		case "ticker":
+			return TICKER_FRAMES;
+		case "book":
+			return BOOK_FRAMES;
+		case "rawbook":
+			return RAW_BOOK_FRAMES;
+		case "trade":
+			return TRADE_FRAMES;
+		case "candle":
+			return CANDLE_FRAMES;
+		case "account":
+			return ACCOUNT_FRAMES;
+		default:
+			throw new IllegalArgumentException("Unknown frame type: " + type);
+		}
+	}
+
+	/**
+	 * Register the currency pair of the frames (without network access)
+	 */
+	public static void registerCurrencyPair() {
+		try {
+			BitfinexCurrencyPair.register("BTC", "USD", BitfinexCurrencyType.CURRENCY, 0.002);
+		} catch(IllegalArgumentException e) {
+			// Already registered
+		}
+	}
+}
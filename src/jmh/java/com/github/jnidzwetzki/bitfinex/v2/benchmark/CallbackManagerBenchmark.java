@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexClientFactory;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BiConsumerCallbackManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.SimpleCallbackManager;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * The fan out of the callback managers (direct executor service)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CallbackManagerBenchmark {
+
+	/**
+	 * The number of registered callbacks
+	 */
+	@Param({"1", "10", "100"})
+	private int callbacks;
+
+	/**
+	 * The symbol of the events
+	 */
+	private final static String SYMBOL = "tBTCUSD";
+
+	/**
+	 * The event
+	 */
+	private final Object event = new Object();
+
+	/**
+	 * The bi consumer callback manager
+	 */
+	private BiConsumerCallbackManager<String, Object> biConsumerCallbackManager;
+
+	/**
+	 * The simple callback manager
+	 */
+	private SimpleCallbackManager<Object> simpleCallbackManager;
+
+	@Setup
+	public void setup(final Blackhole blackhole) {
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(new BitfinexWebsocketConfiguration());
+
+		biConsumerCallbackManager = new BiConsumerCallbackManager<>(executorService, client);
+		simpleCallbackManager = new SimpleCallbackManager<>(executorService, client);
+
+		for(int i = 0; i < callbacks; i++) {
+			biConsumerCallbackManager.registerCallback(SYMBOL, (s, e) -> blackhole.consume(e));
+			simpleCallbackManager.registerCallback(e -> blackhole.consume(e));
+		}
+	}
+
+	@Benchmark
+	public void biConsumerCallbackManager() {
+		biConsumerCallbackManager.handleEvent(SYMBOL, event);
+	}
+
+	@Benchmark
+	public void simpleCallbackManager() {
+		simpleCallbackManager.notifyCallbacks(event);
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.benchmark;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.CopyOnWriteIntObjectMap;
+
+/**
+ * Compare the channel id to handler lookup of the broker: the former 
+ * ConcurrentHashMap (boxed keys) and the copy on write int table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChannelDispatchBenchmark {
+
+	/**
+	 * The number of subscribed channels
+	 */
+	@Param({"10", "100", "1000"})
+	private int channels;
+
+	/**
+	 * The channel ids of the received frames
+	 */
+	private int[] frameChannelIds;
+
+	/**
+	 * The position in the frame channel ids
+	 */
+	private int position;
+
+	/**
+	 * The concurrent hash map
+	 */
+	private Map<Integer, Object> concurrentHashMap;
+
+	/**
+	 * The copy on write map
+	 */
+	private CopyOnWriteIntObjectMap<Object> copyOnWriteMap;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		final int[] channelIds = new int[channels];
+		concurrentHashMap = new ConcurrentHashMap<>();
+		copyOnWriteMap = new CopyOnWriteIntObjectMap<>();
+
+		// Bitfinex channel ids are spread over a wide range
+		for(int i = 0; i < channels; i++) {
+			final int channelId = 1 + random.nextInt(500_000);
+			final Object handler = new Object();
+			channelIds[i] = channelId;
+			concurrentHashMap.put(channelId, handler);
+			copyOnWriteMap.put(channelId, handler);
+		}
+
+		frameChannelIds = new int[4096];
+		for(int i = 0; i < frameChannelIds.length; i++) {
+			frameChannelIds[i] = channelIds[random.nextInt(channels)];
+		}
+	}
+
+	/**
+	 * Get the channel id of the next frame
+	 * @return
+	 */
+	private int nextChannelId() {
+		position = (position + 1) & (frameChannelIds.length - 1);
+		return frameChannelIds[position];
+	}
+
+	@Benchmark
+	public Object concurrentHashMapLookup() {
+		return concurrentHashMap.get(nextChannelId());
+	}
+
+	@Benchmark
+	public Object copyOnWriteMapLookup() {
+		return copyOnWriteMap.get(nextChannelId());
+	}
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.AccountInfoHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.CandlestickHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.TickHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexApiKeyPermissions;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandleTimeFrame;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+
+/**
+ * The channel callback handlers in isolation (the frame is read with a reused cursor, 
+ * the parsed entities are consumed by a black hole)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChannelHandlerBenchmark {
+
+	/**
+	 * The type of the frames
+	 */
+	@Param({"ticker", "book", "rawbook", "trade", "candle", "account"})
+	private String frameType;
+
+	/**
+	 * The handler
+	 */
+	private ChannelCallbackHandler handler;
+
+	/**
+	 * The reused cursor
+	 */
+	private final ChannelMessageCursor cursor = new ChannelMessageCursor();
+
+	/**
+	 * The frames
+	 */
+	private String[] frames;
+
+	/**
+	 * The position in the frames
+	 */
+	private int position;
+
+	@Setup
+	public void setup(final Blackhole blackhole) {
+		BenchmarkFrames.registerCurrencyPair();
+		final BitfinexCurrencyPair currencyPair = BitfinexCurrencyPair.of("BTC", "USD");
+		frames = BenchmarkFrames.getFrames(frameType);
+
+		switch(frameType) {
+		case "ticker":
+			final TickHandler tickHandler = new TickHandler(BenchmarkFrames.TICKER_CHANNEL, 
+					BitfinexSymbols.ticker(currencyPair));
+			tickHandler.onTickEvent((s, e) -> blackhole.consume(e));
+			handler = tickHandler;
+			break;
+		case "book":
+			final OrderbookHandler orderbookHandler = new OrderbookHandler(BenchmarkFrames.BOOK_CHANNEL, 
+					BitfinexSymbols.orderBook(currencyPair, BitfinexOrderBookSymbol.Precision.P0, 
+							BitfinexOrderBookSymbol.Frequency.F0, 25));
+			orderbookHandler.onOrderBookEvent((s, e) -> blackhole.consume(e));
+			handler = orderbookHandler;
+			break;
+		case "rawbook":
+			final RawOrderbookHandler rawOrderbookHandler = new RawOrderbookHandler(BenchmarkFrames.RAW_BOOK_CHANNEL, 
+					BitfinexSymbols.rawOrderBook(currencyPair));
+			rawOrderbookHandler.onOrderbookEvent((s, e) -> blackhole.consume(e));
+			handler = rawOrderbookHandler;
+			break;
+		case "trade":
+			final ExecutedTradeHandler executedTradeHandler = new ExecutedTradeHandler(BenchmarkFrames.TRADE_CHANNEL, 
+					BitfinexSymbols.executedTrades(currencyPair));
+			executedTradeHandler.onExecutedTradeEvent((s, e) -> blackhole.consume(e));
+			handler = executedTradeHandler;
+			break;
+		case "candle":
+			final CandlestickHandler candlestickHandler = new CandlestickHandler(BenchmarkFrames.CANDLE_CHANNEL, 
+					BitfinexSymbols.candlesticks(currencyPair, BitfinexCandleTimeFrame.MINUTES_1));
+			candlestickHandler.onCandlesticksEvent((s, e) -> blackhole.consume(e));
+			handler = candlestickHandler;
+			break;
+		case "account":
+			final AccountInfoHandler accountInfoHandler = new AccountInfoHandler(0, 
+					BitfinexSymbols.account(BitfinexApiKeyPermissions.ALL_PERMISSIONS));
+			accountInfoHandler.onWalletsEvent((s, e) -> blackhole.consume(e));
+			accountInfoHandler.onBalanceUpdate((s, e) -> blackhole.consume(e));
+			handler = accountInfoHandler;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown frame type: " + frameType);
+		}
+	}
+
+	@Benchmark
+	public void handleChannelFrame() {
+		position = (position + 1) % frames.length;
+		handler.handleChannelFrame(cursor.reset(frames[position]));
+	}
+}
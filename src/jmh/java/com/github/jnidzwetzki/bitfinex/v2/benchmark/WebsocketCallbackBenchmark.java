@@ -0,0 +1,120 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexClientFactory;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.SimpleBitfinexApiBroker;
+
+/**
+ * Feed recorded frames through SimpleBitfinexApiBroker.websocketCallback 
+ * (cursor, dispatch, handler and manager). No connection is opened.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WebsocketCallbackBenchmark {
+
+	/**
+	 * The websocket callback of the broker
+	 */
+	private final static MethodHandle WEBSOCKET_CALLBACK = lookupWebsocketCallback();
+
+	/**
+	 * The type of the frames
+	 */
+	@Param({"ticker", "book", "rawbook", "trade", "candle"})
+	private String frameType;
+
+	/**
+	 * Use fixed point values
+	 */
+	@Param({"false", "true"})
+	private boolean fixedPointMode;
+
+	/**
+	 * The broker
+	 */
+	private BitfinexWebsocketClient client;
+
+	/**
+	 * The frames
+	 */
+	private String[] frames;
+
+	/**
+	 * The position in the frames
+	 */
+	private int position;
+
+	@Setup
+	public void setup() throws Throwable {
+		BenchmarkFrames.registerCurrencyPair();
+
+		final BitfinexWebsocketConfiguration config = new BitfinexWebsocketConfiguration();
+		config.setFixedPointMode(fixedPointMode);
+		client = BitfinexClientFactory.newSimpleClient(config);
+
+		for(final String subscribed : BenchmarkFrames.SUBSCRIBED_EVENTS) {
+			WEBSOCKET_CALLBACK.invoke((SimpleBitfinexApiBroker) client, subscribed);
+		}
+
+		frames = BenchmarkFrames.getFrames(frameType);
+	}
+
+	@Benchmark
+	public void websocketCallback() throws Throwable {
+		position = (position + 1) % frames.length;
+		WEBSOCKET_CALLBACK.invokeExact((SimpleBitfinexApiBroker) client, frames[position]);
+	}
+
+	/**
+	 * Get the (private) websocket callback of the broker
+	 * @return
+	 */
+	private static MethodHandle lookupWebsocketCallback() {
+		try {
+			final Method method = SimpleBitfinexApiBroker.class.getDeclaredMethod("websocketCallback", String.class);
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -61,6 +61,7 @@ public class BitfinexApiCallbackListeners {
     protected final Queue<BiConsumer<BitfinexExecutedTradeSymbol, Collection<BitfinexExecutedTrade>>> executedTradesConsumers = new ConcurrentLinkedQueue<>();
     protected final Queue<BiConsumer<BitfinexOrderBookSymbol, Collection<BitfinexOrderBookEntry>>> orderbookEntryConsumers = new ConcurrentLinkedQueue<>();
     protected final Queue<BiConsumer<BitfinexOrderBookSymbol, Collection<BitfinexOrderBookEntry>>> rawOrderbookEntryConsumers = new ConcurrentLinkedQueue<>();
+    protected final Queue<BiConsumer<BitfinexOrderBookSymbol, Integer>> orderbookChecksumConsumers = new ConcurrentLinkedQueue<>();
     protected final Queue<BiConsumer<BitfinexAccountSymbol, BitfinexBalanceUpdate>> balanceUpdateConsumers = new ConcurrentLinkedQueue<>();
     protected final Queue<BiConsumer<BitfinexTickerSymbol, BitfinexTick>> tickConsumers = new ConcurrentLinkedQueue<>();
     protected final Queue<Consumer<BitfinexAccountSymbol>> authSuccessConsumers = new ConcurrentLinkedQueue<>();
@@ -216,6 +217,17 @@ public class BitfinexApiCallbackListeners {
         return () -> rawOrderbookEntryConsumers.remove(listener);
     }
 
+    /**
+     * registers listener for orderbook checksum events (raw and aggregated orderbooks, 
+     * requires the connection feature CHECKSUM)
+     * @param listener of event
+     * @return hook of this listener
+     */
+    public Closeable onOrderbookChecksumEvent(final BiConsumer<BitfinexOrderBookSymbol, Integer> listener) {
+        orderbookChecksumConsumers.offer(listener);
+        return () -> orderbookChecksumConsumers.remove(listener);
+    }
+
     /**
      * registers listener for balance update events
      * @param listener of event
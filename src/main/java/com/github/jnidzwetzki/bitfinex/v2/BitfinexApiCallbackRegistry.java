@@ -92,6 +92,10 @@ public final class BitfinexApiCallbackRegistry extends BitfinexApiCallbackListen
         rawOrderbookEntryConsumers.forEach(consumer -> consumer.accept(symbol, entries));
     }
 
+    public void acceptOrderBookChecksumEvent(final BitfinexOrderBookSymbol symbol, final Integer checksum) {
+        orderbookChecksumConsumers.forEach(consumer -> consumer.accept(symbol, checksum));
+    }
+
     public void acceptTickEvent(final BitfinexTickerSymbol symbol, final BitfinexTick tick) {
         tickConsumers.forEach(consumer -> consumer.accept(symbol, tick));
     }
@@ -61,7 +61,7 @@ public interface BitfinexWebsocketClient {
 
     /**
      * retrieves all subscribed channels in this client
-     * @return collection of symbols
+     * @return a copy of the subscribed symbols
      */
     Collection<BitfinexStreamSymbol> getSubscribedChannels();
 
@@ -17,12 +17,21 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
 import com.google.common.util.concurrent.MoreExecutors;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelRebalancer.LoadMetric;
 import com.github.jnidzwetzki.bitfinex.v2.SequenceNumberAuditor.ErrorPolicy;
 import com.github.jnidzwetzki.bitfinex.v2.command.AuthCommand;
+import com.github.jnidzwetzki.bitfinex.v2.manager.CallbackQueuePolicy;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager.ExecutionMode;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderedEventDispatcher;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameJournalWriter;
 
 public class BitfinexWebsocketConfiguration {
 
@@ -71,6 +80,12 @@ public class BitfinexWebsocketConfiguration {
      * Server will throw 429 on #connect() if too low.
      */
     private int connectionEstablishingDelay = 7_500;
+
+    /**
+     * number of connections the {@link PooledBitfinexApiBroker} may establish 
+     * within the connection establishing delay
+     */
+    private int connectionBurst = 2;
     
     /**
 	 * The error handling policy
@@ -82,6 +97,75 @@ public class BitfinexWebsocketConfiguration {
      */
     private boolean autoReconnect = true;
 
+    /**
+     * use fixed point values (scale of the currency pair) for order book entries and executed trades
+     */
+    private boolean fixedPointMode = false;
+
+    /**
+     * per symbol ordered dispatcher for the quote and order book callbacks of the managers,
+     * the executor service is used if null
+     */
+    private OrderedEventDispatcher eventDispatcher = null;
+
+    /**
+     * the websocket endpoint (e.g., a local stand-in server for tests)
+     */
+    private String endpointUri = SimpleBitfinexApiBroker.BITFINEX_URI;
+
+    /**
+     * journal for the received websocket frames (e.g., for a later replay), not recorded if null;
+     * the connections of a pool share the journal, the records are tagged with the connection index
+     */
+    private FrameJournalWriter frameJournal = null;
+
+    /**
+     * bounded callback queues of the managers, the executor service is used directly if null
+     */
+    private CallbackQueuePolicy callbackQueuePolicy = null;
+
+    /**
+     * threads used for the submitted order round-trips of the order manager
+     */
+    private ExecutionMode orderExecutionMode = ExecutionMode.PLATFORM_THREADS;
+
+    /**
+     * window in micro seconds for batching order commands into ox_multi frames, disabled if 0
+     */
+    private long orderBatchWindowMicros = 0;
+
+    /**
+     * max order commands per second (token bucket in front of the connection), disabled if 0
+     */
+    private double orderRateLimit = 0;
+
+    /**
+     * the number of order commands that can be sent at once (bucket size of the rate limit)
+     */
+    private int orderRateBurst = 10;
+
+    /**
+     * strategy for placing new channels on the connections of the {@link PooledBitfinexApiBroker}
+     */
+    private ChannelPlacementStrategy channelPlacementStrategy = ChannelPlacementStrategy.FIRST_FIT;
+
+    /**
+     * interval in millis for moving hot channels between the connections of the 
+     * {@link PooledBitfinexApiBroker}, disabled if 0
+     */
+    private int channelRebalanceInterval = 0;
+
+    /**
+     * the load of a connection used for rebalancing
+     */
+    private LoadMetric channelRebalanceMetric = LoadMetric.MESSAGES;
+
+    /**
+     * channels the {@link PooledBitfinexApiBroker} subscribes on two connections, 
+     * each update is delivered from the connection it arrives on first
+     */
+    private Set<BitfinexStreamSymbol> dualFeedSymbols = new HashSet<>();
+
     public BitfinexWebsocketConfiguration() {
 
     }
@@ -96,8 +180,22 @@ public class BitfinexWebsocketConfiguration {
         this.authNonceProducer = copy.authNonceProducer;
         this.executorService = copy.executorService;
         this.connectionEstablishingDelay = copy.connectionEstablishingDelay;
+        this.connectionBurst = copy.connectionBurst;
         this.errorPolicy = copy.errorPolicy;
         this.autoReconnect = copy.autoReconnect;
+        this.fixedPointMode = copy.fixedPointMode;
+        this.eventDispatcher = copy.eventDispatcher;
+        this.endpointUri = copy.endpointUri;
+        this.frameJournal = copy.frameJournal;
+        this.callbackQueuePolicy = copy.callbackQueuePolicy;
+        this.orderExecutionMode = copy.orderExecutionMode;
+        this.orderBatchWindowMicros = copy.orderBatchWindowMicros;
+        this.orderRateLimit = copy.orderRateLimit;
+        this.orderRateBurst = copy.orderRateBurst;
+        this.channelPlacementStrategy = copy.channelPlacementStrategy;
+        this.channelRebalanceInterval = copy.channelRebalanceInterval;
+        this.channelRebalanceMetric = copy.channelRebalanceMetric;
+        this.dualFeedSymbols = new HashSet<>(copy.dualFeedSymbols);
     }
 
     public void setApiCredentials(final String apiKey, final String apiSecret) {
@@ -170,6 +268,14 @@ public class BitfinexWebsocketConfiguration {
         this.connectionEstablishingDelay = connectionEstablishingDelay;
     }
 
+    public int getConnectionBurst() {
+        return connectionBurst;
+    }
+
+    public void setConnectionBurst(final int connectionBurst) {
+        this.connectionBurst = connectionBurst;
+    }
+
 	public ErrorPolicy getErrorPolicy() {
 		return errorPolicy;
 	}
@@ -186,5 +292,109 @@ public class BitfinexWebsocketConfiguration {
         this.autoReconnect = autoReconnect;
     }
 
+    public boolean isFixedPointMode() {
+        return fixedPointMode;
+    }
+
+    public void setFixedPointMode(boolean fixedPointMode) {
+        this.fixedPointMode = fixedPointMode;
+    }
+
+    public OrderedEventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    public void setEventDispatcher(final OrderedEventDispatcher eventDispatcher) {
+        this.eventDispatcher = eventDispatcher;
+    }
+
+    public String getEndpointUri() {
+        return endpointUri;
+    }
+
+    public void setEndpointUri(final String endpointUri) {
+        this.endpointUri = endpointUri;
+    }
+
+    public FrameJournalWriter getFrameJournal() {
+        return frameJournal;
+    }
+
+    public void setFrameJournal(final FrameJournalWriter frameJournal) {
+        this.frameJournal = frameJournal;
+    }
+
+    public CallbackQueuePolicy getCallbackQueuePolicy() {
+        return callbackQueuePolicy;
+    }
+
+    public void setCallbackQueuePolicy(final CallbackQueuePolicy callbackQueuePolicy) {
+        this.callbackQueuePolicy = callbackQueuePolicy;
+    }
+
+    public ExecutionMode getOrderExecutionMode() {
+        return orderExecutionMode;
+    }
+
+    public void setOrderExecutionMode(final ExecutionMode orderExecutionMode) {
+        this.orderExecutionMode = orderExecutionMode;
+    }
+
+    public long getOrderBatchWindowMicros() {
+        return orderBatchWindowMicros;
+    }
+
+    public void setOrderBatchWindowMicros(final long orderBatchWindowMicros) {
+        this.orderBatchWindowMicros = orderBatchWindowMicros;
+    }
+
+    public double getOrderRateLimit() {
+        return orderRateLimit;
+    }
+
+    public void setOrderRateLimit(final double orderRateLimit) {
+        this.orderRateLimit = orderRateLimit;
+    }
+
+    public int getOrderRateBurst() {
+        return orderRateBurst;
+    }
+
+    public void setOrderRateBurst(final int orderRateBurst) {
+        this.orderRateBurst = orderRateBurst;
+    }
+
+    public ChannelPlacementStrategy getChannelPlacementStrategy() {
+        return channelPlacementStrategy;
+    }
+
+    public void setChannelPlacementStrategy(final ChannelPlacementStrategy channelPlacementStrategy) {
+        this.channelPlacementStrategy = channelPlacementStrategy;
+    }
+
+    public int getChannelRebalanceInterval() {
+        return channelRebalanceInterval;
+    }
+
+    public void setChannelRebalanceInterval(final int channelRebalanceInterval) {
+        this.channelRebalanceInterval = channelRebalanceInterval;
+    }
+
+    public LoadMetric getChannelRebalanceMetric() {
+        return channelRebalanceMetric;
+    }
+
+    public void setChannelRebalanceMetric(final LoadMetric channelRebalanceMetric) {
+        this.channelRebalanceMetric = channelRebalanceMetric;
+    }
+
+    public Set<BitfinexStreamSymbol> getDualFeedSymbols() {
+        return dualFeedSymbols;
+    }
+
+    public void setDualFeedSymbols(final Collection<? extends BitfinexStreamSymbol> dualFeedSymbols) {
+        this.dualFeedSymbols = new HashSet<>(dualFeedSymbols);
+    }
+
 
 }
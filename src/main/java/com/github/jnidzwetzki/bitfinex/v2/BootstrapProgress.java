@@ -0,0 +1,113 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+/**
+ * The progress of a {@link PooledBitfinexApiBroker#bootstrap} call. The 
+ * progress is a snapshot, a new instance is reported on every change.
+ */
+public class BootstrapProgress {
+
+    /**
+     * The number of connections needed for the channels
+     */
+    private final int connections;
+
+    /**
+     * The number of established connections
+     */
+    private final int connectedConnections;
+
+    /**
+     * The number of channels to subscribe
+     */
+    private final int channels;
+
+    /**
+     * The number of subscribed channels
+     */
+    private final int subscribedChannels;
+
+    /**
+     * The elapsed time since the bootstrap was started
+     */
+    private final long elapsedMillis;
+
+    public BootstrapProgress(final int connections, final int connectedConnections, final int channels,
+            final int subscribedChannels, final long elapsedMillis) {
+        this.connections = connections;
+        this.connectedConnections = connectedConnections;
+        this.channels = channels;
+        this.subscribedChannels = subscribedChannels;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Get the number of connections needed for the channels
+     * @return
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Get the number of established connections
+     * @return
+     */
+    public int getConnectedConnections() {
+        return connectedConnections;
+    }
+
+    /**
+     * Get the number of channels to subscribe
+     * @return
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Get the number of subscribed channels
+     * @return
+     */
+    public int getSubscribedChannels() {
+        return subscribedChannels;
+    }
+
+    /**
+     * Get the elapsed time since the bootstrap was started
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Are all channels subscribed
+     * @return
+     */
+    public boolean isDone() {
+        return subscribedChannels == channels;
+    }
+
+    @Override
+    public String toString() {
+        return "BootstrapProgress [connections=" + connectedConnections + "/" + connections 
+                + ", channels=" + subscribedChannels + "/" + channels + ", elapsedMillis=" + elapsedMillis + "]";
+    }
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Tracks the progress of a {@link PooledBitfinexApiBroker#bootstrap} call and 
+ * completes the future when all channels are subscribed (or fails it when a
+ * subscribed event is missing).
+ */
+class ChannelBootstrap {
+
+    /**
+     * The number of connections needed for the channels
+     */
+    private final int connections;
+
+    /**
+     * The number of channels to subscribe
+     */
+    private final int channels;
+
+    /**
+     * The channels without a subscribed event
+     */
+    private final Set<BitfinexStreamSymbol> pendingChannels;
+
+    /**
+     * The progress listener
+     */
+    private final Consumer<BootstrapProgress> progressListener;
+
+    /**
+     * Completed when all channels are subscribed
+     */
+    private final CompletableFuture<BootstrapProgress> future;
+
+    /**
+     * The time since the bootstrap was started
+     */
+    private final Stopwatch stopwatch;
+
+    /**
+     * The number of established connections
+     */
+    private int connectedConnections;
+
+    /**
+     * The Logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ChannelBootstrap.class);
+
+    ChannelBootstrap(final int connections, final Collection<BitfinexStreamSymbol> channels,
+            final Consumer<BootstrapProgress> progressListener) {
+        this.connections = connections;
+        this.channels = channels.size();
+        this.pendingChannels = new HashSet<>(channels);
+        this.progressListener = progressListener;
+        this.future = new CompletableFuture<>();
+        this.stopwatch = Stopwatch.createStarted();
+
+        if (pendingChannels.isEmpty()) {
+            future.complete(getProgress());
+        }
+    }
+
+    /**
+     * A connection of the bootstrap is established
+     */
+    synchronized void connectionEstablished() {
+        connectedConnections++;
+        reportProgress();
+    }
+
+    /**
+     * A channel is subscribed, channels not part of the bootstrap are ignored
+     * @param symbol
+     */
+    synchronized void channelSubscribed(final BitfinexStreamSymbol symbol) {
+        if (pendingChannels.remove(symbol)) {
+            reportProgress();
+        }
+    }
+
+    /**
+     * The bootstrap failed
+     * @param e
+     */
+    synchronized void fail(final Throwable e) {
+        future.completeExceptionally(e);
+    }
+
+    /**
+     * Fail the bootstrap if one of the channels has no subscribed event (the subscribe 
+     * was rejected or lost)
+     * @param symbols
+     * @param releaseAction - called for the channels without a subscribed event before the future fails
+     */
+    synchronized void failIfPending(final Collection<BitfinexStreamSymbol> symbols,
+            final Consumer<BitfinexStreamSymbol> releaseAction) {
+
+        final List<BitfinexStreamSymbol> missingChannels = symbols.stream()
+                .filter(pendingChannels::contains)
+                .collect(Collectors.toList());
+
+        missingChannels.forEach(releaseAction);
+
+        if (! missingChannels.isEmpty() && ! future.isDone()) {
+            logger.error("No subscribed event for the channels {}, bootstrap failed", missingChannels);
+            future.completeExceptionally(new BitfinexClientException("Unable to subscribe channels " 
+                    + missingChannels));
+        }
+    }
+
+    /**
+     * Get the current progress
+     * @return
+     */
+    synchronized BootstrapProgress getProgress() {
+        return new BootstrapProgress(connections, connectedConnections, channels,
+                channels - pendingChannels.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Get the future, completed with the final progress
+     * @return
+     */
+    CompletableFuture<BootstrapProgress> getFuture() {
+        return future;
+    }
+
+    /**
+     * Report the progress to the listener, complete the future if all channels are subscribed
+     */
+    private void reportProgress() {
+        if (future.isDone()) {
+            return;
+        }
+
+        final BootstrapProgress progress = getProgress();
+
+        try {
+            progressListener.accept(progress);
+        } catch (final RuntimeException e) {
+            logger.error("Got exception while reporting the bootstrap progress", e);
+        }
+
+        if (progress.isDone()) {
+            logger.info("Subscribed {} channels on {} connections in {} ms", channels, connections, 
+                    progress.getElapsedMillis());
+            future.complete(progress);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+
+/**
+ * Intercepts the frames and the subscription events of a channel of 
+ * a {@link SimpleBitfinexApiBroker} (e.g., while the channel is moved 
+ * to another connection)
+ */
+interface ChannelFrameFilter {
+
+    /**
+     * Handle a frame of the channel
+     *
+     * @param cursor - the cursor positioned on the frame
+     * @param handler - the handler of the channel, called for the frames that pass the filter
+     * @throws BitfinexClientException
+     */
+    void handleChannelFrame(final ChannelMessageCursor cursor, final ChannelCallbackHandler handler)
+            throws BitfinexClientException;
+
+    /**
+     * The channel was subscribed
+     * @return true if the event is consumed by the filter and not passed to the callbacks
+     */
+    boolean subscribed();
+
+    /**
+     * The channel was unsubscribed
+     * @return true if the event is consumed by the filter and not passed to the callbacks
+     */
+    boolean unsubscribed();
+}
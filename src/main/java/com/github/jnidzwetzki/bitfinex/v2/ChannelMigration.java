@@ -0,0 +1,535 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+
+/**
+ * Moves a channel from one connection to another (make before break). 
+ * 
+ * The channel is subscribed on the target connection while the source 
+ * connection keeps delivering the frames. The frames of both connections are 
+ * compared (without the connection specific channel id and sequence number) 
+ * until both streams share a run of frames at exactly one position (single 
+ * frames repeat, e.g., identical book updates). From there on the frames of the 
+ * target are delivered (minus the frames the source already delivered) and the 
+ * channel is unsubscribed on the source. The subscribe and unsubscribe events of 
+ * the move are not passed to the callbacks, so the managers see one continuous 
+ * channel. If the streams are not in sync within the timeout, the move is 
+ * aborted and the target channel is unsubscribed.
+ */
+class ChannelMigration {
+
+    enum State {
+        SYNCING, SWITCHED, ABORTED
+    }
+
+    /**
+     * The max number of frames kept for the comparison of the streams, the move is 
+     * aborted when a stream exceeds it
+     */
+    private final static int MAX_BUFFERED_FRAMES = 1024;
+
+    /**
+     * The min number of consecutive frames both streams have to share before they are aligned
+     */
+    private final static int MIN_MATCHING_FRAMES = 3;
+
+    /**
+     * The symbol of the channel
+     */
+    private final BitfinexStreamSymbol symbol;
+
+    /**
+     * The connection that delivers the channel now
+     */
+    private final SimpleBitfinexApiBroker source;
+
+    /**
+     * The connection that delivers the channel after the move
+     */
+    private final SimpleBitfinexApiBroker target;
+
+    /**
+     * The executor for commands and timeouts (commands are not sent on the receive threads)
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The result of the move (true if moved, false if aborted)
+     */
+    private final CompletableFuture<Boolean> result;
+
+    /**
+     * The keys of the frames delivered by the source while syncing
+     */
+    private final List<String> deliveredFrames;
+
+    /**
+     * The frames of the target received while syncing (key, frame)
+     */
+    private final List<String[]> targetFrames;
+
+    /**
+     * The state of the move
+     */
+    private State state;
+
+    /**
+     * The handler of the target channel
+     */
+    private ChannelCallbackHandler targetHandler;
+
+    /**
+     * Is the snapshot of the target received
+     */
+    private boolean targetSnapshotReceived;
+
+    /**
+     * Is the target channel subscribed
+     */
+    private boolean targetSubscribed;
+
+    /**
+     * Is the source channel unsubscribed
+     */
+    private boolean sourceUnsubscribed;
+
+    /**
+     * The number of target frames that were already delivered by the source
+     */
+    private int duplicateFrames;
+
+    /**
+     * The sync timeout
+     */
+    private ScheduledFuture<?> timeout;
+
+    /**
+     * The sync timeout in milliseconds
+     */
+    private long syncTimeoutMillis;
+
+    /**
+     * The Logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ChannelMigration.class);
+
+    ChannelMigration(final BitfinexStreamSymbol symbol, final SimpleBitfinexApiBroker source,
+                     final SimpleBitfinexApiBroker target, final ScheduledExecutorService executor) {
+        this.symbol = symbol;
+        this.source = source;
+        this.target = target;
+        this.executor = executor;
+        this.result = new CompletableFuture<>();
+        this.deliveredFrames = new ArrayList<>();
+        this.targetFrames = new ArrayList<>();
+        this.state = State.SYNCING;
+    }
+
+    /**
+     * Subscribe the channel on the target connection
+     * @param syncTimeout
+     * @param timeUnit
+     * @return the result of the move (true if moved, false if aborted)
+     */
+    CompletableFuture<Boolean> start(final long syncTimeout, final TimeUnit timeUnit) {
+        final BitfinexCommand subscribeCommand = SimpleBitfinexApiBroker.buildSubscribeCommand(symbol);
+
+        if (subscribeCommand == null) {
+            throw new BitfinexClientException("Unable to move channel " + symbol);
+        }
+
+        synchronized (this) {
+            syncTimeoutMillis = timeUnit.toMillis(syncTimeout);
+            source.setChannelFilter(symbol, new SourceFilter());
+            target.setChannelFilter(symbol, new TargetFilter());
+            timeout = executor.schedule(this::abort, syncTimeout, timeUnit);
+        }
+
+        logger.info("Moving channel {}", symbol);
+        sendCommand(target, subscribeCommand);
+        return result;
+    }
+
+    /**
+     * Get the symbol of the channel
+     * @return
+     */
+    BitfinexStreamSymbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Get the state of the move
+     * @return
+     */
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Get the result of the move
+     * @return
+     */
+    CompletableFuture<Boolean> getResult() {
+        return result;
+    }
+
+    /**
+     * Abort the move, the source keeps the channel
+     */
+    void abort() {
+        synchronized (this) {
+            if (state != State.SYNCING) {
+                return;
+            }
+            state = State.ABORTED;
+            deliveredFrames.clear();
+            targetFrames.clear();
+
+            // Subscription not confirmed (yet), a late subscription is unsubscribed by the filter
+            if (! targetSubscribed) {
+                source.removeChannelFilter(symbol);
+                executor.schedule(this::removeTargetFilter, syncTimeoutMillis, TimeUnit.MILLISECONDS);
+                logger.info("Moving channel {} aborted, the channel was not subscribed", symbol);
+                result.complete(false);
+                return;
+            }
+        }
+
+        logger.info("Moving channel {} aborted, the streams are not in sync", symbol);
+        sendCommand(target, new UnsubscribeChannelCommand(symbol));
+    }
+
+    /**
+     * Remove the filter of a target channel that was never subscribed
+     */
+    private synchronized void removeTargetFilter() {
+        if (! targetSubscribed) {
+            target.removeChannelFilter(symbol);
+        }
+    }
+
+    /**
+     * Deliver the frames of the target from now on and unsubscribe the source
+     */
+    private void switchToTarget() {
+        state = State.SWITCHED;
+        timeout.cancel(false);
+        deliveredFrames.clear();
+        targetFrames.clear();
+        sendCommand(source, new UnsubscribeChannelCommand(symbol));
+    }
+
+    /**
+     * Complete the move when the source is unsubscribed and no duplicate is pending
+     */
+    private void completeIfDone() {
+        if (state != State.SWITCHED || ! sourceUnsubscribed || duplicateFrames > 0) {
+            return;
+        }
+
+        source.removeChannelFilter(symbol);
+        target.removeChannelFilter(symbol);
+        logger.info("Moving channel {} done", symbol);
+        result.complete(true);
+    }
+
+    /**
+     * Send a command asynchronously (not on the receive thread)
+     * @param client
+     * @param command
+     */
+    private void sendCommand(final SimpleBitfinexApiBroker client, final BitfinexCommand command) {
+        executor.execute(() -> {
+            try {
+                client.sendCommand(command);
+            } catch (final Exception e) {
+                logger.error("Unable to send command while moving channel " + symbol, e);
+                abort();
+            }
+        });
+    }
+
+    /**
+     * Get the connection independent key of a frame (action and payload, without 
+     * channel id and sequence number)
+     * @param cursor
+     * @return
+     */
+    static String getFrameKey(final ChannelMessageCursor cursor) {
+        if (cursor.hasPayload()) {
+            return cursor.getAction() + cursor.getPayloadString();
+        }
+
+        // Checksum frame
+        if (cursor.length() > 2 && cursor.isNumber(2)) {
+            return cursor.getAction() + cursor.getLong(2);
+        }
+
+        return cursor.getAction();
+    }
+
+    /**
+     * Switch to the target if both streams are in sync
+     * @throws BitfinexClientException
+     */
+    private void switchIfInSync() throws BitfinexClientException {
+        final int position = findTargetPosition();
+
+        if (position < 0) {
+            return;
+        }
+
+        // The source is ahead, skip the target frames the source already delivered
+        final int deliveredByTarget = position + targetFrames.size();
+        final int pendingDuplicates = Math.max(0, deliveredFrames.size() - deliveredByTarget);
+
+        // The target is ahead, deliver the target frames the source has not delivered
+        final List<String> aheadFrames = new ArrayList<>();
+        for (int i = deliveredFrames.size() - position; i < targetFrames.size(); i++) {
+            aheadFrames.add(targetFrames.get(i)[1]);
+        }
+
+        duplicateFrames = pendingDuplicates;
+        switchToTarget();
+
+        final ChannelMessageCursor replayCursor = new ChannelMessageCursor();
+        for (final String frame : aheadFrames) {
+            targetHandler.handleChannelFrame(replayCursor.reset(frame));
+        }
+    }
+
+    /**
+     * Find the position of the first target frame in the frames delivered by the source
+     * @return the position, -1 if the streams don't overlap by MIN_MATCHING_FRAMES frames 
+     *     or the overlap is ambiguous (more frames are needed)
+     */
+    private int findTargetPosition() {
+        return findPosition(deliveredFrames, targetFrames, f -> f[0]);
+    }
+
+    /**
+     * Find the position of the first frame of a stream in the frames delivered by 
+     * the other stream. The streams have to share a run of MIN_MATCHING_FRAMES frames 
+     * at exactly one position, since single frames repeat (e.g., identical book updates).
+     * 
+     * @param deliveredFrames - the keys of the frames delivered by the other stream
+     * @param frames - the frames of the stream
+     * @param keyFunction - the key of a frame
+     * @return the position, -1 if the streams don't overlap by MIN_MATCHING_FRAMES frames 
+     *     or the overlap is ambiguous (more frames are needed)
+     */
+    static <T> int findPosition(final Collection<String> deliveredFrames, final Collection<T> frames,
+            final Function<T, String> keyFunction) {
+
+        final String[] delivered = deliveredFrames.toArray(new String[0]);
+        final String[] keys = frames.stream().map(keyFunction).toArray(String[]::new);
+        int position = -1;
+
+        for (int start = 0; start < delivered.length; start++) {
+            final int overlap = Math.min(keys.length, delivered.length - start);
+
+            if (! isOverlapping(delivered, keys, start, overlap)) {
+                continue;
+            }
+
+            if (overlap < MIN_MATCHING_FRAMES || position >= 0) {
+                return -1;
+            }
+
+            position = start;
+        }
+
+        return position;
+    }
+
+    /**
+     * Are the keys equal to the delivered keys from the start position on
+     * @param delivered
+     * @param keys
+     * @param start
+     * @param overlap - the number of keys to compare
+     * @return
+     */
+    private static boolean isOverlapping(final String[] delivered, final String[] keys, 
+            final int start, final int overlap) {
+
+        for (int i = 0; i < overlap; i++) {
+            if (! delivered[start + i].equals(keys[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Handle a frame of the source connection
+     * @param cursor
+     * @param handler
+     * @throws BitfinexClientException
+     */
+    private synchronized void handleSourceFrame(final ChannelMessageCursor cursor,
+            final ChannelCallbackHandler handler) throws BitfinexClientException {
+
+        switch (state) {
+            case SWITCHED:
+                return;
+            case ABORTED:
+                handler.handleChannelFrame(cursor);
+                return;
+            default:
+                break;
+        }
+
+        deliveredFrames.add(getFrameKey(cursor));
+        handler.handleChannelFrame(cursor);
+
+        if (deliveredFrames.size() > MAX_BUFFERED_FRAMES) {
+            abort();
+            return;
+        }
+
+        switchIfInSync();
+    }
+
+    /**
+     * Handle a frame of the target connection
+     * @param cursor
+     * @param handler
+     * @throws BitfinexClientException
+     */
+    private synchronized void handleTargetFrame(final ChannelMessageCursor cursor,
+            final ChannelCallbackHandler handler) throws BitfinexClientException {
+
+        targetHandler = handler;
+
+        switch (state) {
+            case ABORTED:
+                return;
+            case SWITCHED:
+                if (duplicateFrames > 0) {
+                    duplicateFrames--;
+                    completeIfDone();
+                    return;
+                }
+                handler.handleChannelFrame(cursor);
+                return;
+            default:
+                break;
+        }
+
+        // The snapshot of the target is older news for the managers
+        if (! targetSnapshotReceived) {
+            targetSnapshotReceived = true;
+            return;
+        }
+
+        targetFrames.add(new String[] {getFrameKey(cursor), cursor.getFrame()});
+
+        if (targetFrames.size() > MAX_BUFFERED_FRAMES) {
+            abort();
+            return;
+        }
+
+        switchIfInSync();
+    }
+
+    private class SourceFilter implements ChannelFrameFilter {
+
+        @Override
+        public void handleChannelFrame(final ChannelMessageCursor cursor, final ChannelCallbackHandler handler)
+                throws BitfinexClientException {
+            handleSourceFrame(cursor, handler);
+        }
+
+        @Override
+        public boolean subscribed() {
+            // Resubscribed after a reconnect, the managers have to see the event
+            abort();
+            return false;
+        }
+
+        @Override
+        public boolean unsubscribed() {
+            synchronized (ChannelMigration.this) {
+                if (state != State.SWITCHED) {
+                    // Not unsubscribed by the move
+                    return false;
+                }
+                sourceUnsubscribed = true;
+                completeIfDone();
+                return true;
+            }
+        }
+    }
+
+    private class TargetFilter implements ChannelFrameFilter {
+
+        @Override
+        public void handleChannelFrame(final ChannelMessageCursor cursor, final ChannelCallbackHandler handler)
+                throws BitfinexClientException {
+            handleTargetFrame(cursor, handler);
+        }
+
+        @Override
+        public boolean subscribed() {
+            synchronized (ChannelMigration.this) {
+                targetSubscribed = true;
+
+                // Subscription confirmed after the move was aborted
+                if (state == State.ABORTED && result.isDone()) {
+                    sendCommand(target, new UnsubscribeChannelCommand(symbol));
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public boolean unsubscribed() {
+            synchronized (ChannelMigration.this) {
+                if (state != State.ABORTED) {
+                    // Not unsubscribed by the move
+                    return false;
+                }
+                source.removeChannelFilter(symbol);
+                target.removeChannelFilter(symbol);
+                result.complete(false);
+                return true;
+            }
+        }
+    }
+}
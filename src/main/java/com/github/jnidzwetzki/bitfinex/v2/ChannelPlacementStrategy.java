@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.Comparator;
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+
+/**
+ * Decides on which connection of the {@link PooledBitfinexApiBroker} a 
+ * new channel is subscribed.
+ */
+@FunctionalInterface
+public interface ChannelPlacementStrategy {
+
+    /**
+     * Use the first connection with room for the channel
+     */
+    ChannelPlacementStrategy FIRST_FIT = (symbol, connections, maxChannels) -> connections.stream()
+            .filter(c -> c.getChannelCount() < maxChannels)
+            .mapToInt(PooledConnection::getIndex)
+            .findFirst().orElse(connections.size());
+
+    /**
+     * Use the connection with the fewest subscribed and pending channels. The channels 
+     * are only balanced across the open connections (starting with the auth connection), 
+     * a new connection is opened when all connections are full (see {@link #leastChannels(double)}).
+     */
+    ChannelPlacementStrategy LEAST_CHANNELS = leastChannels(1.0);
+
+    /**
+     * Use the connection with the lowest observed inbound message rate. The channels 
+     * are only balanced across the open connections (starting with the auth connection), 
+     * a new connection is opened when all connections are full (see {@link #leastMessageRate(double)}).
+     */
+    ChannelPlacementStrategy LEAST_MESSAGE_RATE = new LeastMessageRatePlacementStrategy(Double.MAX_VALUE);
+
+    /**
+     * Use the connection with the fewest subscribed and pending channels, a new 
+     * connection is opened when every connection holds fillRatio * maxChannels channels
+     *
+     * @param fillRatio - the share of the max channels that is used per connection, (0, 1]
+     * @return
+     */
+    static ChannelPlacementStrategy leastChannels(final double fillRatio) {
+        if (fillRatio <= 0 || fillRatio > 1) {
+            throw new IllegalArgumentException("Fill ratio has to be in (0, 1]: " + fillRatio);
+        }
+
+        return (symbol, connections, maxChannels) -> {
+            final int channelLimit = Math.max(1, (int) Math.ceil(maxChannels * fillRatio));
+
+            return connections.stream()
+                    .filter(c -> c.getChannelCount() < channelLimit)
+                    .min(Comparator.comparingInt(PooledConnection::getChannelCount))
+                    .map(PooledConnection::getIndex).orElse(connections.size());
+        };
+    }
+
+    /**
+     * Use the connection with the lowest observed inbound message rate, a new 
+     * connection is opened when the least loaded connection exceeds the message rate
+     *
+     * @param maxMessageRate - the message rate per connection (messages per second)
+     * @return
+     */
+    static ChannelPlacementStrategy leastMessageRate(final double maxMessageRate) {
+        if (maxMessageRate <= 0) {
+            throw new IllegalArgumentException("Message rate has to be > 0: " + maxMessageRate);
+        }
+
+        return new LeastMessageRatePlacementStrategy(maxMessageRate);
+    }
+
+    /**
+     * Place the channel of a symbol always on the same connection (as long as 
+     * the connection has room), independent of the subscription order
+     *
+     * @param connections - the number of connections the symbols are spread across
+     * @return
+     */
+    static ChannelPlacementStrategy stickyHash(final int connections) {
+        return new StickyHashPlacementStrategy(connections);
+    }
+
+    /**
+     * Select the connection for a new channel
+     *
+     * @param symbol - the symbol of the channel
+     * @param connections - the connections of the pool, the position in the list is the connection index
+     * @param maxChannels - the maximal number of channels per connection
+     * @return the index of the connection. An index >= connections.size() opens new 
+     *  connections up to this index.
+     */
+    int selectConnection(final BitfinexStreamSymbol symbol, final List<PooledConnection> connections, final int maxChannels);
+}
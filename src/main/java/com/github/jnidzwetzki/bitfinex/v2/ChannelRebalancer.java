@@ -0,0 +1,359 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Moves hot channels from the most loaded connection of the {@link PooledBitfinexApiBroker} 
+ * to the least loaded connection. The load of a connection is its observed inbound message 
+ * (or byte) rate. A channel is moved with a {@link ChannelMigration} (make before break), 
+ * only one channel is moved at a time.
+ */
+public class ChannelRebalancer {
+
+    public enum LoadMetric {
+        MESSAGES, BYTES
+    }
+
+    /**
+     * The allowed load of the hottest connection above the average load
+     */
+    private final static double IMBALANCE_TOLERANCE = 0.25;
+
+    /**
+     * The max time for the streams of a moved channel to get in sync
+     */
+    private final static long SYNC_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * The executor for the rebalance runs and the moves, shared by all pooled clients
+     */
+    private final static ScheduledThreadPoolExecutor REBALANCE_TIMER;
+
+    static {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("bitfinex-rebalancer-%d")
+                .setDaemon(true)
+                .build();
+
+        REBALANCE_TIMER = new ScheduledThreadPoolExecutor(1, threadFactory);
+        REBALANCE_TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * The pool
+     */
+    private final PooledBitfinexApiBroker pool;
+
+    /**
+     * The max channels per connection
+     */
+    private final int maxChannels;
+
+    /**
+     * The load metric
+     */
+    private final LoadMetric loadMetric;
+
+    /**
+     * The running moves
+     */
+    private final Map<BitfinexStreamSymbol, ChannelMigration> migrations;
+
+    /**
+     * The number of moved channels
+     */
+    private final AtomicLong movedChannels;
+
+    /**
+     * The number of aborted moves
+     */
+    private final AtomicLong abortedMoves;
+
+    /**
+     * The periodic rebalance run
+     */
+    private ScheduledFuture<?> rebalanceTask;
+
+    /**
+     * The Logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ChannelRebalancer.class);
+
+    public ChannelRebalancer(final PooledBitfinexApiBroker pool, final int maxChannels, final LoadMetric loadMetric) {
+        this.pool = pool;
+        this.maxChannels = maxChannels;
+        this.loadMetric = loadMetric;
+        this.migrations = new ConcurrentHashMap<>();
+        this.movedChannels = new AtomicLong();
+        this.abortedMoves = new AtomicLong();
+    }
+
+    /**
+     * Rebalance the connections periodically
+     * @param interval
+     * @param timeUnit
+     */
+    public synchronized void start(final long interval, final TimeUnit timeUnit) {
+        stop();
+        rebalanceTask = REBALANCE_TIMER.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (final Exception e) {
+                logger.error("Got exception while rebalancing the connections", e);
+            }
+        }, interval, interval, timeUnit);
+    }
+
+    /**
+     * Stop the periodic rebalancing, running moves are completed
+     */
+    public synchronized void stop() {
+        if (rebalanceTask != null) {
+            rebalanceTask.cancel(false);
+            rebalanceTask = null;
+        }
+    }
+
+    /**
+     * Move one channel from the most to the least loaded connection, if the 
+     * load of the most loaded connection exceeds the average load
+     *
+     * @return the result of the move (true if a channel was moved)
+     */
+    public CompletableFuture<Boolean> rebalance() {
+        if (! migrations.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        final List<PooledConnection> connections = pool.getConnections().stream()
+                .filter(PooledConnection::isConnectDone)
+                .collect(Collectors.toList());
+
+        if (connections.size() < 2) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        final double[] loads = new double[connections.size()];
+        double totalLoad = 0;
+        int hottest = 0;
+
+        for (int i = 0; i < connections.size(); i++) {
+            loads[i] = getLoad(connections.get(i));
+            totalLoad += loads[i];
+            if (loads[i] > loads[hottest]) {
+                hottest = i;
+            }
+        }
+
+        int coldest = -1;
+        for (int i = 0; i < connections.size(); i++) {
+            if (i == hottest || connections.get(i).getChannelCount() >= maxChannels) {
+                continue;
+            }
+            if (coldest == -1 || loads[i] < loads[coldest]) {
+                coldest = i;
+            }
+        }
+
+        final double averageLoad = totalLoad / connections.size();
+
+        if (coldest == -1 || loads[hottest] <= averageLoad * (1 + IMBALANCE_TOLERANCE)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        // The best move halves the load difference, a channel with a higher 
+        // load than the difference would only swap the hot connection
+        final PooledConnection source = connections.get(hottest);
+        final double loadDifference = loads[hottest] - loads[coldest];
+        BitfinexStreamSymbol bestSymbol = null;
+        double bestDistance = Double.MAX_VALUE;
+
+        for (final BitfinexStreamSymbol symbol : source.getSubscribedChannels()) {
+            final double channelLoad = getLoad(source, symbol);
+
+            if (channelLoad <= 0 || channelLoad >= loadDifference 
+                    || SimpleBitfinexApiBroker.buildSubscribeCommand(symbol) == null
+                    || pool.getDualFeed(symbol) != null) {
+                continue;
+            }
+
+            final double distance = Math.abs(channelLoad - loadDifference / 2);
+            if (distance < bestDistance) {
+                bestSymbol = symbol;
+                bestDistance = distance;
+            }
+        }
+
+        if (bestSymbol == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return moveChannel(bestSymbol, source, connections.get(coldest));
+    }
+
+    /**
+     * Move a channel to another connection
+     *
+     * @param symbol - the symbol of the channel
+     * @param targetIndex - the index of the target connection
+     * @return the result of the move (true if the channel was moved)
+     */
+    public CompletableFuture<Boolean> moveChannel(final BitfinexStreamSymbol symbol, final int targetIndex) {
+        final List<PooledConnection> connections = pool.getConnections();
+
+        final PooledConnection source = connections.stream()
+                .filter(c -> c.isSubscribed(symbol))
+                .findFirst().orElseThrow(() -> new IllegalArgumentException("Channel is not subscribed: " + symbol));
+
+        if (pool.getDualFeed(symbol) != null) {
+            throw new IllegalArgumentException("Channel is subscribed on two connections: " + symbol);
+        }
+
+        if (targetIndex < 0 || targetIndex >= connections.size() || ! connections.get(targetIndex).isConnectDone()) {
+            throw new IllegalArgumentException("Invalid target connection: " + targetIndex);
+        }
+
+        return moveChannel(symbol, source, connections.get(targetIndex));
+    }
+
+    /**
+     * Move a channel to another connection
+     * @param symbol
+     * @param source
+     * @param target
+     * @return
+     */
+    private CompletableFuture<Boolean> moveChannel(final BitfinexStreamSymbol symbol, 
+            final PooledConnection source, final PooledConnection target) {
+
+        if (source == target || ! target.reserveChannel(symbol, maxChannels)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        final ChannelMigration migration = new ChannelMigration(symbol, source.getClient(), target.getClient(), REBALANCE_TIMER);
+
+        if (migrations.putIfAbsent(symbol, migration) != null) {
+            target.releaseChannel(symbol);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        logger.info("Moving channel {} from connection {} ({}) to connection {} ({})", symbol,
+                source.getIndex(), getLoad(source), target.getIndex(), getLoad(target));
+
+        final CompletableFuture<Boolean> result = migration.getResult().whenComplete((moved, e) -> {
+            migrations.remove(symbol, migration);
+            target.releaseChannel(symbol);
+            if (Boolean.TRUE.equals(moved)) {
+                movedChannels.incrementAndGet();
+            } else {
+                abortedMoves.incrementAndGet();
+            }
+        });
+
+        try {
+            migration.start(SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (final Exception e) {
+            migration.getResult().completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Wait until a running move of the channel is done
+     * @param symbol
+     * @throws InterruptedException
+     */
+    public void awaitMove(final BitfinexStreamSymbol symbol) throws InterruptedException {
+        final ChannelMigration migration = migrations.get(symbol);
+
+        if (migration == null) {
+            return;
+        }
+
+        try {
+            migration.getResult().get(2 * SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (final Exception e) {
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            logger.debug("Move of channel {} failed", symbol, e);
+        }
+    }
+
+    /**
+     * Is the channel moved right now
+     * @param symbol
+     * @return
+     */
+    public boolean isMoving(final BitfinexStreamSymbol symbol) {
+        return migrations.containsKey(symbol);
+    }
+
+    /**
+     * Get the number of moved channels
+     * @return
+     */
+    public long getMovedChannels() {
+        return movedChannels.get();
+    }
+
+    /**
+     * Get the number of aborted moves
+     * @return
+     */
+    public long getAbortedMoves() {
+        return abortedMoves.get();
+    }
+
+    /**
+     * Get the load of a connection
+     * @param connection
+     * @return
+     */
+    private double getLoad(final PooledConnection connection) {
+        return loadMetric == LoadMetric.BYTES ? connection.getByteRate() : connection.getMessageRate();
+    }
+
+    /**
+     * Get the load of a channel
+     * @param connection
+     * @param symbol
+     * @return
+     */
+    private double getLoad(final PooledConnection connection, final BitfinexStreamSymbol symbol) {
+        return loadMetric == LoadMetric.BYTES ? connection.getByteRate(symbol) : connection.getMessageRate(symbol);
+    }
+}
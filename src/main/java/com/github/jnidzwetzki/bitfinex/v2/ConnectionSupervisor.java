@@ -0,0 +1,212 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the reconnects of the connections of a {@link PooledBitfinexApiBroker}. 
+ * Only the failed connection is reconnected and resubscribed, the other connections 
+ * keep streaming. The reconnects share the connection rate budget of the pool, failed 
+ * reconnects of a connection are retried with an exponential backoff.
+ */
+public class ConnectionSupervisor {
+
+    /**
+     * The max backoff between two reconnects of a connection
+     */
+    private final static long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Waits until a connection fits into the connection rate budget of the pool
+     */
+    private final Runnable connectSlot;
+
+    /**
+     * The executor for the reconnects
+     */
+    private final Executor executor;
+
+    /**
+     * The backoff after the first failed reconnect of a connection
+     */
+    private final long backoffMillis;
+
+    /**
+     * The running reconnects (connection index to reconnect)
+     */
+    private final Map<Integer, CompletableFuture<Boolean>> runningReconnects;
+
+    /**
+     * The consecutive failed reconnects (connection index to failures)
+     */
+    private final Map<Integer, Integer> consecutiveFailures;
+
+    /**
+     * The number of successful reconnects
+     */
+    private final AtomicLong reconnects;
+
+    /**
+     * The number of failed reconnects
+     */
+    private final AtomicLong failedReconnects;
+
+    /**
+     * Are reconnects scheduled
+     */
+    private volatile boolean active;
+
+    /**
+     * The Logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ConnectionSupervisor.class);
+
+    ConnectionSupervisor(final Runnable connectSlot, final Executor executor, final long backoffMillis) {
+        this.connectSlot = connectSlot;
+        this.executor = executor;
+        this.backoffMillis = backoffMillis;
+        this.runningReconnects = new ConcurrentHashMap<>();
+        this.consecutiveFailures = new ConcurrentHashMap<>();
+        this.reconnects = new AtomicLong();
+        this.failedReconnects = new AtomicLong();
+    }
+
+    /**
+     * Start scheduling reconnects
+     */
+    void start() {
+        active = true;
+    }
+
+    /**
+     * Stop scheduling reconnects, running reconnects are not interrupted
+     */
+    void stop() {
+        active = false;
+    }
+
+    /**
+     * Reconnect a connection, a reconnect requested while the connection is already 
+     * reconnecting joins the running reconnect
+     *
+     * @param connection
+     * @return completed with true if the connection is reconnected and resubscribed
+     */
+    public CompletableFuture<Boolean> reconnect(final PooledConnection connection) {
+        if (! active) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        final int index = connection.getIndex();
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final CompletableFuture<Boolean> runningReconnect = runningReconnects.putIfAbsent(index, future);
+
+        if (runningReconnect != null) {
+            return runningReconnect;
+        }
+
+        executor.execute(() -> {
+            boolean reconnected = false;
+            try {
+                Thread.sleep(getBackoff(index));
+                if (active) {
+                    connectSlot.run();
+                    logger.info("Reconnecting connection {}", index);
+                    reconnected = connection.getClient().reconnect();
+                    recordReconnect(index, reconnected);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final Exception e) {
+                logger.error("Got exception while reconnecting connection {}", index, e);
+                recordReconnect(index, false);
+            } finally {
+                runningReconnects.remove(index, future);
+                future.complete(reconnected);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Is the connection reconnecting
+     * @param connection
+     * @return
+     */
+    public boolean isReconnecting(final PooledConnection connection) {
+        return runningReconnects.containsKey(connection.getIndex());
+    }
+
+    /**
+     * Get the number of successful reconnects
+     * @return
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * Get the number of failed reconnects
+     * @return
+     */
+    public long getFailedReconnects() {
+        return failedReconnects.get();
+    }
+
+    /**
+     * Get the wait time before the next reconnect of a connection
+     * @param index
+     * @return
+     */
+    private long getBackoff(final int index) {
+        final int failures = consecutiveFailures.getOrDefault(index, 0);
+
+        if (failures == 0) {
+            return 0;
+        }
+
+        final long backoff = backoffMillis << Math.min(failures - 1, 20);
+        return Math.min(backoff, MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Record the result of a reconnect
+     * @param index
+     * @param reconnected
+     */
+    private void recordReconnect(final int index, final boolean reconnected) {
+        if (reconnected) {
+            reconnects.incrementAndGet();
+            consecutiveFailures.remove(index);
+        } else {
+            failedReconnects.incrementAndGet();
+            consecutiveFailures.merge(index, 1, Integer::sum);
+            logger.warn("Reconnect of connection {} failed, backoff before the next attempt is {} ms", index, getBackoff(index));
+        }
+    }
+}
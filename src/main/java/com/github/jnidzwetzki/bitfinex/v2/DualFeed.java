@@ -0,0 +1,380 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.ArrayDeque;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+
+/**
+ * A channel subscribed on two connections of the {@link PooledBitfinexApiBroker}. 
+ * Each frame is delivered from the connection it arrives on first, the later copy 
+ * is dropped. The streams are aligned by the frame content (action and payload), 
+ * since the channel ids and sequence numbers are connection specific. Both connections 
+ * deliver the frames in the same order, so a later copy is the oldest frame the other 
+ * connection delivered ahead.
+ * 
+ * The subscribe event and the snapshot of a (re-)subscription are only passed to the 
+ * callbacks if the other connection does not deliver the channel (e.g., the first 
+ * subscription or a reconnect of both connections), so the managers keep their state 
+ * while one connection resubscribes. The later frames of the connection (and the frames of a stream that 
+ * diverged) are held back until both streams share a run of frames at exactly one 
+ * position (see {@link ChannelMigration}), since single frames repeat.
+ */
+public class DualFeed {
+
+    /**
+     * The max number of frames delivered by one connection and not yet seen on the other one
+     */
+    private final static int MAX_UNMATCHED_FRAMES = 4096;
+
+    /**
+     * The max number of frames held back until the streams are aligned
+     */
+    private final static int MAX_SYNC_FRAMES = 1024;
+
+    /**
+     * The symbol of the channel
+     */
+    private final BitfinexStreamSymbol symbol;
+
+    /**
+     * The feed of the primary connection
+     */
+    private final Feed primaryFeed;
+
+    /**
+     * The feed of the backup connection
+     */
+    private final Feed backupFeed;
+
+    /**
+     * The number of dropped later copies
+     */
+    private long duplicateFrames;
+
+    DualFeed(final BitfinexStreamSymbol symbol, final PooledConnection primary, final PooledConnection backup) {
+        this.symbol = symbol;
+        this.primaryFeed = new Feed(primary, false);
+        this.backupFeed = new Feed(backup, true);
+        primaryFeed.other = backupFeed;
+        backupFeed.other = primaryFeed;
+    }
+
+    /**
+     * Install the frame filters on both connections, has to be called before the channel is subscribed
+     */
+    void start() {
+        primaryFeed.connection.getClient().setChannelFilter(symbol, primaryFeed);
+        backupFeed.connection.getClient().setChannelFilter(symbol, backupFeed);
+    }
+
+    /**
+     * Get the symbol of the channel
+     * @return
+     */
+    public BitfinexStreamSymbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Get the primary connection
+     * @return
+     */
+    public PooledConnection getPrimary() {
+        return primaryFeed.connection;
+    }
+
+    /**
+     * Get the backup connection
+     * @return
+     */
+    public PooledConnection getBackup() {
+        return backupFeed.connection;
+    }
+
+    /**
+     * Get the number of frames that arrived first on the primary connection
+     * @return
+     */
+    public synchronized long getPrimaryFrames() {
+        return primaryFeed.deliveredFrames;
+    }
+
+    /**
+     * Get the number of frames that arrived first on the backup connection
+     * @return
+     */
+    public synchronized long getBackupFrames() {
+        return backupFeed.deliveredFrames;
+    }
+
+    /**
+     * Get the number of dropped later copies
+     * @return
+     */
+    public synchronized long getDuplicateFrames() {
+        return duplicateFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "DualFeed [symbol=" + symbol + ", primary=" + getPrimary().getIndex() + ", backup=" 
+                + getBackup().getIndex() + ", primaryFrames=" + getPrimaryFrames() + ", backupFrames=" 
+                + getBackupFrames() + ", duplicateFrames=" + getDuplicateFrames() + "]";
+    }
+
+    /**
+     * The channel on one of the connections
+     */
+    private class Feed implements ChannelFrameFilter {
+
+        /**
+         * The connection
+         */
+        private final PooledConnection connection;
+
+        /**
+         * Are the unsubscribe events consumed
+         */
+        private final boolean backup;
+
+        /**
+         * The keys of the delivered frames not yet seen on the other connection
+         */
+        private final ArrayDeque<String> unmatchedFrames;
+
+        /**
+         * The number of delivered frames removed from the unmatched frames (MAX_UNMATCHED_FRAMES 
+         * exceeded), the next frames of the other connection are their copies
+         */
+        private int evictedFrames;
+
+        /**
+         * The frames held back until the streams are aligned (key, frame)
+         */
+        private final ArrayDeque<String[]> syncFrames;
+
+        /**
+         * The feed of the other connection
+         */
+        private Feed other;
+
+        /**
+         * The handler of the channel on the connection
+         */
+        private ChannelCallbackHandler handler;
+
+        /**
+         * Is the next frame the snapshot of a new subscription
+         */
+        private boolean awaitingSnapshot;
+
+        /**
+         * Is the snapshot of the new subscription delivered (the subscribe event was passed on)
+         */
+        private boolean deliverSnapshot;
+
+        /**
+         * Is the snapshot dropped and the stream not yet aligned with the other connection
+         */
+        private boolean syncing;
+
+        /**
+         * The number of frames delivered from this connection
+         */
+        private long deliveredFrames;
+
+        private Feed(final PooledConnection connection, final boolean backup) {
+            this.connection = connection;
+            this.backup = backup;
+            this.unmatchedFrames = new ArrayDeque<>();
+            this.syncFrames = new ArrayDeque<>();
+        }
+
+        @Override
+        public void handleChannelFrame(final ChannelMessageCursor cursor, final ChannelCallbackHandler handler)
+                throws BitfinexClientException {
+
+            synchronized (DualFeed.this) {
+                this.handler = handler;
+
+                if (awaitingSnapshot) {
+                    awaitingSnapshot = false;
+
+                    // The other connection delivers the state of the channel
+                    if (deliverSnapshot) {
+                        deliveredFrames++;
+                        handler.handleChannelFrame(cursor);
+                    } else {
+                        syncing = true;
+                        syncFrames.clear();
+                    }
+                    return;
+                }
+
+                final String key = ChannelMigration.getFrameKey(cursor);
+
+                if (syncing) {
+                    if (other.isDelivering() && syncFrames.size() < MAX_SYNC_FRAMES) {
+                        syncFrames.addLast(new String[] {key, cursor.getFrame()});
+                        alignIfInSync();
+                        return;
+                    }
+
+                    // The streams can not be aligned, deliver the held back frames
+                    other.unmatchedFrames.clear();
+                    other.evictedFrames = 0;
+                    flushSyncFrames();
+                }
+
+                // Delivered by the other connection
+                if (other.evictedFrames > 0) {
+                    other.evictedFrames--;
+                    duplicateFrames++;
+                    return;
+                }
+
+                if (! other.unmatchedFrames.isEmpty()) {
+                    if (other.unmatchedFrames.peekFirst().equals(key)) {
+                        other.unmatchedFrames.removeFirst();
+                        duplicateFrames++;
+                        return;
+                    }
+
+                    // The streams diverged, hold back the frames until they are aligned again
+                    if (other.isStreaming()) {
+                        syncing = true;
+                        syncFrames.addLast(new String[] {key, cursor.getFrame()});
+                        return;
+                    }
+                }
+
+                deliveredFrames++;
+                handler.handleChannelFrame(cursor);
+                addUnmatchedFrame(key);
+
+                // Held back by the other connection
+                if (other.syncing) {
+                    other.alignIfInSync();
+                }
+            }
+        }
+
+        /**
+         * Deliver the held back frames if they are aligned with the frames delivered by the 
+         * other connection. The older frames delivered by the other connection will not 
+         * arrive on this connection anymore, the matching frames are copies and the 
+         * remaining held back frames are ahead of the other connection.
+         * @throws BitfinexClientException
+         */
+        private void alignIfInSync() throws BitfinexClientException {
+            final int position = ChannelMigration.findPosition(other.unmatchedFrames, syncFrames, f -> f[0]);
+
+            if (position < 0) {
+                return;
+            }
+
+            final int overlap = Math.min(syncFrames.size(), other.unmatchedFrames.size() - position);
+
+            for (int i = 0; i < position + overlap; i++) {
+                other.unmatchedFrames.removeFirst();
+            }
+
+            for (int i = 0; i < overlap; i++) {
+                syncFrames.removeFirst();
+            }
+
+            other.evictedFrames = 0;
+            duplicateFrames += overlap;
+            flushSyncFrames();
+        }
+
+        /**
+         * Deliver the held back frames, they arrived on this connection first
+         * @throws BitfinexClientException
+         */
+        private void flushSyncFrames() throws BitfinexClientException {
+            final ChannelMessageCursor replayCursor = new ChannelMessageCursor();
+
+            while (! syncFrames.isEmpty()) {
+                final String[] frame = syncFrames.removeFirst();
+                addUnmatchedFrame(frame[0]);
+                deliveredFrames++;
+                handler.handleChannelFrame(replayCursor.reset(frame[1]));
+            }
+
+            syncing = false;
+        }
+
+        /**
+         * Remember a delivered frame until it is seen on the other connection
+         * @param key
+         */
+        private void addUnmatchedFrame(final String key) {
+            if (unmatchedFrames.size() == MAX_UNMATCHED_FRAMES) {
+                unmatchedFrames.removeFirst();
+                evictedFrames++;
+            }
+            unmatchedFrames.addLast(key);
+        }
+
+        /**
+         * Is the channel subscribed on the connection and the stream aligned
+         * @return
+         */
+        private boolean isStreaming() {
+            return ! awaitingSnapshot && ! syncing && connection.isSubscribed(symbol);
+        }
+
+        /**
+         * Is the channel streamed on the connection or is the snapshot of the 
+         * subscription about to be delivered
+         * @return
+         */
+        private boolean isDelivering() {
+            if (awaitingSnapshot) {
+                return deliverSnapshot && connection.isSubscribed(symbol);
+            }
+            return isStreaming();
+        }
+
+        @Override
+        public boolean subscribed() {
+            final boolean consumed;
+
+            synchronized (DualFeed.this) {
+                awaitingSnapshot = true;
+                deliverSnapshot = ! other.isDelivering();
+                consumed = ! deliverSnapshot;
+            }
+
+            connection.releaseChannel(symbol);
+            return consumed;
+        }
+
+        @Override
+        public boolean unsubscribed() {
+            connection.getClient().removeChannelFilter(symbol);
+            return backup;
+        }
+    }
+}
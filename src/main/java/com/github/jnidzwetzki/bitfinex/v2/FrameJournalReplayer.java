@@ -0,0 +1,143 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameJournalReader;
+
+/**
+ * Replays a journal of websocket frames (see 
+ * {@link BitfinexWebsocketConfiguration#setFrameJournal}) through the 
+ * receive pipeline of a broker. The broker does not need to be connected,
+ * the recorded subscribed events register the channels.
+ * 
+ * The channel ids of different connections overlap, a journal shared by 
+ * the connections of a pool is replayed one connection at a time.
+ */
+public class FrameJournalReplayer {
+
+	/**
+	 * The broker
+	 */
+	private final SimpleBitfinexApiBroker broker;
+
+	/**
+	 * The journal reader
+	 */
+	private final FrameJournalReader reader;
+
+	public FrameJournalReplayer(final BitfinexWebsocketClient client, final Path journalDirectory) {
+		if(! (client instanceof SimpleBitfinexApiBroker)) {
+			throw new BitfinexClientException("Replay is only supported for a simple client, got: " + client);
+		}
+
+		this.broker = (SimpleBitfinexApiBroker) client;
+		this.reader = new FrameJournalReader(journalDirectory);
+	}
+
+	/**
+	 * Replay the journal as fast as possible
+	 * @return the number of replayed frames
+	 */
+	public long replay() {
+		return reader.forEach((frame, timestamp) -> broker.replayFrame(frame));
+	}
+
+	/**
+	 * Replay the frames of one connection as fast as possible
+	 * @param connection - the connection index
+	 * @return the number of replayed frames
+	 */
+	public long replayConnection(final int connection) {
+		final long[] replayed = {0};
+
+		reader.forEach((frame, timestamp, frameConnection) -> {
+			if(frameConnection == connection) {
+				broker.replayFrame(frame);
+				replayed[0]++;
+			}
+		});
+
+		return replayed[0];
+	}
+
+	/**
+	 * Replay the journal with the recorded pace
+	 * @param speed - 1.0 = recorded pace, 2.0 = twice as fast...
+	 * @return the number of replayed frames
+	 */
+	public long replay(final double speed) {
+		return replay(speed, -1);
+	}
+
+	/**
+	 * Replay the frames of one connection with the recorded pace
+	 * @param speed - 1.0 = recorded pace, 2.0 = twice as fast...
+	 * @param connection - the connection index
+	 * @return the number of replayed frames
+	 */
+	public long replayConnection(final double speed, final int connection) {
+		if(connection < 0) {
+			throw new IllegalArgumentException("Invalid connection: " + connection);
+		}
+
+		return replay(speed, connection);
+	}
+
+	/**
+	 * Replay the frames with the recorded pace
+	 * @param speed
+	 * @param connection - the connection index, all connections if -1
+	 * @return the number of replayed frames
+	 */
+	private long replay(final double speed, final int connection) {
+		if(speed <= 0) {
+			throw new IllegalArgumentException("Invalid speed: " + speed);
+		}
+
+		final long[] origin = {Long.MIN_VALUE, 0};
+		final long[] replayed = {0};
+
+		reader.forEach((frame, timestamp, frameConnection) -> {
+			if(connection != -1 && frameConnection != connection) {
+				return;
+			}
+
+			final long now = System.nanoTime();
+
+			if(origin[0] == Long.MIN_VALUE) {
+				origin[0] = timestamp;
+				origin[1] = now;
+			} else {
+				final long due = origin[1] + (long) ((timestamp - origin[0]) / speed);
+
+				while(System.nanoTime() < due) {
+					LockSupport.parkNanos(due - System.nanoTime());
+				}
+			}
+
+			broker.replayFrame(frame);
+			replayed[0]++;
+		});
+
+		return replayed[0];
+	}
+}
@@ -19,6 +19,8 @@ package com.github.jnidzwetzki.bitfinex.v2;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -86,6 +88,11 @@ public class HeartbeatThread extends ExceptionSafeRunnable {
 	 */
 	private final BitfinexApiCallbackRegistry callbackRegistry;
 
+	/**
+	 * Schedules the reconnects of the connection, null if the thread reconnects by itself
+	 */
+	private final Supplier<CompletableFuture<Boolean>> reconnectHandler;
+
 	/**
 	 * new heartbeat thread constructor
 	 * @param bitfinexApiBroker			- bitfinex api broken
@@ -95,7 +102,23 @@ public class HeartbeatThread extends ExceptionSafeRunnable {
 	public HeartbeatThread(final BitfinexWebsocketClient bitfinexApiBroker,
 						   final WebsocketClientEndpoint websocketClientEndpoint,
 						   final Supplier<Long> lastHeartbeatSupplier) {
+		this(bitfinexApiBroker, websocketClientEndpoint, lastHeartbeatSupplier, null);
+	}
+
+	/**
+	 * new heartbeat thread constructor
+	 * @param bitfinexApiBroker			- bitfinex api broken
+	 * @param websocketClientEndpoint	- websocket endpoint
+	 * @param lastHeartbeatSupplier     - last heartbeat supplier
+	 * @param reconnectHandler          - schedules the reconnects (e.g., the supervisor of a connection pool), 
+	 *                                    null if the thread reconnects by itself
+	 */
+	public HeartbeatThread(final BitfinexWebsocketClient bitfinexApiBroker,
+						   final WebsocketClientEndpoint websocketClientEndpoint,
+						   final Supplier<Long> lastHeartbeatSupplier,
+						   final Supplier<CompletableFuture<Boolean>> reconnectHandler) {
 		this.bitfinexApiBroker = bitfinexApiBroker;
+		this.reconnectHandler = reconnectHandler;
 		this.callbackRegistry = (BitfinexApiCallbackRegistry) bitfinexApiBroker.getCallbacks();
 		this.websocketEndpoint = websocketClientEndpoint;
 		this.lastHeartbeatSupplier = lastHeartbeatSupplier;
@@ -206,6 +229,16 @@ public class HeartbeatThread extends ExceptionSafeRunnable {
 		// Close connection
 		websocketEndpoint.close();
 
+		// The reconnect is scheduled together with the reconnects of other connections
+		if(reconnectHandler != null) {
+			try {
+				reconnectHandler.get().get();
+			} catch (ExecutionException e) {
+				logger.error("Got exception while reconnecting", e);
+			}
+			return;
+		}
+
 		// Store the reconnect time to prevent too much
 		// reconnects in a short timeframe. Otherwise the
 		// rate limit will apply and the reconnects are not successfully
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+
+/**
+ * Places a channel on the connection with the lowest inbound message rate. Pending 
+ * subscriptions have no observed rate yet, they are counted with the average channel 
+ * rate of the pool. A new connection is opened when all connections are full or the 
+ * least loaded connection exceeds the max message rate.
+ */
+class LeastMessageRatePlacementStrategy implements ChannelPlacementStrategy {
+
+    /**
+     * The max message rate per connection
+     */
+    private final double maxMessageRate;
+
+    LeastMessageRatePlacementStrategy(final double maxMessageRate) {
+        this.maxMessageRate = maxMessageRate;
+    }
+
+    @Override
+    public int selectConnection(final BitfinexStreamSymbol symbol, final List<PooledConnection> connections,
+                                final int maxChannels) {
+
+        final double[] messageRates = new double[connections.size()];
+        double totalMessageRate = 0;
+        int subscribedChannels = 0;
+
+        for (int i = 0; i < connections.size(); i++) {
+            messageRates[i] = connections.get(i).getMessageRate();
+            totalMessageRate += messageRates[i];
+            subscribedChannels += connections.get(i).getSubscribedChannelCount();
+        }
+
+        final double channelRate = subscribedChannels == 0 ? 0 : totalMessageRate / subscribedChannels;
+
+        int bestIndex = connections.size();
+        double bestLoad = Double.MAX_VALUE;
+        int bestChannels = Integer.MAX_VALUE;
+
+        for (int i = 0; i < connections.size(); i++) {
+            final PooledConnection connection = connections.get(i);
+            final int channels = connection.getChannelCount();
+
+            if (channels >= maxChannels) {
+                continue;
+            }
+
+            final int pendingChannels = channels - connection.getSubscribedChannelCount();
+            final double load = messageRates[i] + pendingChannels * channelRate;
+
+            if (load < bestLoad || (load == bestLoad && channels < bestChannels)) {
+                bestIndex = connection.getIndex();
+                bestLoad = load;
+                bestChannels = channels;
+            }
+        }
+
+        if (bestLoad > maxMessageRate) {
+            return connections.size();
+        }
+
+        return bestIndex;
+    }
+}
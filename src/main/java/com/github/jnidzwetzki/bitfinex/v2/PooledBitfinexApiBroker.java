@@ -17,12 +17,27 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommand;
@@ -30,6 +45,7 @@ import com.github.jnidzwetzki.bitfinex.v2.command.SetConnectionFeaturesCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexApiKeyPermissions;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
 import com.github.jnidzwetzki.bitfinex.v2.manager.ConnectionFeatureManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
@@ -40,22 +56,51 @@ import com.github.jnidzwetzki.bitfinex.v2.manager.TradeManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.WalletManager;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.util.EventsInTimeslotManager;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * BitfinexApiBroker client spreading amount of channels across multiple websocket connections.
  */
 public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
 
-    private final AtomicInteger numberOfClients = new AtomicInteger(0);
-    private final Map<Integer, BitfinexWebsocketClient> clients = new ConcurrentHashMap<>();
-    private final Map<BitfinexWebsocketClient, Set<BitfinexStreamSymbol>> pendingSubscriptions = new ConcurrentHashMap<>();
+    /**
+     * The max attempts to reserve a channel slot before the placement fails
+     */
+    private final static int MAX_PLACEMENT_ATTEMPTS = 100;
+
+    /**
+     * The default time a bootstrap waits for the subscribed events of a connection
+     */
+    public final static long DEFAULT_BOOTSTRAP_SUBSCRIBE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * The timer for the bootstrap subscribe timeouts, shared by all pooled clients
+     */
+    private final static ScheduledThreadPoolExecutor BOOTSTRAP_TIMER;
+
+    static {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("bitfinex-bootstrap-timer-%d")
+                .setDaemon(true)
+                .build();
+
+        BOOTSTRAP_TIMER = new ScheduledThreadPoolExecutor(1, threadFactory);
+        BOOTSTRAP_TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final ConcurrentNavigableMap<Integer, PooledConnection> connections = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<BitfinexStreamSymbol, DualFeed> dualFeeds = new ConcurrentHashMap<>();
 
     private final BitfinexWebsocketConfiguration configuration;
     private final BitfinexApiCallbackRegistry callbackRegistry;
     private final SequenceNumberAuditor sequenceNumberAuditor;
     private final int maxChannelsPerClient;
+    private final ChannelPlacementStrategy placementStrategy;
+    private final ChannelRebalancer channelRebalancer;
 
     private final EventsInTimeslotManager connectEventManager;
+    private final ExecutorService connectExecutor;
+    private final ConnectionSupervisor connectionSupervisor;
 
     private final QuoteManager quoteManager;
     private final OrderbookManager orderbookManager;
@@ -73,8 +118,17 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
         callbackRegistry = callbacks;
         sequenceNumberAuditor = seqNoAuditor;
         maxChannelsPerClient = channelsPerConnection;
-
-        connectEventManager = new EventsInTimeslotManager(1, configuration.getConnectionEstablishingDelay(), TimeUnit.MILLISECONDS);
+        placementStrategy = configuration.getChannelPlacementStrategy();
+        channelRebalancer = new ChannelRebalancer(this, channelsPerConnection, configuration.getChannelRebalanceMetric());
+
+        connectEventManager = new EventsInTimeslotManager(configuration.getConnectionBurst(), 
+                configuration.getConnectionEstablishingDelay(), TimeUnit.MILLISECONDS);
+        connectExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("bitfinex-pool-connect-%d")
+                .setDaemon(true)
+                .build());
+        connectionSupervisor = new ConnectionSupervisor(this::acquireConnectSlot, connectExecutor, 
+                configuration.getConnectionEstablishingDelay());
 
         quoteManager = new QuoteManager(this, configuration.getExecutorService());
         orderbookManager = new OrderbookManager(this, configuration.getExecutorService());
@@ -85,20 +139,36 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
         walletManager = new WalletManager(this, configuration.getExecutorService());
         connectionFeatureManager = new ConnectionFeatureManager(this, configuration.getExecutorService());
 
-        callbackRegistry.onSubscribeChannelEvent(sym -> pendingSubscriptions.forEach((client, symbols) -> symbols.remove(sym)));
-        callbackRegistry.onUnsubscribeChannelEvent(sym -> pendingSubscriptions.forEach((client, symbols) -> symbols.remove(sym)));
+        callbackRegistry.onSubscribeChannelEvent(sym -> connections.values().forEach(c -> c.releaseChannel(sym)));
+        callbackRegistry.onUnsubscribeChannelEvent(sym -> connections.values().forEach(c -> c.releaseChannel(sym)));
 
+        // The auth connection is established by connect()
         SimpleBitfinexApiBroker authClient = new SimpleBitfinexApiBroker(configuration, callbackRegistry, seqNoAuditor, true);
-        clients.put(numberOfClients.getAndIncrement(), authClient);
-        pendingSubscriptions.put(authClient, ConcurrentHashMap.newKeySet());
+        PooledConnection authConnection = new PooledConnection(0, authClient);
+        authClient.setReconnectHandler(() -> connectionSupervisor.reconnect(authConnection));
+        authConnection.startConnect();
+        authConnection.connectDone();
+        connections.put(0, authConnection);
     }
 
     @Override
     public void connect() {
         try {
             callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.CONNECTION_INIT);
-            for (BitfinexWebsocketClient bitfinexWebsocketClient : clients.values()) {
-                bitfinexWebsocketClient.connect();
+            connectionSupervisor.start();
+
+            // Connections that are still establishing belong to a waiting subscribe call
+            final List<CompletableFuture<Void>> connects = connections.values().stream()
+                    .filter(PooledConnection::isConnectDone)
+                    .map(c -> CompletableFuture.runAsync(() -> {
+                        acquireConnectSlot();
+                        c.getClient().connect();
+                    }, connectExecutor))
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(connects.toArray(new CompletableFuture<?>[0])).join();
+
+            if (configuration.getChannelRebalanceInterval() > 0) {
+                channelRebalancer.start(configuration.getChannelRebalanceInterval(), TimeUnit.MILLISECONDS);
             }
             callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.CONNECTION_SUCCESS);
         } catch (final Exception ex) {
@@ -111,8 +181,10 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
     public void close() {
         try {
             callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.DISCONNECTION_INIT);
-            for (BitfinexWebsocketClient bitfinexWebsocketClient : clients.values()) {
-                bitfinexWebsocketClient.close();
+            channelRebalancer.stop();
+            connectionSupervisor.stop();
+            for (PooledConnection connection : connections.values()) {
+                connection.getClient().close();
             }
             callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.DISCONNECTION_SUCCESS);
         } catch (final Exception ex) {
@@ -123,40 +195,314 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
     @Override
     public void sendCommand(BitfinexCommand command) {
         if (command instanceof SetConnectionFeaturesCommand) {
-            clients.values().forEach(c -> c.sendCommand(command));
+            connections.values().forEach(c -> c.getClient().sendCommand(command));
             return;
         }
-        BitfinexWebsocketClient client = clients.get(0);
+        PooledConnection connection = connections.get(0);
         if (command instanceof SubscribeCommand) {
-            BitfinexStreamSymbol symbol = ((SubscribeCommand) command).getSymbol();
-            synchronized (this) {
-                client = clients.values().stream()
-                        .filter(c -> {
-                            int subscribed = c.getSubscribedChannels().size();
-                            int pending = pendingSubscriptions.get(c).size();
-                            return subscribed + pending < maxChannelsPerClient;
-                        })
-                        .findFirst().orElseGet(this::createAndConnectClient);
-                pendingSubscriptions.get(client).add(symbol);
+            final BitfinexStreamSymbol symbol = ((SubscribeCommand) command).getSymbol();
+            if (configuration.getDualFeedSymbols().contains(symbol)) {
+                final DualFeed dualFeed = placeDualFeed(symbol);
+                awaitConnection(dualFeed.getPrimary());
+                dualFeed.getPrimary().getClient().sendCommand(command);
+                awaitConnection(dualFeed.getBackup());
+                dualFeed.getBackup().getClient().sendCommand(command);
+                return;
             }
+            connection = placeChannel(symbol, null);
+            awaitConnection(connection);
         }
         if (command instanceof UnsubscribeChannelCommand) {
             UnsubscribeChannelCommand unsubscribeCommand = (UnsubscribeChannelCommand) command;
             BitfinexStreamSymbol symbol = unsubscribeCommand.getSymbol();
-            client = clients.values().stream()
-                    .filter(c -> c.getSubscribedChannels().contains(symbol))
+            awaitChannelMove(symbol);
+            if (dualFeeds.remove(symbol) != null) {
+                connections.values().stream()
+                        .filter(c -> c.isSubscribed(symbol))
+                        .forEach(c -> c.getClient().sendCommand(command));
+                return;
+            }
+            connection = connections.values().stream()
+                    .filter(c -> c.isSubscribed(symbol))
                     .findFirst().orElseThrow(IllegalStateException::new);
         }
         
-        if(client == null) {
+        if(connection == null) {
         	throw new IllegalArgumentException("Client is null, please init first");
         }
         
-        client.sendCommand(command);
+        connection.getClient().sendCommand(command);
     }
 
     public int websocketConnCount() {
-        return numberOfClients.get();
+        return connections.size();
+    }
+
+    /**
+     * Get the connections of the pool
+     * @return the connections ordered by their index
+     */
+    public List<PooledConnection> getConnections() {
+        return new ArrayList<>(connections.values());
+    }
+
+    /**
+     * Subscribe a set of channels. The needed connections are computed up front and 
+     * established concurrently, limited to the connection burst within the connection 
+     * establishing delay. The channels of a connection are subscribed as soon as the 
+     * connection is established, without waiting for the subscribed events.
+     *
+     * @param symbols the channels, already subscribed channels are skipped
+     * @param progressListener called for every established connection and subscribed channel
+     * @return completed with the final progress when all channels are subscribed, completed 
+     *  exceptionally if a subscribed event is missing after DEFAULT_BOOTSTRAP_SUBSCRIBE_TIMEOUT_MILLIS
+     */
+    public CompletableFuture<BootstrapProgress> bootstrap(final Collection<? extends BitfinexStreamSymbol> symbols,
+            final Consumer<BootstrapProgress> progressListener) {
+        return bootstrap(symbols, progressListener, DEFAULT_BOOTSTRAP_SUBSCRIBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribe a set of channels (see {@link #bootstrap(Collection, Consumer)})
+     *
+     * @param symbols the channels, already subscribed channels are skipped
+     * @param progressListener called for every established connection and subscribed channel
+     * @param subscribeTimeout the time to wait for the subscribed events after the subscribes 
+     *  of a connection are sent (a rejected or lost subscribe has no subscribed event)
+     * @param timeUnit
+     * @return completed with the final progress when all channels are subscribed, completed 
+     *  exceptionally if a subscribed event is missing after the timeout
+     */
+    public CompletableFuture<BootstrapProgress> bootstrap(final Collection<? extends BitfinexStreamSymbol> symbols,
+            final Consumer<BootstrapProgress> progressListener, final long subscribeTimeout, final TimeUnit timeUnit) {
+
+        final Set<BitfinexStreamSymbol> channels = new LinkedHashSet<>(symbols);
+        channels.removeAll(getSubscribedChannels());
+
+        for (final BitfinexStreamSymbol symbol : channels) {
+            if (SimpleBitfinexApiBroker.buildSubscribeCommand(symbol) == null) {
+                throw new BitfinexClientException("Unable to subscribe channel " + symbol);
+            }
+        }
+
+        // Placing all channels first determines the needed connections
+        final Map<PooledConnection, List<BitfinexStreamSymbol>> placements 
+            = new TreeMap<>(Comparator.comparingInt(PooledConnection::getIndex));
+        try {
+            for (final BitfinexStreamSymbol symbol : channels) {
+                if (configuration.getDualFeedSymbols().contains(symbol)) {
+                    final DualFeed dualFeed = placeDualFeed(symbol);
+                    placements.computeIfAbsent(dualFeed.getPrimary(), c -> new ArrayList<>()).add(symbol);
+                    placements.computeIfAbsent(dualFeed.getBackup(), c -> new ArrayList<>()).add(symbol);
+                } else {
+                    placements.computeIfAbsent(placeChannel(symbol, null), c -> new ArrayList<>()).add(symbol);
+                }
+            }
+        } catch (final BitfinexClientException e) {
+            placements.forEach((connection, placed) -> placed.forEach(connection::releaseChannel));
+            throw e;
+        }
+
+        final ChannelBootstrap bootstrap = new ChannelBootstrap(placements.size(), channels, progressListener);
+        final Closeable subscribeCallback = callbackRegistry.onSubscribeChannelEvent(bootstrap::channelSubscribed);
+        bootstrap.getFuture().whenComplete((p, e) -> {
+            try {
+                subscribeCallback.close();
+            } catch (IOException ignored) {
+
+            }
+        });
+
+        placements.forEach((connection, placed) -> connectExecutor.execute(() -> {
+            try {
+                awaitConnection(connection);
+                bootstrap.connectionEstablished();
+                for (final BitfinexStreamSymbol symbol : placed) {
+                    connection.getClient().sendCommand(SimpleBitfinexApiBroker.buildSubscribeCommand(symbol));
+                }
+                BOOTSTRAP_TIMER.schedule(() -> bootstrap.failIfPending(placed, connection::releaseChannel),
+                        subscribeTimeout, timeUnit);
+            } catch (final Exception e) {
+                placed.forEach(connection::releaseChannel);
+                bootstrap.fail(e);
+            }
+        }));
+
+        return bootstrap.getFuture();
+    }
+
+    /**
+     * Get the dual feed of a channel
+     * @param symbol
+     * @return the dual feed or null if the channel is not subscribed on two connections
+     */
+    public DualFeed getDualFeed(final BitfinexStreamSymbol symbol) {
+        return dualFeeds.get(symbol);
+    }
+
+    /**
+     * Get the supervisor that schedules the reconnects of the connections
+     * @return
+     */
+    public ConnectionSupervisor getConnectionSupervisor() {
+        return connectionSupervisor;
+    }
+
+    /**
+     * Get the rebalancer that moves hot channels between the connections
+     * @return
+     */
+    public ChannelRebalancer getChannelRebalancer() {
+        return channelRebalancer;
+    }
+
+    /**
+     * Wait until a running move of the channel is done, during the move 
+     * the channel is subscribed on two connections
+     *
+     * @param symbol
+     */
+    private void awaitChannelMove(final BitfinexStreamSymbol symbol) {
+        try {
+            channelRebalancer.awaitMove(symbol);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reserve a channel slot for the symbol on the connection selected by the placement 
+     * strategy. Only the reservation on the selected connection is synchronized, placements 
+     * on different connections do not contend.
+     *
+     * @param symbol
+     * @param excluded - a connection the channel must not be placed on, or null
+     * @return the connection
+     */
+    private PooledConnection placeChannel(final BitfinexStreamSymbol symbol, final PooledConnection excluded) {
+        for (int attempt = 0; attempt < MAX_PLACEMENT_ATTEMPTS; attempt++) {
+            final List<PooledConnection> candidates = getConnections();
+            int index = placementStrategy.selectConnection(symbol, candidates, maxChannelsPerClient);
+
+            if (excluded != null && index == excluded.getIndex()) {
+                index = candidates.stream()
+                        .filter(c -> c != excluded && c.getChannelCount() < maxChannelsPerClient)
+                        .mapToInt(PooledConnection::getIndex)
+                        .findFirst().orElse(candidates.size());
+            }
+
+            if (index < 0) {
+                throw new BitfinexClientException("Invalid connection index " + index + " for " + symbol);
+            }
+
+            final PooledConnection connection = getOrCreateConnection(index);
+
+            // A concurrent placement took the last slot, select again
+            if (connection.reserveChannel(symbol, maxChannelsPerClient)) {
+                return connection;
+            }
+        }
+
+        throw new BitfinexClientException("Unable to place channel for " + symbol);
+    }
+
+    /**
+     * Reserve channel slots for the symbol on two different connections and install 
+     * the dual feed filters, the channel is not subscribed yet
+     *
+     * @param symbol
+     * @return the dual feed
+     */
+    private DualFeed placeDualFeed(final BitfinexStreamSymbol symbol) {
+        final PooledConnection primary = placeChannel(symbol, null);
+        final PooledConnection backup;
+
+        try {
+            backup = placeChannel(symbol, primary);
+        } catch (final BitfinexClientException e) {
+            primary.releaseChannel(symbol);
+            throw e;
+        }
+
+        final DualFeed dualFeed = new DualFeed(symbol, primary, backup);
+
+        if (dualFeeds.putIfAbsent(symbol, dualFeed) != null) {
+            primary.releaseChannel(symbol);
+            backup.releaseChannel(symbol);
+            throw new BitfinexClientException("Channel is already subscribed on two connections: " + symbol);
+        }
+
+        dualFeed.start();
+        return dualFeed;
+    }
+
+    /**
+     * Get the connection with the given index, the connections up to the index 
+     * are created if needed (but not yet connected)
+     *
+     * @param index
+     * @return
+     */
+    private PooledConnection getOrCreateConnection(final int index) {
+        final PooledConnection connection = connections.get(index);
+
+        if (connection != null) {
+            return connection;
+        }
+
+        synchronized (connections) {
+            while (connections.size() <= index) {
+                final int newIndex = connections.size();
+                final BitfinexWebsocketConfiguration config = new BitfinexWebsocketConfiguration(configuration);
+                config.setAuthenticationEnabled(false);
+                config.setManagersActive(false);
+                final SimpleBitfinexApiBroker client = new SimpleBitfinexApiBroker(config, callbackRegistry, 
+                        sequenceNumberAuditor, true);
+                final PooledConnection newConnection = new PooledConnection(newIndex, client);
+                client.setReconnectHandler(() -> connectionSupervisor.reconnect(newConnection));
+                client.setFrameJournalConnection(newIndex);
+                connections.put(newIndex, newConnection);
+            }
+        }
+
+        return connections.get(index);
+    }
+
+    /**
+     * Wait until the connection is established, the first caller establishes the 
+     * connection (limited by the connection establishing delay)
+     *
+     * @param connection
+     */
+    private void awaitConnection(final PooledConnection connection) {
+        if (! connection.startConnect()) {
+            try {
+                connection.awaitConnect();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        try {
+            acquireConnectSlot();
+            connection.getClient().connect();
+        } finally {
+            connection.connectDone();
+        }
+    }
+
+    /**
+     * Wait until a connection can be established without exceeding the connection 
+     * burst within the connection establishing delay
+     */
+    private void acquireConnectSlot() {
+        try {
+            connectEventManager.acquireEvent();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BitfinexClientException(e);
+        }
     }
 
     @Override
@@ -164,8 +510,11 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
         boolean retVal = false;
         try {
             callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.RECONNECTION_INIT);
-            for (BitfinexWebsocketClient client : clients.values()) {
-                retVal |= client.reconnect();
+            final List<CompletableFuture<Boolean>> reconnects = connections.values().stream()
+                    .map(connectionSupervisor::reconnect)
+                    .collect(Collectors.toList());
+            for (CompletableFuture<Boolean> reconnect : reconnects) {
+                retVal |= reconnect.join();
             }
             if (retVal) {
                 callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.RECONNECTION_SUCCESS);
@@ -181,8 +530,8 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
     @Override
     public boolean unsubscribeAllChannels() {
         boolean retVal = true;
-        for (BitfinexWebsocketClient client : clients.values()) {
-            retVal &= client.unsubscribeAllChannels();
+        for (PooledConnection connection : connections.values()) {
+            retVal &= connection.getClient().unsubscribeAllChannels();
         }
         return retVal;
     }
@@ -190,21 +539,23 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
     @Override
     public boolean isAuthenticated() {
         boolean retVal = false;
-        for (BitfinexWebsocketClient client : clients.values()) {
-            retVal |= client.isAuthenticated();
+        for (PooledConnection connection : connections.values()) {
+            retVal |= connection.getClient().isAuthenticated();
         }
         return retVal;
     }
 
     @Override
     public BitfinexApiKeyPermissions getApiKeyPermissions() {
-        return clients.get(0).getApiKeyPermissions();
+        return connections.get(0).getClient().getApiKeyPermissions();
     }
 
     @Override
     public Collection<BitfinexStreamSymbol> getSubscribedChannels() {
-        return clients.values().stream()
+        // A channel that is moved right now is subscribed on two connections
+        return connections.values().stream()
                 .flatMap(c -> c.getSubscribedChannels().stream())
+                .distinct()
                 .collect(Collectors.toList());
     }
 
@@ -257,23 +608,4 @@ public class PooledBitfinexApiBroker implements BitfinexWebsocketClient {
     public ConnectionFeatureManager getConnectionFeatureManager() {
         return connectionFeatureManager;
     }
-
-    private BitfinexWebsocketClient createAndConnectClient() {
-        BitfinexWebsocketConfiguration config = new BitfinexWebsocketConfiguration(configuration);
-        config.setAuthenticationEnabled(false);
-        config.setManagersActive(false);
-        SimpleBitfinexApiBroker client = new SimpleBitfinexApiBroker(config, callbackRegistry, sequenceNumberAuditor, true);
-        clients.put(numberOfClients.getAndIncrement(), client);
-        if (connectEventManager.getNumberOfEventsInTimeslot() > 1) {
-            try {
-                connectEventManager.waitForNewTimeslot();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
-        connectEventManager.recordNewEvent();
-        pendingSubscriptions.put(client, ConcurrentHashMap.newKeySet());
-        client.connect();
-        return client;
-    }
 }
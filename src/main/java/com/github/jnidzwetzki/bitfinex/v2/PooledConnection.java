@@ -0,0 +1,229 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.TrafficMeter;
+
+/**
+ * A websocket connection of the {@link PooledBitfinexApiBroker} together 
+ * with its pending subscriptions and its inbound traffic.
+ */
+public class PooledConnection {
+
+    /**
+     * The index of the connection in the pool
+     */
+    private final int index;
+
+    /**
+     * The client of the connection
+     */
+    private final SimpleBitfinexApiBroker client;
+
+    /**
+     * The channels placed on this connection but not yet subscribed
+     */
+    private final Set<BitfinexStreamSymbol> pendingSubscriptions;
+
+    /**
+     * Is the connection establishment started
+     */
+    private final AtomicBoolean connectStarted;
+
+    /**
+     * Released when the connection establishment is done
+     */
+    private final CountDownLatch connectLatch;
+
+    PooledConnection(final int index, final SimpleBitfinexApiBroker client) {
+        this.index = index;
+        this.client = client;
+        this.pendingSubscriptions = ConcurrentHashMap.newKeySet();
+        this.connectStarted = new AtomicBoolean(false);
+        this.connectLatch = new CountDownLatch(1);
+    }
+
+    /**
+     * Get the index of the connection in the pool
+     * @return
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the client of the connection
+     * @return
+     */
+    public SimpleBitfinexApiBroker getClient() {
+        return client;
+    }
+
+    /**
+     * Get the subscribed channels
+     * @return
+     */
+    public Collection<BitfinexStreamSymbol> getSubscribedChannels() {
+        return client.getSubscribedChannels();
+    }
+
+    /**
+     * Get the number of subscribed channels
+     * @return
+     */
+    public int getSubscribedChannelCount() {
+        return client.getSubscribedChannelCount();
+    }
+
+    /**
+     * Is the channel subscribed on this connection
+     * @param symbol
+     * @return
+     */
+    public boolean isSubscribed(final BitfinexStreamSymbol symbol) {
+        return client.isSubscribed(symbol);
+    }
+
+    /**
+     * Get the channels placed on this connection but not yet subscribed
+     * @return
+     */
+    public Set<BitfinexStreamSymbol> getPendingSubscriptions() {
+        return Collections.unmodifiableSet(pendingSubscriptions);
+    }
+
+    /**
+     * Get the number of subscribed and pending channels
+     * @return
+     */
+    public int getChannelCount() {
+        // A subscribed channel stays pending until the subscribe event is dispatched
+        int pendingChannels = 0;
+        for (final BitfinexStreamSymbol symbol : pendingSubscriptions) {
+            if (! client.isSubscribed(symbol)) {
+                pendingChannels++;
+            }
+        }
+
+        return client.getSubscribedChannelCount() + pendingChannels;
+    }
+
+    /**
+     * Get the inbound message rate of the connection
+     * @return messages per second
+     */
+    public double getMessageRate() {
+        return client.getTrafficMeter().getMessageRate();
+    }
+
+    /**
+     * Get the inbound byte rate of the connection
+     * @return bytes per second
+     */
+    public double getByteRate() {
+        return client.getTrafficMeter().getByteRate();
+    }
+
+    /**
+     * Get the inbound message rate of a channel
+     * @param symbol
+     * @return messages per second, 0 if the channel is not subscribed on this connection
+     */
+    public double getMessageRate(final BitfinexStreamSymbol symbol) {
+        final TrafficMeter trafficMeter = client.getTrafficMeter(symbol);
+        return trafficMeter == null ? 0 : trafficMeter.getMessageRate();
+    }
+
+    /**
+     * Get the inbound byte rate of a channel
+     * @param symbol
+     * @return bytes per second, 0 if the channel is not subscribed on this connection
+     */
+    public double getByteRate(final BitfinexStreamSymbol symbol) {
+        final TrafficMeter trafficMeter = client.getTrafficMeter(symbol);
+        return trafficMeter == null ? 0 : trafficMeter.getByteRate();
+    }
+
+    /**
+     * Is the connection establishment done
+     * @return
+     */
+    public boolean isConnectDone() {
+        return connectLatch.getCount() == 0;
+    }
+
+    /**
+     * Reserve a channel slot for the symbol
+     * @param symbol
+     * @param maxChannels
+     * @return true if the connection had room for the channel
+     */
+    synchronized boolean reserveChannel(final BitfinexStreamSymbol symbol, final int maxChannels) {
+        if (getChannelCount() >= maxChannels) {
+            return false;
+        }
+        pendingSubscriptions.add(symbol);
+        return true;
+    }
+
+    /**
+     * Release the channel slot of a pending subscription
+     * @param symbol
+     */
+    void releaseChannel(final BitfinexStreamSymbol symbol) {
+        pendingSubscriptions.remove(symbol);
+    }
+
+    /**
+     * Start the connection establishment
+     * @return true if the caller has to establish the connection, false if 
+     *  it was already started by another caller
+     */
+    boolean startConnect() {
+        return connectStarted.compareAndSet(false, true);
+    }
+
+    /**
+     * Mark the connection establishment as done
+     */
+    void connectDone() {
+        connectLatch.countDown();
+    }
+
+    /**
+     * Wait until the connection establishment is done
+     * @throws InterruptedException
+     */
+    void awaitConnect() throws InterruptedException {
+        connectLatch.await();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledConnection [index=" + index + ", subscribedChannels=" + getSubscribedChannelCount()
+                + ", pendingSubscriptions=" + pendingSubscriptions.size() + "]";
+    }
+}
@@ -21,6 +21,8 @@ import org.json.JSONArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+
 public class SequenceNumberAuditor {
 	
 	public enum ErrorPolicy {
@@ -89,6 +91,24 @@ public class SequenceNumberAuditor {
 		}
 	}
 
+	/**
+	 * Audit the package
+	 * @param cursor
+	 */
+	public void auditPackage(final ChannelMessageCursor cursor) {
+		final long channelId = cursor.getChannelId();
+		final boolean isHeartbeat = "hb".equals(cursor.getAction());
+		final int length = cursor.length();
+
+		// Same rules as for the json array, see above
+		if(channelId == 0 && ! isHeartbeat) {
+			auditPublicSequence(cursor.getLong(length - 2));
+			auditPrivateSequence(cursor.getLong(length - 1));
+		} else {
+			auditPublicSequence(cursor.getLong(length - 1));
+		}
+	}
+
 	/**
 	 * Check the public and the private sequence
 	 * @param jsonArray
@@ -20,26 +20,28 @@ package com.github.jnidzwetzki.bitfinex.v2;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.AccountInfoHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.CandlestickHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
@@ -78,6 +80,9 @@ import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexTickerSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.util.BitfinexStreamSymbolToChannelIdResolverAware;
+import com.github.jnidzwetzki.bitfinex.v2.util.CopyOnWriteIntObjectMap;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameJournalWriter;
+import com.github.jnidzwetzki.bitfinex.v2.util.TrafficMeter;
 import com.google.common.base.Stopwatch;
 
 public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClient {
@@ -108,9 +113,51 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 	private WebsocketClientEndpoint websocketEndpoint;
 
 	/**
-	 * The channel map
+	 * The channel map (copy on write, lookups on the receive thread do not lock or box)
 	 */
-	private final Map<Integer, ChannelCallbackHandler> channelIdToHandlerMap;
+	private final CopyOnWriteIntObjectMap<ChannelCallbackHandler> channelIdToHandlerMap;
+
+	/**
+	 * The reverse index of the channel map (stream symbol to channel id), the 
+	 * account info channel is not part of the index
+	 */
+	private final Map<BitfinexStreamSymbol, Integer> symbolToChannelIdMap;
+
+	/**
+	 * The inbound traffic of the connection
+	 */
+	private final TrafficMeter trafficMeter;
+
+	/**
+	 * The inbound traffic per channel (copy on write, maintained together with the channel map)
+	 */
+	private final CopyOnWriteIntObjectMap<TrafficMeter> channelIdToTrafficMeterMap;
+
+	/**
+	 * The frame filters of channels (e.g., while a channel is moved to another connection)
+	 */
+	private final Map<BitfinexStreamSymbol, ChannelFrameFilter> channelFilters;
+
+	/**
+	 * Schedules the reconnects of the connection, null if the client reconnects by itself
+	 */
+	private volatile Supplier<CompletableFuture<Boolean>> reconnectHandler;
+
+	/**
+	 * Is the frame journal disabled because of a write error
+	 */
+	private volatile boolean frameJournalFailed;
+
+	/**
+	 * The connection tag of the journal records (e.g., the index of a pooled connection)
+	 */
+	private volatile int frameJournalConnection;
+
+	/**
+	 * The reusable cursor for channel frames
+	 */
+	private final ThreadLocal<ChannelMessageCursor> channelMessageCursor
+		= ThreadLocal.withInitial(ChannelMessageCursor::new);
 
 	/**
 	 * The tick manager
@@ -195,7 +242,11 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		this.callbackRegistry = callbackRegistry;
 		this.skipConnectionStateNotification = skipConnectionStateNotification;
 
-		this.channelIdToHandlerMap = new ConcurrentHashMap<>();
+		this.channelIdToHandlerMap = new CopyOnWriteIntObjectMap<>();
+		this.symbolToChannelIdMap = new ConcurrentHashMap<>();
+		this.trafficMeter = new TrafficMeter();
+		this.channelIdToTrafficMeterMap = new CopyOnWriteIntObjectMap<>();
+		this.channelFilters = new ConcurrentHashMap<>();
 		this.permissions = BitfinexApiKeyPermissions.NO_PERMISSIONS;
 		this.sequenceNumberAuditor = sequenceNumberAuditor;
 		this.lastHeartbeat = new AtomicLong(0);
@@ -224,13 +275,17 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 
 		final SubscribedCallback subscribed = new SubscribedCallback();
 		subscribed.onSubscribedEvent((channelId, symbol) -> {
+			final ChannelFrameFilter filter = channelFilters.get(symbol);
 			synchronized (channelIdToHandlerMap) {
 				final ChannelCallbackHandler channelCallbackHandler = createChannelCallbackHandler(channelId, symbol);
-				channelIdToHandlerMap.put(channelId, channelCallbackHandler);
+				addChannel(channelId, filter == null ? channelCallbackHandler 
+						: new FilteredChannelCallbackHandler(channelCallbackHandler, filter));
 				channelIdToHandlerMap.notifyAll();
 			}
 			logger.debug("subscribed: {}", symbol);
-			callbackRegistry.acceptSubscribeChannelEvent(symbol);
+			if(filter == null || ! filter.subscribed()) {
+				callbackRegistry.acceptSubscribeChannelEvent(symbol);
+			}
 		});
 		commandCallbacks.put("subscribed", subscribed);
 
@@ -238,12 +293,16 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		unsubscribed.onUnsubscribedChannelEvent(channelId -> {
 			ChannelCallbackHandler removed;
 			synchronized (channelIdToHandlerMap) {
-				removed = channelIdToHandlerMap.remove(channelId);
+				removed = removeChannel(channelId);
 				channelIdToHandlerMap.notifyAll();
 			}
 			if (removed != null) {
-				callbackRegistry.acceptUnsubscribeChannelEvent(removed.getSymbol());
 				logger.debug("unsubscribed: {}", removed.getSymbol());
+				if(removed instanceof FilteredChannelCallbackHandler 
+						&& ((FilteredChannelCallbackHandler) removed).filter.unsubscribed()) {
+					return;
+				}
+				callbackRegistry.acceptUnsubscribeChannelEvent(removed.getSymbol());
 			}
 
 		});
@@ -315,8 +374,8 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 
             setupDefaultAccountInfoHandler();
 
-			websocketEndpoint = new WebsocketClientEndpoint(new URI(BITFINEX_URI),
-					this::websocketCallback,
+			websocketEndpoint = new WebsocketClientEndpoint(new URI(configuration.getEndpointUri()),
+					this::receiveFrame,
 					r -> callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.DISCONNECTION_BY_REMOTE),
 					t -> callbackRegistry.acceptConnectionStateChange(BitfinexConnectionStateEnum.DISCONNECTION_BY_REMOTE)
 			);
@@ -329,7 +388,8 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
             }
 
             if (configuration.isHeartbeatThreadActive()) {
-                heartbeatThread = new Thread(new HeartbeatThread(this, websocketEndpoint, lastHeartbeat::get));
+                heartbeatThread = new Thread(new HeartbeatThread(this, websocketEndpoint, lastHeartbeat::get, 
+                		reconnectHandler));
                 heartbeatThread.start();
             }
 			connectionStateChange(BitfinexConnectionStateEnum.CONNECTION_SUCCESS);
@@ -486,11 +546,15 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 			final BitfinexOrderBookSymbol orderBookSymbol = (BitfinexOrderBookSymbol) symbol;
 			if (orderBookSymbol.isRawOrderBook()) {
 				final RawOrderbookHandler rawOrderBookHandler = new RawOrderbookHandler(channelId, orderBookSymbol);
+				rawOrderBookHandler.setFixedPointMode(configuration.isFixedPointMode());
 				rawOrderBookHandler.onOrderbookEvent(callbackRegistry::acceptRawOrderBookEvent);
+				rawOrderBookHandler.onChecksumEvent(callbackRegistry::acceptOrderBookChecksumEvent);
 				return rawOrderBookHandler;
 			} else {
 				final OrderbookHandler orderbookHandler = new OrderbookHandler(channelId, orderBookSymbol);
+				orderbookHandler.setFixedPointMode(configuration.isFixedPointMode());
 				orderbookHandler.onOrderBookEvent(callbackRegistry::acceptOrderBookEvent);
+				orderbookHandler.onChecksumEvent(callbackRegistry::acceptOrderBookChecksumEvent);
 				return orderbookHandler;
 			}
 		} else if (symbol instanceof BitfinexTickerSymbol) {
@@ -499,6 +563,7 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 			return handler;
 		} else if (symbol instanceof BitfinexExecutedTradeSymbol) {
 			final ExecutedTradeHandler handler = new ExecutedTradeHandler(channelId, (BitfinexExecutedTradeSymbol) symbol);
+			handler.setFixedPointMode(configuration.isFixedPointMode());
 			handler.onExecutedTradeEvent(callbackRegistry::acceptExecutedTradeEvent);
 			return handler;
 		} else {
@@ -524,12 +589,42 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		}
 	}
 
+	/**
+	 * We received a websocket frame, record it in the journal (if configured).
+	 * On a journal error, the journal is disabled for this connection and the 
+	 * frame is processed anyway.
+	 * @param message
+	 */
+	private void receiveFrame(final String message) {
+		final FrameJournalWriter frameJournal = configuration.getFrameJournal();
+
+		if(frameJournal != null && ! frameJournalFailed) {
+			try {
+				frameJournal.append(FrameJournalWriter.currentTimeNanos(), frameJournalConnection, message);
+			} catch (Exception e) {
+				frameJournalFailed = true;
+				logger.error("Unable to write the frame journal, recording is disabled", e);
+			}
+		}
+
+		websocketCallback(message);
+	}
+
+	/**
+	 * Process a recorded websocket frame (without recording it again)
+	 * @param message
+	 */
+	void replayFrame(final String message) {
+		websocketCallback(message);
+	}
+
 	/**
 	 * We received a websocket callback
 	 * @param message
 	 */
 	private void websocketCallback(final String message) {
 		logger.debug("Recv: {}", message);
+		trafficMeter.record(message.length());
 		if(message.startsWith("{")) {
 			handleCommandCallback(message);
 		} else if(message.startsWith("[")) {
@@ -571,23 +666,17 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		// Channel callback
 		updateConnectionHeartbeat();
 
-		// JSON callback
-		final JSONArray jsonArray = new JSONArray(new JSONTokener(message));
+		// Channel frames are read in place, no json tree is built
+		final ChannelMessageCursor cursor = channelMessageCursor.get().reset(message);
 
 		if(connectionFeatureManager.isConnectionFeatureActive(BitfinexConnectionFeature.SEQ_ALL)) {
-			sequenceNumberAuditor.auditPackage(jsonArray);
+			sequenceNumberAuditor.auditPackage(cursor);
 		}
 
-		final int channel = jsonArray.getInt(0);
+		final int channel = cursor.getChannelId();
 		final ChannelCallbackHandler channelCallbackHandler = channelIdToHandlerMap.get(channel);
-		String action = null;
-		final JSONArray payload;
-		if (jsonArray.get(1) instanceof String) {
-			action = jsonArray.getString(1);
-			payload = jsonArray.optJSONArray(2);
-		} else {
-			payload = jsonArray.optJSONArray(1);
-		}
+		final String action = cursor.getAction();
+
 		if (Objects.equals(action, "hb")) {
 			if (channelCallbackHandler == null) {
 				// Skipping "hb" if it came before "subscribed" event
@@ -596,16 +685,26 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 			quoteManager.updateChannelHeartbeat(channelCallbackHandler.getSymbol());
 		}
 		if (channelCallbackHandler == null) {
-			logger.error("Unable to determine symbol for channel {} / data is {} ", channel, jsonArray);
-			reconnect();
+			logger.error("Unable to determine symbol for channel {} / data is {} ", channel, message);
+			final Supplier<CompletableFuture<Boolean>> handler = reconnectHandler;
+			if(handler != null) {
+				handler.get();
+			} else {
+				reconnect();
+			}
 			return;
 		}
+		final TrafficMeter channelTrafficMeter = channelIdToTrafficMeterMap.get(channel);
+		if (channelTrafficMeter != null) {
+			channelTrafficMeter.record(message.length());
+		}
 		try {
-			if (payload == null) {
+			// Checksum frames have no array payload
+			if (! cursor.hasPayload() && ! Objects.equals(action, "cs")) {
 				return;
 			}
 			
-			channelCallbackHandler.handleChannelData(action, payload);
+			channelCallbackHandler.handleChannelFrame(cursor);
 		} catch (final BitfinexClientException e) {
 			logger.error("Got exception while handling callback", e);
 		}
@@ -617,15 +716,53 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 	 * @return
 	 */
 	private Integer getChannelForSymbol(final BitfinexStreamSymbol symbol) {
-		synchronized (channelIdToHandlerMap) {
-			return channelIdToHandlerMap.values()
-					.stream()
-					.filter(v -> Objects.equals(v.getSymbol(), symbol))
-					.map(ChannelCallbackHandler::getChannelId)
-					.findFirst().orElse(null);
+		return symbolToChannelIdMap.get(symbol);
+	}
+
+	/**
+	 * Add the channel to the channel map and the symbol index
+	 * @param channelId
+	 * @param handler
+	 */
+	private void addChannel(final int channelId, final ChannelCallbackHandler handler) {
+		final ChannelCallbackHandler oldHandler = channelIdToHandlerMap.put(channelId, handler);
+		
+		if(oldHandler != null) {
+			symbolToChannelIdMap.remove(oldHandler.getSymbol(), channelId);
+		}
+		
+		if(! (handler.getSymbol() instanceof BitfinexAccountSymbol)) {
+			symbolToChannelIdMap.put(handler.getSymbol(), channelId);
+			channelIdToTrafficMeterMap.put(channelId, new TrafficMeter());
 		}
 	}
 
+	/**
+	 * Remove the channel from the channel map and the symbol index
+	 * @param channelId
+	 * @return the removed handler or null
+	 */
+	private ChannelCallbackHandler removeChannel(final int channelId) {
+		final ChannelCallbackHandler removed = channelIdToHandlerMap.remove(channelId);
+		
+		if(removed != null) {
+			symbolToChannelIdMap.remove(removed.getSymbol(), channelId);
+		}
+		
+		channelIdToTrafficMeterMap.remove(channelId);
+		
+		return removed;
+	}
+
+	/**
+	 * Remove all channels from the channel map and the symbol index
+	 */
+	private void clearChannels() {
+		channelIdToHandlerMap.clear();
+		symbolToChannelIdMap.clear();
+		channelIdToTrafficMeterMap.clear();
+	}
+
 	/**
 	 * Re-subscribe the old ticker
 	 * @return
@@ -636,8 +773,8 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		final Map<Integer, ChannelCallbackHandler> oldChannelIdSymbolMap = new HashMap<>();
 
 		synchronized (channelIdToHandlerMap) {
-			oldChannelIdSymbolMap.putAll(channelIdToHandlerMap);
-			channelIdToHandlerMap.clear();
+			channelIdToHandlerMap.forEach(oldChannelIdSymbolMap::put);
+			clearChannels();
 			channelIdToHandlerMap.notifyAll();
 
 			// Implicit channel account info channel
@@ -647,17 +784,11 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		// Resubscribe channels
 		for(final ChannelCallbackHandler handler : oldChannelIdSymbolMap.values()) {
 			final BitfinexStreamSymbol symbol = handler.getSymbol();
-			if(symbol instanceof BitfinexTickerSymbol) {
-				sendCommand(new SubscribeTickerCommand((BitfinexTickerSymbol) symbol));
-			} else if(symbol instanceof BitfinexExecutedTradeSymbol) {
-				sendCommand(new SubscribeTradesCommand((BitfinexExecutedTradeSymbol) symbol));
-			} else if(symbol instanceof BitfinexCandlestickSymbol) {
-				sendCommand(new SubscribeCandlesCommand((BitfinexCandlestickSymbol) symbol));
-			} else if(symbol instanceof BitfinexOrderBookSymbol) {
-				sendCommand(new SubscribeOrderbookCommand((BitfinexOrderBookSymbol) symbol));
-			} else if(symbol instanceof BitfinexAccountSymbol) {
-				// This symbol does not need to be resubscribed
-			} else {
+			final BitfinexCommand subscribeCommand = buildSubscribeCommand(symbol);
+			if(subscribeCommand != null) {
+				sendCommand(subscribeCommand);
+			} else if(! (symbol instanceof BitfinexAccountSymbol)) {
+				// The account symbol does not need to be resubscribed
 				logger.error("Unknown stream symbol: {}", symbol);
 			}
 		}
@@ -665,6 +796,85 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		waitForChannelResubscription(oldChannelIdSymbolMap);
 	}
 
+	/**
+	 * Build the subscribe command for a stream symbol
+	 * @param symbol
+	 * @return the command or null if the symbol can not be subscribed
+	 */
+	static BitfinexCommand buildSubscribeCommand(final BitfinexStreamSymbol symbol) {
+		if(symbol instanceof BitfinexTickerSymbol) {
+			return new SubscribeTickerCommand((BitfinexTickerSymbol) symbol);
+		} else if(symbol instanceof BitfinexExecutedTradeSymbol) {
+			return new SubscribeTradesCommand((BitfinexExecutedTradeSymbol) symbol);
+		} else if(symbol instanceof BitfinexCandlestickSymbol) {
+			return new SubscribeCandlesCommand((BitfinexCandlestickSymbol) symbol);
+		} else if(symbol instanceof BitfinexOrderBookSymbol) {
+			return new SubscribeOrderbookCommand((BitfinexOrderBookSymbol) symbol);
+		}
+		return null;
+	}
+
+	/**
+	 * Set the handler that schedules the reconnects of the connection (e.g., the 
+	 * supervisor of a connection pool), has to be set before the connection is established
+	 * @param reconnectHandler
+	 */
+	void setReconnectHandler(final Supplier<CompletableFuture<Boolean>> reconnectHandler) {
+		this.reconnectHandler = reconnectHandler;
+	}
+
+	/**
+	 * Set the connection tag of the frame journal records (e.g., the index of 
+	 * a pooled connection that shares the journal with other connections)
+	 * @param frameJournalConnection
+	 */
+	void setFrameJournalConnection(final int frameJournalConnection) {
+		this.frameJournalConnection = frameJournalConnection;
+	}
+
+	/**
+	 * Install a frame filter for a channel, the filter is applied to the channel 
+	 * if it is already subscribed and to all later subscriptions of the channel
+	 * @param symbol
+	 * @param filter
+	 */
+	void setChannelFilter(final BitfinexStreamSymbol symbol, final ChannelFrameFilter filter) {
+		synchronized (channelIdToHandlerMap) {
+			channelFilters.put(symbol, filter);
+			final Integer channelId = getChannelForSymbol(symbol);
+			if(channelId != null) {
+				final ChannelCallbackHandler handler = unwrap(channelIdToHandlerMap.get(channelId));
+				channelIdToHandlerMap.put(channelId, new FilteredChannelCallbackHandler(handler, filter));
+			}
+		}
+	}
+
+	/**
+	 * Remove the frame filter of a channel
+	 * @param symbol
+	 */
+	void removeChannelFilter(final BitfinexStreamSymbol symbol) {
+		synchronized (channelIdToHandlerMap) {
+			channelFilters.remove(symbol);
+			final Integer channelId = getChannelForSymbol(symbol);
+			if(channelId != null) {
+				channelIdToHandlerMap.put(channelId, unwrap(channelIdToHandlerMap.get(channelId)));
+			}
+		}
+	}
+
+	/**
+	 * Remove the frame filter from a handler
+	 * @param handler
+	 * @return
+	 */
+	private static ChannelCallbackHandler unwrap(final ChannelCallbackHandler handler) {
+		if(handler instanceof FilteredChannelCallbackHandler) {
+			return ((FilteredChannelCallbackHandler) handler).delegate;
+		}
+		return handler;
+	}
+
 	/**
 	 * Wait for the successful channel re-subscription
 	 * @param oldChannelIdSymbolMap
@@ -713,8 +923,8 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 
 		// Restore old symbol map for reconnect
 		synchronized (channelIdToHandlerMap) {
-			channelIdToHandlerMap.clear();
-			channelIdToHandlerMap.putAll(oldChannelIdSymbolMap);
+			clearChannels();
+			oldChannelIdSymbolMap.forEach(this::addChannel);
 		}
 
 		throw new BitfinexClientException("Subscription of ticker failed: got only "
@@ -757,10 +967,24 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 
 	@Override
 	public Collection<BitfinexStreamSymbol> getSubscribedChannels() {
-		return channelIdToHandlerMap.values().stream()
-				.map(ChannelCallbackHandler::getSymbol)
-				.filter(s -> !(s instanceof BitfinexAccountSymbol))
-				.collect(Collectors.toList());
+		return new ArrayList<>(symbolToChannelIdMap.keySet());
+	}
+
+	/**
+	 * Get the number of subscribed channels (without a copy of the channels)
+	 * @return
+	 */
+	int getSubscribedChannelCount() {
+		return symbolToChannelIdMap.size();
+	}
+
+	/**
+	 * Is the channel subscribed (without a copy of the channels)
+	 * @param symbol
+	 * @return
+	 */
+	boolean isSubscribed(final BitfinexStreamSymbol symbol) {
+		return symbolToChannelIdMap.containsKey(symbol);
 	}
 
 	@Override
@@ -768,6 +992,29 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 		return new BitfinexWebsocketConfiguration(configuration);
 	}
 
+	/**
+	 * Get the inbound traffic of the connection
+	 * @return
+	 */
+	public TrafficMeter getTrafficMeter() {
+		return trafficMeter;
+	}
+
+	/**
+	 * Get the inbound traffic of a subscribed channel
+	 * @param symbol
+	 * @return the traffic meter or null if the channel is not subscribed
+	 */
+	public TrafficMeter getTrafficMeter(final BitfinexStreamSymbol symbol) {
+		final Integer channelId = getChannelForSymbol(symbol);
+		
+		if(channelId == null) {
+			return null;
+		}
+		
+		return channelIdToTrafficMeterMap.get(channelId);
+	}
+
     @Override
 	public BitfinexApiCallbackListeners getCallbacks() {
         return callbackRegistry;
@@ -828,4 +1075,45 @@ public class SimpleBitfinexApiBroker implements Closeable, BitfinexWebsocketClie
 	public ConnectionFeatureManager getConnectionFeatureManager() {
 		return connectionFeatureManager;
 	}
+
+	/**
+	 * A channel handler that passes the frames through a frame filter
+	 */
+	private static class FilteredChannelCallbackHandler implements ChannelCallbackHandler {
+
+		/**
+		 * The handler of the channel
+		 */
+		private final ChannelCallbackHandler delegate;
+
+		/**
+		 * The filter
+		 */
+		private final ChannelFrameFilter filter;
+
+		private FilteredChannelCallbackHandler(final ChannelCallbackHandler delegate, final ChannelFrameFilter filter) {
+			this.delegate = delegate;
+			this.filter = filter;
+		}
+
+		@Override
+		public void handleChannelData(final String action, final JSONArray message) throws BitfinexClientException {
+			delegate.handleChannelData(action, message);
+		}
+
+		@Override
+		public void handleChannelFrame(final ChannelMessageCursor cursor) throws BitfinexClientException {
+			filter.handleChannelFrame(cursor, delegate);
+		}
+
+		@Override
+		public BitfinexStreamSymbol getSymbol() {
+			return delegate.getSymbol();
+		}
+
+		@Override
+		public int getChannelId() {
+			return delegate.getChannelId();
+		}
+	}
 }
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexFundingSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexTickerSymbol;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Places a channel with rendezvous hashing: every symbol ranks the connection 
+ * slots by hash(symbol, slot) and takes the first slot with room. The ranking only 
+ * depends on the symbol and the number of slots, so a symbol lands on the same 
+ * connection after a restart. If all slots of the symbol are full, the channel is 
+ * placed on the connection with the fewest channels.
+ */
+class StickyHashPlacementStrategy implements ChannelPlacementStrategy {
+
+    /**
+     * The hash function (stable across JVMs, unlike String.hashCode of the symbol)
+     */
+    private final static HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * The number of connection slots
+     */
+    private final int slots;
+
+    StickyHashPlacementStrategy(final int slots) {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("Number of connections must be >= 1");
+        }
+        this.slots = slots;
+    }
+
+    @Override
+    public int selectConnection(final BitfinexStreamSymbol symbol, final List<PooledConnection> connections,
+                                final int maxChannels) {
+
+        final String key = getStableKey(symbol);
+        final long[] scores = new long[slots];
+
+        for (int slot = 0; slot < slots; slot++) {
+            scores[slot] = HASH_FUNCTION.newHasher()
+                    .putString(key, StandardCharsets.UTF_8)
+                    .putInt(slot)
+                    .hash().asLong();
+        }
+
+        for (int rank = 0; rank < slots; rank++) {
+            int bestSlot = -1;
+
+            for (int slot = 0; slot < slots; slot++) {
+                if (scores[slot] != Long.MIN_VALUE && (bestSlot == -1 || scores[slot] > scores[bestSlot])) {
+                    bestSlot = slot;
+                }
+            }
+
+            if (bestSlot == -1) {
+                break;
+            }
+
+            scores[bestSlot] = Long.MIN_VALUE;
+
+            // Not yet opened, the pool opens the connections up to this slot
+            if (bestSlot >= connections.size()) {
+                return bestSlot;
+            }
+
+            if (connections.get(bestSlot).getChannelCount() < maxChannels) {
+                return bestSlot;
+            }
+        }
+
+        return LEAST_CHANNELS.selectConnection(symbol, connections, maxChannels);
+    }
+
+    /**
+     * Get a key for the symbol that does not change between restarts
+     * @param symbol
+     * @return
+     */
+    static String getStableKey(final BitfinexStreamSymbol symbol) {
+        if (symbol instanceof BitfinexTickerSymbol) {
+            return "ticker:" + ((BitfinexTickerSymbol) symbol).getCurrency().toBitfinexString();
+        } else if (symbol instanceof BitfinexExecutedTradeSymbol) {
+            return "trades:" + ((BitfinexExecutedTradeSymbol) symbol).getCurrencyPair().toBitfinexString();
+        } else if (symbol instanceof BitfinexCandlestickSymbol) {
+            return "candles:" + ((BitfinexCandlestickSymbol) symbol).toBifinexCandlestickString();
+        } else if (symbol instanceof BitfinexOrderBookSymbol) {
+            final BitfinexOrderBookSymbol orderBookSymbol = (BitfinexOrderBookSymbol) symbol;
+            return "book:" + orderBookSymbol.getCurrencyPair().toBitfinexString()
+                    + ":" + orderBookSymbol.getPrecision()
+                    + ":" + orderBookSymbol.getFrequency()
+                    + ":" + orderBookSymbol.getPricePoints();
+        } else if (symbol instanceof BitfinexFundingSymbol) {
+            return "funding:" + ((BitfinexFundingSymbol) symbol).getCurrency().toBitfinexString();
+        }
+        return symbol.toString();
+    }
+}
@@ -49,21 +49,30 @@ public class CandlestickHandler implements ChannelCallbackHandler {
      */
     @Override
     public void handleChannelData(final String action, final JSONArray payload) throws BitfinexClientException {
-        if (payload.isEmpty()) {
+        handleChannelFrame(new ChannelMessageCursor().resetPayload(action, payload.toString()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelFrame(final ChannelMessageCursor cursor) throws BitfinexClientException {
+        if (cursor.isPayloadEmpty()) {
             return;
         }
         // channel symbol trade:1m:tLTCUSD
         final Set<BitfinexCandle> candlestickList = new TreeSet<>(Comparator.comparing(BitfinexCandle::getTimestamp));
 
         // Snapshots contain multiple Bars, Updates only one
-        if (payload.get(0) instanceof JSONArray) {
-            for (int pos = 0; pos < payload.length(); pos++) {
-                final JSONArray parts = payload.getJSONArray(pos);
-                BitfinexCandle candlestick = jsonToCandlestick(parts);
+        if (cursor.isPayloadNested()) {
+            cursor.enterArray();
+            while (cursor.hasNext()) {
+                BitfinexCandle candlestick = cursorToCandlestick(cursor);
                 candlestickList.add(candlestick);
             }
+            cursor.exitArray();
         } else {
-            BitfinexCandle candlestick = jsonToCandlestick(payload);
+            BitfinexCandle candlestick = cursorToCandlestick(cursor);
             candlestickList.add(candlestick);
         }
         candlesConsumer.accept(symbol, candlestickList);
@@ -79,14 +88,16 @@ public class CandlestickHandler implements ChannelCallbackHandler {
         return channelId;
     }
 
-    private BitfinexCandle jsonToCandlestick(final JSONArray parts) {
+    private BitfinexCandle cursorToCandlestick(final ChannelMessageCursor cursor) {
         // 0 = Timestamp, 1 = Open, 2 = Close, 3 = High, 4 = Low,  5 = Volume
-        final long timestamp = parts.getLong(0);
-        final BigDecimal open = parts.getBigDecimal(1);
-        final BigDecimal close = parts.getBigDecimal(2);
-        final BigDecimal high = parts.getBigDecimal(3);
-        final BigDecimal low = parts.getBigDecimal(4);
-        final BigDecimal volume = parts.getBigDecimal(5);
+        cursor.enterArray();
+        final long timestamp = cursor.nextLong();
+        final BigDecimal open = cursor.nextBigDecimal();
+        final BigDecimal close = cursor.nextBigDecimal();
+        final BigDecimal high = cursor.nextBigDecimal();
+        final BigDecimal low = cursor.nextBigDecimal();
+        final BigDecimal volume = cursor.nextBigDecimal();
+        cursor.exitArray();
 
         return new BitfinexCandle(timestamp, open, close, high, low, Optional.of(volume));
     }
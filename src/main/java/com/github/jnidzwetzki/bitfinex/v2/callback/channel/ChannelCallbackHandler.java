@@ -33,6 +33,18 @@ public interface ChannelCallbackHandler {
      */
     void handleChannelData(final String action, final JSONArray message) throws BitfinexClientException;
 
+    /**
+     * Handle a channel frame without building a json tree. Handlers of high
+     * frequency channels read the payload directly from the cursor, all other
+     * handlers receive the payload as json array.
+     *
+     * @param cursor        - cursor positioned on the frame
+     * @throws BitfinexClientException raised in case of exception
+     */
+    default void handleChannelFrame(final ChannelMessageCursor cursor) throws BitfinexClientException {
+        handleChannelData(cursor.getAction(), cursor.getPayloadAsJSONArray());
+    }
+
     /**
      * returns channel symbol
      */
@@ -0,0 +1,923 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONTokener;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
+/**
+ * Pull style, single pass reader for the positional channel frames of the
+ * bitfinex API (e.g. [chanId, "te", [...], seq]).
+ *
+ * The frame header (channel id, action, payload and trailing sequence numbers)
+ * is located on reset(), the payload is read on demand by the handler. The cursor
+ * is reused for every frame and does not build a JSON object tree.
+ *
+ * A cursor is not thread safe and is only valid until the next reset() call.
+ */
+public class ChannelMessageCursor {
+
+    /**
+     * Well known actions, returned without allocating a new string
+     */
+    private final static String[] KNOWN_ACTIONS = {
+            "hb", "te", "tu", "cs", "n",
+            "os", "on", "ou", "oc",
+            "ps", "pn", "pu", "pc",
+            "ws", "wu", "bu",
+            "fos", "fon", "fou", "foc",
+            "fcs", "fcn", "fcu", "fcc",
+            "fls", "fln", "flu", "flc",
+            "fte", "ftu", "ats"
+    };
+
+    /**
+     * The max amount of digits that fit into a long without overflow
+     */
+    private final static int MAX_LONG_DIGITS = 18;
+
+    /**
+     * Powers of ten that are exactly representable as a double
+     */
+    private final static double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The current message
+     */
+    private CharSequence buffer;
+
+    /**
+     * The end of the message
+     */
+    private int limit;
+
+    /**
+     * The read position
+     */
+    private int position;
+
+    /**
+     * The array nesting level of the read position (relative to the payload)
+     */
+    private int depth;
+
+    /**
+     * The begin of the top level elements
+     */
+    private int[] elementStart = new int[8];
+
+    /**
+     * The end (exclusive) of the top level elements
+     */
+    private int[] elementEnd = new int[8];
+
+    /**
+     * The number of top level elements
+     */
+    private int elementCount;
+
+    /**
+     * The index of the payload element (-1 if the frame has no array payload)
+     */
+    private int payloadIndex;
+
+    /**
+     * The channel id
+     */
+    private int channelId;
+
+    /**
+     * The action or null
+     */
+    private String action;
+
+    /**
+     * Scratch values of the last parsed number
+     */
+    private long numberMantissa;
+    private int numberScale;
+    private boolean numberIsSimple;
+    private int numberStart;
+
+    /**
+     * Point the cursor to a new channel frame
+     *
+     * @param message - the complete frame (e.g. [123,[1,2,3]])
+     * @return the cursor
+     */
+    public ChannelMessageCursor reset(final CharSequence message) {
+        this.buffer = message;
+        this.limit = message.length();
+        this.position = 0;
+        this.depth = 0;
+        this.elementCount = 0;
+        this.action = null;
+        this.payloadIndex = -1;
+
+        skipWhitespace();
+        expect('[');
+        skipWhitespace();
+
+        while(position < limit && buffer.charAt(position) != ']') {
+            final int start = position;
+            skipValue();
+            addElement(start, position);
+            skipWhitespace();
+
+            if(position < limit && buffer.charAt(position) == ',') {
+                position++;
+                skipWhitespace();
+            }
+        }
+
+        expect(']');
+
+        if(elementCount == 0) {
+            throw new BitfinexClientException("Empty channel frame: " + message);
+        }
+
+        channelId = (int) parseLongAt(elementStart[0]);
+
+        int payloadCandidate = 1;
+
+        if(elementCount > 1 && buffer.charAt(elementStart[1]) == '"') {
+            action = readActionAt(elementStart[1], elementEnd[1]);
+            payloadCandidate = 2;
+        }
+
+        if(elementCount > payloadCandidate && buffer.charAt(elementStart[payloadCandidate]) == '[') {
+            payloadIndex = payloadCandidate;
+        }
+
+        rewindPayload();
+        return this;
+    }
+
+    /**
+     * Point the cursor to a bare payload array without a frame header (e.g. [1,2,3])
+     * @param action - the action of the payload or null
+     * @param payload
+     * @return the cursor
+     */
+    public ChannelMessageCursor resetPayload(final String action, final CharSequence payload) {
+        this.buffer = payload;
+        this.limit = payload.length();
+        this.position = 0;
+        this.depth = 0;
+        this.elementCount = 0;
+        this.action = action;
+        this.channelId = -1;
+
+        skipWhitespace();
+        final int start = position;
+        skipValue();
+        addElement(start, position);
+        payloadIndex = 0;
+
+        rewindPayload();
+        return this;
+    }
+
+    /**
+     * Get the channel id
+     * @return
+     */
+    public int getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * Get the complete frame
+     * @return
+     */
+    public String getFrame() {
+        return buffer.toString();
+    }
+
+    /**
+     * Get the action (hb, te, tu, cs...) or null
+     * @return
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * The number of top level elements of the frame
+     * @return
+     */
+    public int length() {
+        return elementCount;
+    }
+
+    /**
+     * Get the top level element as long (e.g., a sequence number)
+     * @param index
+     * @return
+     */
+    public long getLong(final int index) {
+        checkElementIndex(index);
+        return parseLongAt(elementStart[index]);
+    }
+
+    /**
+     * Is the top level element a number
+     * @param index
+     * @return
+     */
+    public boolean isNumber(final int index) {
+        checkElementIndex(index);
+        final char c = buffer.charAt(elementStart[index]);
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Does the frame contain an array payload?
+     * @return
+     */
+    public boolean hasPayload() {
+        return payloadIndex != -1;
+    }
+
+    /**
+     * Is the payload an empty array
+     * @return
+     */
+    public boolean isPayloadEmpty() {
+        checkPayload();
+        final int pos = skipWhitespace(elementStart[payloadIndex] + 1);
+        return buffer.charAt(pos) == ']';
+    }
+
+    /**
+     * Is the payload an array of arrays (e.g., a snapshot)
+     * @return
+     */
+    public boolean isPayloadNested() {
+        checkPayload();
+        final int pos = skipWhitespace(elementStart[payloadIndex] + 1);
+        return buffer.charAt(pos) == '[';
+    }
+
+    /**
+     * The payload as string
+     * @return
+     */
+    public String getPayloadString() {
+        checkPayload();
+        return buffer.subSequence(elementStart[payloadIndex], elementEnd[payloadIndex]).toString();
+    }
+
+    /**
+     * Materialize the payload as JSON array (slow path for low frequency handlers)
+     * @return
+     */
+    public JSONArray getPayloadAsJSONArray() {
+        return new JSONArray(new JSONTokener(getPayloadString()));
+    }
+
+    /**
+     * Move the read position in front of the payload array
+     */
+    public void rewindPayload() {
+        depth = 0;
+
+        if(payloadIndex == -1) {
+            position = limit;
+        } else {
+            position = elementStart[payloadIndex];
+        }
+    }
+
+    /**
+     * Get the read position (e.g., to read the elements again with another type)
+     * @return
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Move the read position back to a position of the current array
+     * @param position
+     */
+    void setPosition(final int position) {
+        this.position = position;
+    }
+
+    /**
+     * Enter the array at the read position
+     */
+    public void enterArray() {
+        skipSeparator();
+        expect('[');
+        depth++;
+    }
+
+    /**
+     * Leave the current array, remaining elements are skipped
+     */
+    public void exitArray() {
+        if(depth <= 0) {
+            throw new BitfinexClientException("Not inside of an array");
+        }
+
+        while(hasNext()) {
+            skipValue();
+        }
+
+        expect(']');
+        depth--;
+    }
+
+    /**
+     * Has the current array a further element
+     * @return
+     */
+    public boolean hasNext() {
+        skipSeparator();
+        return position < limit && buffer.charAt(position) != ']';
+    }
+
+    /**
+     * Is the next element the null literal
+     * @return
+     */
+    public boolean isNextNull() {
+        skipSeparator();
+        return position + 3 < limit && buffer.charAt(position) == 'n';
+    }
+
+    /**
+     * Is the next element an array
+     * @return
+     */
+    public boolean isNextArray() {
+        skipSeparator();
+        return position < limit && buffer.charAt(position) == '[';
+    }
+
+    /**
+     * Is the next element a string
+     * @return
+     */
+    public boolean isNextString() {
+        skipSeparator();
+        return position < limit && buffer.charAt(position) == '"';
+    }
+
+    /**
+     * Is the element after the given number of elements a number (look ahead, 
+     * the read position is not changed)
+     * @param elements - the number of elements to skip
+     * @return
+     */
+    public boolean isNumberAhead(final int elements) {
+        final int oldPosition = position;
+
+        try {
+            for(int i = 0; i < elements && hasNext(); i++) {
+                skip();
+            }
+
+            return hasNext() && ! isNextNull() && ! isNextString() && ! isNextArray();
+        } finally {
+            position = oldPosition;
+        }
+    }
+
+    /**
+     * Skip the next element
+     */
+    public void skip() {
+        skipSeparator();
+        skipValue();
+    }
+
+    /**
+     * Read the next element as long
+     * @return
+     */
+    public long nextLong() {
+        skipSeparator();
+        parseNumber();
+
+        if(numberIsSimple && numberScale == 0) {
+            return numberMantissa;
+        }
+
+        return parseBigDecimal().longValue();
+    }
+
+    /**
+     * Read the next element as int
+     * @return
+     */
+    public int nextInt() {
+        return (int) nextLong();
+    }
+
+    /**
+     * Read the next element as double
+     * @return
+     */
+    public double nextDouble() {
+        skipSeparator();
+        parseNumber();
+
+        // Both values are exact doubles, so the division is correctly rounded
+        if(numberIsSimple && numberMantissa < (1L << 53) && numberMantissa > -(1L << 53)
+                && numberScale < DOUBLE_POWERS_OF_TEN.length) {
+            return numberMantissa / DOUBLE_POWERS_OF_TEN[numberScale];
+        }
+
+        return parseBigDecimal().doubleValue();
+    }
+
+    /**
+     * Read the next element as big decimal
+     * @return
+     */
+    public BigDecimal nextBigDecimal() {
+        skipSeparator();
+        parseNumber();
+
+        if(numberIsSimple) {
+            return BigDecimal.valueOf(numberMantissa, numberScale);
+        }
+
+        return parseBigDecimal();
+    }
+
+    /**
+     * Read the next element as big decimal, null literals are returned as null
+     * @return
+     */
+    public BigDecimal nextBigDecimalOrNull() {
+        if(isNextNull()) {
+            skip();
+            return null;
+        }
+
+        return nextBigDecimal();
+    }
+
+    /**
+     * Read the next element as fixed point value (value * 10^scale)
+     * @param scale
+     * @return
+     * @throws BitfinexClientException if the number has more decimals than the scale
+     */
+    public long nextScaledLong(final int scale) {
+        skipSeparator();
+        parseNumber();
+
+        if(numberIsSimple) {
+            try {
+                return FixedPoint.rescale(numberMantissa, numberScale, scale);
+            } catch (ArithmeticException e) {
+                // Handled by the slow path
+            }
+        }
+
+        return FixedPoint.fromBigDecimal(parseBigDecimal(), scale);
+    }
+
+    /**
+     * Read the next element as string, null literals are returned as null.
+     * Numbers are returned as their string representation.
+     * @return
+     */
+    public String nextString() {
+        skipSeparator();
+
+        if(position >= limit) {
+            throw new BitfinexClientException("Unexpected end of message");
+        }
+
+        final char c = buffer.charAt(position);
+
+        if(c == '"') {
+            return readString();
+        }
+
+        final int start = position;
+        skipValue();
+        final String value = buffer.subSequence(start, position).toString();
+
+        if("null".equals(value)) {
+            return null;
+        }
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelMessageCursor [channelId=" + channelId + ", action=" + action
+                + ", position=" + position + ", message=" + buffer + "]";
+    }
+
+    /**
+     * Register a top level element
+     * @param start
+     * @param end
+     */
+    private void addElement(final int start, final int end) {
+        if(elementCount == elementStart.length) {
+            elementStart = Arrays.copyOf(elementStart, elementCount * 2);
+            elementEnd = Arrays.copyOf(elementEnd, elementCount * 2);
+        }
+
+        elementStart[elementCount] = start;
+        elementEnd[elementCount] = end;
+        elementCount++;
+    }
+
+    /**
+     * Check the element index
+     * @param index
+     */
+    private void checkElementIndex(final int index) {
+        if(index < 0 || index >= elementCount) {
+            throw new BitfinexClientException("Invalid element " + index + " for message " + buffer);
+        }
+    }
+
+    /**
+     * Ensure we have a payload
+     */
+    private void checkPayload() {
+        if(payloadIndex == -1) {
+            throw new BitfinexClientException("Message has no payload: " + buffer);
+        }
+    }
+
+    /**
+     * Read the action string, known actions are not copied
+     * @param start
+     * @param end
+     * @return
+     */
+    private String readActionAt(final int start, final int end) {
+        final int length = end - start - 2;
+
+        for(final String knownAction : KNOWN_ACTIONS) {
+            if(knownAction.length() != length) {
+                continue;
+            }
+
+            boolean match = true;
+            for(int i = 0; i < length; i++) {
+                if(knownAction.charAt(i) != buffer.charAt(start + 1 + i)) {
+                    match = false;
+                    break;
+                }
+            }
+
+            if(match) {
+                return knownAction;
+            }
+        }
+
+        final int oldPosition = position;
+        position = start;
+        final String value = readString();
+        position = oldPosition;
+        return value;
+    }
+
+    /**
+     * Parse a long at the given position
+     * @param start
+     * @return
+     */
+    private long parseLongAt(final int start) {
+        final int oldPosition = position;
+        position = start;
+
+        try {
+            parseNumber();
+
+            if(numberIsSimple && numberScale == 0) {
+                return numberMantissa;
+            }
+
+            return parseBigDecimal().longValue();
+        } finally {
+            position = oldPosition;
+        }
+    }
+
+    /**
+     * Parse the number at the read position. Numbers with up to 18 digits and
+     * without exponent are decoded into mantissa and scale, all other numbers
+     * are handled by the slow path.
+     */
+    private void parseNumber() {
+        numberStart = position;
+        numberMantissa = 0;
+        numberScale = 0;
+        numberIsSimple = true;
+
+        boolean negative = false;
+        boolean fraction = false;
+        int digits = 0;
+
+        if(position < limit && buffer.charAt(position) == '-') {
+            negative = true;
+            position++;
+        }
+
+        while(position < limit) {
+            final char c = buffer.charAt(position);
+
+            if(c >= '0' && c <= '9') {
+                if(digits < MAX_LONG_DIGITS) {
+                    numberMantissa = numberMantissa * 10 + (c - '0');
+
+                    if(fraction) {
+                        numberScale++;
+                    }
+
+                    // Leading zeros do not count
+                    if(numberMantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    numberIsSimple = false;
+                }
+            } else if(c == '.') {
+                fraction = true;
+            } else if(c == 'e' || c == 'E' || c == '+') {
+                numberIsSimple = false;
+            } else if(c == '-') {
+                // Negative exponent
+                numberIsSimple = false;
+            } else {
+                break;
+            }
+
+            position++;
+        }
+
+        if(position == numberStart || (negative && position == numberStart + 1)) {
+            throw new BitfinexClientException("Expected a number at position " + numberStart
+                    + " of message " + buffer);
+        }
+
+        if(negative) {
+            numberMantissa = -numberMantissa;
+        }
+    }
+
+    /**
+     * Slow path for numbers that do not fit into mantissa and scale
+     * @return
+     */
+    private BigDecimal parseBigDecimal() {
+        try {
+            return new BigDecimal(numberString());
+        } catch (NumberFormatException e) {
+            throw new BitfinexClientException("Invalid number " + numberString() + " in message " + buffer);
+        }
+    }
+
+    /**
+     * The string of the last parsed number
+     * @return
+     */
+    private String numberString() {
+        return buffer.subSequence(numberStart, position).toString();
+    }
+
+    /**
+     * Read a quoted string at the read position
+     * @return
+     */
+    private String readString() {
+        expect('"');
+        final int start = position;
+
+        while(position < limit) {
+            final char c = buffer.charAt(position);
+
+            if(c == '"') {
+                final String value = buffer.subSequence(start, position).toString();
+                position++;
+                return value;
+            }
+
+            if(c == '\\') {
+                break;
+            }
+
+            position++;
+        }
+
+        // Slow path for escaped strings
+        position = start;
+        final StringBuilder sb = new StringBuilder();
+
+        while(position < limit) {
+            final char c = buffer.charAt(position++);
+
+            if(c == '"') {
+                return sb.toString();
+            }
+
+            if(c != '\\') {
+                sb.append(c);
+                continue;
+            }
+
+            if(position >= limit) {
+                break;
+            }
+
+            final char escaped = buffer.charAt(position++);
+            switch (escaped) {
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'u':
+                if(position + 4 > limit) {
+                    throw new BitfinexClientException("Invalid escape sequence in message " + buffer);
+                }
+                sb.append((char) Integer.parseInt(buffer.subSequence(position, position + 4).toString(), 16));
+                position += 4;
+                break;
+            default:
+                sb.append(escaped);
+            }
+        }
+
+        throw new BitfinexClientException("Unterminated string in message " + buffer);
+    }
+
+    /**
+     * Skip the value at the read position (number, string, literal, array or object)
+     */
+    private void skipValue() {
+        if(position >= limit) {
+            throw new BitfinexClientException("Unexpected end of message " + buffer);
+        }
+
+        final char c = buffer.charAt(position);
+
+        if(c == '"') {
+            skipString();
+        } else if(c == '[' || c == '{') {
+            skipNested();
+        } else {
+            while(position < limit) {
+                final char value = buffer.charAt(position);
+                if(value == ',' || value == ']' || value == '}' || isWhitespace(value)) {
+                    break;
+                }
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Skip a nested array or object
+     */
+    private void skipNested() {
+        int level = 0;
+
+        while(position < limit) {
+            final char c = buffer.charAt(position);
+
+            if(c == '"') {
+                skipString();
+                continue;
+            }
+
+            position++;
+
+            if(c == '[' || c == '{') {
+                level++;
+            } else if(c == ']' || c == '}') {
+                level--;
+
+                if(level == 0) {
+                    return;
+                }
+            }
+        }
+
+        throw new BitfinexClientException("Unterminated array in message " + buffer);
+    }
+
+    /**
+     * Skip a quoted string
+     */
+    private void skipString() {
+        position++;
+
+        while(position < limit) {
+            final char c = buffer.charAt(position++);
+
+            if(c == '\\') {
+                position++;
+            } else if(c == '"') {
+                return;
+            }
+        }
+
+        throw new BitfinexClientException("Unterminated string in message " + buffer);
+    }
+
+    /**
+     * Skip whitespace and a element separator
+     */
+    private void skipSeparator() {
+        skipWhitespace();
+
+        if(position < limit && buffer.charAt(position) == ',') {
+            position++;
+            skipWhitespace();
+        }
+    }
+
+    /**
+     * Skip whitespace at the read position
+     */
+    private void skipWhitespace() {
+        position = skipWhitespace(position);
+    }
+
+    /**
+     * Skip whitespace at the given position
+     * @param start
+     * @return
+     */
+    private int skipWhitespace(final int start) {
+        int pos = start;
+        while(pos < limit && isWhitespace(buffer.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Is the char a whitespace
+     * @param c
+     * @return
+     */
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * Consume the expected char
+     * @param expected
+     */
+    private void expect(final char expected) {
+        skipWhitespace();
+
+        if(position >= limit || buffer.charAt(position) != expected) {
+            throw new BitfinexClientException("Expected '" + expected + "' at position "
+                    + position + " of message " + buffer);
+        }
+
+        position++;
+    }
+}
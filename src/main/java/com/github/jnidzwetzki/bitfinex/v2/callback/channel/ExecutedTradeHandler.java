@@ -24,7 +24,6 @@ import java.util.List;
 import java.util.function.BiConsumer;
 
 import org.json.JSONArray;
-import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexExecutedTrade;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
@@ -38,6 +37,11 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
 
     private BiConsumer<BitfinexExecutedTradeSymbol, Collection<BitfinexExecutedTrade>> executedTradesConsumer = (s, t) -> {};
 
+    /**
+     * Create fixed point entries instead of big decimal entries
+     */
+    private boolean fixedPointMode = false;
+
     public ExecutedTradeHandler(int channelId, final BitfinexExecutedTradeSymbol symbol) {
         this.channelId = channelId;
         this.symbol = symbol;
@@ -48,28 +52,33 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
      */
     @Override
     public void handleChannelData(final String action, final JSONArray jsonArray) throws BitfinexClientException {
-        try {
-            final List<BitfinexExecutedTrade> trades = new ArrayList<>();
+        handleChannelFrame(new ChannelMessageCursor().resetPayload(action, jsonArray.toString()));
+    }
 
-            if( action.equals("tu")) {
-                return; // Ignore tu messages (see issue #13)
-            }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelFrame(final ChannelMessageCursor cursor) throws BitfinexClientException {
+        final List<BitfinexExecutedTrade> trades = new ArrayList<>();
+
+        if( "tu".equals(cursor.getAction())) {
+            return; // Ignore tu messages (see issue #13)
+        }
 
-            // Snapshots contain multiple executes entries, updates only one
-            if (jsonArray.get(0) instanceof JSONArray) {
-                for (int pos = 0; pos < jsonArray.length(); pos++) {
-                    final JSONArray parts = jsonArray.getJSONArray(pos);
-                    BitfinexExecutedTrade trade = jsonToExecutedTrade(parts);
-                    trades.add(trade);
-                }
-            } else {
-                BitfinexExecutedTrade trade = jsonToExecutedTrade(jsonArray);
+        // Snapshots contain multiple executes entries, updates only one
+        if (cursor.isPayloadNested()) {
+            cursor.enterArray();
+            while (cursor.hasNext()) {
+                BitfinexExecutedTrade trade = cursorToExecutedTrade(cursor);
                 trades.add(trade);
             }
-            executedTradesConsumer.accept(symbol, trades);
-        } catch (JSONException e) {
-            throw new BitfinexClientException(e);
+            cursor.exitArray();
+        } else {
+            BitfinexExecutedTrade trade = cursorToExecutedTrade(cursor);
+            trades.add(trade);
         }
+        executedTradesConsumer.accept(symbol, trades);
     }
 
     @Override
@@ -82,32 +91,64 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
         return channelId;
     }
 
-    private BitfinexExecutedTrade jsonToExecutedTrade(final JSONArray jsonArray) {
+    private BitfinexExecutedTrade cursorToExecutedTrade(final ChannelMessageCursor cursor) {
         final BitfinexExecutedTrade executedTrade = new BitfinexExecutedTrade();
+        cursor.enterArray();
 
-        final long id = jsonArray.getNumber(0).longValue();
+        final long id = cursor.nextLong();
         executedTrade.setTradeId(id);
 
-        final long timestamp = jsonArray.getNumber(1).longValue();
+        final long timestamp = cursor.nextLong();
         executedTrade.setTimestamp(timestamp);
 
-        final BigDecimal amount = jsonArray.getBigDecimal(2);
+        // Funding trades (ID, MTS, AMOUNT, RATE, PERIOD) keep big decimal values,
+        // the rate has not the scale of the currency pair
+        if (fixedPointMode && ! cursor.isNumberAhead(2)) {
+            final int start = cursor.getPosition();
+
+            try {
+                final int scale = symbol.getCurrencyPair().getScale();
+                final long amount = cursor.nextScaledLong(scale);
+                final long price = cursor.nextScaledLong(scale);
+                executedTrade.setScaledAmountAndPrice(amount, price, scale);
+
+                cursor.exitArray();
+                return executedTrade;
+            } catch (BitfinexClientException e) {
+                // More decimals than the scale of the currency pair, keep the exact values
+                cursor.setPosition(start);
+            }
+        }
+
+        final BigDecimal amount = cursor.nextBigDecimal();
         executedTrade.setAmount(amount);
 
+        final BigDecimal priceOrRate = cursor.nextBigDecimal();
+
         // Funding or Currency
-        if (jsonArray.optNumber(4) != null) {
-            final BigDecimal rate = jsonArray.getBigDecimal(3);
-            executedTrade.setRate(rate);
+        if (cursor.hasNext() && ! cursor.isNextNull() && ! cursor.isNextString()) {
+            executedTrade.setRate(priceOrRate);
 
-            final Long period = jsonArray.getLong(4);
+            final Long period = cursor.nextLong();
             executedTrade.setPeriod(period);
         } else {
-            final BigDecimal price = jsonArray.getBigDecimal(3);
-            executedTrade.setPrice(price);
+            executedTrade.setPrice(priceOrRate);
         }
+
+        cursor.exitArray();
         return executedTrade;
     }
 
+    /**
+     * Create fixed point entries (scale of the currency pair) instead of big decimal entries,
+     * entries with more decimals than the scale keep big decimal values
+     *
+     * @param fixedPointMode
+     */
+    public void setFixedPointMode(final boolean fixedPointMode) {
+        this.fixedPointMode = fixedPointMode;
+    }
+
     /**
      * candlestick consumer
      *
@@ -24,7 +24,6 @@ import java.util.List;
 import java.util.function.BiConsumer;
 
 import org.json.JSONArray;
-import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBookEntry;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
@@ -38,6 +37,13 @@ public class OrderbookHandler implements ChannelCallbackHandler {
 
     private BiConsumer<BitfinexOrderBookSymbol, Collection<BitfinexOrderBookEntry>> orderBookEntryConsumer = (sym, e) -> {};
 
+    private BiConsumer<BitfinexOrderBookSymbol, Integer> checksumConsumer = (sym, c) -> {};
+
+    /**
+     * Create fixed point entries instead of big decimal entries
+     */
+    private boolean fixedPointMode = false;
+
     public OrderbookHandler(int channelId, final BitfinexOrderBookSymbol symbol) {
         this.channelId = channelId;
         this.symbol = symbol;
@@ -48,25 +54,36 @@ public class OrderbookHandler implements ChannelCallbackHandler {
      */
     @Override
     public void handleChannelData(final String action, final JSONArray jsonArray) throws BitfinexClientException {
+        handleChannelFrame(new ChannelMessageCursor().resetPayload(action, jsonArray.toString()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelFrame(final ChannelMessageCursor cursor) throws BitfinexClientException {
+        // Checksum: [13182,"cs",-1234567]
+        if ("cs".equals(cursor.getAction())) {
+            checksumConsumer.accept(symbol, (int) readChecksum(cursor));
+            return;
+        }
+
         // Example: [13182,1,-0.1]
-        try {
-            final List<BitfinexOrderBookEntry> entries = new ArrayList<>();
-
-            // Snapshots contain multiple Orderbook entries, updates only one
-            if (jsonArray.get(0) instanceof JSONArray) {
-                for (int pos = 0; pos < jsonArray.length(); pos++) {
-                    final JSONArray parts = jsonArray.getJSONArray(pos);
-                    BitfinexOrderBookEntry entry = jsonToOrderBookEntry(parts);
-                    entries.add(entry);
-                }
-            } else {
-                BitfinexOrderBookEntry entry = jsonToOrderBookEntry(jsonArray);
+        final List<BitfinexOrderBookEntry> entries = new ArrayList<>();
+
+        // Snapshots contain multiple Orderbook entries, updates only one
+        if (cursor.isPayloadNested()) {
+            cursor.enterArray();
+            while (cursor.hasNext()) {
+                BitfinexOrderBookEntry entry = cursorToOrderBookEntry(cursor);
                 entries.add(entry);
             }
-            orderBookEntryConsumer.accept(symbol, entries);
-        } catch (JSONException e) {
-            throw new BitfinexClientException(e);
+            cursor.exitArray();
+        } else {
+            BitfinexOrderBookEntry entry = cursorToOrderBookEntry(cursor);
+            entries.add(entry);
         }
+        orderBookEntryConsumer.accept(symbol, entries);
     }
 
     @Override
@@ -79,15 +96,71 @@ public class OrderbookHandler implements ChannelCallbackHandler {
         return channelId;
     }
 
-    private BitfinexOrderBookEntry jsonToOrderBookEntry(final JSONArray jsonArray) {
-        final BigDecimal price = jsonArray.getBigDecimal(0);
-        final Integer count = jsonArray.getInt(1);
-        final BigDecimal amount = jsonArray.getBigDecimal(2);
+    private BitfinexOrderBookEntry cursorToOrderBookEntry(final ChannelMessageCursor cursor) {
+        cursor.enterArray();
+
+        if (fixedPointMode) {
+            final int start = cursor.getPosition();
+
+            try {
+                final int scale = symbol.getCurrencyPair().getScale();
+                final long price = cursor.nextScaledLong(scale);
+                final Integer count = cursor.nextInt();
+                final long amount = cursor.nextScaledLong(scale);
+                cursor.exitArray();
+
+                return new BitfinexOrderBookEntry(null, price, amount, scale, count);
+            } catch (BitfinexClientException e) {
+                // More decimals than the scale of the currency pair, keep the exact values
+                cursor.setPosition(start);
+            }
+        }
+
+        final BigDecimal price = cursor.nextBigDecimal();
+        final Integer count = cursor.nextInt();
+        final BigDecimal amount = cursor.nextBigDecimal();
+        cursor.exitArray();
 
         return new BitfinexOrderBookEntry(null, price, amount, count);
     }
 
+    /**
+     * orderbook checksum consumer (requires the connection feature CHECKSUM)
+     *
+     * @param consumer of event
+     */
+    public void onChecksumEvent(BiConsumer<BitfinexOrderBookSymbol, Integer> consumer) {
+        this.checksumConsumer = consumer;
+    }
+
+    /**
+     * Create fixed point entries (scale of the currency pair) instead of big decimal entries,
+     * entries with more decimals than the scale keep big decimal values
+     *
+     * @param fixedPointMode
+     */
+    public void setFixedPointMode(final boolean fixedPointMode) {
+        this.fixedPointMode = fixedPointMode;
+    }
+
     public void onOrderBookEvent(BiConsumer<BitfinexOrderBookSymbol, Collection<BitfinexOrderBookEntry>> consumer) {
         this.orderBookEntryConsumer = consumer;
     }
+
+    /**
+     * Read the checksum of the frame, the checksum is the element after the action
+     * (sequence numbers may follow) or the first element of the payload (when only
+     * the payload is passed)
+     * @param cursor
+     * @return
+     */
+    private static long readChecksum(final ChannelMessageCursor cursor) {
+        if (cursor.hasPayload()) {
+            cursor.enterArray();
+            return cursor.nextLong();
+        }
+
+        // [CHANNEL_ID, "cs", CHECKSUM, SEQ, ...]
+        return cursor.getLong(2);
+    }
 }
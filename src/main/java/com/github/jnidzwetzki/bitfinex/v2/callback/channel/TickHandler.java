@@ -44,7 +44,15 @@ public class TickHandler implements ChannelCallbackHandler {
      */
     @Override
     public void handleChannelData(final String action, final JSONArray jsonArray) throws BitfinexClientException {
-        BitfinexTick tick = jsonToBitfinexTick(jsonArray);
+        handleChannelFrame(new ChannelMessageCursor().resetPayload(action, jsonArray.toString()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelFrame(final ChannelMessageCursor cursor) throws BitfinexClientException {
+        BitfinexTick tick = cursorToBitfinexTick(cursor);
         tickConsumer.accept(symbol, tick);
     }
 
@@ -58,17 +66,19 @@ public class TickHandler implements ChannelCallbackHandler {
         return channelId;
     }
 
-    private BitfinexTick jsonToBitfinexTick(final JSONArray jsonArray) {
-        final BigDecimal bid = jsonArray.getBigDecimal(0); // 0 = BID
-        final BigDecimal bidSize = jsonArray.getBigDecimal(1);//  1 = BID SIZE
-        final BigDecimal ask = jsonArray.getBigDecimal(2); // 2 = ASK
-        final BigDecimal askSize = jsonArray.getBigDecimal(3);//  3 = ASK SIZE
-        final BigDecimal dailyChange = jsonArray.getBigDecimal(4);//  4 = Daily Change
-        final BigDecimal dailyChangePerc = jsonArray.getBigDecimal(5);// 5  = Daily Change %
-        final BigDecimal price = jsonArray.getBigDecimal(6);//  6 = Last Price
-        final BigDecimal volume = jsonArray.getBigDecimal(7); // 7 = Volume
-        final BigDecimal high = jsonArray.getBigDecimal(8); // 8 = High
-        final BigDecimal low = jsonArray.getBigDecimal(9); // 9 = Low
+    private BitfinexTick cursorToBitfinexTick(final ChannelMessageCursor cursor) {
+        cursor.enterArray();
+        final BigDecimal bid = cursor.nextBigDecimal(); // 0 = BID
+        final BigDecimal bidSize = cursor.nextBigDecimal();//  1 = BID SIZE
+        final BigDecimal ask = cursor.nextBigDecimal(); // 2 = ASK
+        final BigDecimal askSize = cursor.nextBigDecimal();//  3 = ASK SIZE
+        final BigDecimal dailyChange = cursor.nextBigDecimal();//  4 = Daily Change
+        final BigDecimal dailyChangePerc = cursor.nextBigDecimal();// 5  = Daily Change %
+        final BigDecimal price = cursor.nextBigDecimal();//  6 = Last Price
+        final BigDecimal volume = cursor.nextBigDecimal(); // 7 = Volume
+        final BigDecimal high = cursor.nextBigDecimal(); // 8 = High
+        final BigDecimal low = cursor.nextBigDecimal(); // 9 = Low
+        cursor.exitArray();
 
         return new BitfinexTick(bid, bidSize, ask, askSize, dailyChange, dailyChangePerc, price, volume, high, low);
     }
@@ -17,5 +17,27 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.command;
 
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexCommandException;
+
 public interface BitfinexOrderCommand extends BitfinexCommand {
+
+	/**
+	 * The operation of the command (e.g., on, oc, ou)
+	 * @return
+	 */
+	String getOperation();
+
+	/**
+	 * The JSON payload of the operation
+	 * @param client
+	 * @return
+	 * @throws BitfinexCommandException
+	 */
+	String getPayload(final BitfinexWebsocketClient client) throws BitfinexCommandException;
+
+	@Override
+	default String getCommand(final BitfinexWebsocketClient client) throws BitfinexCommandException {
+		return "[0, \"" + getOperation() + "\", null, " + getPayload(client) + "]";
+	}
 }
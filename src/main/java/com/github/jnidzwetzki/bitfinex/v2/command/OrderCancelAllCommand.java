@@ -22,10 +22,15 @@ import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexCommandException;
 
 public class OrderCancelAllCommand implements BitfinexOrderCommand {
 
-    private final static String PAYLOAD = "[0, \"oc_multi\", null, {\"all\": 1}]";
+    private final static String PAYLOAD = "{\"all\": 1}";
 
     @Override
-    public String getCommand(BitfinexWebsocketClient client) throws BitfinexCommandException {
+    public String getOperation() {
+        return "oc_multi";
+    }
+
+    @Override
+    public String getPayload(BitfinexWebsocketClient client) throws BitfinexCommandException {
         return PAYLOAD;
     }
 }
@@ -34,10 +34,15 @@ public class OrderCancelCommand implements BitfinexOrderCommand {
 	}
 
 	@Override
-	public String getCommand(final BitfinexWebsocketClient client) throws BitfinexCommandException {
+	public String getOperation() {
+		return "oc";
+	}
+
+	@Override
+	public String getPayload(final BitfinexWebsocketClient client) throws BitfinexCommandException {
 		final JSONObject cancelJson = new JSONObject();
 		cancelJson.put("id", id);
-		return "[0, \"oc\", null, " + cancelJson.toString() + "]";
+		return cancelJson.toString();
 	}
 
 }
@@ -34,12 +34,17 @@ public class OrderCancelGroupCommand implements BitfinexOrderCommand {
 	}
 
 	@Override
-	public String getCommand(BitfinexWebsocketClient client) throws BitfinexCommandException {
+	public String getOperation() {
+		return "oc_multi";
+	}
+
+	@Override
+	public String getPayload(BitfinexWebsocketClient client) throws BitfinexCommandException {
 		final JSONObject cancelJson = new JSONObject();
 		JSONArray gidJsonArray = new JSONArray();
 		gidJsonArray.put(orderGroup);
 		cancelJson.put("gid", gidJsonArray);
-		return "[0, \"oc_multi\", null, " + cancelJson.toString() + "]";
+		return cancelJson.toString();
 	}
 
 }
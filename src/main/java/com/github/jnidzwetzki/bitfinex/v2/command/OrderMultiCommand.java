@@ -17,8 +17,10 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.command;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.List;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexCommandException;
@@ -26,24 +28,53 @@ import com.google.common.base.Preconditions;
 
 public class OrderMultiCommand implements BitfinexOrderCommand {
 
-    private final static Pattern REGEX = Pattern.compile("0,\\s*(.*),\\s*null", Pattern.DOTALL);
+    /**
+     * The max number of commands in one ox_multi frame
+     */
+    public final static int MAX_COMMANDS = 15;
+
     private final BitfinexOrderCommand[] commands;
 
     public OrderMultiCommand(final Collection<BitfinexOrderCommand> commands) {
         Preconditions.checkArgument(!commands.isEmpty(), "Commands list cannot be empty!");
-        Preconditions.checkArgument(commands.size() <= 15, "Commands list cannot be bigger than 15!");
+        Preconditions.checkArgument(commands.size() <= MAX_COMMANDS, "Commands list cannot be bigger than 15!");
+        Preconditions.checkArgument(commands.stream().noneMatch(c -> c instanceof OrderMultiCommand), 
+                "Multi commands cannot be nested!");
         this.commands = commands.toArray(new BitfinexOrderCommand[0]);
     }
 
     @Override
-    public String getCommand(BitfinexWebsocketClient client) throws BitfinexCommandException {
-        StringBuilder sb = new StringBuilder();
+    public String getOperation() {
+        return "ox_multi";
+    }
+
+    @Override
+    public String getPayload(BitfinexWebsocketClient client) throws BitfinexCommandException {
+        final StringBuilder sb = new StringBuilder("[");
         String prefix = "";
         for (BitfinexOrderCommand command : commands) {
-            String json = REGEX.matcher(command.getCommand(client)).replaceAll("$1");
-            sb.append(prefix).append(json);
+            sb.append(prefix)
+                .append("[\"").append(command.getOperation()).append("\", ")
+                .append(command.getPayload(client))
+                .append(']');
             prefix = ",";
         }
-        return "[0, \"ox_multi\", null, [" + sb.toString() + "]]";
+        return sb.append(']').toString();
+    }
+
+    /**
+     * The batched commands
+     * @return
+     */
+    public List<BitfinexOrderCommand> getCommands() {
+        return Collections.unmodifiableList(Arrays.asList(commands));
+    }
+
+    /**
+     * The number of commands
+     * @return
+     */
+    public int size() {
+        return commands.length;
     }
 }
@@ -32,7 +32,12 @@ public class OrderNewCommand implements BitfinexOrderCommand {
     }
 
     @Override
-    public String getCommand(final BitfinexWebsocketClient client) throws BitfinexCommandException {
+    public String getOperation() {
+        return "on";
+    }
+
+    @Override
+    public String getPayload(final BitfinexWebsocketClient client) throws BitfinexCommandException {
         final JSONObject orderJson = new JSONObject();
         orderJson.put("type", bitfinexOrder.getOrderType().getBifinexString());
         orderJson.put("symbol", bitfinexOrder.getCurrencyPair().toBitfinexString());
@@ -60,7 +65,7 @@ public class OrderNewCommand implements BitfinexOrderCommand {
         if (bitfinexOrder.getAffiliateCode() != null) {
             orderJson.put("meta", getMetaJson());
         }
-        return "[0, \"on\", null, " + orderJson.toString() + "]";
+        return orderJson.toString();
     }
 
     private JSONObject getMetaJson() {
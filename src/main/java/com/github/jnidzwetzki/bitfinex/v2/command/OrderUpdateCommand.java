@@ -32,7 +32,12 @@ public class OrderUpdateCommand implements BitfinexOrderCommand {
     }
 
     @Override
-    public String getCommand(final BitfinexWebsocketClient client) throws BitfinexCommandException {
+    public String getOperation() {
+        return "ou";
+    }
+
+    @Override
+    public String getPayload(final BitfinexWebsocketClient client) throws BitfinexCommandException {
         final JSONObject orderJson = new JSONObject();
         orderJson.put("id", bitfinexOrder.getOrderId());
         
@@ -46,6 +51,6 @@ public class OrderUpdateCommand implements BitfinexOrderCommand {
 
         orderJson.put("cid", bitfinexOrder.getClientId());
         bitfinexOrder.getClientGroupId().ifPresent(groupId -> orderJson.put("gid", bitfinexOrder.getClientGroupId().get()));
-        return "[0, \"ou\", null, " + orderJson.toString() + "]";
+        return orderJson.toString();
     }
 }
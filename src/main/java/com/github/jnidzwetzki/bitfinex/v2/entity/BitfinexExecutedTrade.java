@@ -20,6 +20,8 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 import java.math.BigDecimal;
 import java.util.Objects;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class BitfinexExecutedTrade {
 
 	/**
@@ -54,6 +56,13 @@ public class BitfinexExecutedTrade {
 	 */
 	private Long period;
 
+	/**
+	 * The fixed point amount and price (only valid if scale != -1)
+	 */
+	private long scaledAmount;
+	private long scaledPrice;
+	private int scale = -1;
+
 
 	public Long getTradeId() {
 		return tradeId;
@@ -72,21 +81,95 @@ public class BitfinexExecutedTrade {
 	}
 
 	public BigDecimal getAmount() {
+		if(amount == null && isFixedPoint()) {
+			amount = FixedPoint.toBigDecimal(scaledAmount, scale);
+		}
 		return amount;
 	}
 
 	public void setAmount(BigDecimal amount) {
+		releaseFixedPoint();
 		this.amount = amount;
 	}
 
 	public BigDecimal getPrice() {
+		if(price == null && isFixedPoint()) {
+			price = FixedPoint.toBigDecimal(scaledPrice, scale);
+		}
 		return price;
 	}
 
 	public void setPrice(BigDecimal price) {
+		releaseFixedPoint();
 		this.price = price;
 	}
 
+	/**
+	 * Switch from fixed point to big decimal values (e.g., a value with more 
+	 * decimals than the scale is set)
+	 */
+	private void releaseFixedPoint() {
+		if(! isFixedPoint()) {
+			return;
+		}
+
+		getAmount();
+		getPrice();
+		this.scale = -1;
+	}
+
+	/**
+	 * Set the amount and price as fixed point values, the big decimal 
+	 * values are created on demand
+	 * 
+	 * @param scaledAmount - amount * 10^scale
+	 * @param scaledPrice - price * 10^scale
+	 * @param scale
+	 */
+	public void setScaledAmountAndPrice(final long scaledAmount, final long scaledPrice, final int scale) {
+		this.scaledAmount = scaledAmount;
+		this.scaledPrice = scaledPrice;
+		this.scale = scale;
+		this.amount = null;
+		this.price = null;
+	}
+
+	/**
+	 * Was the amount and price set as fixed point values
+	 * @return
+	 */
+	public boolean isFixedPoint() {
+		return scale != -1;
+	}
+
+	/**
+	 * The scale of the fixed point values. For big decimal values, the smallest 
+	 * scale (at least FixedPoint.DEFAULT_SCALE) that represents the amount and 
+	 * the price without rounding.
+	 * @return
+	 */
+	public int getScale() {
+		return isFixedPoint() ? scale : FixedPoint.getExactScale(amount, price);
+	}
+
+	/**
+	 * The amount as fixed point value (amount * 10^getScale())
+	 * @return
+	 * @throws BitfinexClientException if the amount does not fit into a long
+	 */
+	public long getScaledAmount() {
+		return isFixedPoint() ? scaledAmount : FixedPoint.fromBigDecimal(amount, getScale());
+	}
+
+	/**
+	 * The price as fixed point value (price * 10^getScale())
+	 * @return
+	 * @throws BitfinexClientException if the price does not fit into a long
+	 */
+	public long getScaledPrice() {
+		return isFixedPoint() ? scaledPrice : FixedPoint.fromBigDecimal(price, getScale());
+	}
+
 	public BigDecimal getRate() {
 		return rate;
 	}
@@ -110,15 +193,15 @@ public class BitfinexExecutedTrade {
 		BitfinexExecutedTrade that = (BitfinexExecutedTrade) o;
 		return Objects.equals(tradeId, that.tradeId) &&
 				Objects.equals(timestamp, that.timestamp) &&
-				Objects.equals(amount, that.amount) &&
-				Objects.equals(price, that.price) &&
+				Objects.equals(getAmount(), that.getAmount()) &&
+				Objects.equals(getPrice(), that.getPrice()) &&
 				Objects.equals(rate, that.rate) &&
 				Objects.equals(period, that.period);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(tradeId, timestamp, amount, price, rate, period);
+		return Objects.hash(tradeId, timestamp, getAmount(), getPrice(), rate, period);
 	}
 
 	@Override
@@ -126,8 +209,8 @@ public class BitfinexExecutedTrade {
 		return "BitfinexExecutedTrade [" +
 				"tradeId=" + tradeId +
 				", timestamp=" + timestamp +
-				", amount=" + amount +
-				", price=" + price +
+				", amount=" + getAmount() +
+				", price=" + getPrice() +
 				", rate=" + rate +
 				", period=" + period +
 				']';
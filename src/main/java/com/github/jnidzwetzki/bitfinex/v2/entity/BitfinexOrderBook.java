@@ -0,0 +1,528 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.OrderBookChecksum;
+
+/**
+ * A local (aggregated) order book, maintained from the snapshot and the 
+ * updates of a P0-P3 order book channel.
+ * 
+ * Prices and amounts are stored as fixed point values (see getScale()). The scale
+ * starts with the scale of the currency pair and is increased when an entry with
+ * more decimals is applied. Both sides are kept in sorted primitive arrays, level 0
+ * is the best bid / ask. 
+ * Bid amounts are positive, ask amounts are negative (as delivered by bitfinex).
+ * 
+ * All methods are synchronized on the book. To read multiple values consistently, 
+ * synchronize on the book instance.
+ */
+public class BitfinexOrderBook {
+
+	/**
+	 * The initial capacity of a side
+	 */
+	private final static int INITIAL_CAPACITY = 32;
+
+	/**
+	 * The scale of the prices and amounts (increased by entries with more decimals)
+	 */
+	private int scale;
+
+	/**
+	 * The bids (highest price first)
+	 */
+	private final Side bids = new Side(true);
+
+	/**
+	 * The asks (lowest price first)
+	 */
+	private final Side asks = new Side(false);
+
+	/**
+	 * The checksum calculator
+	 */
+	private final OrderBookChecksum checksum = new OrderBookChecksum();
+
+	public BitfinexOrderBook(final int scale) {
+		this.scale = scale;
+	}
+
+	/**
+	 * Apply a snapshot or update entry. An entry with count == 0 removes 
+	 * the price level (amount 1 = bid, amount -1 = ask).
+	 * 
+	 * @param entry
+	 * @throws BitfinexClientException if the entry needs more than FixedPoint.MAX_SCALE
+	 * 		decimals or the book does not fit into longs with the scale of the entry
+	 */
+	public synchronized void applyEntry(final BitfinexOrderBookEntry entry) {
+		ensureScale(getDecimals(entry));
+
+		final long price = entry.isFixedPoint() ? toBookScale(entry.getScaledPrice(), entry.getScale()) 
+				: FixedPoint.fromBigDecimal(entry.getPrice(), scale);
+		final long amount = entry.isFixedPoint() ? toBookScale(entry.getScaledAmount(), entry.getScale()) 
+				: FixedPoint.fromBigDecimal(entry.getAmount(), scale);
+		final int count = entry.getCount() == null ? 0 : entry.getCount();
+
+		applyLevel(price, amount, count);
+	}
+
+	/**
+	 * Get the decimals that are needed to store the entry without rounding
+	 * @param entry
+	 * @return
+	 */
+	static int getDecimals(final BitfinexOrderBookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return Math.max(FixedPoint.getDecimals(entry.getScaledPrice(), entry.getScale()), 
+					FixedPoint.getDecimals(entry.getScaledAmount(), entry.getScale()));
+		}
+		
+		return Math.max(FixedPoint.getDecimals(entry.getPrice()), FixedPoint.getDecimals(entry.getAmount()));
+	}
+
+	/**
+	 * Increase the scale of the book, distinct prices must not be merged by rounding
+	 * @param requiredScale
+	 */
+	private void ensureScale(final int requiredScale) {
+		if(requiredScale <= scale) {
+			return;
+		}
+
+		if(requiredScale > FixedPoint.MAX_SCALE) {
+			throw new BitfinexClientException("Unable to apply entry with " + requiredScale + " decimals");
+		}
+
+		final long factor = FixedPoint.powerOfTen(requiredScale - scale);
+
+		// Rescale into copies, the book is unchanged if a value does not fit
+		final long[] bidPrices = bids.rescale(bids.prices, factor);
+		final long[] bidAmounts = bids.rescale(bids.amounts, factor);
+		final long[] askPrices = asks.rescale(asks.prices, factor);
+		final long[] askAmounts = asks.rescale(asks.amounts, factor);
+
+		bids.prices = bidPrices;
+		bids.amounts = bidAmounts;
+		asks.prices = askPrices;
+		asks.amounts = askAmounts;
+		scale = requiredScale;
+	}
+
+	/**
+	 * Convert a fixed point value of an entry into the scale of the book,
+	 * distinct prices must not be merged by rounding
+	 * @param value
+	 * @param valueScale
+	 * @return
+	 */
+	private long toBookScale(final long value, final int valueScale) {
+		try {
+			return FixedPoint.rescale(value, valueScale, scale);
+		} catch (ArithmeticException e) {
+			throw new BitfinexClientException("Unable to apply entry with scale " + valueScale 
+					+ " to a book with scale " + scale + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Apply a price level (fixed point values with the scale of this book)
+	 * 
+	 * @param price
+	 * @param amount
+	 * @param count
+	 */
+	public synchronized void applyLevel(final long price, final long amount, final int count) {
+		final Side side = amount > 0 ? bids : asks;
+
+		if(count == 0) {
+			side.remove(price);
+		} else {
+			side.update(price, amount, count);
+		}
+	}
+
+	/**
+	 * Remove all levels (e.g., before a new snapshot is applied)
+	 */
+	public synchronized void clear() {
+		bids.size = 0;
+		asks.size = 0;
+	}
+
+	/**
+	 * Get the scale of the prices and amounts
+	 * @return
+	 */
+	public synchronized int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Get the number of bid levels
+	 * @return
+	 */
+	public synchronized int getBidLevels() {
+		return bids.size;
+	}
+
+	/**
+	 * Get the number of ask levels
+	 * @return
+	 */
+	public synchronized int getAskLevels() {
+		return asks.size;
+	}
+
+	/**
+	 * Get the best bid price
+	 * @return the price or 0 if the side is empty
+	 */
+	public synchronized long getBestBidPrice() {
+		return bids.size == 0 ? 0 : bids.prices[0];
+	}
+
+	/**
+	 * Get the best ask price
+	 * @return the price or 0 if the side is empty
+	 */
+	public synchronized long getBestAskPrice() {
+		return asks.size == 0 ? 0 : asks.prices[0];
+	}
+
+	/**
+	 * Get the bid price of the given level (0 = best)
+	 * @param level
+	 * @return
+	 */
+	public synchronized long getBidPrice(final int level) {
+		return bids.prices[bids.checkLevel(level)];
+	}
+
+	/**
+	 * Get the bid amount of the given level (0 = best)
+	 * @param level
+	 * @return
+	 */
+	public synchronized long getBidAmount(final int level) {
+		return bids.amounts[bids.checkLevel(level)];
+	}
+
+	/**
+	 * Get the bid order count of the given level (0 = best)
+	 * @param level
+	 * @return
+	 */
+	public synchronized int getBidCount(final int level) {
+		return bids.counts[bids.checkLevel(level)];
+	}
+
+	/**
+	 * Get the ask price of the given level (0 = best)
+	 * @param level
+	 * @return
+	 */
+	public synchronized long getAskPrice(final int level) {
+		return asks.prices[asks.checkLevel(level)];
+	}
+
+	/**
+	 * Get the ask amount of the given level (0 = best, the amount is negative)
+	 * @param level
+	 * @return
+	 */
+	public synchronized long getAskAmount(final int level) {
+		return asks.amounts[asks.checkLevel(level)];
+	}
+
+	/**
+	 * Get the ask order count of the given level (0 = best)
+	 * @param level
+	 * @return
+	 */
+	public synchronized int getAskCount(final int level) {
+		return asks.counts[asks.checkLevel(level)];
+	}
+
+	/**
+	 * Get the amount at the given price (bids positive, asks negative)
+	 * @param price
+	 * @return the amount or 0 if there is no level for the price
+	 */
+	public synchronized long getAmountAtPrice(final long price) {
+		final int bidPos = bids.find(price);
+
+		if(bidPos >= 0) {
+			return bids.amounts[bidPos];
+		}
+
+		final int askPos = asks.find(price);
+
+		if(askPos >= 0) {
+			return asks.amounts[askPos];
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Get the cumulative bid amount from the best bid down to the given price (inclusive)
+	 * @param price
+	 * @return
+	 */
+	public synchronized long getCumulativeBidAmount(final long price) {
+		return bids.cumulativeAmount(price);
+	}
+
+	/**
+	 * Get the cumulative ask amount from the best ask up to the given price (inclusive)
+	 * @param price
+	 * @return the amount (negative)
+	 */
+	public synchronized long getCumulativeAskAmount(final long price) {
+		return asks.cumulativeAmount(price);
+	}
+
+	/**
+	 * Calculate the bitfinex checksum of the book (top 25 levels, 
+	 * bid and ask levels interleaved)
+	 * 
+	 * @return
+	 */
+	public synchronized int getChecksum() {
+		checksum.reset();
+
+		for(int i = 0; i < OrderBookChecksum.CHECKSUM_LEVELS; i++) {
+			if(i < bids.size) {
+				checksum.addFixedPoint(bids.prices[i], scale);
+				checksum.addFixedPoint(bids.amounts[i], scale);
+			}
+
+			if(i < asks.size) {
+				checksum.addFixedPoint(asks.prices[i], scale);
+				checksum.addFixedPoint(asks.amounts[i], scale);
+			}
+		}
+
+		return checksum.getChecksum();
+	}
+
+	/**
+	 * Get the best n bid levels
+	 * @param levels
+	 * @return
+	 */
+	public synchronized List<BitfinexOrderBookEntry> getTopBids(final int levels) {
+		return bids.toEntries(levels, scale);
+	}
+
+	/**
+	 * Get the best n ask levels
+	 * @param levels
+	 * @return
+	 */
+	public synchronized List<BitfinexOrderBookEntry> getTopAsks(final int levels) {
+		return asks.toEntries(levels, scale);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "BitfinexOrderBook [scale=" + scale + ", bids=" + getTopBids(5) + ", asks=" + getTopAsks(5) + "]";
+	}
+
+	/**
+	 * One side of the book, price levels are stored in sorted primitive arrays
+	 */
+	private static final class Side {
+
+		/**
+		 * Highest price first?
+		 */
+		private final boolean descending;
+
+		/**
+		 * The prices of the levels
+		 */
+		private long[] prices = new long[INITIAL_CAPACITY];
+
+		/**
+		 * The amounts of the levels
+		 */
+		private long[] amounts = new long[INITIAL_CAPACITY];
+
+		/**
+		 * The order counts of the levels
+		 */
+		private int[] counts = new int[INITIAL_CAPACITY];
+
+		/**
+		 * The number of levels
+		 */
+		private int size;
+
+		private Side(final boolean descending) {
+			this.descending = descending;
+		}
+
+		/**
+		 * Find the level of the price
+		 * @param price
+		 * @return the position or (-(insertion point) - 1)
+		 */
+		private int find(final long price) {
+			int low = 0;
+			int high = size - 1;
+
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final long midPrice = prices[mid];
+
+				if(midPrice == price) {
+					return mid;
+				}
+
+				if(isBefore(midPrice, price)) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+
+			return -(low + 1);
+		}
+
+		/**
+		 * Is price1 better than price2
+		 */
+		private boolean isBefore(final long price1, final long price2) {
+			return descending ? price1 > price2 : price1 < price2;
+		}
+
+		/**
+		 * Insert or update a price level
+		 */
+		private void update(final long price, final long amount, final int count) {
+			final int pos = find(price);
+
+			if(pos >= 0) {
+				amounts[pos] = amount;
+				counts[pos] = count;
+				return;
+			}
+
+			final int insertPos = -(pos + 1);
+
+			if(size == prices.length) {
+				final int newCapacity = prices.length * 2;
+				prices = Arrays.copyOf(prices, newCapacity);
+				amounts = Arrays.copyOf(amounts, newCapacity);
+				counts = Arrays.copyOf(counts, newCapacity);
+			}
+
+			final int elementsToMove = size - insertPos;
+			System.arraycopy(prices, insertPos, prices, insertPos + 1, elementsToMove);
+			System.arraycopy(amounts, insertPos, amounts, insertPos + 1, elementsToMove);
+			System.arraycopy(counts, insertPos, counts, insertPos + 1, elementsToMove);
+
+			prices[insertPos] = price;
+			amounts[insertPos] = amount;
+			counts[insertPos] = count;
+			size++;
+		}
+
+		/**
+		 * Remove a price level
+		 */
+		private void remove(final long price) {
+			final int pos = find(price);
+
+			if(pos < 0) {
+				return;
+			}
+
+			final int elementsToMove = size - pos - 1;
+			System.arraycopy(prices, pos + 1, prices, pos, elementsToMove);
+			System.arraycopy(amounts, pos + 1, amounts, pos, elementsToMove);
+			System.arraycopy(counts, pos + 1, counts, pos, elementsToMove);
+			size--;
+		}
+
+		/**
+		 * The sum of the amounts from the best level to the given price (inclusive)
+		 */
+		private long cumulativeAmount(final long price) {
+			long sum = 0;
+
+			for(int i = 0; i < size && ! isBefore(price, prices[i]); i++) {
+				sum += amounts[i];
+			}
+
+			return sum;
+		}
+
+		/**
+		 * Multiply the values of the levels with the factor (into a copy)
+		 */
+		private long[] rescale(final long[] values, final long factor) {
+			final long[] result = new long[values.length];
+
+			try {
+				for(int i = 0; i < size; i++) {
+					result[i] = Math.multiplyExact(values[i], factor);
+				}
+			} catch (ArithmeticException e) {
+				throw new BitfinexClientException("Unable to increase the scale of the order book: " 
+						+ e.getMessage());
+			}
+
+			return result;
+		}
+
+		/**
+		 * Ensure the level exists
+		 */
+		private int checkLevel(final int level) {
+			if(level < 0 || level >= size) {
+				throw new IndexOutOfBoundsException("Level " + level + " does not exist, levels: " + size);
+			}
+
+			return level;
+		}
+
+		/**
+		 * Convert the best levels into entries
+		 */
+		private List<BitfinexOrderBookEntry> toEntries(final int levels, final int scale) {
+			final int resultSize = Math.min(levels, size);
+			final List<BitfinexOrderBookEntry> result = new ArrayList<>(resultSize);
+
+			for(int i = 0; i < resultSize; i++) {
+				result.add(new BitfinexOrderBookEntry(null, prices[i], amounts[i], scale, counts[i]));
+			}
+
+			return result;
+		}
+	}
+}
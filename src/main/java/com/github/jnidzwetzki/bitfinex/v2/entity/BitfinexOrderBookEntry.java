@@ -19,18 +19,47 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class BitfinexOrderBookEntry {
 
 	private final Long orderId;
-	private final BigDecimal price;
-	private final BigDecimal amount;
+	private BigDecimal price;
+	private BigDecimal amount;
 	private final Integer count;
 
+	/**
+	 * The fixed point price and amount (only valid if scale != -1)
+	 */
+	private final long scaledPrice;
+	private final long scaledAmount;
+	private final int scale;
+
 	public BitfinexOrderBookEntry(Long orderId, BigDecimal price, BigDecimal amount, Integer count) {
 		this.orderId = orderId;
 		this.price = price;
 		this.amount = amount;
 		this.count = count;
+		this.scaledPrice = 0;
+		this.scaledAmount = 0;
+		this.scale = -1;
+	}
+
+	/**
+	 * Create a fixed point entry, the big decimal values are created on demand
+	 * 
+	 * @param orderId
+	 * @param scaledPrice - price * 10^scale
+	 * @param scaledAmount - amount * 10^scale
+	 * @param scale
+	 * @param count
+	 */
+	public BitfinexOrderBookEntry(Long orderId, long scaledPrice, long scaledAmount, int scale, Integer count) {
+		this.orderId = orderId;
+		this.count = count;
+		this.scaledPrice = scaledPrice;
+		this.scaledAmount = scaledAmount;
+		this.scale = scale;
 	}
 
 	public Long getOrderId() {
@@ -38,10 +67,16 @@ public class BitfinexOrderBookEntry {
 	}
 
 	public BigDecimal getPrice() {
+		if(price == null && isFixedPoint()) {
+			price = FixedPoint.toBigDecimal(scaledPrice, scale);
+		}
 		return price;
 	}
 
 	public BigDecimal getAmount() {
+		if(amount == null && isFixedPoint()) {
+			amount = FixedPoint.toBigDecimal(scaledAmount, scale);
+		}
 		return amount;
 	}
 
@@ -49,9 +84,45 @@ public class BitfinexOrderBookEntry {
 		return count;
 	}
 
+	/**
+	 * Was the entry created with fixed point values
+	 * @return
+	 */
+	public boolean isFixedPoint() {
+		return scale != -1;
+	}
+
+	/**
+	 * The scale of the fixed point values. For big decimal values, the smallest 
+	 * scale (at least FixedPoint.DEFAULT_SCALE) that represents the price and 
+	 * the amount without rounding.
+	 * @return
+	 */
+	public int getScale() {
+		return isFixedPoint() ? scale : FixedPoint.getExactScale(price, amount);
+	}
+
+	/**
+	 * The price as fixed point value (price * 10^getScale())
+	 * @return
+	 * @throws BitfinexClientException if the price does not fit into a long
+	 */
+	public long getScaledPrice() {
+		return isFixedPoint() ? scaledPrice : FixedPoint.fromBigDecimal(price, getScale());
+	}
+
+	/**
+	 * The amount as fixed point value (amount * 10^getScale())
+	 * @return
+	 * @throws BitfinexClientException if the amount does not fit into a long
+	 */
+	public long getScaledAmount() {
+		return isFixedPoint() ? scaledAmount : FixedPoint.fromBigDecimal(amount, getScale());
+	}
+
 	@Override
 	public String toString() {
-		return "BitfinexOrderBookEntry [price=" + price + ", count=" + count + ", amount=" + amount + "]";
+		return "BitfinexOrderBookEntry [price=" + getPrice() + ", count=" + count + ", amount=" + getAmount() + "]";
 	}
 
 }
@@ -0,0 +1,693 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.LongIntHashMap;
+import com.github.jnidzwetzki.bitfinex.v2.util.OrderBookChecksum;
+
+/**
+ * A local raw (R0) order book, maintained from the snapshot and the updates 
+ * of a raw order book channel. 
+ * 
+ * Every order is stored in a slot of primitive arrays. The orders of a price 
+ * level form a FIFO queue (linked by slot), the order id and the price levels 
+ * are indexed by primitive hash maps. Add, modify and delete by order id are O(1), 
+ * the levels of each side are kept sorted by price (binary search on a level 
+ * change), so the top of the book is read without sorting.
+ * 
+ * Prices and amounts are stored as fixed point values (see getScale()). The scale 
+ * starts with the scale of the currency pair and is increased when an entry with 
+ * more decimals is applied. Bid amounts are positive, ask amounts are negative 
+ * (as delivered by bitfinex).
+ * 
+ * All methods are synchronized on the book.
+ */
+public class BitfinexRawOrderBook {
+
+	/**
+	 * The end of a queue
+	 */
+	private final static int NONE = -1;
+
+	/**
+	 * The initial capacity
+	 */
+	private final static int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The scale of the prices and amounts (increased by entries with more decimals)
+	 */
+	private int scale;
+
+	/**
+	 * The order id to order slot index
+	 */
+	private final LongIntHashMap orderIndex = new LongIntHashMap(INITIAL_CAPACITY);
+
+	/**
+	 * The bid price to level slot index
+	 */
+	private final LongIntHashMap bidLevelIndex = new LongIntHashMap(INITIAL_CAPACITY);
+
+	/**
+	 * The ask price to level slot index
+	 */
+	private final LongIntHashMap askLevelIndex = new LongIntHashMap(INITIAL_CAPACITY);
+
+	/**
+	 * The order slots
+	 */
+	private long[] orderIds = new long[INITIAL_CAPACITY];
+	private long[] orderAmounts = new long[INITIAL_CAPACITY];
+	private int[] orderLevels = new int[INITIAL_CAPACITY];
+	private int[] orderPrev = new int[INITIAL_CAPACITY];
+	private int[] orderNext = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The first free order slot (the free slots are linked by orderNext)
+	 */
+	private int freeOrderSlot = NONE;
+
+	/**
+	 * The number of used order slots (including free slots)
+	 */
+	private int orderSlotsUsed = 0;
+
+	/**
+	 * The level slots
+	 */
+	private long[] levelPrices = new long[INITIAL_CAPACITY];
+	private long[] levelAmounts = new long[INITIAL_CAPACITY];
+	private int[] levelOrderCounts = new int[INITIAL_CAPACITY];
+	private int[] levelHeads = new int[INITIAL_CAPACITY];
+	private int[] levelTails = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The first free level slot (the free slots are linked by levelHeads)
+	 */
+	private int freeLevelSlot = NONE;
+
+	/**
+	 * The number of used level slots (including free slots)
+	 */
+	private int levelSlotsUsed = 0;
+
+	/**
+	 * The checksum calculator
+	 */
+	private final OrderBookChecksum checksum = new OrderBookChecksum();
+
+	/**
+	 * The reusable order slots of the checksum calculation
+	 */
+	private final int[] checksumBids = new int[OrderBookChecksum.CHECKSUM_LEVELS];
+	private final int[] checksumAsks = new int[OrderBookChecksum.CHECKSUM_LEVELS];
+
+	/**
+	 * The level slots of the sides (best price first)
+	 */
+	private final SortedLevels sortedBids = new SortedLevels(true);
+	private final SortedLevels sortedAsks = new SortedLevels(false);
+
+	public BitfinexRawOrderBook(final int scale) {
+		this.scale = scale;
+	}
+
+	/**
+	 * Apply a snapshot or update entry. An entry with price == 0 removes the order.
+	 * 
+	 * @param entry
+	 * @throws BitfinexClientException if the entry needs more than FixedPoint.MAX_SCALE
+	 * 		decimals or the book does not fit into longs with the scale of the entry
+	 */
+	public synchronized void applyEntry(final BitfinexOrderBookEntry entry) {
+		ensureScale(BitfinexOrderBook.getDecimals(entry));
+
+		final long price = entry.isFixedPoint() ? toBookScale(entry.getScaledPrice(), entry.getScale()) 
+				: FixedPoint.fromBigDecimal(entry.getPrice(), scale);
+		final long amount = entry.isFixedPoint() ? toBookScale(entry.getScaledAmount(), entry.getScale()) 
+				: FixedPoint.fromBigDecimal(entry.getAmount(), scale);
+
+		applyOrder(entry.getOrderId(), price, amount);
+	}
+
+	/**
+	 * Increase the scale of the book, distinct prices must not be merged by rounding
+	 * @param requiredScale
+	 */
+	private void ensureScale(final int requiredScale) {
+		if(requiredScale <= scale) {
+			return;
+		}
+
+		if(requiredScale > FixedPoint.MAX_SCALE) {
+			throw new BitfinexClientException("Unable to apply entry with " + requiredScale + " decimals");
+		}
+
+		final long factor = FixedPoint.powerOfTen(requiredScale - scale);
+
+		// Rescale into copies, the book is unchanged if a value does not fit
+		final long[] newLevelPrices = new long[levelPrices.length];
+		final long[] newLevelAmounts = new long[levelAmounts.length];
+		final long[] newOrderAmounts = new long[orderAmounts.length];
+
+		try {
+			for(int level = 0; level < levelSlotsUsed; level++) {
+				if(levelOrderCounts[level] > 0) {
+					newLevelPrices[level] = Math.multiplyExact(levelPrices[level], factor);
+					newLevelAmounts[level] = Math.multiplyExact(levelAmounts[level], factor);
+				}
+			}
+
+			for(int slot = 0; slot < orderSlotsUsed; slot++) {
+				if(orderIndex.get(orderIds[slot]) == slot) {
+					newOrderAmounts[slot] = Math.multiplyExact(orderAmounts[slot], factor);
+				}
+			}
+		} catch (ArithmeticException e) {
+			throw new BitfinexClientException("Unable to increase the scale of the order book: " 
+					+ e.getMessage());
+		}
+
+		// The levels are indexed by price
+		final boolean[] bidLevels = new boolean[levelSlotsUsed];
+		for(int level = 0; level < levelSlotsUsed; level++) {
+			bidLevels[level] = levelOrderCounts[level] > 0 && bidLevelIndex.get(levelPrices[level]) == level;
+		}
+
+		bidLevelIndex.clear();
+		askLevelIndex.clear();
+
+		for(int level = 0; level < levelSlotsUsed; level++) {
+			if(levelOrderCounts[level] > 0) {
+				(bidLevels[level] ? bidLevelIndex : askLevelIndex).put(newLevelPrices[level], level);
+			}
+		}
+
+		levelPrices = newLevelPrices;
+		levelAmounts = newLevelAmounts;
+		orderAmounts = newOrderAmounts;
+		scale = requiredScale;
+	}
+
+	/**
+	 * Convert a fixed point value of an entry into the scale of the book,
+	 * distinct prices must not be merged by rounding
+	 * @param value
+	 * @param valueScale
+	 * @return
+	 */
+	private long toBookScale(final long value, final int valueScale) {
+		try {
+			return FixedPoint.rescale(value, valueScale, scale);
+		} catch (ArithmeticException e) {
+			throw new BitfinexClientException("Unable to apply entry with scale " + valueScale 
+					+ " to a book with scale " + scale + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Apply an order (fixed point values with the scale of this book). A price of 
+	 * 0 removes the order. A order that changes the price or the side is moved to 
+	 * the end of the new queue, a pure amount change keeps the queue position.
+	 * 
+	 * @param orderId
+	 * @param price
+	 * @param amount
+	 */
+	public synchronized void applyOrder(final long orderId, final long price, final long amount) {
+		if(price == 0) {
+			removeOrder(orderId);
+			return;
+		}
+
+		final LongIntHashMap levelIndex = amount > 0 ? bidLevelIndex : askLevelIndex;
+		final int slot = orderIndex.get(orderId);
+
+		if(slot != LongIntHashMap.NO_VALUE) {
+			final int level = orderLevels[slot];
+
+			if(levelPrices[level] == price && levelIndex.get(price) == level) {
+				levelAmounts[level] += amount - orderAmounts[slot];
+				orderAmounts[slot] = amount;
+				return;
+			}
+
+			removeOrder(orderId);
+		}
+
+		int level = levelIndex.get(price);
+
+		if(level == LongIntHashMap.NO_VALUE) {
+			level = allocateLevel(price);
+			levelIndex.put(price, level);
+			(amount > 0 ? sortedBids : sortedAsks).insert(level);
+		}
+
+		final int newSlot = allocateOrder(orderId, amount, level);
+		orderIndex.put(orderId, newSlot);
+
+		// Append to the queue of the level
+		final int tail = levelTails[level];
+		orderPrev[newSlot] = tail;
+		orderNext[newSlot] = NONE;
+
+		if(tail == NONE) {
+			levelHeads[level] = newSlot;
+		} else {
+			orderNext[tail] = newSlot;
+		}
+
+		levelTails[level] = newSlot;
+		levelAmounts[level] += amount;
+		levelOrderCounts[level]++;
+	}
+
+	/**
+	 * Remove the order
+	 * @param orderId
+	 * @return true if the order was known
+	 */
+	public synchronized boolean removeOrder(final long orderId) {
+		final int slot = orderIndex.remove(orderId);
+
+		if(slot == LongIntHashMap.NO_VALUE) {
+			return false;
+		}
+
+		final int level = orderLevels[slot];
+		final int prev = orderPrev[slot];
+		final int next = orderNext[slot];
+
+		if(prev == NONE) {
+			levelHeads[level] = next;
+		} else {
+			orderNext[prev] = next;
+		}
+
+		if(next == NONE) {
+			levelTails[level] = prev;
+		} else {
+			orderPrev[next] = prev;
+		}
+
+		levelAmounts[level] -= orderAmounts[slot];
+		levelOrderCounts[level]--;
+
+		if(levelOrderCounts[level] == 0) {
+			final boolean bid = orderAmounts[slot] > 0;
+			(bid ? bidLevelIndex : askLevelIndex).remove(levelPrices[level]);
+			(bid ? sortedBids : sortedAsks).remove(levelPrices[level]);
+			freeLevel(level);
+		}
+
+		freeOrder(slot);
+		return true;
+	}
+
+	/**
+	 * Remove all orders (e.g., before a new snapshot is applied)
+	 */
+	public synchronized void clear() {
+		orderIndex.clear();
+		bidLevelIndex.clear();
+		askLevelIndex.clear();
+		freeOrderSlot = NONE;
+		orderSlotsUsed = 0;
+		freeLevelSlot = NONE;
+		levelSlotsUsed = 0;
+		sortedBids.size = 0;
+		sortedAsks.size = 0;
+	}
+
+	/**
+	 * Get the scale of the prices and amounts
+	 * @return
+	 */
+	public synchronized int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Get the number of orders
+	 * @return
+	 */
+	public synchronized int getNumberOfOrders() {
+		return orderIndex.size();
+	}
+
+	/**
+	 * Is the order known
+	 * @param orderId
+	 * @return
+	 */
+	public synchronized boolean containsOrder(final long orderId) {
+		return orderIndex.containsKey(orderId);
+	}
+
+	/**
+	 * Get the order
+	 * @param orderId
+	 * @return the order or null
+	 */
+	public synchronized BitfinexOrderBookEntry getOrder(final long orderId) {
+		final int slot = orderIndex.get(orderId);
+
+		if(slot == LongIntHashMap.NO_VALUE) {
+			return null;
+		}
+
+		return new BitfinexOrderBookEntry(orderId, levelPrices[orderLevels[slot]], orderAmounts[slot], scale, null);
+	}
+
+	/**
+	 * Get the orders of a price level in queue (FIFO) order
+	 * @param price
+	 * @param bid - bid or ask level
+	 * @return
+	 */
+	public synchronized List<BitfinexOrderBookEntry> getOrdersAtPrice(final long price, final boolean bid) {
+		final int level = (bid ? bidLevelIndex : askLevelIndex).get(price);
+		final List<BitfinexOrderBookEntry> result = new ArrayList<>();
+
+		if(level == LongIntHashMap.NO_VALUE) {
+			return result;
+		}
+
+		for(int slot = levelHeads[level]; slot != NONE; slot = orderNext[slot]) {
+			result.add(new BitfinexOrderBookEntry(orderIds[slot], price, orderAmounts[slot], scale, null));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the amount that is queued in front of the order at the same price level
+	 * (the amount is positive for bids and negative for asks)
+	 * 
+	 * @param orderId
+	 * @return the amount or 0 if the order is unknown
+	 */
+	public synchronized long getAmountAhead(final long orderId) {
+		final int slot = orderIndex.get(orderId);
+
+		if(slot == LongIntHashMap.NO_VALUE) {
+			return 0;
+		}
+
+		long amount = 0;
+		for(int pos = orderPrev[slot]; pos != NONE; pos = orderPrev[pos]) {
+			amount += orderAmounts[pos];
+		}
+
+		return amount;
+	}
+
+	/**
+	 * Get the queue position of the order at its price level (0 = first)
+	 * 
+	 * @param orderId
+	 * @return the position or -1 if the order is unknown
+	 */
+	public synchronized int getQueuePosition(final long orderId) {
+		final int slot = orderIndex.get(orderId);
+
+		if(slot == LongIntHashMap.NO_VALUE) {
+			return -1;
+		}
+
+		int position = 0;
+		for(int pos = orderPrev[slot]; pos != NONE; pos = orderPrev[pos]) {
+			position++;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Calculate the bitfinex checksum of the book (top 25 orders per side ordered 
+	 * by price and queue position, order id and amount, bid and ask orders interleaved)
+	 * 
+	 * @return
+	 */
+	public synchronized int getChecksum() {
+		final int bidOrders = collectTopOrders(true, checksumBids);
+		final int askOrders = collectTopOrders(false, checksumAsks);
+
+		checksum.reset();
+
+		for(int i = 0; i < OrderBookChecksum.CHECKSUM_LEVELS; i++) {
+			if(i < bidOrders) {
+				checksum.addLong(orderIds[checksumBids[i]]);
+				checksum.addFixedPoint(orderAmounts[checksumBids[i]], scale);
+			}
+
+			if(i < askOrders) {
+				checksum.addLong(orderIds[checksumAsks[i]]);
+				checksum.addFixedPoint(orderAmounts[checksumAsks[i]], scale);
+			}
+		}
+
+		return checksum.getChecksum();
+	}
+
+	/**
+	 * Get the aggregated bid levels (highest price first)
+	 * @param levels - the max number of levels
+	 * @return the levels, the count of the entry is the number of orders
+	 */
+	public synchronized List<BitfinexOrderBookEntry> getAggregatedBids(final int levels) {
+		return aggregate(true, levels);
+	}
+
+	/**
+	 * Get the aggregated ask levels (lowest price first)
+	 * @param levels - the max number of levels
+	 * @return the levels, the count of the entry is the number of orders
+	 */
+	public synchronized List<BitfinexOrderBookEntry> getAggregatedAsks(final int levels) {
+		return aggregate(false, levels);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "BitfinexRawOrderBook [scale=" + scale + ", orders=" + orderIndex.size() 
+			+ ", bids=" + getAggregatedBids(5) + ", asks=" + getAggregatedAsks(5) + "]";
+	}
+
+	/**
+	 * Build the sorted level view of one side
+	 * @param bid
+	 * @param levels
+	 * @return
+	 */
+	private List<BitfinexOrderBookEntry> aggregate(final boolean bid, final int levels) {
+		final SortedLevels side = bid ? sortedBids : sortedAsks;
+		final int resultSize = Math.min(levels, side.size);
+		final List<BitfinexOrderBookEntry> result = new ArrayList<>(resultSize);
+
+		for(int i = 0; i < resultSize; i++) {
+			final int level = side.levels[i];
+			result.add(new BitfinexOrderBookEntry(null, levelPrices[level], levelAmounts[level], 
+					scale, levelOrderCounts[level]));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Collect the order slots of the best orders of one side
+	 * @param bid
+	 * @param target
+	 * @return the number of collected orders
+	 */
+	private int collectTopOrders(final boolean bid, final int[] target) {
+		final SortedLevels side = bid ? sortedBids : sortedAsks;
+		int collected = 0;
+
+		for(int i = 0; i < side.size && collected < target.length; i++) {
+			for(int slot = levelHeads[side.levels[i]]; slot != NONE && collected < target.length; slot = orderNext[slot]) {
+				target[collected++] = slot;
+			}
+		}
+
+		return collected;
+	}
+
+	/**
+	 * Allocate a order slot
+	 */
+	private int allocateOrder(final long orderId, final long amount, final int level) {
+		final int slot;
+
+		if(freeOrderSlot != NONE) {
+			slot = freeOrderSlot;
+			freeOrderSlot = orderNext[slot];
+		} else {
+			if(orderSlotsUsed == orderIds.length) {
+				final int newCapacity = orderIds.length * 2;
+				orderIds = Arrays.copyOf(orderIds, newCapacity);
+				orderAmounts = Arrays.copyOf(orderAmounts, newCapacity);
+				orderLevels = Arrays.copyOf(orderLevels, newCapacity);
+				orderPrev = Arrays.copyOf(orderPrev, newCapacity);
+				orderNext = Arrays.copyOf(orderNext, newCapacity);
+			}
+			slot = orderSlotsUsed++;
+		}
+
+		orderIds[slot] = orderId;
+		orderAmounts[slot] = amount;
+		orderLevels[slot] = level;
+		return slot;
+	}
+
+	/**
+	 * Free a order slot
+	 */
+	private void freeOrder(final int slot) {
+		orderNext[slot] = freeOrderSlot;
+		freeOrderSlot = slot;
+	}
+
+	/**
+	 * Allocate a level slot
+	 */
+	private int allocateLevel(final long price) {
+		final int level;
+
+		if(freeLevelSlot != NONE) {
+			level = freeLevelSlot;
+			freeLevelSlot = levelHeads[level];
+		} else {
+			if(levelSlotsUsed == levelPrices.length) {
+				final int newCapacity = levelPrices.length * 2;
+				levelPrices = Arrays.copyOf(levelPrices, newCapacity);
+				levelAmounts = Arrays.copyOf(levelAmounts, newCapacity);
+				levelOrderCounts = Arrays.copyOf(levelOrderCounts, newCapacity);
+				levelHeads = Arrays.copyOf(levelHeads, newCapacity);
+				levelTails = Arrays.copyOf(levelTails, newCapacity);
+			}
+			level = levelSlotsUsed++;
+		}
+
+		levelPrices[level] = price;
+		levelAmounts[level] = 0;
+		levelOrderCounts[level] = 0;
+		levelHeads[level] = NONE;
+		levelTails[level] = NONE;
+		return level;
+	}
+
+	/**
+	 * Free a level slot
+	 */
+	private void freeLevel(final int level) {
+		levelOrderCounts[level] = 0;
+		levelHeads[level] = freeLevelSlot;
+		freeLevelSlot = level;
+	}
+
+	/**
+	 * The level slots of one side, sorted by the price of the level
+	 */
+	private final class SortedLevels {
+
+		/**
+		 * Highest price first?
+		 */
+		private final boolean descending;
+
+		/**
+		 * The level slots
+		 */
+		private int[] levels = new int[INITIAL_CAPACITY];
+
+		/**
+		 * The number of levels
+		 */
+		private int size;
+
+		private SortedLevels(final boolean descending) {
+			this.descending = descending;
+		}
+
+		/**
+		 * Find the position of the price
+		 * @param price
+		 * @return the position or (-(insertion point) - 1)
+		 */
+		private int find(final long price) {
+			int low = 0;
+			int high = size - 1;
+
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final long midPrice = levelPrices[levels[mid]];
+
+				if(midPrice == price) {
+					return mid;
+				}
+
+				if(descending ? midPrice > price : midPrice < price) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+
+			return -(low + 1);
+		}
+
+		/**
+		 * Insert a new level (the price of the level is not contained)
+		 * @param level
+		 */
+		private void insert(final int level) {
+			final int insertPos = -(find(levelPrices[level]) + 1);
+
+			if(size == levels.length) {
+				levels = Arrays.copyOf(levels, levels.length * 2);
+			}
+
+			System.arraycopy(levels, insertPos, levels, insertPos + 1, size - insertPos);
+			levels[insertPos] = level;
+			size++;
+		}
+
+		/**
+		 * Remove the level of the price
+		 * @param price
+		 */
+		private void remove(final long price) {
+			final int pos = find(price);
+
+			if(pos < 0) {
+				return;
+			}
+
+			System.arraycopy(levels, pos + 1, levels, pos, size - pos - 1);
+			size--;
+		}
+	}
+}
@@ -31,6 +31,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
 import com.google.common.base.Charsets;
 
 public class BitfinexCurrencyPair implements BitfinexInstrument {
@@ -212,6 +213,11 @@ public class BitfinexCurrencyPair implements BitfinexInstrument {
 	 */
 	private double minimumOrderSize;
 
+	/**
+	 * The scale of the fixed point prices and amounts
+	 */
+	private volatile int scale;
+
 	private BitfinexCurrencyPair(final String pair1, final String pair2, 
 			final BitfinexCurrencyType currencyType, final double minimumOrderSize) {
 		
@@ -219,6 +225,7 @@ public class BitfinexCurrencyPair implements BitfinexInstrument {
 		this.currency2 = pair2;
 		this.currencyType = currencyType;
 		this.minimumOrderSize = minimumOrderSize;
+		this.scale = FixedPoint.DEFAULT_SCALE;
 	}
 
 	/**
@@ -245,6 +252,27 @@ public class BitfinexCurrencyPair implements BitfinexInstrument {
 		this.minimumOrderSize = minimumOrderSize;
 	}
 
+	/**
+	 * Get the scale of the fixed point prices and amounts
+	 * (e.g., a scale of 8 represents 7254.5 as 725450000000)
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Set the scale of the fixed point prices and amounts
+	 * @param scale
+	 */
+	public void setScale(final int scale) {
+		if(scale < 0 || scale > FixedPoint.MAX_SCALE) {
+			throw new IllegalArgumentException("Unsupported scale: " + scale);
+		}
+
+		this.scale = scale;
+	}
+
 	/**
 	 * Construct from string
 	 * @param symbolString
@@ -23,9 +23,14 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
 
 public class BiConsumerCallbackManager<S, T> extends AbstractManager {
@@ -34,12 +39,41 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 * The callbacks
 	 */
 	private final Map<S, List<BiConsumer<S, T>>> callbacks;
+
+	/**
+	 * The ordered dispatcher (null = executor service is used)
+	 */
+	private final OrderedEventDispatcher eventDispatcher;
+
+	/**
+	 * Deliver one element to the callbacks of the symbol (reused for every dispatched event)
+	 */
+	private final BiConsumer<S, T> elementDelivery = this::deliverEvent;
+
+	/**
+	 * Deliver a collection to the callbacks of the symbol (reused for every dispatched event)
+	 */
+	private final BiConsumer<S, Collection<T>> collectionDelivery = this::deliverEventsCollection;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BiConsumerCallbackManager.class);
 	
 	public BiConsumerCallbackManager(final ExecutorService executorService, 
 			final BitfinexWebsocketClient client) {
 		
-		super(client, executorService);
+		this(executorService, client, "callbacks");
+	}
+	
+	public BiConsumerCallbackManager(final ExecutorService executorService, 
+			final BitfinexWebsocketClient client, final String name) {
+		
+		super(client, CallbackQueuePolicy.wrapExecutorService(client, executorService, name));
 		this.callbacks = new ConcurrentHashMap<>();
+		
+		final BitfinexWebsocketConfiguration configuration = client.getConfiguration();
+		this.eventDispatcher = (configuration == null) ? null : configuration.getEventDispatcher();
 	}
 	
 	/**
@@ -49,9 +83,27 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 * @throws BitfinexClientException
 	 */
 	public void registerCallback(final S symbol, final BiConsumer<S, T> callback) throws BitfinexClientException {
+		registerCallback(symbol, callback, false);
+	}
+	
+	/**
+	 * Register a new callback
+	 * @param symbol
+	 * @param callback
+	 * @param conflate - deliver only the latest event while the callback is busy (for slow consumers)
+	 * @throws BitfinexClientException
+	 */
+	public void registerCallback(final S symbol, final BiConsumer<S, T> callback, final boolean conflate) 
+			throws BitfinexClientException {
+		
 		final List<BiConsumer<S, T>> callbackList 
-			= callbacks.computeIfAbsent(symbol, (k) -> new CopyOnWriteArrayList<>());	
-		callbackList.add(callback);
+			= callbacks.computeIfAbsent(symbol, (k) -> new CopyOnWriteArrayList<>());
+		
+		if(conflate) {
+			callbackList.add(new ConflatingCallback<>(symbol, callback, executorService));
+		} else {
+			callbackList.add(callback);
+		}
 	}
 	
 	/**
@@ -61,6 +113,7 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 * @return
 	 * @throws BitfinexClientException
 	 */
+	@SuppressWarnings("unchecked")
 	public boolean removeCallback(final S symbol, final BiConsumer<S, T> callback) throws BitfinexClientException {
 		
 		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
@@ -69,7 +122,14 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 			throw new BitfinexClientException("Unknown ticker string: " + symbol);
 		}			
 		
-		return callbackList.remove(callback);	
+		for(final BiConsumer<S, T> registeredCallback : callbackList) {
+			if(registeredCallback instanceof ConflatingCallback 
+					&& ((ConflatingCallback<S, T>) registeredCallback).isWrapping(callback)) {
+				return callbackList.remove(registeredCallback);
+			}
+		}
+		
+		return callbackList.remove(callback);
 	}
 	
 	/**
@@ -79,13 +139,44 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 */
 	public void handleEventsCollection(final S symbol, final Collection<T> elements) {
 		
-		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
+		if(! hasCallbacks(symbol)) {
+			return;
+		}
 		
-		if(callbackList == null) {
+		// Keep the order with the single events of the symbol
+		if(eventDispatcher != null) {
+			dispatch(symbol, elements, collectionDelivery);
 			return;
 		}
-				
-		if(callbackList.isEmpty()) {
+		
+		deliverEventsCollection(symbol, elements);
+	}
+	
+	/**
+	 * Dispatch an event to the lane of the symbol
+	 * @param symbol
+	 * @param event
+	 * @param delivery
+	 */
+	private <E> void dispatch(final S symbol, final E event, final BiConsumer<S, E> delivery) {
+		try {
+			eventDispatcher.dispatch(symbol, event, delivery);
+		} catch (RejectedExecutionException e) {
+			// The dispatcher is closed
+			logger.debug("Callback for {} rejected", symbol, e);
+		}
+	}
+	
+	/**
+	 * Deliver the elements to the callbacks of the symbol
+	 * @param symbol
+	 * @param elements
+	 */
+	private void deliverEventsCollection(final S symbol, final Collection<T> elements) {
+		
+		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
+		
+		if(callbackList == null) {
 			return;
 		}
 		
@@ -104,19 +195,96 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 */
 	public void handleEvent(final S symbol, final T element) {
 		
+		if(! hasCallbacks(symbol)) {
+			return;
+		}
+		
+		// One event per element, the callbacks are called on the lane of the symbol
+		if(eventDispatcher != null) {
+			dispatch(symbol, element, elementDelivery);
+			return;
+		}
+		
+		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
+
+		callbackList.forEach((c) -> {
+			// Conflating callbacks queue at most one task
+			if(c instanceof ConflatingCallback) {
+				c.accept(symbol, element);
+				return;
+			}
+			
+			try {
+				executorService.execute(new CallbackTask<>(symbol, c, element));
+			} catch (RejectedExecutionException e) {
+				// Counted by the bounded callback queue
+				logger.debug("Callback for {} rejected", symbol, e);
+			}
+		});
+	}
+	
+	/**
+	 * Deliver the element to the callbacks of the symbol
+	 * @param symbol
+	 * @param element
+	 */
+	private void deliverEvent(final S symbol, final T element) {
+		
 		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
 		
 		if(callbackList == null) {
 			return;
 		}
+		
+		for(final BiConsumer<S, T> callback : callbackList) {
+			callback.accept(symbol, element);
+		}
+	}
+	
+	/**
+	 * The delivery of one event to one callback. A queued task for the same 
+	 * symbol and callback can be replaced (see OverflowPolicy.CONFLATE)
+	 */
+	private static class CallbackTask<S, T> implements BoundedCallbackExecutor.ConflatableTask {
+		
+		private final S symbol;
+		private final BiConsumer<S, T> callback;
+		private final T element;
+		
+		private CallbackTask(final S symbol, final BiConsumer<S, T> callback, final T element) {
+			this.symbol = symbol;
+			this.callback = callback;
+			this.element = element;
+		}
 
-		if(callbackList.isEmpty()) {
-			return;
+		@Override
+		public void run() {
+			// Keep the exception away from the websocket thread and the other callbacks
+			try {
+				callback.accept(symbol, element);
+			} catch (Throwable e) {
+				logger.error("Got exception while executing callback for {}", symbol, e);
+			}
 		}
 
-		callbackList.forEach((c) -> {
-			final Runnable runnable = () -> c.accept(symbol, element);
-			executorService.submit(runnable);
-		});
+		@Override
+		public boolean conflatesWith(final Runnable other) {
+			if(! (other instanceof CallbackTask)) {
+				return false;
+			}
+			
+			final CallbackTask<?, ?> otherTask = (CallbackTask<?, ?>) other;
+			return otherTask.callback == callback && otherTask.symbol.equals(symbol);
+		}
+	}
+	
+	/**
+	 * Are callbacks registered for the symbol
+	 * @param symbol
+	 * @return
+	 */
+	private boolean hasCallbacks(final S symbol) {
+		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
+		return callbackList != null && ! callbackList.isEmpty();
 	}
 }
@@ -0,0 +1,470 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded callback queue in front of an executor. The tasks are executed 
+ * in submission order by one drain task of the executor at a time. If the 
+ * queue is full, the overflow policy decides what happens.
+ */
+public class BoundedCallbackExecutor extends AbstractExecutorService {
+
+	public enum OverflowPolicy {
+		/**
+		 * Block the submitting (receive) thread until the queue has space
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the oldest queued task
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Replace a queued task for the same symbol and callback (see 
+		 * {@link ConflatableTask}), otherwise drop the oldest task. Tasks 
+		 * without a key (e.g., order updates) block.
+		 */
+		CONFLATE,
+
+		/**
+		 * Reject the new task (RejectedExecutionException, counted in getRejectedTasks)
+		 */
+		FAIL
+	}
+
+	/**
+	 * A task that can replace a queued task
+	 */
+	public interface ConflatableTask extends Runnable {
+
+		/**
+		 * Can this task replace the other (queued) task
+		 * @param other
+		 * @return
+		 */
+		boolean conflatesWith(final Runnable other);
+	}
+
+	/**
+	 * The max number of tasks per drain run, afterwards the drain task is 
+	 * resubmitted so other queues can use the threads of the executor
+	 */
+	private final static int DRAIN_BATCH_SIZE = 256;
+
+	/**
+	 * The name of the queue
+	 */
+	private final String name;
+
+	/**
+	 * The executor for the drain tasks
+	 */
+	private final Executor delegate;
+
+	/**
+	 * The capacity
+	 */
+	private final int capacity;
+
+	/**
+	 * The overflow policy
+	 */
+	private final OverflowPolicy overflowPolicy;
+
+	/**
+	 * The queued tasks (guarded by lock)
+	 */
+	private final ArrayDeque<Runnable> queue;
+
+	/**
+	 * The lock
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Signaled when the queue has space or the queue is terminated
+	 */
+	private final Condition stateChanged = lock.newCondition();
+
+	/**
+	 * Is a drain task scheduled or running (guarded by lock)
+	 */
+	private boolean draining;
+
+	/**
+	 * Is the executor shut down (guarded by lock)
+	 */
+	private boolean shutdown;
+
+	/**
+	 * The thread that runs the drain task
+	 */
+	private volatile Thread drainThread;
+
+	/**
+	 * The max queue depth (guarded by lock)
+	 */
+	private int maxQueueDepth;
+
+	/**
+	 * The metrics
+	 */
+	private final AtomicLong executedTasks = new AtomicLong();
+	private final AtomicLong droppedTasks = new AtomicLong();
+	private final AtomicLong rejectedTasks = new AtomicLong();
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BoundedCallbackExecutor.class);
+
+	public BoundedCallbackExecutor(final String name, final Executor delegate, final int capacity, 
+			final OverflowPolicy overflowPolicy) {
+
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		this.name = name;
+		this.delegate = delegate;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+	}
+
+	@Override
+	public void execute(final Runnable task) {
+		boolean startDrain = false;
+
+		lock.lock();
+
+		try {
+			if(shutdown) {
+				throw new RejectedExecutionException("Callback queue " + name + " is shut down");
+			}
+
+			if(queue.size() >= capacity) {
+				handleOverflow(task);
+			}
+
+			queue.add(task);
+			maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+
+			if(! draining) {
+				draining = true;
+				startDrain = true;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if(startDrain) {
+			scheduleDrain();
+		}
+	}
+
+	/**
+	 * Make space in the full queue (lock is held)
+	 * @param task
+	 */
+	private void handleOverflow(final Runnable task) {
+		switch(overflowPolicy) {
+		case DROP_OLDEST:
+			queue.poll();
+			droppedTasks.incrementAndGet();
+			return;
+		case CONFLATE:
+			if(task instanceof ConflatableTask) {
+				final ConflatableTask conflatableTask = (ConflatableTask) task;
+				final Iterator<Runnable> iterator = queue.descendingIterator();
+				while(iterator.hasNext()) {
+					if(conflatableTask.conflatesWith(iterator.next())) {
+						iterator.remove();
+						droppedTasks.incrementAndGet();
+						return;
+					}
+				}
+
+				queue.poll();
+				droppedTasks.incrementAndGet();
+				return;
+			}
+			awaitSpace();
+			return;
+		case FAIL:
+			rejectedTasks.incrementAndGet();
+			throw new RejectedExecutionException("Callback queue " + name + " is full");
+		case BLOCK:
+		default:
+			awaitSpace();
+		}
+	}
+
+	/**
+	 * Wait until the queue has space (lock is held)
+	 */
+	private void awaitSpace() {
+		// A callback of this queue submits a task, waiting would dead lock. The 
+		// task is queued beyond the capacity, so it still runs after the older tasks.
+		if(Thread.currentThread() == drainThread) {
+			return;
+		}
+
+		try {
+			while(queue.size() >= capacity && ! shutdown) {
+				stateChanged.await();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			rejectedTasks.incrementAndGet();
+			throw new RejectedExecutionException("Interrupted while waiting for callback queue " + name);
+		}
+
+		if(shutdown) {
+			throw new RejectedExecutionException("Callback queue " + name + " is shut down");
+		}
+	}
+
+	/**
+	 * Submit the drain task to the executor
+	 */
+	private void scheduleDrain() {
+		try {
+			delegate.execute(this::drain);
+		} catch (RejectedExecutionException e) {
+			lock.lock();
+			try {
+				draining = false;
+				stateChanged.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Execute the queued tasks
+	 */
+	private void drain() {
+		final Thread previousDrainThread = drainThread;
+		drainThread = Thread.currentThread();
+
+		try {
+			for(int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+				final Runnable task;
+
+				lock.lock();
+				try {
+					task = queue.poll();
+
+					if(task == null) {
+						draining = false;
+						stateChanged.signalAll();
+						return;
+					}
+
+					stateChanged.signal();
+				} finally {
+					lock.unlock();
+				}
+
+				runTask(task);
+			}
+		} finally {
+			drainThread = previousDrainThread;
+		}
+
+		// Give other queues a chance
+		scheduleDrain();
+	}
+
+	/**
+	 * Run a task
+	 * @param task
+	 */
+	private void runTask(final Runnable task) {
+		try {
+			task.run();
+		} catch (Throwable e) {
+			logger.error("Got exception while executing callback of {}", name, e);
+		} finally {
+			executedTasks.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The name of the queue
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The capacity of the queue
+	 * @return
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * The overflow policy
+	 * @return
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * The number of queued tasks
+	 * @return
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return queue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The max number of queued tasks
+	 * @return
+	 */
+	public int getMaxQueueDepth() {
+		lock.lock();
+		try {
+			return maxQueueDepth;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The number of executed tasks
+	 * @return
+	 */
+	public long getExecutedTasks() {
+		return executedTasks.get();
+	}
+
+	/**
+	 * The number of dropped or replaced tasks
+	 * @return
+	 */
+	public long getDroppedTasks() {
+		return droppedTasks.get();
+	}
+
+	/**
+	 * The number of rejected tasks
+	 * @return
+	 */
+	public long getRejectedTasks() {
+		return rejectedTasks.get();
+	}
+
+	@Override
+	public void shutdown() {
+		lock.lock();
+		try {
+			shutdown = true;
+			stateChanged.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		lock.lock();
+		try {
+			shutdown = true;
+			final List<Runnable> pendingTasks = new ArrayList<>(queue);
+			queue.clear();
+			stateChanged.signalAll();
+			return pendingTasks;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isShutdown() {
+		lock.lock();
+		try {
+			return shutdown;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isTerminated() {
+		lock.lock();
+		try {
+			return shutdown && ! draining && queue.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+
+		lock.lock();
+		try {
+			while(! (shutdown && ! draining && queue.isEmpty())) {
+				if(nanos <= 0) {
+					return false;
+				}
+				nanos = stateChanged.awaitNanos(nanos);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedCallbackExecutor [name=" + name + ", capacity=" + capacity + ", overflowPolicy=" 
+				+ overflowPolicy + ", queueDepth=" + getQueueDepth() + ", droppedTasks=" + droppedTasks 
+				+ ", rejectedTasks=" + rejectedTasks + "]";
+	}
+}
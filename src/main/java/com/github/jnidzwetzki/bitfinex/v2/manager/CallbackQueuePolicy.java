@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallbackExecutor.OverflowPolicy;
+
+/**
+ * Bounded callback queues for the managers (see 
+ * {@link BitfinexWebsocketConfiguration#setCallbackQueuePolicy}). Each callback 
+ * manager gets its own queue in front of the executor service; the queues 
+ * can be inspected with getQueues (e.g., queue depth gauges).
+ */
+public class CallbackQueuePolicy {
+
+	/**
+	 * The capacity of a queue
+	 */
+	private final int capacity;
+
+	/**
+	 * The overflow policy
+	 */
+	private final OverflowPolicy overflowPolicy;
+
+	/**
+	 * The created queues
+	 */
+	private final List<BoundedCallbackExecutor> queues;
+
+	public CallbackQueuePolicy(final int capacity, final OverflowPolicy overflowPolicy) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		this.queues = new CopyOnWriteArrayList<>();
+	}
+
+	/**
+	 * Create a new queue
+	 * @param name
+	 * @param executorService
+	 * @return
+	 */
+	public BoundedCallbackExecutor createQueue(final String name, final ExecutorService executorService) {
+		final BoundedCallbackExecutor queue = new BoundedCallbackExecutor(name, executorService, 
+				capacity, overflowPolicy);
+
+		queues.add(queue);
+		return queue;
+	}
+
+	/**
+	 * The created queues
+	 * @return
+	 */
+	public List<BoundedCallbackExecutor> getQueues() {
+		return Collections.unmodifiableList(queues);
+	}
+
+	/**
+	 * The capacity of a queue
+	 * @return
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * The overflow policy
+	 * @return
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Put a bounded queue in front of the executor service, if a policy is configured
+	 * @param client
+	 * @param executorService
+	 * @param name
+	 * @return
+	 */
+	static ExecutorService wrapExecutorService(final BitfinexWebsocketClient client, 
+			final ExecutorService executorService, final String name) {
+
+		final BitfinexWebsocketConfiguration configuration = client.getConfiguration();
+
+		if(configuration == null || configuration.getCallbackQueuePolicy() == null) {
+			return executorService;
+		}
+
+		return configuration.getCallbackQueuePolicy().createQueue(name, executorService);
+	}
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandle;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexExecutedTrade;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
+/**
+ * Builds OHLCV candles of a currency pair for several timeframes from 
+ * the executed trades. The current candle of each timeframe is updated 
+ * incrementally (fixed point values) and emitted after each batch of 
+ * trades, like the updates of the bitfinex candles channel. 
+ * 
+ * Trades that belong to an already closed candle are ignored. Trades are 
+ * aggregated only once: a trade id that is not above the highest aggregated 
+ * id of a previous batch (e.g., the snapshot after a resubscription) is skipped.
+ */
+public class CandleAggregator {
+
+	/**
+	 * The candles of the timeframes
+	 */
+	private final List<Bar> bars;
+
+	/**
+	 * The highest aggregated trade id
+	 */
+	private long lastTradeId = Long.MIN_VALUE;
+
+	/**
+	 * The candle consumer
+	 */
+	private final BiConsumer<BitfinexCandlestickSymbol, BitfinexCandle> consumer;
+
+	public CandleAggregator(final BiConsumer<BitfinexCandlestickSymbol, BitfinexCandle> consumer) {
+		this.bars = new ArrayList<>();
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Add a timeframe
+	 * @param symbol
+	 * @return false if the timeframe is already aggregated
+	 */
+	public synchronized boolean addTimeframe(final BitfinexCandlestickSymbol symbol) {
+		if(bars.stream().anyMatch(b -> b.symbol.equals(symbol))) {
+			return false;
+		}
+
+		return bars.add(new Bar(symbol));
+	}
+
+	/**
+	 * Remove a timeframe
+	 * @param symbol
+	 * @return
+	 */
+	public synchronized boolean removeTimeframe(final BitfinexCandlestickSymbol symbol) {
+		return bars.removeIf(b -> b.symbol.equals(symbol));
+	}
+
+	/**
+	 * Are timeframes aggregated
+	 * @return
+	 */
+	public synchronized boolean isEmpty() {
+		return bars.isEmpty();
+	}
+
+	/**
+	 * Get the current candle of the timeframe
+	 * @param symbol
+	 * @return the candle or null
+	 */
+	public synchronized BitfinexCandle getCurrentCandle(final BitfinexCandlestickSymbol symbol) {
+		return bars.stream()
+				.filter(b -> b.symbol.equals(symbol) && b.hasCandle())
+				.map(Bar::toCandle)
+				.findFirst()
+				.orElse(null);
+	}
+
+	/**
+	 * Handle a batch of executed trades (e.g., a snapshot)
+	 * @param trades
+	 */
+	public synchronized void handleTrades(final Collection<BitfinexExecutedTrade> trades) {
+		// Snapshots are delivered newest first, so the ids are compared with the previous batches
+		final long lastAggregatedTradeId = lastTradeId;
+		
+		for(final BitfinexExecutedTrade trade : trades) {
+			// Funding trades have no price
+			if(trade.getTimestamp() == null || (! trade.isFixedPoint() && trade.getPrice() == null)) {
+				continue;
+			}
+
+			final Long tradeId = trade.getTradeId();
+
+			if(tradeId != null) {
+				if(tradeId <= lastAggregatedTradeId) {
+					continue;
+				}
+				lastTradeId = Math.max(lastTradeId, tradeId);
+			}
+
+			final long timestamp = trade.getTimestamp();
+			final int scale = trade.getScale();
+			final long price = trade.getScaledPrice();
+			final long amount = Math.abs(trade.getScaledAmount());
+
+			for(final Bar bar : bars) {
+				bar.update(timestamp, price, amount, scale);
+			}
+		}
+
+		for(final Bar bar : bars) {
+			bar.emitIfChanged();
+		}
+	}
+
+	private class Bar {
+
+		/**
+		 * The symbol of the timeframe
+		 */
+		private final BitfinexCandlestickSymbol symbol;
+
+		/**
+		 * The start of the current candle
+		 */
+		private long start = Long.MIN_VALUE;
+
+		/**
+		 * The timestamps of the open and close trade
+		 */
+		private long openTimestamp;
+		private long closeTimestamp;
+
+		/**
+		 * The fixed point values of the candle
+		 */
+		private long open;
+		private long high;
+		private long low;
+		private long close;
+		private long volume;
+		private int scale;
+
+		/**
+		 * The volume that exceeded the long range of the fixed point 
+		 * volume (e.g., long candles of low priced pairs), null if none
+		 */
+		private BigDecimal volumeOverflow;
+
+		/**
+		 * Was the candle changed since the last emit
+		 */
+		private boolean changed;
+
+		private Bar(final BitfinexCandlestickSymbol symbol) {
+			this.symbol = symbol;
+		}
+
+		/**
+		 * Add a trade to the candle
+		 * @param timestamp
+		 * @param price
+		 * @param amount
+		 * @param tradeScale
+		 */
+		private void update(final long timestamp, final long price, final long amount, final int tradeScale) {
+			final long interval = symbol.getIntervalMillis();
+			final long tradeStart = timestamp - Math.floorMod(timestamp, interval);
+
+			if(tradeStart < start) {
+				return;
+			}
+
+			if(tradeStart > start) {
+				emitIfChanged();
+				start = tradeStart;
+				openTimestamp = timestamp;
+				closeTimestamp = timestamp;
+				scale = tradeScale;
+				open = high = low = close = price;
+				volume = amount;
+				volumeOverflow = null;
+				changed = true;
+				return;
+			}
+
+			final long scaledPrice = FixedPoint.rescale(price, tradeScale, scale, RoundingMode.HALF_UP);
+			high = Math.max(high, scaledPrice);
+			low = Math.min(low, scaledPrice);
+			addVolume(amount, tradeScale);
+
+			// Snapshots are delivered newest first
+			if(timestamp < openTimestamp) {
+				open = scaledPrice;
+				openTimestamp = timestamp;
+			}
+
+			if(timestamp >= closeTimestamp) {
+				close = scaledPrice;
+				closeTimestamp = timestamp;
+			}
+
+			changed = true;
+		}
+
+		/**
+		 * Add the amount of a trade to the volume, the volume is moved into the 
+		 * big decimal overflow when it exceeds the long range
+		 * @param amount
+		 * @param tradeScale
+		 */
+		private void addVolume(final long amount, final int tradeScale) {
+			try {
+				volume = Math.addExact(volume, FixedPoint.rescale(amount, tradeScale, scale, RoundingMode.HALF_UP));
+			} catch (ArithmeticException e) {
+				volumeOverflow = getVolume().add(FixedPoint.toBigDecimal(amount, tradeScale));
+				volume = 0;
+			}
+		}
+
+		/**
+		 * Get the volume of the candle
+		 * @return
+		 */
+		private BigDecimal getVolume() {
+			final BigDecimal fixedPointVolume = FixedPoint.toBigDecimal(volume, scale);
+			return volumeOverflow == null ? fixedPointVolume : volumeOverflow.add(fixedPointVolume);
+		}
+
+		/**
+		 * Has the bar a candle
+		 * @return
+		 */
+		private boolean hasCandle() {
+			return start != Long.MIN_VALUE;
+		}
+
+		/**
+		 * Emit the candle if it was changed
+		 */
+		private void emitIfChanged() {
+			if(! changed) {
+				return;
+			}
+
+			changed = false;
+			consumer.accept(symbol, toCandle());
+		}
+
+		/**
+		 * Convert the bar into a candle
+		 * @return
+		 */
+		private BitfinexCandle toCandle() {
+			return new BitfinexCandle(start, FixedPoint.toBigDecimal(open, scale), 
+					FixedPoint.toBigDecimal(close, scale), FixedPoint.toBigDecimal(high, scale), 
+					FixedPoint.toBigDecimal(low, scale), getVolume());
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A callback for slow consumers. While the consumer is busy, only the latest
+ * event is kept and delivered when the consumer is ready again. At most one 
+ * task per callback is queued in the executor, so a slow consumer can not 
+ * build up a backlog.
+ *
+ * @param <S>
+ * @param <T>
+ */
+class ConflatingCallback<S, T> implements BiConsumer<S, T> {
+
+	/**
+	 * The symbol of the callback
+	 */
+	private final S symbol;
+
+	/**
+	 * The consumer
+	 */
+	private final BiConsumer<S, T> delegate;
+
+	/**
+	 * The executor service
+	 */
+	private final ExecutorService executorService;
+
+	/**
+	 * The latest not delivered event
+	 */
+	private final AtomicReference<T> latest = new AtomicReference<>();
+
+	/**
+	 * Is a delivery task queued or running
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ConflatingCallback.class);
+
+	ConflatingCallback(final S symbol, final BiConsumer<S, T> delegate, final ExecutorService executorService) {
+		this.symbol = symbol;
+		this.delegate = delegate;
+		this.executorService = executorService;
+	}
+
+	/**
+	 * Replace the pending event and schedule the delivery (does not block)
+	 */
+	@Override
+	public void accept(final S eventSymbol, final T event) {
+		latest.set(event);
+		schedule();
+	}
+
+	/**
+	 * Is the given callback the consumer of this callback
+	 * @param callback
+	 * @return
+	 */
+	boolean isWrapping(final BiConsumer<S, T> callback) {
+		return delegate == callback;
+	}
+
+	/**
+	 * Schedule the delivery if no delivery is pending
+	 */
+	private void schedule() {
+		if(! scheduled.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			executorService.execute(this::deliver);
+		} catch (RejectedExecutionException e) {
+			scheduled.set(false);
+			logger.error("Unable to deliver event for {}", symbol, e);
+		}
+	}
+
+	/**
+	 * Deliver the latest events until no event is pending
+	 */
+	private void deliver() {
+		T event;
+		while((event = latest.getAndSet(null)) != null) {
+			try {
+				delegate.accept(symbol, event);
+			} catch (Throwable e) {
+				logger.error("Got exception while executing callback for {}", symbol, e);
+			}
+		}
+
+		scheduled.set(false);
+
+		// An event arrived after the last check
+		if(latest.get() != null) {
+			schedule();
+		}
+	}
+}
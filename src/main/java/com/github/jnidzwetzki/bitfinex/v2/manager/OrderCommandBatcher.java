@@ -0,0 +1,190 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexOrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderMultiCommand;
+
+/**
+ * Coalesces the order commands issued within a time window (or up to 
+ * the 15 command limit) into ox_multi frames. The frames are sent in
+ * the order of the submitted commands.
+ */
+public class OrderCommandBatcher {
+
+	/**
+	 * The sender of the frames, returns the future of the sent frame
+	 */
+	private final Function<BitfinexOrderCommand, CompletableFuture<Void>> sender;
+
+	/**
+	 * The scheduler for the window timer
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * The batch window in micro seconds
+	 */
+	private final long windowMicros;
+
+	/**
+	 * The commands of the current batch
+	 */
+	private List<BitfinexOrderCommand> commands;
+
+	/**
+	 * The send futures of the current batch
+	 */
+	private List<CompletableFuture<Void>> futures;
+
+	/**
+	 * The number of sent frames
+	 */
+	private final AtomicLong sentFrames;
+
+	/**
+	 * The number of sent commands
+	 */
+	private final AtomicLong sentCommands;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderCommandBatcher.class);
+
+	public OrderCommandBatcher(final Function<BitfinexOrderCommand, CompletableFuture<Void>> sender, 
+			final ScheduledExecutorService scheduler, final long windowMicros) {
+		
+		if(windowMicros <= 0) {
+			throw new IllegalArgumentException("Invalid batch window: " + windowMicros);
+		}
+		
+		this.sender = sender;
+		this.scheduler = scheduler;
+		this.windowMicros = windowMicros;
+		this.commands = new ArrayList<>(OrderMultiCommand.MAX_COMMANDS);
+		this.futures = new ArrayList<>(OrderMultiCommand.MAX_COMMANDS);
+		this.sentFrames = new AtomicLong();
+		this.sentCommands = new AtomicLong();
+	}
+
+	/**
+	 * Submit a command, the future is completed when the frame is sent
+	 * @param command
+	 * @return
+	 */
+	public synchronized CompletableFuture<Void> submit(final BitfinexOrderCommand command) {
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		commands.add(command);
+		futures.add(future);
+
+		if(commands.size() >= OrderMultiCommand.MAX_COMMANDS) {
+			flush();
+		} else if(commands.size() == 1) {
+			final List<BitfinexOrderCommand> batch = commands;
+			scheduler.schedule(() -> flushBatch(batch), windowMicros, TimeUnit.MICROSECONDS);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Flush the batch when the window of the batch is closed
+	 * @param batch
+	 */
+	private synchronized void flushBatch(final List<BitfinexOrderCommand> batch) {
+		// Already flushed by the size limit
+		if(commands == batch) {
+			flush();
+		}
+	}
+
+	/**
+	 * Send the current batch
+	 */
+	public synchronized void flush() {
+		if(commands.isEmpty()) {
+			return;
+		}
+
+		final List<BitfinexOrderCommand> batch = commands;
+		final List<CompletableFuture<Void>> batchFutures = futures;
+		commands = new ArrayList<>(OrderMultiCommand.MAX_COMMANDS);
+		futures = new ArrayList<>(OrderMultiCommand.MAX_COMMANDS);
+
+		CompletableFuture<Void> sent;
+		
+		try {
+			if(batch.size() == 1) {
+				sent = sender.apply(batch.get(0));
+			} else {
+				sent = sender.apply(new OrderMultiCommand(batch));
+			}
+		} catch (Exception e) {
+			sent = new CompletableFuture<>();
+			sent.completeExceptionally(e);
+		}
+		
+		sent.whenComplete((r, e) -> {
+			if(e != null) {
+				logger.error("Unable to send order batch {}", batch, e);
+				batchFutures.forEach(f -> f.completeExceptionally(e));
+				return;
+			}
+			
+			sentFrames.incrementAndGet();
+			sentCommands.addAndGet(batch.size());
+			batchFutures.forEach(f -> f.complete(null));
+		});
+	}
+
+	/**
+	 * The batch window in micro seconds
+	 * @return
+	 */
+	public long getWindowMicros() {
+		return windowMicros;
+	}
+
+	/**
+	 * The number of sent frames
+	 * @return
+	 */
+	public long getSentFrames() {
+		return sentFrames.get();
+	}
+
+	/**
+	 * The number of sent commands
+	 * @return
+	 */
+	public long getSentCommands() {
+		return sentCommands.get();
+	}
+}
@@ -17,22 +17,32 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
-import java.util.ArrayList;
+import java.math.BigDecimal;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.bboxdb.commons.Retryer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
-import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommand;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommands;
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexOrderCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelAllCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelGroupCommand;
@@ -44,13 +54,29 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrder;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrderStatus;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexAccountSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.VirtualThreads;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder> {
 
+	public enum ExecutionMode {
+		
+		/**
+		 * One pooled platform thread per outstanding order round-trip
+		 */
+		PLATFORM_THREADS,
+		
+		/**
+		 * One virtual thread per outstanding order round-trip, platform 
+		 * threads are used if the runtime does not support virtual threads
+		 */
+		VIRTUAL_THREADS;
+	}
+
 	/**
 	 * The orders
 	 */
-	private final List<BitfinexSubmittedOrder> orders;
+	private final OrderStore orderStore;
 
 	/**
 	 * The order timeout
@@ -66,16 +92,103 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 	 * The delay between two retries
 	 */
 	private static final int RETRY_DELAY_IN_MS = 1000;
+
+	/**
+	 * The executor for the submitted order round-trips, created on first use
+	 */
+	private ExecutorService roundTripExecutor;
+
+	/**
+	 * The execution mode of the round-trip executor
+	 */
+	private ExecutionMode executionMode;
+
+	/**
+	 * The number of outstanding round-trips
+	 */
+	private final AtomicInteger outstandingRoundTrips;
+
+	/**
+	 * The pending order placements, by client id
+	 */
+	private final Map<Long, CompletableFuture<BitfinexSubmittedOrder>> pendingPlacements;
+
+	/**
+	 * The pending order updates, by order id
+	 */
+	private final Map<Long, CompletableFuture<BitfinexSubmittedOrder>> pendingUpdates;
+
+	/**
+	 * The requested changes of the pending order updates, by order id
+	 */
+	private final Map<Long, Predicate<BitfinexSubmittedOrder>> requestedUpdates;
+
+	/**
+	 * The pending order cancelations, by order id
+	 */
+	private final Map<Long, CompletableFuture<BitfinexSubmittedOrder>> pendingCancelations;
+
+	/**
+	 * The timeout of the async operations
+	 */
+	private volatile long asyncTimeoutMillis = TimeUnit.SECONDS.toMillis(TIMEOUT_IN_SECONDS);
+
+	/**
+	 * The order command batcher, null if disabled
+	 */
+	private final OrderCommandBatcher orderCommandBatcher;
+
+	/**
+	 * The order rate limiter, null if disabled
+	 */
+	private final OrderRateLimiter orderRateLimiter;
+
+	/**
+	 * The timer for the timeouts of the async operations and the order 
+	 * batches, shared by all order managers
+	 */
+	private final static ScheduledThreadPoolExecutor ORDER_TIMER;
 	
 	/**
 	 * The Logger
 	 */
 	private final static Logger logger = LoggerFactory.getLogger(OrderManager.class);
 
+	static {
+		final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+				.setNameFormat("bitfinex-order-timer-%d")
+				.setDaemon(true)
+				.build();
+
+		ORDER_TIMER = new ScheduledThreadPoolExecutor(1, threadFactory);
+		ORDER_TIMER.setRemoveOnCancelPolicy(true);
+	}
 
 	public OrderManager(final BitfinexWebsocketClient client, final ExecutorService executorService) {
-		super(executorService, client);
-		this.orders = new ArrayList<>();
+		super(executorService, client, "orders");
+		this.orderStore = new OrderStore();
+		this.outstandingRoundTrips = new AtomicInteger();
+		this.pendingPlacements = new ConcurrentHashMap<>();
+		this.pendingUpdates = new ConcurrentHashMap<>();
+		this.requestedUpdates = new ConcurrentHashMap<>();
+		this.pendingCancelations = new ConcurrentHashMap<>();
+		
+		final BitfinexWebsocketConfiguration configuration = client.getConfiguration();
+		
+		if(configuration.getOrderRateLimit() > 0) {
+			this.orderRateLimiter = new OrderRateLimiter(client::sendCommand, ORDER_TIMER, 
+					configuration.getOrderRateLimit(), configuration.getOrderRateBurst());
+		} else {
+			this.orderRateLimiter = null;
+		}
+		
+		final long batchWindowMicros = configuration.getOrderBatchWindowMicros();
+		
+		if(batchWindowMicros > 0) {
+			this.orderCommandBatcher = new OrderCommandBatcher(this::sendOrderFrame, ORDER_TIMER, batchWindowMicros);
+		} else {
+			this.orderCommandBatcher = null;
+		}
 		client.getCallbacks().onMySubmittedOrderEvent((a, e) -> e.forEach(i -> updateOrderCallback(a, i)));
 		client.getCallbacks().onMyOrderNotification(this::updateOrderCallback);
 	}
@@ -84,20 +197,24 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 	 * Clear all orders
 	 */
 	public void clear() {
-		synchronized (orders) {
-			orders.clear();
-		}
+		orderStore.clear();
 	}
 
 	/**
-	 * Get the list with exchange orders
+	 * Get the list with exchange orders (immutable snapshot)
 	 * @return
 	 * @throws BitfinexClientException
 	 */
 	public List<BitfinexSubmittedOrder> getOrders() throws BitfinexClientException {
-		synchronized (orders) {
-			return orders;
-		}
+		return orderStore.getSnapshot().getOrders();
+	}
+
+	/**
+	 * Get the indexed order store
+	 * @return
+	 */
+	public OrderStore getOrderStore() {
+		return orderStore;
 	}
 
 	/**
@@ -107,19 +224,116 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 	public void updateOrderCallback(final BitfinexAccountSymbol account, 
 			final BitfinexSubmittedOrder exchangeOrder) {
 
-		synchronized (orders) {
-			// Replace order
-			orders.removeIf(o -> Objects.equals(o.getOrderId(), exchangeOrder.getOrderId()));
+		// Replace order, canceled orders are removed
+		orderStore.update(exchangeOrder);
+		completePendingOperations(exchangeOrder);
+		notifyCallbacks(exchangeOrder);
+	}
 
-			// Remove canceled orders
-			if(exchangeOrder.getStatus() != BitfinexSubmittedOrderStatus.CANCELED) {
-				orders.add(exchangeOrder);
+	/**
+	 * Complete the pending async operations of the order
+	 * @param exchangeOrder
+	 */
+	private void completePendingOperations(final BitfinexSubmittedOrder exchangeOrder) {
+		final boolean error = exchangeOrder.getStatus() == BitfinexSubmittedOrderStatus.ERROR;
+		
+		if(! pendingPlacements.isEmpty()) {
+			final CompletableFuture<BitfinexSubmittedOrder> placement 
+				= pendingPlacements.remove(exchangeOrder.getClientId());
+			
+			if(placement != null) {
+				completePendingOperation(placement, exchangeOrder, error, "Unable to place order ");
+			}
+		}
+		
+		final Long orderId = exchangeOrder.getOrderId();
+		
+		if(orderId == null) {
+			return;
+		}
+		
+		if(! pendingUpdates.isEmpty()) {
+			final CompletableFuture<BitfinexSubmittedOrder> update = pendingUpdates.get(orderId);
+			
+			// Events of the order before the update (e.g., fills) don't complete the update
+			if(update != null) {
+				if(isUpdateApplied(orderId, exchangeOrder)) {
+					completePendingOperation(update, exchangeOrder, error, "Unable to update order ");
+				} else if(isClosed(exchangeOrder)) {
+					completePendingOperation(update, exchangeOrder, true, "Unable to update closed order ");
+				}
+			}
+		}
+		
+		if(! pendingCancelations.isEmpty() 
+				&& (error || exchangeOrder.getStatus() == BitfinexSubmittedOrderStatus.CANCELED)) {
+			
+			final CompletableFuture<BitfinexSubmittedOrder> cancelation = pendingCancelations.remove(orderId);
+			
+			if(cancelation != null) {
+				completePendingOperation(cancelation, exchangeOrder, error, "Unable to cancel order ");
 			}
+		}
+	}
 
-			orders.notifyAll();
+	/**
+	 * Does the event of the order reflect the requested update (errors are always applied)
+	 * @param orderId
+	 * @param exchangeOrder
+	 * @return
+	 */
+	private boolean isUpdateApplied(final long orderId, final BitfinexSubmittedOrder exchangeOrder) {
+		if(exchangeOrder.getStatus() == BitfinexSubmittedOrderStatus.ERROR) {
+			return true;
 		}
+		
+		final Predicate<BitfinexSubmittedOrder> requestedUpdate = requestedUpdates.get(orderId);
+		return requestedUpdate == null || requestedUpdate.test(exchangeOrder);
+	}
 
-		notifyCallbacks(exchangeOrder);
+	/**
+	 * Is the order executed or canceled
+	 * @param exchangeOrder
+	 * @return
+	 */
+	private static boolean isClosed(final BitfinexSubmittedOrder exchangeOrder) {
+		final BitfinexSubmittedOrderStatus status = exchangeOrder.getStatus();
+		
+		return status == BitfinexSubmittedOrderStatus.EXECUTED 
+				|| status == BitfinexSubmittedOrderStatus.CANCELED
+				|| status == BitfinexSubmittedOrderStatus.POSTONLY_CANCELED;
+	}
+
+	/**
+	 * Has the event the requested value (values which are not updated match all events)
+	 * @param requested
+	 * @param value
+	 * @return
+	 */
+	private static boolean matchesRequested(final BigDecimal requested, final BigDecimal value) {
+		if(requested == null) {
+			return true;
+		}
+		
+		return value != null && requested.compareTo(value) == 0;
+	}
+
+	/**
+	 * Complete a pending async operation
+	 * @param future
+	 * @param exchangeOrder
+	 * @param error
+	 * @param errorMessage
+	 */
+	private void completePendingOperation(final CompletableFuture<BitfinexSubmittedOrder> future, 
+			final BitfinexSubmittedOrder exchangeOrder, final boolean error, final String errorMessage) {
+		
+		if(error) {
+			future.completeExceptionally(new BitfinexClientException(errorMessage + exchangeOrder 
+					+ ": " + exchangeOrder.getStatusDescription()));
+		} else {
+			future.complete(exchangeOrder);
+		}
 	}
 
 
@@ -175,44 +389,7 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 	 * @throws Exception
 	 */
 	private BitfinexSubmittedOrder placeOrderOrderOnAPI(final BitfinexOrder order) throws Exception {
-		final CountDownLatch waitLatch = new CountDownLatch(1);
-
-		final Consumer<BitfinexSubmittedOrder> ordercallback = (o) -> {
-			if(Objects.equals(o.getClientId(), order.getClientId())) {
-				waitLatch.countDown();
-			}
-		};
-
-		registerCallback(ordercallback);
-
-		try {
-			placeOrder(order);
-
-			waitLatch.await(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
-
-			if(waitLatch.getCount() != 0) {
-				throw new BitfinexClientException("Timeout while waiting for order");
-			}
-
-			// Check for order error
-			final BitfinexSubmittedOrder placedOrder = client
-					.getOrderManager()
-					.getOrders()
-					.stream()
-					.filter(o -> o.getClientId() == order.getClientId())
-					.findFirst()
-					.orElseThrow(() -> new BitfinexClientException("Unable to find order: " + order.getClientId()));
-			
-			if(placedOrder.getStatus() == BitfinexSubmittedOrderStatus.ERROR) {
-				throw new BitfinexClientException("Unable to place order " + order);
-			}
-
-			return placedOrder;
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			removeCallback(ordercallback);
-		}
+		return awaitCompletion(placeOrderAsync(order));
 	}
 
 	/**
@@ -254,43 +431,282 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 	 * Cancel the order on the API
 	 * @param id
 	 * @return
-	 * @throws BitfinexClientException
-	 * @throws InterruptedException
+	 * @throws Exception
 	 */
-	private boolean cancelOrderOnAPI(final long id) throws BitfinexClientException, InterruptedException {
-		final CountDownLatch waitLatch = new CountDownLatch(1);
+	private boolean cancelOrderOnAPI(final long id) throws Exception {
+		awaitCompletion(cancelOrderAsync(id));
+		return true;
+	}
 
-		final Consumer<BitfinexSubmittedOrder> ordercallback = (o) -> {
-			if(o.getOrderId() == id && o.getStatus() == BitfinexSubmittedOrderStatus.CANCELED) {
-				waitLatch.countDown();
+	/**
+	 * Wait for the completion of an async operation
+	 * @param future
+	 * @return
+	 * @throws Exception
+	 */
+	private static <T> T awaitCompletion(final CompletableFuture<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
 			}
-		};
+			
+			throw e;
+		}
+	}
 
-		registerCallback(ordercallback);
+	/**
+	 * Place an order, the future is completed when the order is acknowledged by the 
+	 * exchange. Dependent stages without an executor run on the websocket thread.
+	 * @param order - new BitfinexOrder to place
+	 * @return - The future of the submitted order
+	 */
+	public CompletableFuture<BitfinexSubmittedOrder> placeOrderAsync(final BitfinexOrder order) {
+		if(order.getApiKey() == null) {
+			order.setApiKey(client.getConfiguration().getApiKey());
+		}
+		
+		final CompletableFuture<BitfinexSubmittedOrder> future 
+			= registerPendingOperation(pendingPlacements, order.getClientId(), "order placement");
+		
+		return sendPendingOperation(future, () -> sendPlaceOrder(order));
+	}
 
-		try {
-			logger.info("Cancel order: {}", id);
-			cancelOrder(id);
-			waitLatch.await(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+	/**
+	 * Update an order, the future is completed with the first event of the order that 
+	 * has the requested price and amount. Events of the order before the update 
+	 * (e.g., fills) are skipped, an executed or canceled order fails the update. 
+	 * Rejected updates are reported as a timeout.
+	 * @param order - the submitted order with the new values
+	 * @return - The future of the updated order
+	 */
+	public CompletableFuture<BitfinexSubmittedOrder> updateOrderAsync(final BitfinexSubmittedOrder order) {
+		if(order.getOrderId() == null) {
+			final CompletableFuture<BitfinexSubmittedOrder> future = new CompletableFuture<>();
+			future.completeExceptionally(new BitfinexClientException("Order has no order id: " + order));
+			return future;
+		}
+		
+		final long orderId = order.getOrderId();
+		final CompletableFuture<BitfinexSubmittedOrder> future 
+			= registerPendingOperation(pendingUpdates, orderId, "order update");
+		
+		if(! future.isDone()) {
+			// The values of the update command, the order may be changed until the event arrives
+			final BigDecimal price = order.getPrice();
+			final BigDecimal amount = order.getAmount();
+			final Predicate<BitfinexSubmittedOrder> requestedUpdate = exchangeOrder 
+					-> matchesRequested(price, exchangeOrder.getPrice()) 
+					&& matchesRequested(amount, exchangeOrder.getAmount());
+			
+			requestedUpdates.put(orderId, requestedUpdate);
+			future.whenComplete((r, e) -> requestedUpdates.remove(orderId, requestedUpdate));
+		}
+		
+		return sendPendingOperation(future, () -> sendPlaceOrder(order));
+	}
 
-			if(waitLatch.getCount() != 0) {
-				throw new BitfinexClientException("Timeout while waiting for order");
-			}
+	/**
+	 * Cancel an order, the future is completed when the order is canceled. 
+	 * Rejected cancelations are reported as a timeout.
+	 * @param id - the order id
+	 * @return - The future of the canceled order
+	 */
+	public CompletableFuture<BitfinexSubmittedOrder> cancelOrderAsync(final long id) {
+		final CompletableFuture<BitfinexSubmittedOrder> future 
+			= registerPendingOperation(pendingCancelations, id, "order cancelation");
+		
+		return sendPendingOperation(future, () -> sendCancelOrder(id));
+	}
 
-			return true;
+	/**
+	 * Register a pending async operation and its timeout
+	 * @param pendingOperations
+	 * @param key
+	 * @param operation
+	 * @return
+	 */
+	private CompletableFuture<BitfinexSubmittedOrder> registerPendingOperation(
+			final Map<Long, CompletableFuture<BitfinexSubmittedOrder>> pendingOperations, 
+			final long key, final String operation) {
+		
+		final CompletableFuture<BitfinexSubmittedOrder> future = new CompletableFuture<>();
+		
+		if(pendingOperations.putIfAbsent(key, future) != null) {
+			future.completeExceptionally(new BitfinexClientException("An " + operation 
+					+ " for " + key + " is already pending"));
+			return future;
+		}
+		
+		final ScheduledFuture<?> timeout = ORDER_TIMER.schedule(() -> {
+			future.completeExceptionally(new BitfinexClientException("Timeout while waiting for " 
+					+ operation + " " + key));
+		}, asyncTimeoutMillis, TimeUnit.MILLISECONDS);
+		
+		// Completed, timed out or canceled by the caller
+		future.whenComplete((r, e) -> {
+			pendingOperations.remove(key, future);
+			timeout.cancel(false);
+		});
+		
+		return future;
+	}
+
+	/**
+	 * Send the command of a pending operation, fail the operation on error
+	 * @param future
+	 * @param command
+	 * @return
+	 */
+	private CompletableFuture<BitfinexSubmittedOrder> sendPendingOperation(
+			final CompletableFuture<BitfinexSubmittedOrder> future, final Supplier<CompletableFuture<Void>> command) {
+		
+		if(future.isDone()) {
+			return future;
+		}
+		
+		try {
+			command.get().whenComplete((r, e) -> {
+				if(e != null) {
+					future.completeExceptionally(e);
+				}
+			});
 		} catch (Exception e) {
+			future.completeExceptionally(e);
+		}
+		
+		return future;
+	}
+
+	/**
+	 * Set the timeout of the async operations (default 120 seconds)
+	 * @param timeout
+	 * @param unit
+	 */
+	public void setAsyncOperationTimeout(final long timeout, final TimeUnit unit) {
+		this.asyncTimeoutMillis = unit.toMillis(timeout);
+	}
+
+	/**
+	 * The number of pending async operations
+	 * @return
+	 */
+	public int getPendingAsyncOperations() {
+		return pendingPlacements.size() + pendingUpdates.size() + pendingCancelations.size();
+	}
+
+	/**
+	 * Place an order and wait until it is active on a round-trip thread (see 
+	 * {@link BitfinexWebsocketConfiguration#setOrderExecutionMode}). 
+	 * Many outstanding round-trips are cheap with virtual threads.
+	 * @param order - new BitfinexOrder to place
+	 * @return - The future of the submitted order
+	 */
+	public Future<BitfinexSubmittedOrder> submitOrderAndWaitUntilActive(final BitfinexOrder order) {
+		return submitRoundTrip(() -> placeOrderAndWaitUntilActive(order));
+	}
+
+	/**
+	 * Cancel an order and wait for the completion on a round-trip thread
+	 * @param id
+	 * @return - The future of the cancelation
+	 */
+	public Future<Void> submitCancelOrderAndWaitForCompletion(final long id) {
+		return submitRoundTrip(() -> {
+			cancelOrderAndWaitForCompletion(id);
+			return null;
+		});
+	}
+
+	/**
+	 * Execute a blocking round-trip on the round-trip executor
+	 * @param roundTrip
+	 * @return
+	 */
+	private <T> Future<T> submitRoundTrip(final Callable<T> roundTrip) {
+		final ExecutorService executor = getRoundTripExecutor();
+		outstandingRoundTrips.incrementAndGet();
+		
+		try {
+			return executor.submit(() -> {
+				try {
+					return roundTrip.call();
+				} finally {
+					outstandingRoundTrips.decrementAndGet();
+				}
+			});
+		} catch (RuntimeException e) {
+			outstandingRoundTrips.decrementAndGet();
 			throw e;
-		} finally {
-			removeCallback(ordercallback);
 		}
 	}
 
+	/**
+	 * Get the round-trip executor, create it on first use
+	 * @return
+	 */
+	private synchronized ExecutorService getRoundTripExecutor() {
+		if(roundTripExecutor != null) {
+			return roundTripExecutor;
+		}
+		
+		final ExecutionMode requestedMode = client.getConfiguration().getOrderExecutionMode();
+		
+		if(requestedMode == ExecutionMode.VIRTUAL_THREADS) {
+			roundTripExecutor = VirtualThreads.newThreadPerTaskExecutor("bitfinex-order-");
+			
+			if(roundTripExecutor != null) {
+				executionMode = ExecutionMode.VIRTUAL_THREADS;
+				return roundTripExecutor;
+			}
+			
+			logger.info("Virtual threads are not supported, using platform threads for order round-trips");
+		}
+		
+		final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+				.setNameFormat("bitfinex-order-%d")
+				.setDaemon(true)
+				.build();
+		
+		roundTripExecutor = Executors.newCachedThreadPool(threadFactory);
+		executionMode = ExecutionMode.PLATFORM_THREADS;
+		return roundTripExecutor;
+	}
+
+	/**
+	 * The execution mode of the round-trips (platform threads if 
+	 * virtual threads are not supported)
+	 * @return
+	 */
+	public synchronized ExecutionMode getExecutionMode() {
+		getRoundTripExecutor();
+		return executionMode;
+	}
+
+	/**
+	 * The number of submitted and not completed round-trips
+	 * @return
+	 */
+	public int getOutstandingRoundTrips() {
+		return outstandingRoundTrips.get();
+	}
 
 	/**
 	 * Place a new order
 	 * @throws BitfinexClientException
 	 */
 	public void placeOrder(final BitfinexOrder order) throws BitfinexClientException {
+		sendPlaceOrder(order);
+	}
+
+	/**
+	 * Send a new or updated order
+	 * @param order
+	 * @return the future of the sent command
+	 * @throws BitfinexClientException
+	 */
+	private CompletableFuture<Void> sendPlaceOrder(final BitfinexOrder order) throws BitfinexClientException {
 
 		final BitfinexApiKeyPermissions capabilities = client.getApiKeyPermissions();
 
@@ -300,12 +716,12 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 		
 		if(order instanceof BitfinexSubmittedOrder) {
 			logger.info("Updating existing order {}", order);
-			final BitfinexCommand orderCommand = new OrderUpdateCommand((BitfinexSubmittedOrder) order);
-			client.sendCommand(orderCommand);
+			final BitfinexOrderCommand orderCommand = new OrderUpdateCommand((BitfinexSubmittedOrder) order);
+			return sendOrderCommand(orderCommand);
 		} else {
 			logger.info("Executing new order {}", order);
-			final BitfinexCommand orderCommand = new OrderNewCommand(order);
-			client.sendCommand(orderCommand);
+			final BitfinexOrderCommand orderCommand = new OrderNewCommand(order);
+			return sendOrderCommand(orderCommand);
 		}
 	}
 
@@ -315,6 +731,16 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 	 * @throws BitfinexClientException
 	 */
 	public void cancelOrder(final long id) throws BitfinexClientException {
+		sendCancelOrder(id);
+	}
+
+	/**
+	 * Send the cancelation of the order
+	 * @param id
+	 * @return the future of the sent command
+	 * @throws BitfinexClientException
+	 */
+	private CompletableFuture<Void> sendCancelOrder(final long id) throws BitfinexClientException {
 
 		final BitfinexApiKeyPermissions capabilities = client.getApiKeyPermissions();
 
@@ -324,7 +750,52 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 
 		logger.info("Cancel order with id {}", id);
 		final OrderCancelCommand cancelOrder = new OrderCancelCommand(id);
-		client.sendCommand(cancelOrder);
+		return sendOrderCommand(cancelOrder);
+	}
+
+	/**
+	 * Send the order command, batched into ox_multi frames if enabled
+	 * (see {@link BitfinexWebsocketConfiguration#setOrderBatchWindowMicros})
+	 * @param command
+	 * @return the future of the sent command
+	 */
+	private CompletableFuture<Void> sendOrderCommand(final BitfinexOrderCommand command) {
+		if(orderCommandBatcher != null) {
+			return orderCommandBatcher.submit(command);
+		}
+		
+		return sendOrderFrame(command);
+	}
+
+	/**
+	 * Send the order frame, throttled if a rate limit is set
+	 * (see {@link BitfinexWebsocketConfiguration#setOrderRateLimit})
+	 * @param command
+	 * @return the future of the sent frame
+	 */
+	private CompletableFuture<Void> sendOrderFrame(final BitfinexOrderCommand command) {
+		if(orderRateLimiter != null) {
+			return orderRateLimiter.submit(command);
+		}
+		
+		client.sendCommand(command);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Get the order rate limiter
+	 * @return the limiter, null if no rate limit is set
+	 */
+	public OrderRateLimiter getOrderRateLimiter() {
+		return orderRateLimiter;
+	}
+
+	/**
+	 * Get the order command batcher
+	 * @return the batcher, null if batching is disabled
+	 */
+	public OrderCommandBatcher getOrderCommandBatcher() {
+		return orderCommandBatcher;
 	}
 
 	/**
@@ -342,7 +813,7 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 
 		logger.info("Cancel order group {}", id);
 		final OrderCancelGroupCommand cancelOrder = new OrderCancelGroupCommand(id);
-		client.sendCommand(cancelOrder);
+		sendOrderCommand(cancelOrder);
 	}
 
     /**
@@ -359,6 +830,6 @@ public class OrderManager extends SimpleCallbackManager<BitfinexSubmittedOrder>
 
         logger.info("Cancel all active orders");
         OrderCancelAllCommand cancelOrders = BitfinexCommands.cancelAllOrders();
-        client.sendCommand(cancelOrders);
+        sendOrderCommand(cancelOrders);
     }
 }
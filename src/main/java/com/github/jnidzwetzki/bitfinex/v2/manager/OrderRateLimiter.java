@@ -0,0 +1,468 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexOrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelAllCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelGroupCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderUpdateCommand;
+
+/**
+ * Token bucket scheduler for the order commands of a connection. Commands 
+ * are sent immediately while tokens are available; otherwise they are queued 
+ * in priority lanes (cancels before updates before new orders) and sent when 
+ * the bucket is refilled.
+ * 
+ * Group and cancel all commands are barriers: they reference orders that may 
+ * still be queued, so the commands queued before them are sent first.
+ */
+public class OrderRateLimiter {
+
+	public enum Lane {
+		
+		/**
+		 * Order cancelations
+		 */
+		CANCEL,
+		
+		/**
+		 * Order updates
+		 */
+		UPDATE,
+		
+		/**
+		 * New orders
+		 */
+		NEW;
+		
+		/**
+		 * Get the lane of the command
+		 * @param command
+		 * @return
+		 */
+		public static Lane of(final BitfinexCommand command) {
+			if(command instanceof OrderCancelCommand || command instanceof OrderCancelGroupCommand 
+					|| command instanceof OrderCancelAllCommand) {
+				return CANCEL;
+			}
+			
+			if(command instanceof OrderUpdateCommand) {
+				return UPDATE;
+			}
+			
+			// The highest priority of the batched commands
+			if(command instanceof OrderMultiCommand) {
+				Lane lane = NEW;
+				
+				for(final BitfinexOrderCommand batchedCommand : ((OrderMultiCommand) command).getCommands()) {
+					final Lane batchedLane = of(batchedCommand);
+					
+					if(batchedLane.ordinal() < lane.ordinal()) {
+						lane = batchedLane;
+					}
+				}
+				
+				return lane;
+			}
+			
+			return NEW;
+		}
+		
+		/**
+		 * Is the command a barrier (e.g., a cancel all) that must not overtake the 
+		 * commands queued before it
+		 * @param command
+		 * @return
+		 */
+		public static boolean isBarrier(final BitfinexCommand command) {
+			if(command instanceof OrderCancelGroupCommand || command instanceof OrderCancelAllCommand) {
+				return true;
+			}
+			
+			if(command instanceof OrderMultiCommand) {
+				return ((OrderMultiCommand) command).getCommands().stream().anyMatch(Lane::isBarrier);
+			}
+			
+			return false;
+		}
+	}
+
+	/**
+	 * The sender of the commands (e.g., client::sendCommand)
+	 */
+	private final Consumer<BitfinexCommand> sender;
+
+	/**
+	 * The scheduler for the refill timer
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * The refill rate
+	 */
+	private final double tokensPerNano;
+
+	/**
+	 * The bucket size
+	 */
+	private final int burst;
+
+	/**
+	 * The available tokens
+	 */
+	private double tokens;
+
+	/**
+	 * The time of the last refill
+	 */
+	private long lastRefillNanos;
+
+	/**
+	 * The queued commands, by lane
+	 */
+	private final Map<Lane, ArrayDeque<QueuedCommand>> lanes;
+
+	/**
+	 * The sequence number of the next queued command
+	 */
+	private long nextSequence;
+
+	/**
+	 * The number of queued commands
+	 */
+	private int queuedCommands;
+
+	/**
+	 * Is a drain scheduled
+	 */
+	private boolean drainScheduled;
+
+	/**
+	 * The sent commands, by lane
+	 */
+	private final long[] sentCommands;
+
+	/**
+	 * The total wait time, by lane
+	 */
+	private final long[] totalWaitNanos;
+
+	/**
+	 * The max wait time, by lane
+	 */
+	private final long[] maxWaitNanos;
+
+	/**
+	 * The listener for the wait time of each sent command
+	 */
+	private volatile ObjLongConsumer<BitfinexCommand> waitTimeListener = (c, w) -> {};
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderRateLimiter.class);
+
+	public OrderRateLimiter(final Consumer<BitfinexCommand> sender, final ScheduledExecutorService scheduler, 
+			final double commandsPerSecond, final int burst) {
+		
+		if(commandsPerSecond <= 0) {
+			throw new IllegalArgumentException("Invalid rate: " + commandsPerSecond);
+		}
+		
+		if(burst < 1) {
+			throw new IllegalArgumentException("Invalid burst: " + burst);
+		}
+		
+		this.sender = sender;
+		this.scheduler = scheduler;
+		this.tokensPerNano = commandsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = burst;
+		this.tokens = burst;
+		this.lastRefillNanos = System.nanoTime();
+		this.lanes = new EnumMap<>(Lane.class);
+		this.sentCommands = new long[Lane.values().length];
+		this.totalWaitNanos = new long[Lane.values().length];
+		this.maxWaitNanos = new long[Lane.values().length];
+		
+		for(final Lane lane : Lane.values()) {
+			lanes.put(lane, new ArrayDeque<>());
+		}
+	}
+
+	/**
+	 * Submit a command, the future is completed when the command is sent
+	 * @param command
+	 * @return
+	 */
+	public synchronized CompletableFuture<Void> submit(final BitfinexCommand command) {
+		final QueuedCommand queuedCommand = new QueuedCommand(command, Lane.of(command), nextSequence++);
+		refill();
+		
+		if(queuedCommands == 0 && tokens >= 1) {
+			tokens -= 1;
+			send(queuedCommand);
+		} else {
+			lanes.get(queuedCommand.lane).add(queuedCommand);
+			queuedCommands++;
+			scheduleDrain();
+		}
+		
+		return queuedCommand.future;
+	}
+
+	/**
+	 * Send the queued commands while tokens are available
+	 */
+	private synchronized void drain() {
+		drainScheduled = false;
+		refill();
+		
+		while(queuedCommands > 0 && tokens >= 1) {
+			tokens -= 1;
+			queuedCommands--;
+			send(pollHighestLane());
+		}
+		
+		if(queuedCommands > 0) {
+			scheduleDrain();
+		}
+	}
+
+	/**
+	 * Poll the next command of the highest non empty lane. When the next command 
+	 * is a barrier, the older commands of the lower lanes are polled first.
+	 * @return
+	 */
+	private QueuedCommand pollHighestLane() {
+		for(final ArrayDeque<QueuedCommand> lane : lanes.values()) {
+			final QueuedCommand next = lane.peek();
+			
+			if(next == null) {
+				continue;
+			}
+			
+			if(next.barrier) {
+				final ArrayDeque<QueuedCommand> olderLane = getOldestLane(next.sequence);
+				
+				if(olderLane != null) {
+					return olderLane.poll();
+				}
+			}
+			
+			return lane.poll();
+		}
+		
+		throw new IllegalStateException("No queued command");
+	}
+
+	/**
+	 * Get the lane with the oldest command queued before the sequence number
+	 * @param sequence
+	 * @return the lane or null
+	 */
+	private ArrayDeque<QueuedCommand> getOldestLane(final long sequence) {
+		ArrayDeque<QueuedCommand> oldestLane = null;
+		long oldestSequence = sequence;
+		
+		for(final ArrayDeque<QueuedCommand> lane : lanes.values()) {
+			final QueuedCommand next = lane.peek();
+			
+			if(next != null && next.sequence < oldestSequence) {
+				oldestLane = lane;
+				oldestSequence = next.sequence;
+			}
+		}
+		
+		return oldestLane;
+	}
+
+	/**
+	 * Schedule a drain when the next token is available
+	 */
+	private void scheduleDrain() {
+		if(drainScheduled) {
+			return;
+		}
+		
+		drainScheduled = true;
+		final long delayNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+		scheduler.schedule(this::drain, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Refill the bucket
+	 */
+	private void refill() {
+		final long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+		lastRefillNanos = now;
+	}
+
+	/**
+	 * Send the command and record the wait time
+	 * @param queuedCommand
+	 */
+	private void send(final QueuedCommand queuedCommand) {
+		final long waitNanos = System.nanoTime() - queuedCommand.queuedNanos;
+		final int lane = queuedCommand.lane.ordinal();
+		sentCommands[lane]++;
+		totalWaitNanos[lane] += waitNanos;
+		maxWaitNanos[lane] = Math.max(maxWaitNanos[lane], waitNanos);
+		
+		try {
+			sender.accept(queuedCommand.command);
+			queuedCommand.future.complete(null);
+		} catch (Exception e) {
+			logger.error("Unable to send order command {}", queuedCommand.command, e);
+			queuedCommand.future.completeExceptionally(e);
+		}
+		
+		try {
+			waitTimeListener.accept(queuedCommand.command, waitNanos);
+		} catch (Exception e) {
+			logger.error("Got exception in wait time listener", e);
+		}
+	}
+
+	/**
+	 * The available tokens (current budget)
+	 * @return
+	 */
+	public synchronized double getAvailableTokens() {
+		refill();
+		return tokens;
+	}
+
+	/**
+	 * The number of queued commands
+	 * @return
+	 */
+	public synchronized int getQueuedCommands() {
+		return queuedCommands;
+	}
+
+	/**
+	 * The number of queued commands of the lane
+	 * @param lane
+	 * @return
+	 */
+	public synchronized int getQueuedCommands(final Lane lane) {
+		return lanes.get(lane).size();
+	}
+
+	/**
+	 * The number of sent commands of the lane
+	 * @param lane
+	 * @return
+	 */
+	public synchronized long getSentCommands(final Lane lane) {
+		return sentCommands[lane.ordinal()];
+	}
+
+	/**
+	 * The average time the sent commands of the lane spent queued
+	 * @param lane
+	 * @param unit
+	 * @return
+	 */
+	public synchronized long getAverageWaitTime(final Lane lane, final TimeUnit unit) {
+		final long sent = sentCommands[lane.ordinal()];
+		
+		if(sent == 0) {
+			return 0;
+		}
+		
+		return unit.convert(totalWaitNanos[lane.ordinal()] / sent, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * The max time a sent command of the lane spent queued
+	 * @param lane
+	 * @param unit
+	 * @return
+	 */
+	public synchronized long getMaxWaitTime(final Lane lane, final TimeUnit unit) {
+		return unit.convert(maxWaitNanos[lane.ordinal()], TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Set the listener for the wait time (in nanoseconds) of each sent command,
+	 * the listener is called while the limiter is locked
+	 * @param waitTimeListener
+	 */
+	public void setWaitTimeListener(final ObjLongConsumer<BitfinexCommand> waitTimeListener) {
+		this.waitTimeListener = waitTimeListener;
+	}
+
+	private static class QueuedCommand {
+
+		/**
+		 * The command
+		 */
+		private final BitfinexCommand command;
+
+		/**
+		 * The lane
+		 */
+		private final Lane lane;
+
+		/**
+		 * Must the command wait for the commands queued before it
+		 */
+		private final boolean barrier;
+
+		/**
+		 * The submission order
+		 */
+		private final long sequence;
+
+		/**
+		 * The time the command was queued
+		 */
+		private final long queuedNanos;
+
+		/**
+		 * The future of the command
+		 */
+		private final CompletableFuture<Void> future;
+
+		public QueuedCommand(final BitfinexCommand command, final Lane lane, final long sequence) {
+			this.command = command;
+			this.lane = lane;
+			this.barrier = Lane.isBarrier(command);
+			this.sequence = sequence;
+			this.queuedNanos = System.nanoTime();
+			this.future = new CompletableFuture<>();
+		}
+	}
+}
@@ -0,0 +1,439 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrderStatus;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+
+/**
+ * The open orders of a connection, indexed by order id, client id, group id 
+ * and currency pair. 
+ * 
+ * Updates are applied in O(1) by a single writer (the websocket thread). 
+ * Point lookups are lock free. Snapshots are immutable and versioned; they are 
+ * copied on demand (at most once per version) and validated against the version 
+ * counter, so readers do not block the writer.
+ */
+public class OrderStore {
+
+	/**
+	 * The orders, by order id
+	 */
+	private final Map<Long, BitfinexSubmittedOrder> ordersById;
+
+	/**
+	 * The orders without order id (e.g., rejected orders), by client id
+	 */
+	private final Map<Long, BitfinexSubmittedOrder> ordersWithoutId;
+
+	/**
+	 * The orders, by client id
+	 */
+	private final Map<Long, BitfinexSubmittedOrder> ordersByClientId;
+
+	/**
+	 * The orders, by group id and order id
+	 */
+	private final Map<Long, Map<Long, BitfinexSubmittedOrder>> ordersByGroupId;
+
+	/**
+	 * The orders, by currency pair and order id
+	 */
+	private final Map<BitfinexCurrencyPair, Map<Long, BitfinexSubmittedOrder>> ordersByCurrencyPair;
+
+	/**
+	 * The version, odd while a write is in progress
+	 */
+	private final AtomicLong version;
+
+	/**
+	 * The last snapshot
+	 */
+	private final AtomicReference<Snapshot> snapshot;
+
+	/**
+	 * The write lock
+	 */
+	private final Object writeLock;
+
+	/**
+	 * The optimistic snapshot attempts before the write lock is taken
+	 */
+	private static final int OPTIMISTIC_SNAPSHOT_ATTEMPTS = 3;
+
+	/**
+	 * The order of the snapshot
+	 */
+	private static final Comparator<BitfinexSubmittedOrder> SNAPSHOT_ORDER = Comparator.comparing(
+			BitfinexSubmittedOrder::getOrderId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+	public OrderStore() {
+		this.ordersById = new ConcurrentHashMap<>();
+		this.ordersWithoutId = new ConcurrentHashMap<>();
+		this.ordersByClientId = new ConcurrentHashMap<>();
+		this.ordersByGroupId = new ConcurrentHashMap<>();
+		this.ordersByCurrencyPair = new ConcurrentHashMap<>();
+		this.version = new AtomicLong();
+		this.snapshot = new AtomicReference<>(new Snapshot(0, Collections.emptyList()));
+		this.writeLock = new Object();
+	}
+
+	/**
+	 * Apply an order event, canceled orders are removed
+	 * @param order
+	 */
+	public void update(final BitfinexSubmittedOrder order) {
+		synchronized (writeLock) {
+			version.incrementAndGet();
+			
+			try {
+				// A rejected order with the same client id is replaced
+				final BitfinexSubmittedOrder withoutId = ordersWithoutId.remove(order.getClientId());
+				removeFromIndexes(withoutId);
+				
+				final BitfinexSubmittedOrder previous;
+				
+				if(order.getOrderId() == null) {
+					previous = null;
+				} else {
+					previous = ordersById.remove(order.getOrderId());
+				}
+				
+				removeFromIndexes(previous);
+
+				if(order.getStatus() == BitfinexSubmittedOrderStatus.CANCELED) {
+					return;
+				}
+
+				if(order.getOrderId() == null) {
+					ordersWithoutId.put(order.getClientId(), order);
+				} else {
+					ordersById.put(order.getOrderId(), order);
+				}
+				
+				addToIndexes(order);
+			} finally {
+				version.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Remove all orders
+	 */
+	public void clear() {
+		synchronized (writeLock) {
+			version.incrementAndGet();
+			
+			try {
+				ordersById.clear();
+				ordersWithoutId.clear();
+				ordersByClientId.clear();
+				ordersByGroupId.clear();
+				ordersByCurrencyPair.clear();
+			} finally {
+				version.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Add the order to the secondary indexes (group and currency pair 
+	 * only for orders with an order id)
+	 * @param order
+	 */
+	private void addToIndexes(final BitfinexSubmittedOrder order) {
+		ordersByClientId.put(order.getClientId(), order);
+
+		final Long orderId = order.getOrderId();
+
+		if(orderId == null) {
+			return;
+		}
+
+		order.getClientGroupId().ifPresent(groupId -> ordersByGroupId
+				.computeIfAbsent(groupId, k -> new ConcurrentHashMap<>())
+				.put(orderId, order));
+
+		if(order.getCurrencyPair() != null) {
+			ordersByCurrencyPair
+				.computeIfAbsent(order.getCurrencyPair(), k -> new ConcurrentHashMap<>())
+				.put(orderId, order);
+		}
+	}
+
+	/**
+	 * Remove the order from the secondary indexes
+	 * @param order
+	 */
+	private void removeFromIndexes(final BitfinexSubmittedOrder order) {
+		if(order == null) {
+			return;
+		}
+
+		ordersByClientId.remove(order.getClientId(), order);
+
+		final Long orderId = order.getOrderId();
+
+		if(orderId == null) {
+			return;
+		}
+
+		order.getClientGroupId().ifPresent(groupId -> removeFromIndex(ordersByGroupId, groupId, orderId));
+
+		if(order.getCurrencyPair() != null) {
+			removeFromIndex(ordersByCurrencyPair, order.getCurrencyPair(), orderId);
+		}
+	}
+
+	/**
+	 * Remove the order from a secondary index, empty buckets are removed
+	 * @param index
+	 * @param key
+	 * @param orderId
+	 */
+	private static <K> void removeFromIndex(final Map<K, Map<Long, BitfinexSubmittedOrder>> index, 
+			final K key, final long orderId) {
+		
+		final Map<Long, BitfinexSubmittedOrder> bucket = index.get(key);
+
+		if(bucket == null) {
+			return;
+		}
+
+		bucket.remove(orderId);
+
+		if(bucket.isEmpty()) {
+			index.remove(key, bucket);
+		}
+	}
+
+	/**
+	 * Get the order with the given order id
+	 * @param orderId
+	 * @return the order or null
+	 */
+	public BitfinexSubmittedOrder getOrderById(final long orderId) {
+		return ordersById.get(orderId);
+	}
+
+	/**
+	 * Get the order with the given client id
+	 * @param clientId
+	 * @return the order or null
+	 */
+	public BitfinexSubmittedOrder getOrderByClientId(final long clientId) {
+		return ordersByClientId.get(clientId);
+	}
+
+	/**
+	 * Get the orders of the given group
+	 * @param groupId
+	 * @return
+	 */
+	public List<BitfinexSubmittedOrder> getOrdersByGroupId(final long groupId) {
+		return copyBucket(ordersByGroupId.get(groupId));
+	}
+
+	/**
+	 * Get the orders of the given currency pair
+	 * @param currencyPair
+	 * @return
+	 */
+	public List<BitfinexSubmittedOrder> getOrdersByCurrencyPair(final BitfinexCurrencyPair currencyPair) {
+		return copyBucket(ordersByCurrencyPair.get(currencyPair));
+	}
+
+	/**
+	 * Copy a bucket of a secondary index
+	 * @param bucket
+	 * @return
+	 */
+	private static List<BitfinexSubmittedOrder> copyBucket(final Map<Long, BitfinexSubmittedOrder> bucket) {
+		if(bucket == null) {
+			return Collections.emptyList();
+		}
+
+		final List<BitfinexSubmittedOrder> orders = new ArrayList<>(bucket.values());
+		orders.sort(SNAPSHOT_ORDER);
+		return Collections.unmodifiableList(orders);
+	}
+
+	/**
+	 * The number of orders
+	 * @return
+	 */
+	public int size() {
+		return ordersById.size() + ordersWithoutId.size();
+	}
+
+	/**
+	 * The version of the store, changed by each update
+	 * @return
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Get a consistent snapshot of all orders
+	 * @return
+	 */
+	public Snapshot getSnapshot() {
+		final Snapshot lastSnapshot = snapshot.get();
+
+		if(lastSnapshot.getVersion() == version.get()) {
+			return lastSnapshot;
+		}
+
+		for(int attempt = 0; attempt < OPTIMISTIC_SNAPSHOT_ATTEMPTS; attempt++) {
+			final long versionBefore = version.get();
+
+			// Write in progress
+			if((versionBefore & 1) != 0) {
+				Thread.yield();
+				continue;
+			}
+
+			final List<BitfinexSubmittedOrder> orders = copyOrders();
+
+			if(version.get() == versionBefore) {
+				return publishSnapshot(new Snapshot(versionBefore, orders));
+			}
+		}
+
+		synchronized (writeLock) {
+			return publishSnapshot(new Snapshot(version.get(), copyOrders()));
+		}
+	}
+
+	/**
+	 * Copy all orders
+	 * @return
+	 */
+	private List<BitfinexSubmittedOrder> copyOrders() {
+		final List<BitfinexSubmittedOrder> orders = new ArrayList<>(size());
+		orders.addAll(ordersById.values());
+		orders.addAll(ordersWithoutId.values());
+		orders.sort(SNAPSHOT_ORDER);
+		return orders;
+	}
+
+	/**
+	 * Publish the snapshot, unless a newer snapshot is published
+	 * @param newSnapshot
+	 * @return
+	 */
+	private Snapshot publishSnapshot(final Snapshot newSnapshot) {
+		snapshot.accumulateAndGet(newSnapshot, 
+				(current, update) -> update.getVersion() > current.getVersion() ? update : current);
+		
+		return newSnapshot;
+	}
+
+	public static class Snapshot {
+
+		/**
+		 * The version of the store
+		 */
+		private final long version;
+
+		/**
+		 * The orders, sorted by order id
+		 */
+		private final List<BitfinexSubmittedOrder> orders;
+
+		/**
+		 * The orders, by order id
+		 */
+		private final Map<Long, BitfinexSubmittedOrder> ordersById;
+
+		/**
+		 * The orders, by client id
+		 */
+		private final Map<Long, BitfinexSubmittedOrder> ordersByClientId;
+
+		private Snapshot(final long version, final List<BitfinexSubmittedOrder> orders) {
+			this.version = version;
+			this.orders = Collections.unmodifiableList(orders);
+			this.ordersById = new HashMap<>();
+			this.ordersByClientId = new HashMap<>();
+
+			for(final BitfinexSubmittedOrder order : orders) {
+				if(order.getOrderId() != null) {
+					ordersById.put(order.getOrderId(), order);
+				}
+
+				ordersByClientId.put(order.getClientId(), order);
+			}
+		}
+
+		/**
+		 * The version of the store
+		 * @return
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * The orders, sorted by order id
+		 * @return
+		 */
+		public List<BitfinexSubmittedOrder> getOrders() {
+			return orders;
+		}
+
+		/**
+		 * Get the order with the given order id
+		 * @param orderId
+		 * @return the order or null
+		 */
+		public BitfinexSubmittedOrder getOrderById(final long orderId) {
+			return ordersById.get(orderId);
+		}
+
+		/**
+		 * Get the order with the given client id
+		 * @param clientId
+		 * @return the order or null
+		 */
+		public BitfinexSubmittedOrder getOrderByClientId(final long clientId) {
+			return ordersByClientId.get(clientId);
+		}
+
+		/**
+		 * The number of orders
+		 * @return
+		 */
+		public int size() {
+			return orders.size();
+		}
+	}
+}
@@ -17,12 +17,22 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
 import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeOrderbookCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBook;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBookEntry;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
@@ -34,12 +44,101 @@ public class OrderbookManager extends AbstractManager {
 	 */
 	private final BiConsumerCallbackManager<BitfinexOrderBookSymbol, BitfinexOrderBookEntry> channelCallbacks;
 
+	/**
+	 * The order book callbacks (conflating, called with the maintained order book)
+	 */
+	private final BiConsumerCallbackManager<BitfinexOrderBookSymbol, BitfinexOrderBook> orderBookCallbacks;
+
+	/**
+	 * The maintained order books
+	 */
+	private final Map<BitfinexOrderBookSymbol, BitfinexOrderBook> orderBooks;
+
+	/**
+	 * The order books that could not be maintained (until the next snapshot)
+	 */
+	private final Set<BitfinexOrderBookSymbol> invalidOrderBooks;
+
+	/**
+	 * The checksum verification and resubscription of the order books
+	 */
+	private final OrderbookResubscriber resubscriber;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderbookManager.class);
+
 	public OrderbookManager(final BitfinexWebsocketClient client, ExecutorService executorService) {
 		super(client, executorService);
-		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService, client);
+		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService, client, "orderbook");
+		this.orderBookCallbacks = new BiConsumerCallbackManager<>(executorService, client, "orderbook-state");
+		this.orderBooks = new ConcurrentHashMap<>();
+		this.invalidOrderBooks = ConcurrentHashMap.newKeySet();
+		this.resubscriber = new OrderbookResubscriber(client);
         client.getCallbacks().onOrderbookEvent((sym,entries) -> {
-			entries.forEach(e -> handleNewOrderbookEntry(sym, e));
+			handleNewOrderbookEntries(sym, entries);
+		});
+
+		// A (re-)subscription is followed by a new snapshot
+		client.getCallbacks().onSubscribeChannelEvent(sym -> {
+			final BitfinexOrderBook orderBook = orderBooks.get(sym);
+			if(orderBook != null) {
+				orderBook.clear();
+			}
+			invalidOrderBooks.remove(sym);
+			resubscriber.handleSubscribed(sym);
+		});
+		
+		client.getCallbacks().onUnsubscribeChannelEvent(sym -> {
+			if(! resubscriber.handleUnsubscribed(sym)) {
+				orderBooks.remove(sym);
+				invalidOrderBooks.remove(sym);
+			}
 		});
+		
+		client.getCallbacks().onOrderbookChecksumEvent((sym, checksum) -> {
+			if(sym.isRawOrderBook()) {
+				return;
+			}
+			handleChecksum(sym, checksum);
+		});
+	}
+
+	/**
+	 * Compare the checksum of bitfinex with the checksum of the maintained order 
+	 * book. On a mismatch, the channel of the order book is resubscribed.
+	 * 
+	 * @param symbol
+	 * @param checksum
+	 */
+	public void handleChecksum(final BitfinexOrderBookSymbol symbol, final int checksum) {
+		final BitfinexOrderBook orderBook = orderBooks.get(symbol);
+		
+		if(orderBook == null) {
+			return;
+		}
+		
+		resubscriber.verifyChecksum(symbol, checksum, orderBook::getChecksum);
+	}
+
+	/**
+	 * Set the time to wait for the unsubscribe event of a checksum resubscription
+	 * @param resubscribeTimeout
+	 * @param timeUnit
+	 */
+	public void setResubscribeTimeout(final long resubscribeTimeout, final TimeUnit timeUnit) {
+		resubscriber.setResubscribeTimeout(resubscribeTimeout, timeUnit);
+	}
+
+	/**
+	 * Get the maintained order book for the symbol
+	 * @param orderbookConfiguration
+	 * @return the order book or null if no data was received for the symbol 
+	 * 		(or the book could not be maintained since the last snapshot)
+	 */
+	public BitfinexOrderBook getOrderBook(final BitfinexOrderBookSymbol orderbookConfiguration) {
+		return orderBooks.get(orderbookConfiguration);
 	}
 
 	/**
@@ -61,6 +160,28 @@ public class OrderbookManager extends AbstractManager {
 		return channelCallbacks.removeCallback(orderbookConfiguration, callback);
 	}
 
+	/**
+	 * Register a callback for the maintained order book (e.g., top of book consumers). 
+	 * The callback is conflating: while it is busy, only the latest state of the 
+	 * order book is delivered.
+	 * 
+	 * @throws BitfinexClientException
+	 */
+	public void registerOrderBookStateCallback(final BitfinexOrderBookSymbol orderbookConfiguration,
+			final BiConsumer<BitfinexOrderBookSymbol, BitfinexOrderBook> callback) throws BitfinexClientException {
+
+		orderBookCallbacks.registerCallback(orderbookConfiguration, callback, true);
+	}
+
+	/**
+	 * Remove an order book callback
+	 */
+	public boolean removeOrderBookStateCallback(final BitfinexOrderBookSymbol orderbookConfiguration,
+			final BiConsumer<BitfinexOrderBookSymbol, BitfinexOrderBook> callback) throws BitfinexClientException {
+
+		return orderBookCallbacks.removeCallback(orderbookConfiguration, callback);
+	}
+
 	/**
 	 * Subscribe a orderbook
 	 */
@@ -86,6 +207,55 @@ public class OrderbookManager extends AbstractManager {
 	public void handleNewOrderbookEntry(final BitfinexOrderBookSymbol configuration,
 			final BitfinexOrderBookEntry entry) {
 
-		channelCallbacks.handleEvent(configuration, entry);
+		handleNewOrderbookEntries(configuration, Collections.singletonList(entry));
+	}
+
+	/**
+	 * Handle the entries of a snapshot or update, the order book callbacks 
+	 * are called once after all entries are applied
+	 */
+	public void handleNewOrderbookEntries(final BitfinexOrderBookSymbol configuration,
+			final Collection<BitfinexOrderBookEntry> entries) {
+
+		BitfinexOrderBook orderBook = null;
+
+		for(final BitfinexOrderBookEntry entry : entries) {
+			channelCallbacks.handleEvent(configuration, entry);
+			orderBook = maintainOrderBook(configuration, entry);
+		}
+
+		if(orderBook != null) {
+			orderBookCallbacks.handleEvent(configuration, orderBook);
+		}
+	}
+
+	/**
+	 * Apply the entry to the maintained order book. An order book that can not 
+	 * be maintained is dropped until the next snapshot is received.
+	 * 
+	 * @param configuration
+	 * @param entry
+	 * @return the order book or null
+	 */
+	private BitfinexOrderBook maintainOrderBook(final BitfinexOrderBookSymbol configuration,
+			final BitfinexOrderBookEntry entry) {
+		
+		if(invalidOrderBooks.contains(configuration)) {
+			return null;
+		}
+
+		final BitfinexOrderBook orderBook = orderBooks.computeIfAbsent(configuration, 
+				c -> new BitfinexOrderBook(c.getCurrencyPair().getScale()));
+
+		try {
+			orderBook.applyEntry(entry);
+			return orderBook;
+		} catch (BitfinexClientException e) {
+			logger.error("Unable to maintain the order book of {}, waiting for the next snapshot", 
+					configuration, e);
+			invalidOrderBooks.add(configuration);
+			orderBooks.remove(configuration);
+			return null;
+		}
 	}
 }
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeOrderbookCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Verifies the checksums of the maintained order books and resubscribes the 
+ * channel of an order book on a mismatch. When the unsubscribe of the 
+ * resubscription is not confirmed in time, the channel is subscribed again.
+ */
+class OrderbookResubscriber {
+
+	/**
+	 * The client
+	 */
+	private final BitfinexWebsocketClient client;
+
+	/**
+	 * The order books that are resubscribed because of a checksum mismatch
+	 * (the value identifies the resubscription for the timeout)
+	 */
+	private final Map<BitfinexOrderBookSymbol, Object> pendingResubscribes;
+
+	/**
+	 * The time to wait for the unsubscribe event of a resubscription
+	 */
+	private long resubscribeTimeoutMillis = DEFAULT_RESUBSCRIBE_TIMEOUT_MILLIS;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderbookResubscriber.class);
+
+	/**
+	 * The default time to wait for the unsubscribe event of a resubscription
+	 */
+	private static final long DEFAULT_RESUBSCRIBE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * The timer for the resubscription timeouts, shared by all order book managers
+	 */
+	private static final ScheduledThreadPoolExecutor RESUBSCRIBE_TIMER;
+
+	static {
+		final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+				.setNameFormat("bitfinex-orderbook-timer-%d")
+				.setDaemon(true)
+				.build();
+
+		RESUBSCRIBE_TIMER = new ScheduledThreadPoolExecutor(1, threadFactory);
+		RESUBSCRIBE_TIMER.setRemoveOnCancelPolicy(true);
+	}
+
+	OrderbookResubscriber(final BitfinexWebsocketClient client) {
+		this.client = client;
+		this.pendingResubscribes = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Compare the checksum of bitfinex with the checksum of the maintained order 
+	 * book. On a mismatch, the channel of the order book is resubscribed.
+	 * 
+	 * @param symbol
+	 * @param checksum
+	 * @param localChecksum - the checksum of the maintained order book
+	 */
+	void verifyChecksum(final BitfinexOrderBookSymbol symbol, final int checksum, 
+			final IntSupplier localChecksum) {
+		
+		if(pendingResubscribes.containsKey(symbol)) {
+			return;
+		}
+		
+		final int calculatedChecksum = localChecksum.getAsInt();
+		
+		if(calculatedChecksum == checksum) {
+			return;
+		}
+		
+		logger.warn("Checksum mismatch for {} (local {} / remote {}), resubscribing channel", 
+				symbol, calculatedChecksum, checksum);
+		
+		final Object resubscription = new Object();
+		
+		if(pendingResubscribes.putIfAbsent(symbol, resubscription) == null) {
+			RESUBSCRIBE_TIMER.schedule(() -> handleResubscribeTimeout(symbol, resubscription), 
+					resubscribeTimeoutMillis, TimeUnit.MILLISECONDS);
+			client.sendCommand(new UnsubscribeChannelCommand(symbol));
+		}
+	}
+
+	/**
+	 * The unsubscribe event of the resubscription was not received (e.g., the 
+	 * unsubscribe was rejected), subscribe the order book again
+	 * 
+	 * @param symbol
+	 * @param resubscription
+	 */
+	private void handleResubscribeTimeout(final BitfinexOrderBookSymbol symbol, final Object resubscription) {
+		if(! pendingResubscribes.remove(symbol, resubscription)) {
+			return;
+		}
+		
+		logger.warn("Unsubscribe of {} was not confirmed, subscribing the channel again", symbol);
+		client.sendCommand(new SubscribeOrderbookCommand(symbol));
+	}
+
+	/**
+	 * Handle the subscribe event of a channel. The channel was subscribed again 
+	 * (e.g., on reconnect) before the unsubscribe of the resubscription was confirmed.
+	 * 
+	 * @param symbol
+	 */
+	void handleSubscribed(final BitfinexStreamSymbol symbol) {
+		pendingResubscribes.remove(symbol);
+	}
+
+	/**
+	 * Handle the unsubscribe event of a channel, the channel of a resubscription 
+	 * is subscribed again
+	 * 
+	 * @param symbol
+	 * @return true if the channel is resubscribed
+	 */
+	boolean handleUnsubscribed(final BitfinexStreamSymbol symbol) {
+		if(pendingResubscribes.remove(symbol) == null) {
+			return false;
+		}
+		
+		client.sendCommand(new SubscribeOrderbookCommand((BitfinexOrderBookSymbol) symbol));
+		return true;
+	}
+
+	/**
+	 * Set the time to wait for the unsubscribe event of a resubscription
+	 * @param resubscribeTimeout
+	 * @param timeUnit
+	 */
+	void setResubscribeTimeout(final long resubscribeTimeout, final TimeUnit timeUnit) {
+		this.resubscribeTimeoutMillis = timeUnit.toMillis(resubscribeTimeout);
+	}
+}
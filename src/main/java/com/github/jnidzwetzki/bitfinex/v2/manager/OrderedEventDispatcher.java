@@ -0,0 +1,424 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatch events on N single consumer lanes. The lane of an event is determined 
+ * by the hash of the symbol, so all events of a symbol are delivered strictly in 
+ * order while different symbols are processed in parallel.
+ * 
+ * Each lane is backed by a bounded, lock free ring buffer with preallocated 
+ * slots (multiple producers, one consumer). When the ring buffer of a lane is 
+ * full, the producer waits until the lane has caught up. Events that are 
+ * dispatched by a callback of the lane itself are kept in an overflow queue 
+ * instead (waiting would dead lock) and delivered in publish order.
+ * 
+ * The dispatcher is owned by the user (like the executor service) and 
+ * can be shared by several clients.
+ */
+public class OrderedEventDispatcher implements Closeable {
+
+	public enum WaitStrategy {
+		/**
+		 * Lowest latency, burns one core per lane
+		 */
+		BUSY_SPIN,
+		
+		/**
+		 * Spin with Thread.yield()
+		 */
+		YIELD,
+		
+		/**
+		 * Park the lane until new events are published
+		 */
+		PARK
+	}
+
+	/**
+	 * The default capacity of a lane
+	 */
+	public final static int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The max number of events that are drained in one batch
+	 */
+	private final static int MAX_BATCH_SIZE = 256;
+
+	/**
+	 * The max park time of an idle lane
+	 */
+	private final static long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/**
+	 * The lanes
+	 */
+	private final Lane[] lanes;
+
+	/**
+	 * The wait strategy
+	 */
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * Is the dispatcher running
+	 */
+	private volatile boolean running;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderedEventDispatcher.class);
+
+	public OrderedEventDispatcher(final int numberOfLanes) {
+		this(numberOfLanes, DEFAULT_CAPACITY, WaitStrategy.PARK);
+	}
+
+	public OrderedEventDispatcher(final int numberOfLanes, final int capacity, final WaitStrategy waitStrategy) {
+		if(numberOfLanes <= 0) {
+			throw new IllegalArgumentException("Number of lanes has to be > 0: " + numberOfLanes);
+		}
+		
+		if(capacity <= 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity has to be a power of two: " + capacity);
+		}
+		
+		this.waitStrategy = waitStrategy;
+		this.lanes = new Lane[numberOfLanes];
+		this.running = true;
+		
+		for(int i = 0; i < numberOfLanes; i++) {
+			lanes[i] = new Lane(capacity);
+			lanes[i].thread = new Thread(lanes[i], "bitfinex-dispatch-lane-" + i);
+			lanes[i].thread.setDaemon(true);
+			lanes[i].thread.start();
+		}
+	}
+
+	/**
+	 * Dispatch the event to the lane of the symbol
+	 * 
+	 * @param symbol
+	 * @param element
+	 * @param consumer - should be a reused instance, the dispatcher allocates nothing per event
+	 */
+	@SuppressWarnings("unchecked")
+	public <S, T> void dispatch(final S symbol, final T element, final BiConsumer<S, T> consumer) {
+		if(! running) {
+			throw new RejectedExecutionException("Dispatcher is closed");
+		}
+		
+		final Lane lane = lanes[laneForSymbol(symbol)];
+		lane.publish((BiConsumer<Object, Object>) consumer, symbol, element);
+	}
+
+	/**
+	 * Get the lane of the symbol
+	 * @param symbol
+	 * @return
+	 */
+	public int laneForSymbol(final Object symbol) {
+		final int hash = symbol.hashCode();
+		return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % lanes.length;
+	}
+
+	/**
+	 * Get the number of lanes
+	 * @return
+	 */
+	public int getNumberOfLanes() {
+		return lanes.length;
+	}
+
+	/**
+	 * Get the wait strategy
+	 * @return
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/**
+	 * Stop the lanes, already published events are delivered before the lanes terminate
+	 */
+	@Override
+	public void close() {
+		running = false;
+		
+		for(final Lane lane : lanes) {
+			LockSupport.unpark(lane.thread);
+		}
+		
+		for(final Lane lane : lanes) {
+			if(lane.thread == Thread.currentThread()) {
+				continue;
+			}
+			
+			try {
+				lane.thread.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private final class Lane implements Runnable {
+
+		/**
+		 * The mask for the slot index
+		 */
+		private final int mask;
+
+		/**
+		 * The sequence of each slot: pos = free for pos, pos + 1 = published for pos
+		 */
+		private final AtomicLongArray sequences;
+
+		/**
+		 * The consumers of the slots
+		 */
+		private final Object[] consumers;
+
+		/**
+		 * The symbols of the slots
+		 */
+		private final Object[] symbols;
+
+		/**
+		 * The elements of the slots
+		 */
+		private final Object[] elements;
+
+		/**
+		 * The next position of the producers
+		 */
+		private final AtomicLong tail = new AtomicLong();
+
+		/**
+		 * The next position of the consumer (only accessed by the lane thread)
+		 */
+		private long head;
+
+		/**
+		 * The events published by the lane thread while the lane was full (only 
+		 * accessed by the lane thread)
+		 */
+		private final ArrayDeque<OverflowEvent> overflow = new ArrayDeque<>();
+
+		/**
+		 * Is the lane thread parked
+		 */
+		private volatile boolean parked;
+
+		/**
+		 * The lane thread
+		 */
+		private Thread thread;
+
+		private Lane(final int capacity) {
+			this.mask = capacity - 1;
+			this.sequences = new AtomicLongArray(capacity);
+			this.consumers = new Object[capacity];
+			this.symbols = new Object[capacity];
+			this.elements = new Object[capacity];
+			
+			for(int i = 0; i < capacity; i++) {
+				sequences.set(i, i);
+			}
+		}
+
+		/**
+		 * Publish a new event
+		 * @param consumer
+		 * @param symbol
+		 * @param element
+		 */
+		private void publish(final BiConsumer<Object, Object> consumer, final Object symbol, final Object element) {
+			long pos;
+			
+			while(true) {
+				pos = tail.get();
+				final long sequence = sequences.get((int) pos & mask);
+				
+				if(sequence == pos) {
+					if(tail.compareAndSet(pos, pos + 1)) {
+						break;
+					}
+				} else if(sequence < pos) {
+					// Lane is full
+					if(Thread.currentThread() == thread) {
+						// Called from a callback of this lane, waiting would dead lock. 
+						// The event is delivered after all events claimed so far.
+						overflow.add(new OverflowEvent(pos, consumer, symbol, element));
+						return;
+					}
+					waitForSpace();
+				}
+			}
+			
+			final int index = (int) pos & mask;
+			consumers[index] = consumer;
+			symbols[index] = symbol;
+			elements[index] = element;
+			sequences.set(index, pos + 1);
+			
+			if(parked) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		/**
+		 * Wait until the consumer has freed a slot
+		 */
+		private void waitForSpace() {
+			if(waitStrategy == WaitStrategy.PARK) {
+				LockSupport.parkNanos(1_000);
+			} else {
+				Thread.yield();
+			}
+		}
+
+		/**
+		 * Is a published event available
+		 * @return
+		 */
+		private boolean isEventAvailable() {
+			return sequences.get((int) head & mask) == head + 1 || ! overflow.isEmpty();
+		}
+
+		@Override
+		public void run() {
+			while(running || isEventAvailable()) {
+				if(drain() == 0) {
+					idle();
+				}
+			}
+		}
+
+		/**
+		 * Deliver up to MAX_BATCH_SIZE events
+		 * @return the number of delivered events
+		 */
+		@SuppressWarnings("unchecked")
+		private int drain() {
+			int delivered = 0;
+			
+			while(delivered < MAX_BATCH_SIZE) {
+				final OverflowEvent overflowEvent = overflow.peek();
+				
+				if(overflowEvent != null && overflowEvent.position <= head) {
+					overflow.poll();
+					delivered++;
+					deliver(overflowEvent.consumer, overflowEvent.symbol, overflowEvent.element);
+					continue;
+				}
+				
+				final int index = (int) head & mask;
+				
+				if(sequences.get(index) != head + 1) {
+					break;
+				}
+				
+				final BiConsumer<Object, Object> consumer = (BiConsumer<Object, Object>) consumers[index];
+				final Object symbol = symbols[index];
+				final Object element = elements[index];
+				consumers[index] = null;
+				symbols[index] = null;
+				elements[index] = null;
+				
+				// Release the slot for the next round
+				sequences.set(index, head + mask + 1);
+				head++;
+				delivered++;
+				
+				deliver(consumer, symbol, element);
+			}
+			
+			return delivered;
+		}
+
+		/**
+		 * Deliver the event to the consumer
+		 * @param consumer
+		 * @param symbol
+		 * @param element
+		 */
+		private void deliver(final BiConsumer<Object, Object> consumer, final Object symbol, final Object element) {
+			try {
+				consumer.accept(symbol, element);
+			} catch(Throwable e) {
+				logger.error("Got exception while delivering event for {}", symbol, e);
+			}
+		}
+
+		/**
+		 * Wait for new events
+		 */
+		private void idle() {
+			switch(waitStrategy) {
+			case BUSY_SPIN:
+				break;
+			case YIELD:
+				Thread.yield();
+				break;
+			case PARK:
+				parked = true;
+				if(running && ! isEventAvailable()) {
+					LockSupport.parkNanos(this, MAX_PARK_NANOS);
+				}
+				parked = false;
+				break;
+			}
+		}
+	}
+
+	private final static class OverflowEvent {
+
+		/**
+		 * The event is delivered before the event at this position of the ring buffer
+		 */
+		private final long position;
+
+		private final BiConsumer<Object, Object> consumer;
+
+		private final Object symbol;
+
+		private final Object element;
+
+		private OverflowEvent(final long position, final BiConsumer<Object, Object> consumer,
+				final Object symbol, final Object element) {
+			this.position = position;
+			this.consumer = consumer;
+			this.symbol = symbol;
+			this.element = element;
+		}
+	}
+}
@@ -34,7 +34,7 @@ public class PositionManager extends SimpleCallbackManager<BitfinexPosition> {
 	private final List<BitfinexPosition> positions;
 
 	public PositionManager(final BitfinexWebsocketClient client, final ExecutorService executorService) {
-		super(executorService, client);
+		super(executorService, client, "positions");
 		
 		this.positions = new ArrayList<>();
 		
@@ -17,6 +17,8 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +26,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
 import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeCandlesCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeTickerCommand;
@@ -32,14 +37,52 @@ import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandle;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexExecutedTrade;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexInstrument;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexCandlestickSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexExecutedTradeSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.TimeSeriesBuffer;
+import com.github.jnidzwetzki.bitfinex.v2.util.TimeSeriesBuffer.MergePolicy;
 
 public class QuoteManager extends AbstractManager {
 
+	/**
+	 * The columns of the candle time series
+	 */
+	public final static int CANDLE_OPEN = 0;
+	public final static int CANDLE_CLOSE = 1;
+	public final static int CANDLE_HIGH = 2;
+	public final static int CANDLE_LOW = 3;
+	public final static int CANDLE_VOLUME = 4;
+
+	/**
+	 * The columns of the tick time series (timestamp = receive time)
+	 */
+	public final static int TICK_BID = 0;
+	public final static int TICK_BID_SIZE = 1;
+	public final static int TICK_ASK = 2;
+	public final static int TICK_ASK_SIZE = 3;
+	public final static int TICK_LAST_PRICE = 4;
+	public final static int TICK_VOLUME = 5;
+
+	/**
+	 * The columns of the executed trade time series
+	 */
+	public final static int TRADE_ID = 0;
+	public final static int TRADE_PRICE = 1;
+	public final static int TRADE_AMOUNT = 2;
+
+	/**
+	 * The max scale of the volume columns (CANDLE_VOLUME, TICK_VOLUME), the 
+	 * 24h volume of low priced pairs does not fit into a long with the scale 
+	 * of the currency pair
+	 */
+	public final static int VOLUME_SCALE = 4;
+
 	/**
 	 * The last ticks
 	 */
@@ -60,6 +103,16 @@ public class QuoteManager extends AbstractManager {
 	 */
 	private final BiConsumerCallbackManager<BitfinexExecutedTradeSymbol, BitfinexExecutedTrade> tradesCallbacks;
 
+	/**
+	 * The local candle aggregators (fed by the executed trades of the currency pair)
+	 */
+	private final Map<BitfinexCurrencyPair, CandleAggregator> candleAggregators;
+
+	/**
+	 * The time series of the symbols
+	 */
+	private final Map<BitfinexStreamSymbol, TimeSeriesBuffer> timeSeries;
+
 	/**
 	 * The pending subscribes
 	 */
@@ -74,20 +127,27 @@ public class QuoteManager extends AbstractManager {
 	 * The bitfinex API
 	 */
 	private final BitfinexWebsocketClient client;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(QuoteManager.class);
 	
 	public QuoteManager(final BitfinexWebsocketClient client, final ExecutorService executorService) {
 		super(client, executorService);
 		this.client = client;
 		this.lastTickerActivity = new ConcurrentHashMap<>();
-		this.tickerCallbacks = new BiConsumerCallbackManager<>(executorService, client);
-		this.candleCallbacks = new BiConsumerCallbackManager<>(executorService, client);
-		this.tradesCallbacks = new BiConsumerCallbackManager<>(executorService, client);
+		this.tickerCallbacks = new BiConsumerCallbackManager<>(executorService, client, "ticker");
+		this.candleCallbacks = new BiConsumerCallbackManager<>(executorService, client, "candles");
+		this.tradesCallbacks = new BiConsumerCallbackManager<>(executorService, client, "trades");
+		this.candleAggregators = new ConcurrentHashMap<>();
+		this.timeSeries = new ConcurrentHashMap<>();
 		this.pendingSubscribes = new FutureOperationRegistry();
 		this.pendingUnsubscribes = new FutureOperationRegistry();
 		
 		client.getCallbacks().onCandlesticksEvent(this::handleCandlestickCollection);
 		client.getCallbacks().onTickEvent(this::handleNewTick);
-		client.getCallbacks().onExecutedTradeEvent((sym, trades) -> trades.forEach(t -> this.handleExecutedTradeEntry(sym, t)));
+		client.getCallbacks().onExecutedTradeEvent(this::handleExecutedTrades);
 		client.getCallbacks().onSubscribeChannelEvent((s) -> pendingSubscribes.handleEvent(s));
 		client.getCallbacks().onUnsubscribeChannelEvent((s) -> pendingUnsubscribes.handleEvent(s));
 	}
@@ -136,6 +196,20 @@ public class QuoteManager extends AbstractManager {
 		tickerCallbacks.registerCallback(symbol, callback);
 	}
 
+	/**
+	 * Register a new tick callback
+	 * @param symbol
+	 * @param callback
+	 * @param conflate - deliver only the latest tick while the callback is busy (for slow consumers)
+	 * @throws BitfinexClientException
+	 */
+	public void registerTickCallback(final BitfinexTickerSymbol symbol,
+			final BiConsumer<BitfinexTickerSymbol, BitfinexTick> callback, final boolean conflate) 
+					throws BitfinexClientException {
+
+		tickerCallbacks.registerCallback(symbol, callback, conflate);
+	}
+
 	/**
 	 * Remove the a tick callback
 	 * @param symbol
@@ -157,6 +231,7 @@ public class QuoteManager extends AbstractManager {
 	public void handleCandleCollection(final BitfinexTickerSymbol symbol, final List<BitfinexTick> candles) {
 		updateChannelHeartbeat(symbol);
 		tickerCallbacks.handleEventsCollection(symbol, candles);
+		candles.forEach(t -> recordTick(symbol, t));
 	}
 
 	/**
@@ -167,6 +242,7 @@ public class QuoteManager extends AbstractManager {
 	public void handleNewTick(final BitfinexTickerSymbol currencyPair, final BitfinexTick tick) {
 		updateChannelHeartbeat(currencyPair);
 		tickerCallbacks.handleEvent(currencyPair, tick);
+		recordTick(currencyPair, tick);
 	}
 
 	/**
@@ -216,6 +292,20 @@ public class QuoteManager extends AbstractManager {
 		candleCallbacks.registerCallback(symbol, callback);
 	}
 
+	/**
+	 * Register a new candlestick callback
+	 * @param symbol
+	 * @param callback
+	 * @param conflate - deliver only the latest candle while the callback is busy (for slow consumers)
+	 * @throws BitfinexClientException
+	 */
+	public void registerCandlestickCallback(final BitfinexCandlestickSymbol symbol,
+			final BiConsumer<BitfinexCandlestickSymbol, BitfinexCandle> callback, final boolean conflate) 
+					throws BitfinexClientException {
+
+		candleCallbacks.registerCallback(symbol, callback, conflate);
+	}
+
 	/**
 	 * Remove the a candlestick callback
 	 * @param symbol
@@ -237,6 +327,7 @@ public class QuoteManager extends AbstractManager {
 	 */
 	public void handleCandlestickCollection(final BitfinexCandlestickSymbol symbol, final Collection<BitfinexCandle> ticksBuffer) {
 		candleCallbacks.handleEventsCollection(symbol, ticksBuffer);
+		ticksBuffer.forEach(c -> recordCandle(symbol, c));
 	}
 
 	/**
@@ -247,6 +338,17 @@ public class QuoteManager extends AbstractManager {
 	public void handleNewCandlestick(final BitfinexCandlestickSymbol currencyPair, final BitfinexCandle tick) {
 		updateChannelHeartbeat(currencyPair);
 		candleCallbacks.handleEvent(currencyPair, tick);
+		recordCandle(currencyPair, tick);
+	}
+
+	/**
+	 * Handle a locally aggregated candle
+	 * @param symbol
+	 * @param candle
+	 */
+	private void handleAggregatedCandle(final BitfinexCandlestickSymbol symbol, final BitfinexCandle candle) {
+		candleCallbacks.handleEvent(symbol, candle);
+		recordCandle(symbol, candle);
 	}
 
 	/**
@@ -285,6 +387,53 @@ public class QuoteManager extends AbstractManager {
 	}
 
 
+	/**
+	 * Aggregate the candles of the symbol locally from the executed trades of the 
+	 * currency pair, instead of subscribing a candles channel. Local timeframes 
+	 * (e.g., BitfinexSymbols.candlesticks(pair, 10_000)) are supported. 
+	 * 
+	 * The candles are delivered to the candlestick callbacks of the symbol; the 
+	 * executed trades of the currency pair need to be subscribed.
+	 * 
+	 * @param symbol
+	 */
+	public void registerCandleAggregation(final BitfinexCandlestickSymbol symbol) {
+		candleAggregators
+			.computeIfAbsent(symbol.getCurrencyPair(), p -> new CandleAggregator(this::handleAggregatedCandle))
+			.addTimeframe(symbol);
+	}
+
+	/**
+	 * Stop the local aggregation of the candles
+	 * @param symbol
+	 * @return
+	 */
+	public boolean removeCandleAggregation(final BitfinexCandlestickSymbol symbol) {
+		final CandleAggregator aggregator = candleAggregators.get(symbol.getCurrencyPair());
+
+		if(aggregator == null) {
+			return false;
+		}
+
+		final boolean removed = aggregator.removeTimeframe(symbol);
+
+		if(aggregator.isEmpty()) {
+			candleAggregators.remove(symbol.getCurrencyPair(), aggregator);
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Get the current (not yet closed) candle of a locally aggregated symbol
+	 * @param symbol
+	 * @return the candle or null
+	 */
+	public BitfinexCandle getAggregatedCandle(final BitfinexCandlestickSymbol symbol) {
+		final CandleAggregator aggregator = candleAggregators.get(symbol.getCurrencyPair());
+		return aggregator == null ? null : aggregator.getCurrentCandle(symbol);
+	}
+
 	/**
 	 * Register a new executed trade callback
 	 * @param symbol
@@ -349,6 +498,23 @@ public class QuoteManager extends AbstractManager {
 		return future;
 	}
 
+	/**
+	 * Handle a batch of executed trades
+	 * @param tradeSymbol
+	 * @param trades
+	 */
+	public void handleExecutedTrades(final BitfinexExecutedTradeSymbol tradeSymbol,
+			final Collection<BitfinexExecutedTrade> trades) {
+
+		trades.forEach(t -> handleExecutedTradeEntry(tradeSymbol, t));
+
+		final CandleAggregator aggregator = candleAggregators.get(tradeSymbol.getCurrencyPair());
+
+		if(aggregator != null) {
+			aggregator.handleTrades(trades);
+		}
+	}
+
 	/**
 	 * Handle a new executed trade
 	 * @param symbol
@@ -358,6 +524,175 @@ public class QuoteManager extends AbstractManager {
 			final BitfinexExecutedTrade entry) {
 
 		tradesCallbacks.handleEvent(tradeSymbol, entry);
+		recordTrade(tradeSymbol, entry);
+	}
+
+	/**
+	 * Keep the newest candles, ticks or executed trades of the symbol in a time 
+	 * series. The time series is shared by all readers (see getTimeSeries), 
+	 * snapshots and updates are merged by timestamp. 
+	 * 
+	 * Columns: CANDLE_*, TICK_* or TRADE_* constants; the values are fixed point 
+	 * values with the scale of the currency pair, the volume columns use at most 
+	 * VOLUME_SCALE (see TimeSeriesBuffer.getScale(column)). Entries with a value 
+	 * that does not fit into a long at the scale of its column are not recorded.
+	 * 
+	 * @param symbol - a candlestick, ticker or executed trade symbol
+	 * @param depth - the max number of entries
+	 * @return the time series (an existing time series is kept)
+	 */
+	public TimeSeriesBuffer enableTimeSeries(final BitfinexStreamSymbol symbol, final int depth) {
+		return timeSeries.computeIfAbsent(symbol, s -> {
+			if(s instanceof BitfinexCandlestickSymbol) {
+				final int scale = ((BitfinexCandlestickSymbol) s).getCurrencyPair().getScale();
+				final int[] columnScales = {scale, scale, scale, scale, volumeScale(scale)};
+				return new TimeSeriesBuffer(depth, scale, columnScales, MergePolicy.REPLACE_SAME_TIMESTAMP);
+			} else if(s instanceof BitfinexTickerSymbol) {
+				final BitfinexInstrument instrument = ((BitfinexTickerSymbol) s).getCurrency();
+				final int scale = (instrument instanceof BitfinexCurrencyPair) 
+						? ((BitfinexCurrencyPair) instrument).getScale() : FixedPoint.DEFAULT_SCALE;
+				final int[] columnScales = {scale, scale, scale, scale, scale, volumeScale(scale)};
+				return new TimeSeriesBuffer(depth, scale, columnScales, MergePolicy.APPEND);
+			} else if(s instanceof BitfinexExecutedTradeSymbol) {
+				final int scale = ((BitfinexExecutedTradeSymbol) s).getCurrencyPair().getScale();
+				return new TimeSeriesBuffer(depth, 3, scale, MergePolicy.REPLACE_SAME_KEY);
+			}
+
+			throw new IllegalArgumentException("Unsupported symbol for a time series: " + s);
+		});
+	}
+
+	/**
+	 * Get the scale of the volume columns
+	 * @param scale - the scale of the currency pair
+	 * @return
+	 */
+	private static int volumeScale(final int scale) {
+		return Math.min(scale, VOLUME_SCALE);
+	}
+
+	/**
+	 * Get the time series of the symbol
+	 * @param symbol
+	 * @return the time series or null
+	 */
+	public TimeSeriesBuffer getTimeSeries(final BitfinexStreamSymbol symbol) {
+		return timeSeries.get(symbol);
+	}
+
+	/**
+	 * Stop recording the time series of the symbol
+	 * @param symbol
+	 * @return
+	 */
+	public boolean disableTimeSeries(final BitfinexStreamSymbol symbol) {
+		return timeSeries.remove(symbol) != null;
+	}
+
+	/**
+	 * Record a candle in the time series of the symbol
+	 * @param symbol
+	 * @param candle
+	 */
+	private void recordCandle(final BitfinexCandlestickSymbol symbol, final BitfinexCandle candle) {
+		final TimeSeriesBuffer buffer = timeSeries.get(symbol);
+
+		if(buffer == null) {
+			return;
+		}
+
+		try {
+			buffer.put(candle.getTimestamp(), 
+					toScaled(candle.getOpen(), buffer.getScale(CANDLE_OPEN)), 
+					toScaled(candle.getClose(), buffer.getScale(CANDLE_CLOSE)), 
+					toScaled(candle.getHigh(), buffer.getScale(CANDLE_HIGH)), 
+					toScaled(candle.getLow(), buffer.getScale(CANDLE_LOW)), 
+					toScaled(candle.getVolume().orElse(null), buffer.getScale(CANDLE_VOLUME)));
+		} catch (BitfinexClientException e) {
+			logger.warn("Unable to record candle {} of {} in the time series", candle, symbol, e);
+		}
+	}
+
+	/**
+	 * Record a tick in the time series of the symbol
+	 * @param symbol
+	 * @param tick
+	 */
+	private void recordTick(final BitfinexTickerSymbol symbol, final BitfinexTick tick) {
+		final TimeSeriesBuffer buffer = timeSeries.get(symbol);
+
+		if(buffer == null) {
+			return;
+		}
+
+		try {
+			buffer.put(System.currentTimeMillis(), 
+					toScaled(tick.getBid(), buffer.getScale(TICK_BID)), 
+					toScaled(tick.getBidSize(), buffer.getScale(TICK_BID_SIZE)), 
+					toScaled(tick.getAsk(), buffer.getScale(TICK_ASK)), 
+					toScaled(tick.getAskSize(), buffer.getScale(TICK_ASK_SIZE)), 
+					toScaled(tick.getLastPrice(), buffer.getScale(TICK_LAST_PRICE)), 
+					toScaled(tick.getVolume(), buffer.getScale(TICK_VOLUME)));
+		} catch (BitfinexClientException e) {
+			logger.warn("Unable to record tick {} of {} in the time series", tick, symbol, e);
+		}
+	}
+
+	/**
+	 * Record an executed trade in the time series of the symbol
+	 * @param symbol
+	 * @param trade
+	 */
+	private void recordTrade(final BitfinexExecutedTradeSymbol symbol, final BitfinexExecutedTrade trade) {
+		final TimeSeriesBuffer buffer = timeSeries.get(symbol);
+
+		// Funding trades have no price
+		if(buffer == null || trade.getTimestamp() == null || (! trade.isFixedPoint() && trade.getPrice() == null)) {
+			return;
+		}
+
+		try {
+			buffer.put(trade.getTimestamp(), 
+					trade.getTradeId() == null ? 0 : trade.getTradeId(), 
+					toScaled(trade.getScaledPrice(), trade.getScale(), buffer.getScale(TRADE_PRICE)), 
+					toScaled(trade.getScaledAmount(), trade.getScale(), buffer.getScale(TRADE_AMOUNT)));
+		} catch (BitfinexClientException e) {
+			logger.warn("Unable to record trade {} of {} in the time series", trade, symbol, e);
+		}
+	}
+
+	/**
+	 * Convert a value into a fixed point value (0 for null), additional decimals 
+	 * are rounded (half up)
+	 * @param value
+	 * @param scale
+	 * @return
+	 * @throws BitfinexClientException if the value does not fit into a long
+	 */
+	private static long toScaled(final BigDecimal value, final int scale) {
+		if(value == null) {
+			return 0;
+		}
+		
+		return FixedPoint.fromBigDecimal(value, scale, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Change the scale of a fixed point value, additional decimals are rounded 
+	 * (half up)
+	 * @param value
+	 * @param fromScale
+	 * @param toScale
+	 * @return
+	 * @throws BitfinexClientException if the value does not fit into a long
+	 */
+	private static long toScaled(final long value, final int fromScale, final int toScale) {
+		try {
+			return FixedPoint.rescale(value, fromScale, toScale, RoundingMode.HALF_UP);
+		} catch (ArithmeticException e) {
+			throw new BitfinexClientException("Value " + FixedPoint.toBigDecimal(value, fromScale) 
+				+ " does not fit into a long with scale " + toScale);
+		}
 	}
 
 }
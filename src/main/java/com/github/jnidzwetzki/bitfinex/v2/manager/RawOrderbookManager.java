@@ -17,13 +17,21 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
 import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeOrderbookCommand;
 import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexRawOrderBook;
 import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
 
@@ -34,12 +42,95 @@ public class RawOrderbookManager extends AbstractManager {
 	 */
 	private final BiConsumerCallbackManager<BitfinexOrderBookSymbol, BitfinexOrderBookEntry> channelCallbacks;
 
+	/**
+	 * The maintained raw order books
+	 */
+	private final Map<BitfinexOrderBookSymbol, BitfinexRawOrderBook> orderBooks;
+
+	/**
+	 * The order books that could not be maintained (until the next snapshot)
+	 */
+	private final Set<BitfinexOrderBookSymbol> invalidOrderBooks;
+
+	/**
+	 * The checksum verification and resubscription of the order books
+	 */
+	private final OrderbookResubscriber resubscriber;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(RawOrderbookManager.class);
+
 	public RawOrderbookManager(final BitfinexWebsocketClient client, ExecutorService executorService) {
 		super(client, executorService);
-		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService, client);
+		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService, client, "raw-orderbook");
+		this.orderBooks = new ConcurrentHashMap<>();
+		this.invalidOrderBooks = ConcurrentHashMap.newKeySet();
+		this.resubscriber = new OrderbookResubscriber(client);
 		client.getCallbacks().onRawOrderbookEvent((sym, entries) -> {
 			entries.forEach(e -> handleNewOrderbookEntry(sym, e));
 		});
+
+		// A (re-)subscription is followed by a new snapshot
+		client.getCallbacks().onSubscribeChannelEvent(sym -> {
+			final BitfinexRawOrderBook orderBook = orderBooks.get(sym);
+			if(orderBook != null) {
+				orderBook.clear();
+			}
+			invalidOrderBooks.remove(sym);
+			resubscriber.handleSubscribed(sym);
+		});
+
+		client.getCallbacks().onUnsubscribeChannelEvent(sym -> {
+			if(! resubscriber.handleUnsubscribed(sym)) {
+				orderBooks.remove(sym);
+				invalidOrderBooks.remove(sym);
+			}
+		});
+		
+		client.getCallbacks().onOrderbookChecksumEvent((sym, checksum) -> {
+			if(! sym.isRawOrderBook()) {
+				return;
+			}
+			handleChecksum(sym, checksum);
+		});
+	}
+
+	/**
+	 * Compare the checksum of bitfinex with the checksum of the maintained order 
+	 * book. On a mismatch, the channel of the order book is resubscribed.
+	 * 
+	 * @param symbol
+	 * @param checksum
+	 */
+	public void handleChecksum(final BitfinexOrderBookSymbol symbol, final int checksum) {
+		final BitfinexRawOrderBook orderBook = orderBooks.get(symbol);
+		
+		if(orderBook == null) {
+			return;
+		}
+		
+		resubscriber.verifyChecksum(symbol, checksum, orderBook::getChecksum);
+	}
+
+	/**
+	 * Set the time to wait for the unsubscribe event of a checksum resubscription
+	 * @param resubscribeTimeout
+	 * @param timeUnit
+	 */
+	public void setResubscribeTimeout(final long resubscribeTimeout, final TimeUnit timeUnit) {
+		resubscriber.setResubscribeTimeout(resubscribeTimeout, timeUnit);
+	}
+
+	/**
+	 * Get the maintained raw order book for the symbol
+	 * @param symbol
+	 * @return the order book or null if no data was received for the symbol 
+	 * 		(or the book could not be maintained since the last snapshot)
+	 */
+	public BitfinexRawOrderBook getOrderBook(final BitfinexOrderBookSymbol symbol) {
+		return orderBooks.get(symbol);
 	}
 	
 	/**
@@ -93,5 +184,22 @@ public class RawOrderbookManager extends AbstractManager {
 	public void handleNewOrderbookEntry(final BitfinexOrderBookSymbol symbol, final BitfinexOrderBookEntry entry) {
 		
 		channelCallbacks.handleEvent(symbol, entry);
+		
+		if(invalidOrderBooks.contains(symbol)) {
+			return;
+		}
+		
+		final BitfinexRawOrderBook orderBook = orderBooks.computeIfAbsent(symbol, 
+				s -> new BitfinexRawOrderBook(s.getCurrencyPair().getScale()));
+		
+		// An order book that can not be maintained is dropped until the next snapshot
+		try {
+			orderBook.applyEntry(entry);
+		} catch (BitfinexClientException e) {
+			logger.error("Unable to maintain the raw order book of {}, waiting for the next snapshot", 
+					symbol, e);
+			invalidOrderBooks.add(symbol);
+			orderBooks.remove(symbol);
+		}
 	}
 }
@@ -20,8 +20,12 @@ package com.github.jnidzwetzki.bitfinex.v2.manager;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
 
 public class SimpleCallbackManager<T> extends AbstractManager {
@@ -31,9 +35,19 @@ public class SimpleCallbackManager<T> extends AbstractManager {
 	 */
 	private final List<Consumer<T>> callbacks;
 	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(SimpleCallbackManager.class);
+	
 	public SimpleCallbackManager(final ExecutorService executorService, 
 			final BitfinexWebsocketClient client) {
-		super(client, executorService);
+		this(executorService, client, "callbacks");
+	}
+	
+	public SimpleCallbackManager(final ExecutorService executorService, 
+			final BitfinexWebsocketClient client, final String name) {
+		super(client, CallbackQueuePolicy.wrapExecutorService(client, executorService, name));
 		this.callbacks = new ArrayList<>();
 	}
 	
@@ -76,7 +90,13 @@ public class SimpleCallbackManager<T> extends AbstractManager {
 			
 			callbacks.forEach((c) -> {
 				final Runnable runnable = () -> c.accept(exchangeOrder);
-				executorService.submit(runnable);
+				
+				try {
+					executorService.submit(runnable);
+				} catch (RejectedExecutionException e) {
+					// Counted by the bounded callback queue
+					logger.debug("Callback for {} rejected", exchangeOrder, e);
+				}
 			});
 		}
 	}
@@ -26,7 +26,7 @@ import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexAccountSymbol;
 public class TradeManager extends SimpleCallbackManager<BitfinexMyExecutedTrade> {
 
 	public TradeManager(final BitfinexWebsocketClient client, final ExecutorService executorService) {
-		super(executorService, client);
+		super(executorService, client, "my-trades");
 		client.getCallbacks().onMyTradeEvent(this::updateTrade);
 	}
 	
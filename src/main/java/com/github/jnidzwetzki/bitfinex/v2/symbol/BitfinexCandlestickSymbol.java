@@ -28,28 +28,75 @@ public class BitfinexCandlestickSymbol implements BitfinexStreamSymbol {
 	private final BitfinexCurrencyPair currencyPair;
 	
 	/**
-	 * The timeframe
+	 * The timeframe (null for local timeframes)
 	 */
 	private final BitfinexCandleTimeFrame timeframe;
 
+	/**
+	 * The length of a candle in milliseconds
+	 */
+	private final long intervalMillis;
+
 	BitfinexCandlestickSymbol(final BitfinexCurrencyPair currencyPair, final BitfinexCandleTimeFrame timeframe) {
 		this.currencyPair = currencyPair;
 		this.timeframe = timeframe;
+		this.intervalMillis = timeframe.getMilliSeconds();
+	}
+
+	/**
+	 * A local timeframe, the candles can only be aggregated from 
+	 * executed trades (see QuoteManager#registerCandleAggregation)
+	 * 
+	 * @param currencyPair
+	 * @param intervalMillis
+	 */
+	BitfinexCandlestickSymbol(final BitfinexCurrencyPair currencyPair, final long intervalMillis) {
+		if(intervalMillis <= 0) {
+			throw new IllegalArgumentException("Invalid interval: " + intervalMillis);
+		}
+
+		this.currencyPair = currencyPair;
+		this.timeframe = null;
+		this.intervalMillis = intervalMillis;
 	}
 
 	public BitfinexCurrencyPair getCurrencyPair() {
 		return currencyPair;
 	}
 
+	/**
+	 * The bitfinex timeframe, null for local timeframes
+	 * @return
+	 */
 	public BitfinexCandleTimeFrame getTimeframe() {
 		return timeframe;
 	}
+
+	/**
+	 * The length of a candle in milliseconds
+	 * @return
+	 */
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	/**
+	 * Is the timeframe supported by the bitfinex candles channel
+	 * @return
+	 */
+	public boolean isBitfinexTimeframe() {
+		return timeframe != null;
+	}
 	
 	/**
 	 * To Bitfinex symbol string
 	 * @return
 	 */
 	public String toBifinexCandlestickString() {
+		if(! isBitfinexTimeframe()) {
+			throw new IllegalStateException("Local timeframe can not be subscribed: " + this);
+		}
+		
 		return "trade:" + timeframe.getBitfinexString() + ":" + currencyPair.toBitfinexString();
 	}
 	
@@ -80,7 +127,8 @@ public class BitfinexCandlestickSymbol implements BitfinexStreamSymbol {
 
 	@Override
 	public String toString() {
-		return "BitfinexCandlestickSymbol [currencyPair=" + currencyPair + ", timeframe=" + timeframe + "]";
+		return "BitfinexCandlestickSymbol [currencyPair=" + currencyPair + ", timeframe=" 
+				+ (isBitfinexTimeframe() ? timeframe : intervalMillis + "ms") + "]";
 	}
 
 	@Override
@@ -89,6 +137,7 @@ public class BitfinexCandlestickSymbol implements BitfinexStreamSymbol {
 		int result = 1;
 		result = prime * result + ((currencyPair == null) ? 0 : currencyPair.hashCode());
 		result = prime * result + ((timeframe == null) ? 0 : timeframe.hashCode());
+		result = prime * result + (int) (intervalMillis ^ (intervalMillis >>> 32));
 		return result;
 	}
 
@@ -108,6 +157,8 @@ public class BitfinexCandlestickSymbol implements BitfinexStreamSymbol {
 			return false;
 		if (timeframe != other.timeframe)
 			return false;
+		if (intervalMillis != other.intervalMillis)
+			return false;
 		return true;
 	}
 	
@@ -55,6 +55,27 @@ public final class BitfinexSymbols {
         return new BitfinexCandlestickSymbol(currencyPair, Objects.requireNonNull(timeframe));
     }
 
+    /**
+     * Returns a candlestick symbol with an arbitrary interval (e.g., 10 seconds). Intervals 
+     * of a bitfinex timeframe return the symbol of the timeframe, other intervals can 
+     * only be aggregated locally from executed trades
+     *
+     * @param currencyPair   of candles
+     * @param intervalMillis length of a candle in milliseconds
+     * @return symbol
+     */
+    public static BitfinexCandlestickSymbol candlesticks(final BitfinexCurrencyPair currencyPair, 
+    		final long intervalMillis) {
+    	
+        for (final BitfinexCandleTimeFrame timeframe : BitfinexCandleTimeFrame.values()) {
+            if (timeframe.getMilliSeconds() == intervalMillis) {
+                return candlesticks(currencyPair, timeframe);
+            }
+        }
+        
+        return new BitfinexCandlestickSymbol(currencyPair, intervalMillis);
+    }
+
     /**
      * Returns symbol for candlestick channel
      *
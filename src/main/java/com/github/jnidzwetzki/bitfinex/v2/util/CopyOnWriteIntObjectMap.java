@@ -0,0 +1,249 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * A copy on write hash map with primitive int keys (open addressing, 
+ * linear probing). Reads are a single volatile read of an immutable 
+ * table and do not box the key. Writes copy the table and should be rare.
+ * 
+ * Null values are not supported.
+ *
+ * @param <V>
+ */
+public class CopyOnWriteIntObjectMap<V> {
+
+	/**
+	 * The empty table
+	 */
+	private final static Table EMPTY_TABLE = new Table(2);
+
+	/**
+	 * The current table
+	 */
+	private volatile Table table;
+
+	/**
+	 * The lock for the writers
+	 */
+	private final Object writeLock = new Object();
+
+	public CopyOnWriteIntObjectMap() {
+		this.table = EMPTY_TABLE;
+	}
+
+	/**
+	 * Get the value for the key
+	 * @param key
+	 * @return the value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final int key) {
+		final Table currentTable = table;
+		final int[] keys = currentTable.keys;
+		final Object[] values = currentTable.values;
+		final int mask = keys.length - 1;
+		int pos = hash(key) & mask;
+
+		Object value;
+		while((value = values[pos]) != null) {
+			if(keys[pos] == key) {
+				return (V) value;
+			}
+			pos = (pos + 1) & mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Contains the map the key
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(final int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Put a new value
+	 * @param key
+	 * @param value
+	 * @return the old value or null
+	 */
+	public V put(final int key, final V value) {
+		Objects.requireNonNull(value);
+
+		synchronized (writeLock) {
+			final V oldValue = get(key);
+			final int newSize = (oldValue == null) ? table.size + 1 : table.size;
+			final Table newTable = copyTable(newSize, key);
+			newTable.insert(key, value);
+			table = newTable;
+			return oldValue;
+		}
+	}
+
+	/**
+	 * Remove the key
+	 * @param key
+	 * @return the old value or null
+	 */
+	public V remove(final int key) {
+		synchronized (writeLock) {
+			final V oldValue = get(key);
+
+			if(oldValue != null) {
+				table = copyTable(table.size - 1, key);
+			}
+
+			return oldValue;
+		}
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		synchronized (writeLock) {
+			table = EMPTY_TABLE;
+		}
+	}
+
+	/**
+	 * Get the number of entries
+	 * @return
+	 */
+	public int size() {
+		return table.size;
+	}
+
+	/**
+	 * Is the map empty
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return table.size == 0;
+	}
+
+	/**
+	 * Get a snapshot of the values
+	 * @return
+	 */
+	public List<V> values() {
+		final List<V> result = new ArrayList<>();
+		forEach((key, value) -> result.add(value));
+		return result;
+	}
+
+	/**
+	 * Call the consumer for all entries of the current table
+	 * @param consumer
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(final BiConsumer<Integer, V> consumer) {
+		final Table currentTable = table;
+
+		for(int pos = 0; pos < currentTable.keys.length; pos++) {
+			if(currentTable.values[pos] != null) {
+				consumer.accept(currentTable.keys[pos], (V) currentTable.values[pos]);
+			}
+		}
+	}
+
+	/**
+	 * Copy the current table without the given key
+	 * @param newSize
+	 * @param skipKey
+	 * @return
+	 */
+	private Table copyTable(final int newSize, final int skipKey) {
+		int capacity = 2;
+		while(capacity < newSize * 2) {
+			capacity *= 2;
+		}
+
+		final Table currentTable = table;
+		final Table newTable = new Table(capacity);
+
+		for(int pos = 0; pos < currentTable.keys.length; pos++) {
+			final Object value = currentTable.values[pos];
+			if(value != null && currentTable.keys[pos] != skipKey) {
+				newTable.insert(currentTable.keys[pos], value);
+			}
+		}
+
+		return newTable;
+	}
+
+	/**
+	 * Spread the bits of the key
+	 * @param key
+	 * @return
+	 */
+	private static int hash(final int key) {
+		final int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private final static class Table {
+
+		/**
+		 * The keys
+		 */
+		private final int[] keys;
+
+		/**
+		 * The values (null = free slot)
+		 */
+		private final Object[] values;
+
+		/**
+		 * The number of entries
+		 */
+		private int size;
+
+		private Table(final int capacity) {
+			this.keys = new int[capacity];
+			this.values = new Object[capacity];
+		}
+
+		/**
+		 * Insert the key into a free slot (only called before the table is published)
+		 * @param key
+		 * @param value
+		 */
+		private void insert(final int key, final Object value) {
+			final int mask = keys.length - 1;
+			int pos = hash(key) & mask;
+
+			while(values[pos] != null) {
+				pos = (pos + 1) & mask;
+			}
+
+			keys[pos] = key;
+			values[pos] = value;
+			size++;
+		}
+	}
+}
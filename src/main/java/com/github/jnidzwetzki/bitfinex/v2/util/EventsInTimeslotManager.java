@@ -20,6 +20,7 @@ package com.github.jnidzwetzki.bitfinex.v2.util;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * This class limits the amount of events to t_events in a 
@@ -94,6 +95,35 @@ public class EventsInTimeslotManager {
 		}
 	}
 
+	/**
+	 * Wait until one more event fits into the timeslot and record it. Unlike 
+	 * waitForNewTimeslot(), the check and the record are atomic, so concurrent 
+	 * callers never exceed the number of events in the timeslot.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public synchronized void acquireEvent() throws InterruptedException {
+		
+		while(true) {
+			final long now = System.currentTimeMillis();
+			final long thresholdTime = now - timeslotInMilliseconds;
+			
+			// The events are recorded in time order
+			final List<Long> eventsInTimeslot = events.stream()
+					.filter(e -> e >= thresholdTime)
+					.collect(Collectors.toList());
+			
+			if(eventsInTimeslot.size() < numberOfEvents) {
+				recordNewEvent();
+				return;
+			}
+			
+			// Wait until the oldest event leaves the timeslot
+			final long oldestEvent = eventsInTimeslot.get(eventsInTimeslot.size() - numberOfEvents);
+			Thread.sleep(Math.max(1, oldestEvent - thresholdTime + 1));
+		}
+	}
+
 	/**
 	 * Get the number of events in the timeslot
 	 * @param thresholdTime
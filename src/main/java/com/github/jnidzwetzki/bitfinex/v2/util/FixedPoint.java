@@ -0,0 +1,233 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+
+/**
+ * Helper for fixed point values. A fixed point value is a long which 
+ * represents value * 10^scale (e.g., 7254.5 with scale 8 = 725450000000).
+ *
+ */
+public final class FixedPoint {
+
+	/**
+	 * The default scale (bitfinex uses up to 8 decimals for amounts)
+	 */
+	public final static int DEFAULT_SCALE = 8;
+
+	/**
+	 * The max supported scale
+	 */
+	public final static int MAX_SCALE = 18;
+
+	/**
+	 * The powers of ten that fit into a long
+	 */
+	private final static long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private FixedPoint() {
+		// Utility class
+	}
+
+	/**
+	 * Get 10^exponent
+	 * @param exponent
+	 * @return
+	 */
+	public static long powerOfTen(final int exponent) {
+		if(exponent < 0 || exponent > MAX_SCALE) {
+			throw new BitfinexClientException("Unsupported scale: " + exponent);
+		}
+
+		return POWERS_OF_TEN[exponent];
+	}
+
+	/**
+	 * Convert a fixed point value into a big decimal
+	 * @param scaledValue
+	 * @param scale
+	 * @return
+	 */
+	public static BigDecimal toBigDecimal(final long scaledValue, final int scale) {
+		return BigDecimal.valueOf(scaledValue, scale);
+	}
+
+	/**
+	 * Convert a big decimal into a fixed point value. Values with more 
+	 * decimals than the scale are rejected.
+	 * 
+	 * @param value
+	 * @param scale
+	 * @return
+	 * @throws BitfinexClientException if the value has more decimals than the scale 
+	 * 		or does not fit into a long
+	 */
+	public static long fromBigDecimal(final BigDecimal value, final int scale) {
+		return fromBigDecimal(value, scale, RoundingMode.UNNECESSARY);
+	}
+
+	/**
+	 * Convert a big decimal into a fixed point value, additional decimals 
+	 * are rounded with the rounding mode
+	 * 
+	 * @param value
+	 * @param scale
+	 * @param roundingMode
+	 * @return
+	 * @throws BitfinexClientException if the value does not fit into a long (or 
+	 * 		has more decimals than the scale with RoundingMode.UNNECESSARY)
+	 */
+	public static long fromBigDecimal(final BigDecimal value, final int scale, final RoundingMode roundingMode) {
+		final BigDecimal scaledValue;
+		
+		try {
+			scaledValue = value.setScale(scale, roundingMode);
+		} catch (ArithmeticException e) {
+			throw new BitfinexClientException("Value " + value + " has more than " + scale + " decimals");
+		}
+		
+		try {
+			return scaledValue.unscaledValue().longValueExact();
+		} catch (ArithmeticException e) {
+			throw new BitfinexClientException("Value " + value + " does not fit into a long with scale " + scale);
+		}
+	}
+
+	/**
+	 * Get the number of significant decimals of a big decimal, trailing 
+	 * zeros are ignored (e.g., 1.2500 = 2, 100 = 0)
+	 * @param value
+	 * @return
+	 */
+	public static int getDecimals(final BigDecimal value) {
+		return Math.max(0, value.stripTrailingZeros().scale());
+	}
+
+	/**
+	 * Get the smallest scale (at least DEFAULT_SCALE) that represents both 
+	 * values without rounding, null values are ignored
+	 * @param value1
+	 * @param value2
+	 * @return
+	 */
+	public static int getExactScale(final BigDecimal value1, final BigDecimal value2) {
+		final int decimals1 = value1 == null ? 0 : getDecimals(value1);
+		final int decimals2 = value2 == null ? 0 : getDecimals(value2);
+		return Math.max(DEFAULT_SCALE, Math.max(decimals1, decimals2));
+	}
+
+	/**
+	 * Get the number of significant decimals of a fixed point value, trailing 
+	 * zeros are ignored
+	 * @param scaledValue
+	 * @param scale
+	 * @return
+	 */
+	public static int getDecimals(final long scaledValue, final int scale) {
+		long value = scaledValue;
+		int decimals = scale;
+
+		while(decimals > 0 && value % 10 == 0) {
+			value /= 10;
+			decimals--;
+		}
+
+		return decimals;
+	}
+
+	/**
+	 * Convert a fixed point value into a double
+	 * @param scaledValue
+	 * @param scale
+	 * @return
+	 */
+	public static double toDouble(final long scaledValue, final int scale) {
+		return scaledValue / (double) powerOfTen(scale);
+	}
+
+	/**
+	 * Change the scale of a fixed point value. Values with more (non zero) 
+	 * decimals than the new scale are rejected.
+	 * 
+	 * @param value
+	 * @param fromScale
+	 * @param toScale
+	 * @return
+	 * @throws ArithmeticException if the result does not fit into a long or 
+	 * 		the value has more decimals than the new scale
+	 */
+	public static long rescale(final long value, final int fromScale, final int toScale) {
+		return rescale(value, fromScale, toScale, RoundingMode.UNNECESSARY);
+	}
+
+	/**
+	 * Change the scale of a fixed point value, additional decimals are 
+	 * rounded with the rounding mode
+	 * 
+	 * @param value
+	 * @param fromScale
+	 * @param toScale
+	 * @param roundingMode
+	 * @return
+	 * @throws ArithmeticException if the result does not fit into a long (or 
+	 * 		the value has more decimals than the new scale with RoundingMode.UNNECESSARY)
+	 */
+	public static long rescale(final long value, final int fromScale, final int toScale, 
+			final RoundingMode roundingMode) {
+		
+		if(fromScale == toScale) {
+			return value;
+		}
+
+		if(fromScale < toScale) {
+			return Math.multiplyExact(value, powerOfTen(toScale - fromScale));
+		}
+
+		final long divisor = powerOfTen(fromScale - toScale);
+		final long quotient = value / divisor;
+		final long remainder = Math.abs(value % divisor);
+
+		if(remainder == 0) {
+			return quotient;
+		}
+		
+		switch (roundingMode) {
+		case UNNECESSARY:
+			throw new ArithmeticException("Value " + toBigDecimal(value, fromScale) 
+				+ " has more than " + toScale + " decimals");
+		case HALF_UP:
+			if(remainder * 2 >= divisor) {
+				return value < 0 ? quotient - 1 : quotient + 1;
+			}
+			return quotient;
+		default:
+			return toBigDecimal(value, fromScale).setScale(toScale, roundingMode).unscaledValue().longValueExact();
+		}
+	}
+}
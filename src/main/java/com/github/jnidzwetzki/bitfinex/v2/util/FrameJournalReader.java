@@ -0,0 +1,152 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+
+/**
+ * Reads the records of a journal written by the {@link FrameJournalWriter}
+ */
+public class FrameJournalReader {
+
+	/**
+	 * The journal directory
+	 */
+	private final Path directory;
+
+	public FrameJournalReader(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Consumer of the journal records
+	 */
+	@FunctionalInterface
+	public interface RecordConsumer {
+
+		/**
+		 * Accept a record
+		 * @param frame
+		 * @param timestamp - the receive timestamp
+		 * @param connection - the connection that received the frame
+		 */
+		void accept(final String frame, final long timestamp, final int connection);
+	}
+
+	/**
+	 * Read all records of the journal in the written order
+	 * @param consumer - accepts the frame and the receive timestamp
+	 * @return the number of read records
+	 */
+	public long forEach(final ObjLongConsumer<String> consumer) {
+		return forEach((frame, timestamp, connection) -> consumer.accept(frame, timestamp));
+	}
+
+	/**
+	 * Read all records of the journal in the written order
+	 * @param consumer - accepts the frame, the receive timestamp and the connection
+	 * @return the number of read records
+	 */
+	public long forEach(final RecordConsumer consumer) {
+		long records = 0;
+		byte[] payload = new byte[1024];
+
+		try {
+			for(final Path segment : listSegments(directory)) {
+				try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+					final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+					while(buffer.remaining() >= FrameJournalWriter.HEADER_SIZE) {
+						final int length = buffer.getInt();
+
+						if(length <= 0 || length > buffer.remaining() - Long.BYTES - Integer.BYTES) {
+							break;
+						}
+
+						final long timestamp = buffer.getLong();
+						final int connection = buffer.getInt();
+
+						if(payload.length < length) {
+							payload = new byte[Math.max(length, payload.length * 2)];
+						}
+
+						buffer.get(payload, 0, length);
+						consumer.accept(new String(payload, 0, length, StandardCharsets.UTF_8), timestamp, connection);
+						records++;
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new BitfinexClientException("Unable to read journal " + directory, e);
+		}
+
+		return records;
+	}
+
+	/**
+	 * List the segments of the journal in the written order
+	 * @param directory
+	 * @return
+	 * @throws IOException
+	 */
+	static List<Path> listSegments(final Path directory) throws IOException {
+		if(! Files.isDirectory(directory)) {
+			throw new IOException("Journal directory does not exist: " + directory);
+		}
+
+		try (final Stream<Path> files = Files.list(directory)) {
+			return files
+					.filter(p -> p.getFileName().toString().startsWith(FrameJournalWriter.SEGMENT_PREFIX))
+					.filter(p -> p.getFileName().toString().endsWith(FrameJournalWriter.SEGMENT_SUFFIX))
+					.sorted((p1, p2) -> Integer.compare(getSegmentIndex(p1), getSegmentIndex(p2)))
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Get the file name of the segment
+	 * @param index
+	 * @return
+	 */
+	static String getSegmentName(final int index) {
+		return String.format("%s%08d%s", FrameJournalWriter.SEGMENT_PREFIX, index, FrameJournalWriter.SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Get the index of the segment
+	 * @param segment
+	 * @return
+	 */
+	static int getSegmentIndex(final Path segment) {
+		final String name = segment.getFileName().toString();
+		return Integer.parseInt(name.substring(FrameJournalWriter.SEGMENT_PREFIX.length(), 
+				name.length() - FrameJournalWriter.SEGMENT_SUFFIX.length()));
+	}
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+
+/**
+ * Appends websocket frames and their receive timestamps (nanoseconds since 
+ * the epoch, see {@link #currentTimeNanos()}) to a segmented, memory mapped 
+ * journal. 
+ * 
+ * Record layout: [int length][long timestamp][int connection][utf-8 payload]. 
+ * The length is written last, a zero length marks the end of a segment, so a 
+ * journal of a crashed process can be read up to the last complete record.
+ * 
+ * The journal is thread safe, several connections can share one journal. The 
+ * records are tagged with the connection, since the channel ids of different 
+ * connections overlap.
+ */
+public class FrameJournalWriter implements Closeable {
+
+	/**
+	 * The default segment size
+	 */
+	public final static int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * The size of the record header (length, timestamp and connection)
+	 */
+	final static int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+	/**
+	 * The offset of System.nanoTime() to the epoch, the timestamps of segments 
+	 * written by different processes are comparable
+	 */
+	private final static long EPOCH_OFFSET_NANOS 
+		= TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+
+	/**
+	 * The prefix of the segment files
+	 */
+	final static String SEGMENT_PREFIX = "journal-";
+
+	/**
+	 * The suffix of the segment files
+	 */
+	final static String SEGMENT_SUFFIX = ".seg";
+
+	/**
+	 * The journal directory
+	 */
+	private final Path directory;
+
+	/**
+	 * The size of a segment
+	 */
+	private final int segmentSize;
+
+	/**
+	 * The encoder (guarded by this)
+	 */
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+	/**
+	 * The channel of the current segment
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The buffer of the current segment
+	 */
+	private MappedByteBuffer buffer;
+
+	/**
+	 * The index of the next segment
+	 */
+	private int nextSegment;
+
+	/**
+	 * The number of written records
+	 */
+	private long records;
+
+	/**
+	 * Is the journal closed
+	 */
+	private boolean closed;
+
+	public FrameJournalWriter(final Path directory) {
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Open a journal, existing segments in the directory are kept and
+	 * the new records are written to new segments
+	 * 
+	 * @param directory
+	 * @param segmentSize
+	 */
+	public FrameJournalWriter(final Path directory, final int segmentSize) {
+		if(segmentSize <= HEADER_SIZE * 2) {
+			throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+		}
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		try {
+			Files.createDirectories(directory);
+			final List<Path> segments = FrameJournalReader.listSegments(directory);
+			this.nextSegment = segments.isEmpty() ? 0 
+					: FrameJournalReader.getSegmentIndex(segments.get(segments.size() - 1)) + 1;
+			openSegment();
+		} catch (IOException e) {
+			throw new BitfinexClientException("Unable to open journal " + directory, e);
+		}
+	}
+
+	/**
+	 * The current time in nanoseconds since the epoch (monotonic within the process)
+	 * @return
+	 */
+	public static long currentTimeNanos() {
+		return System.nanoTime() + EPOCH_OFFSET_NANOS;
+	}
+
+	/**
+	 * Append a frame of the connection 0 with the current timestamp
+	 * @param frame
+	 */
+	public void append(final String frame) {
+		append(currentTimeNanos(), 0, frame);
+	}
+
+	/**
+	 * Append a frame of the connection 0
+	 * @param timestamp - receive timestamp in nanoseconds
+	 * @param frame
+	 */
+	public void append(final long timestamp, final String frame) {
+		append(timestamp, 0, frame);
+	}
+
+	/**
+	 * Append a frame
+	 * @param timestamp - receive timestamp in nanoseconds since the epoch
+	 * @param connection - the connection that received the frame
+	 * @param frame
+	 */
+	public synchronized void append(final long timestamp, final int connection, final String frame) {
+		if(closed) {
+			throw new BitfinexClientException("Journal is closed: " + directory);
+		}
+
+		// Worst case for UTF-8 are three bytes per char
+		final long maxRecordSize = HEADER_SIZE + (long) frame.length() * 3;
+
+		if(maxRecordSize + Integer.BYTES > segmentSize) {
+			throw new BitfinexClientException("Frame is too large for the segment size: " + frame.length());
+		}
+
+		try {
+			if(buffer.remaining() < maxRecordSize + Integer.BYTES) {
+				closeSegment();
+				openSegment();
+			}
+		} catch (IOException e) {
+			throw new BitfinexClientException("Unable to roll journal segment " + directory, e);
+		}
+
+		final int start = buffer.position();
+		buffer.position(start + HEADER_SIZE);
+
+		encoder.reset();
+		final CoderResult result = encoder.encode(CharBuffer.wrap(frame), buffer, true);
+		if(result.isError()) {
+			buffer.position(start);
+			throw new BitfinexClientException("Unable to encode frame: " + result);
+		}
+		encoder.flush(buffer);
+
+		final int length = buffer.position() - start - HEADER_SIZE;
+		buffer.putLong(start + Integer.BYTES, timestamp);
+		buffer.putInt(start + Integer.BYTES + Long.BYTES, connection);
+		buffer.putInt(start, length);
+		records++;
+	}
+
+	/**
+	 * Get the number of written records
+	 * @return
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	/**
+	 * Get the journal directory
+	 * @return
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Write the mapped segment to the disk
+	 */
+	public synchronized void flush() {
+		if(! closed) {
+			buffer.force();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if(closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			closeSegment();
+		} catch (IOException e) {
+			throw new BitfinexClientException("Unable to close journal " + directory, e);
+		}
+	}
+
+	/**
+	 * Open the next segment
+	 * @throws IOException
+	 */
+	private void openSegment() throws IOException {
+		final Path segment = directory.resolve(FrameJournalReader.getSegmentName(nextSegment++));
+		channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, 
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+	}
+
+	/**
+	 * Close the current segment
+	 * @throws IOException
+	 */
+	private void closeSegment() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map with primitive long keys and int values (open addressing, 
+ * linear probing). The map is not thread safe.
+ *
+ */
+public class LongIntHashMap {
+
+	/**
+	 * The value that is returned for missing keys
+	 */
+	public final static int NO_VALUE = -1;
+
+	/**
+	 * The max load factor before the table is resized
+	 */
+	private final static float LOAD_FACTOR = 0.5f;
+
+	/**
+	 * The keys
+	 */
+	private long[] keys;
+
+	/**
+	 * The values
+	 */
+	private int[] values;
+
+	/**
+	 * Is the slot used
+	 */
+	private boolean[] used;
+
+	/**
+	 * The number of entries
+	 */
+	private int size;
+
+	/**
+	 * The resize threshold
+	 */
+	private int threshold;
+
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	public LongIntHashMap(final int expectedSize) {
+		int capacity = 2;
+		while(capacity * LOAD_FACTOR < expectedSize) {
+			capacity *= 2;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Get the value for the key
+	 * @param key
+	 * @return the value or NO_VALUE
+	 */
+	public int get(final long key) {
+		final int mask = keys.length - 1;
+		int pos = hash(key) & mask;
+
+		while(used[pos]) {
+			if(keys[pos] == key) {
+				return values[pos];
+			}
+			pos = (pos + 1) & mask;
+		}
+
+		return NO_VALUE;
+	}
+
+	/**
+	 * Contains the map the key
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(final long key) {
+		return get(key) != NO_VALUE;
+	}
+
+	/**
+	 * Put a new value, values must not be NO_VALUE
+	 * @param key
+	 * @param value
+	 * @return the old value or NO_VALUE
+	 */
+	public int put(final long key, final int value) {
+		if(value == NO_VALUE) {
+			throw new IllegalArgumentException("Value " + NO_VALUE + " is reserved");
+		}
+
+		final int mask = keys.length - 1;
+		int pos = hash(key) & mask;
+
+		while(used[pos]) {
+			if(keys[pos] == key) {
+				final int oldValue = values[pos];
+				values[pos] = value;
+				return oldValue;
+			}
+			pos = (pos + 1) & mask;
+		}
+
+		used[pos] = true;
+		keys[pos] = key;
+		values[pos] = value;
+		size++;
+
+		if(size > threshold) {
+			rehash(keys.length * 2);
+		}
+
+		return NO_VALUE;
+	}
+
+	/**
+	 * Remove the key
+	 * @param key
+	 * @return the old value or NO_VALUE
+	 */
+	public int remove(final long key) {
+		final int mask = keys.length - 1;
+		int pos = hash(key) & mask;
+
+		while(used[pos]) {
+			if(keys[pos] == key) {
+				final int oldValue = values[pos];
+				shiftKeys(pos);
+				size--;
+				return oldValue;
+			}
+			pos = (pos + 1) & mask;
+		}
+
+		return NO_VALUE;
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * Get the number of entries
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Is the map empty
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Close the gap of a removed entry (backward shift deletion)
+	 * @param pos
+	 */
+	private void shiftKeys(int pos) {
+		final int mask = keys.length - 1;
+
+		while(true) {
+			final int last = pos;
+			pos = (pos + 1) & mask;
+
+			while(true) {
+				if(! used[pos]) {
+					used[last] = false;
+					return;
+				}
+
+				final int slot = hash(keys[pos]) & mask;
+
+				// Can the entry be moved to the free position?
+				if(last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos)) {
+					break;
+				}
+
+				pos = (pos + 1) & mask;
+			}
+
+			keys[last] = keys[pos];
+			values[last] = values[pos];
+		}
+	}
+
+	/**
+	 * Resize the table
+	 * @param newCapacity
+	 */
+	private void rehash(final int newCapacity) {
+		final long[] oldKeys = keys;
+		final int[] oldValues = values;
+		final boolean[] oldUsed = used;
+
+		allocate(newCapacity);
+
+		final int mask = newCapacity - 1;
+
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(! oldUsed[i]) {
+				continue;
+			}
+
+			int pos = hash(oldKeys[i]) & mask;
+			while(used[pos]) {
+				pos = (pos + 1) & mask;
+			}
+
+			used[pos] = true;
+			keys[pos] = oldKeys[i];
+			values[pos] = oldValues[i];
+		}
+	}
+
+	/**
+	 * Allocate the table
+	 * @param capacity
+	 */
+	private void allocate(final int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * Spread the bits of the key
+	 * @param key
+	 * @return
+	 */
+	private static int hash(final long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 32);
+		return (int) (h ^ (h >>> 16));
+	}
+}
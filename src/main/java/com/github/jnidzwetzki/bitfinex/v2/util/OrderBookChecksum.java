@@ -0,0 +1,195 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.zip.CRC32;
+
+/**
+ * Calculates the bitfinex order book checksum (CRC32 over the 
+ * colon separated values of the top levels). The values are 
+ * formatted like the JavaScript number formatting used by bitfinex 
+ * (e.g., 0.5, -1.25, 1e-8). 
+ * 
+ * The buffers are reused, the class is not thread safe.
+ */
+public class OrderBookChecksum {
+
+	/**
+	 * The number of levels per side that are used for the checksum
+	 */
+	public final static int CHECKSUM_LEVELS = 25;
+
+	/**
+	 * JavaScript switches to the exponential notation below this exponent
+	 */
+	private final static int MIN_PLAIN_EXPONENT = -6;
+
+	/**
+	 * The CRC
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The buffer for one formatted value
+	 */
+	private final byte[] buffer = new byte[48];
+
+	/**
+	 * The digits of the current value
+	 */
+	private final byte[] digits = new byte[20];
+
+	/**
+	 * Is the next value the first value
+	 */
+	private boolean first = true;
+
+	/**
+	 * Start a new checksum
+	 */
+	public void reset() {
+		crc.reset();
+		first = true;
+	}
+
+	/**
+	 * Add a integer value (e.g., an order id)
+	 * @param value
+	 */
+	public void addLong(final long value) {
+		addFixedPoint(value, 0);
+	}
+
+	/**
+	 * Add a fixed point value (value * 10^scale)
+	 * @param value
+	 * @param scale
+	 */
+	public void addFixedPoint(final long value, final int scale) {
+		int length = 0;
+
+		if(! first) {
+			buffer[length++] = ':';
+		}
+		first = false;
+
+		if(value == 0) {
+			buffer[length++] = '0';
+			crc.update(buffer, 0, length);
+			return;
+		}
+
+		if(value < 0) {
+			buffer[length++] = '-';
+		}
+
+		// Strip the trailing zeros of the fraction
+		long mantissa = value;
+		int effectiveScale = scale;
+		while(effectiveScale > 0 && mantissa % 10 == 0) {
+			mantissa /= 10;
+			effectiveScale--;
+		}
+
+		// Digits of the absolute mantissa (Long.MIN_VALUE safe)
+		int numberOfDigits = 0;
+		long rest = mantissa;
+		do {
+			digits[numberOfDigits++] = (byte) ('0' + Math.abs(rest % 10));
+			rest /= 10;
+		} while(rest != 0);
+
+		// The digits are in reverse order
+		for(int i = 0; i < numberOfDigits / 2; i++) {
+			final byte tmp = digits[i];
+			digits[i] = digits[numberOfDigits - 1 - i];
+			digits[numberOfDigits - 1 - i] = tmp;
+		}
+
+		final int exponent = numberOfDigits - 1 - effectiveScale;
+
+		if(exponent < MIN_PLAIN_EXPONENT) {
+			length = appendExponential(length, numberOfDigits, exponent);
+		} else {
+			length = appendPlain(length, numberOfDigits, effectiveScale);
+		}
+
+		crc.update(buffer, 0, length);
+	}
+
+	/**
+	 * Get the checksum (as signed int like bitfinex)
+	 * @return
+	 */
+	public int getChecksum() {
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Append the digits as plain number (e.g., 0.0015)
+	 */
+	private int appendPlain(int length, final int numberOfDigits, final int effectiveScale) {
+		final int integerDigits = numberOfDigits - effectiveScale;
+
+		if(integerDigits <= 0) {
+			buffer[length++] = '0';
+			buffer[length++] = '.';
+			for(int i = 0; i < -integerDigits; i++) {
+				buffer[length++] = '0';
+			}
+			for(int i = 0; i < numberOfDigits; i++) {
+				buffer[length++] = digits[i];
+			}
+			return length;
+		}
+
+		for(int i = 0; i < numberOfDigits; i++) {
+			if(i == integerDigits) {
+				buffer[length++] = '.';
+			}
+			buffer[length++] = digits[i];
+		}
+
+		return length;
+	}
+
+	/**
+	 * Append the digits in exponential notation (e.g., 1.5e-7)
+	 */
+	private int appendExponential(int length, final int numberOfDigits, final int exponent) {
+		buffer[length++] = digits[0];
+
+		if(numberOfDigits > 1) {
+			buffer[length++] = '.';
+			for(int i = 1; i < numberOfDigits; i++) {
+				buffer[length++] = digits[i];
+			}
+		}
+
+		buffer[length++] = 'e';
+		buffer[length++] = '-';
+
+		final int positiveExponent = -exponent;
+		if(positiveExponent >= 10) {
+			buffer[length++] = (byte) ('0' + positiveExponent / 10);
+		}
+		buffer[length++] = (byte) ('0' + positiveExponent % 10);
+
+		return length;
+	}
+}
@@ -0,0 +1,466 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A bounded time series, ordered by timestamp. The values are stored as 
+ * fixed point longs in columns (one primitive array per column) of a ring 
+ * buffer; the oldest entries are dropped when the buffer is full.
+ * 
+ * Readers get a view on the live columns (no copy) while holding the read 
+ * lock, so several consumers can share one buffer.
+ */
+public class TimeSeriesBuffer {
+
+	public enum MergePolicy {
+		/**
+		 * An entry with the same timestamp is replaced (e.g., candle updates)
+		 */
+		REPLACE_SAME_TIMESTAMP,
+
+		/**
+		 * An entry with the same timestamp and key (column 0) is replaced (e.g., trade ids)
+		 */
+		REPLACE_SAME_KEY,
+
+		/**
+		 * Entries are always inserted (after entries with the same timestamp)
+		 */
+		APPEND
+	}
+
+	/**
+	 * The capacity
+	 */
+	private final int capacity;
+
+	/**
+	 * The scale of the fixed point values
+	 */
+	private final int scale;
+
+	/**
+	 * The scales of the columns
+	 */
+	private final int[] columnScales;
+
+	/**
+	 * The merge policy
+	 */
+	private final MergePolicy mergePolicy;
+
+	/**
+	 * The timestamps
+	 */
+	private final long[] timestamps;
+
+	/**
+	 * The value columns
+	 */
+	private final long[][] columns;
+
+	/**
+	 * The position of the oldest entry
+	 */
+	private int head;
+
+	/**
+	 * The number of entries
+	 */
+	private int size;
+
+	/**
+	 * The lock
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public TimeSeriesBuffer(final int capacity, final int numberOfColumns, final int scale, 
+			final MergePolicy mergePolicy) {
+
+		this(capacity, scale, sameScale(numberOfColumns, scale), mergePolicy);
+	}
+
+	/**
+	 * @param capacity
+	 * @param scale - the default scale
+	 * @param columnScales - the scale of each column (e.g., a smaller scale for volumes)
+	 * @param mergePolicy
+	 */
+	public TimeSeriesBuffer(final int capacity, final int scale, final int[] columnScales, 
+			final MergePolicy mergePolicy) {
+
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		this.capacity = capacity;
+		this.scale = scale;
+		this.columnScales = columnScales.clone();
+		this.mergePolicy = mergePolicy;
+		this.timestamps = new long[capacity];
+		this.columns = new long[columnScales.length][capacity];
+	}
+
+	/**
+	 * Build the column scales with the same scale for all columns
+	 * @param numberOfColumns
+	 * @param scale
+	 * @return
+	 */
+	private static int[] sameScale(final int numberOfColumns, final int scale) {
+		final int[] columnScales = new int[numberOfColumns];
+		Arrays.fill(columnScales, scale);
+		return columnScales;
+	}
+
+	/**
+	 * Insert or replace an entry (see merge policy)
+	 * @param timestamp
+	 * @param values - the fixed point values of the columns
+	 * @return false if the entry is older than all entries of a full buffer
+	 */
+	public boolean put(final long timestamp, final long... values) {
+		if(values.length != columns.length) {
+			throw new IllegalArgumentException("Expected " + columns.length + " values, got " + values.length);
+		}
+
+		lock.writeLock().lock();
+
+		try {
+			// First entry with a larger timestamp
+			int position = upperBound(timestamp);
+
+			if(mergePolicy != MergePolicy.APPEND) {
+				for(int i = position - 1; i >= 0 && timestamps[physical(i)] == timestamp; i--) {
+					if(mergePolicy == MergePolicy.REPLACE_SAME_TIMESTAMP || columns[0][physical(i)] == values[0]) {
+						setValues(physical(i), timestamp, values);
+						return true;
+					}
+				}
+			}
+
+			if(size == capacity) {
+				if(position == 0) {
+					return false;
+				}
+
+				// Drop the oldest entry
+				head = (head + 1) % capacity;
+				size--;
+				position--;
+			}
+
+			// Shift the newer entries (only for out of order entries)
+			for(int i = size; i > position; i--) {
+				final int to = physical(i);
+				final int from = physical(i - 1);
+				timestamps[to] = timestamps[from];
+				for(final long[] column : columns) {
+					column[to] = column[from];
+				}
+			}
+
+			setValues(physical(position), timestamp, values);
+			size++;
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Read all entries
+	 * @param reader - gets a view, the view is only valid within the reader
+	 * @return the result of the reader
+	 */
+	public <R> R read(final Function<View, R> reader) {
+		lock.readLock().lock();
+
+		try {
+			return reader.apply(new View(0, size));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Read the entries within the time range
+	 * @param from - inclusive
+	 * @param to - inclusive
+	 * @param reader - gets a view, the view is only valid within the reader
+	 * @return the result of the reader
+	 */
+	public <R> R readRange(final long from, final long to, final Function<View, R> reader) {
+		lock.readLock().lock();
+
+		try {
+			final int start = lowerBound(from);
+			final int end = Math.max(start, upperBound(to));
+			return reader.apply(new View(start, end - start));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Read the newest entries
+	 * @param count
+	 * @param reader - gets a view, the view is only valid within the reader
+	 * @return the result of the reader
+	 */
+	public <R> R readLast(final int count, final Function<View, R> reader) {
+		lock.readLock().lock();
+
+		try {
+			final int length = Math.min(count, size);
+			return reader.apply(new View(size - length, length));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the number of entries
+	 * @return
+	 */
+	public int size() {
+		lock.readLock().lock();
+
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the capacity
+	 * @return
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the default scale of the fixed point values
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Get the scale of the fixed point values of the column
+	 * @param column
+	 * @return
+	 */
+	public int getScale(final int column) {
+		return columnScales[column];
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+
+		try {
+			head = 0;
+			size = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Set the values of a slot
+	 * @param slot
+	 * @param timestamp
+	 * @param values
+	 */
+	private void setValues(final int slot, final long timestamp, final long[] values) {
+		timestamps[slot] = timestamp;
+		for(int column = 0; column < columns.length; column++) {
+			columns[column][slot] = values[column];
+		}
+	}
+
+	/**
+	 * Convert a logical position (0 = oldest) into a slot
+	 * @param position
+	 * @return
+	 */
+	private int physical(final int position) {
+		final int slot = head + position;
+		return slot >= capacity ? slot - capacity : slot;
+	}
+
+	/**
+	 * The position of the first entry with a timestamp >= the given timestamp
+	 * @param timestamp
+	 * @return
+	 */
+	private int lowerBound(final long timestamp) {
+		int low = 0;
+		int high = size;
+
+		while(low < high) {
+			final int mid = (low + high) >>> 1;
+			if(timestamps[physical(mid)] < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * The position of the first entry with a timestamp > the given timestamp
+	 * @param timestamp
+	 * @return
+	 */
+	private int upperBound(final long timestamp) {
+		int low = 0;
+		int high = size;
+
+		while(low < high) {
+			final int mid = (low + high) >>> 1;
+			if(timestamps[physical(mid)] <= timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * A view on a range of the buffer, index 0 is the oldest entry of the range
+	 */
+	public class View {
+
+		/**
+		 * The first position of the view
+		 */
+		private final int offset;
+
+		/**
+		 * The number of entries
+		 */
+		private final int length;
+
+		private View(final int offset, final int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Get the number of entries
+		 * @return
+		 */
+		public int size() {
+			return length;
+		}
+
+		/**
+		 * Is the view empty
+		 * @return
+		 */
+		public boolean isEmpty() {
+			return length == 0;
+		}
+
+		/**
+		 * Get the timestamp of an entry
+		 * @param index
+		 * @return
+		 */
+		public long getTimestamp(final int index) {
+			return timestamps[slot(index)];
+		}
+
+		/**
+		 * Get a fixed point value (value * 10^getScale(column))
+		 * @param column
+		 * @param index
+		 * @return
+		 */
+		public long getScaledValue(final int column, final int index) {
+			return columns[column][slot(index)];
+		}
+
+		/**
+		 * Get a value as double
+		 * @param column
+		 * @param index
+		 * @return
+		 */
+		public double getDouble(final int column, final int index) {
+			return FixedPoint.toDouble(getScaledValue(column, index), columnScales[column]);
+		}
+
+		/**
+		 * Get a value as big decimal
+		 * @param column
+		 * @param index
+		 * @return
+		 */
+		public BigDecimal getValue(final int column, final int index) {
+			return FixedPoint.toBigDecimal(getScaledValue(column, index), columnScales[column]);
+		}
+
+		/**
+		 * Get the default scale of the fixed point values
+		 * @return
+		 */
+		public int getScale() {
+			return scale;
+		}
+
+		/**
+		 * Get the scale of the fixed point values of the column
+		 * @param column
+		 * @return
+		 */
+		public int getScale(final int column) {
+			return columnScales[column];
+		}
+
+		/**
+		 * Get the slot of an index
+		 * @param index
+		 * @return
+		 */
+		private int slot(final int index) {
+			if(index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("Index " + index + " size " + length);
+			}
+
+			return physical(offset + index);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts inbound messages and bytes and provides exponentially weighted 
+ * message and byte rates. Recording is lock free (called on the receive 
+ * thread), the rates are sampled lazily when they are read.
+ */
+public class TrafficMeter {
+
+	/**
+	 * The minimal interval between two rate samples
+	 */
+	private final static long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+	/**
+	 * The default time constant of the moving average
+	 */
+	private final static long DEFAULT_WINDOW_SECONDS = 10;
+
+	/**
+	 * The time constant of the moving average
+	 */
+	private final double windowNanos;
+
+	/**
+	 * The nano time source
+	 */
+	private final LongSupplier nanoClock;
+
+	/**
+	 * The received messages
+	 */
+	private final LongAdder messages = new LongAdder();
+
+	/**
+	 * The received bytes
+	 */
+	private final LongAdder bytes = new LongAdder();
+
+	/**
+	 * The time of the last sample
+	 */
+	private long lastSampleNanos;
+
+	/**
+	 * The messages at the last sample
+	 */
+	private long lastMessages;
+
+	/**
+	 * The bytes at the last sample
+	 */
+	private long lastBytes;
+
+	/**
+	 * Is the moving average initialized
+	 */
+	private boolean sampled;
+
+	/**
+	 * The message rate (per second)
+	 */
+	private double messageRate;
+
+	/**
+	 * The byte rate (per second)
+	 */
+	private double byteRate;
+
+	public TrafficMeter() {
+		this(DEFAULT_WINDOW_SECONDS, TimeUnit.SECONDS, System::nanoTime);
+	}
+
+	public TrafficMeter(final long window, final TimeUnit timeUnit, final LongSupplier nanoClock) {
+		
+		if(window <= 0) {
+			throw new IllegalArgumentException("Window must be > 0");
+		}
+		
+		this.windowNanos = timeUnit.toNanos(window);
+		this.nanoClock = nanoClock;
+		this.lastSampleNanos = nanoClock.getAsLong();
+	}
+
+	/**
+	 * Record a received message
+	 * @param size - the size of the message
+	 */
+	public void record(final int size) {
+		messages.increment();
+		bytes.add(size);
+	}
+
+	/**
+	 * Get the total number of received messages
+	 * @return
+	 */
+	public long getMessages() {
+		return messages.sum();
+	}
+
+	/**
+	 * Get the total number of received bytes
+	 * @return
+	 */
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	/**
+	 * Get the message rate
+	 * @return messages per second
+	 */
+	public synchronized double getMessageRate() {
+		sample();
+		return messageRate;
+	}
+
+	/**
+	 * Get the byte rate
+	 * @return bytes per second
+	 */
+	public synchronized double getByteRate() {
+		sample();
+		return byteRate;
+	}
+
+	/**
+	 * Fold the traffic since the last sample into the moving averages
+	 */
+	private void sample() {
+		final long now = nanoClock.getAsLong();
+		final long elapsedNanos = now - lastSampleNanos;
+		
+		if(elapsedNanos < SAMPLE_INTERVAL_NANOS) {
+			return;
+		}
+		
+		final long currentMessages = messages.sum();
+		final long currentBytes = bytes.sum();
+		final double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+		final double currentMessageRate = (currentMessages - lastMessages) / elapsedSeconds;
+		final double currentByteRate = (currentBytes - lastBytes) / elapsedSeconds;
+		
+		if(sampled) {
+			// Irregular sample intervals, weight by the elapsed time
+			final double alpha = 1.0 - Math.exp(- elapsedNanos / windowNanos);
+			messageRate += alpha * (currentMessageRate - messageRate);
+			byteRate += alpha * (currentByteRate - byteRate);
+		} else {
+			messageRate = currentMessageRate;
+			byteRate = currentByteRate;
+			sampled = true;
+		}
+		
+		lastSampleNanos = now;
+		lastMessages = currentMessages;
+		lastBytes = currentBytes;
+	}
+}
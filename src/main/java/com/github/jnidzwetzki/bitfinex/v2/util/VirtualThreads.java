@@ -0,0 +1,132 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to the virtual threads of the runtime (JDK 21+). The library is 
+ * compiled for Java 8, so the API is resolved by reflection.
+ */
+public class VirtualThreads {
+
+	/**
+	 * The Thread.ofVirtual method, null if not supported
+	 */
+	private static final Method OF_VIRTUAL;
+
+	/**
+	 * The Thread.Builder.name(String, long) method
+	 */
+	private static final Method BUILDER_NAME;
+
+	/**
+	 * The Thread.Builder.factory method
+	 */
+	private static final Method BUILDER_FACTORY;
+
+	/**
+	 * The Executors.newThreadPerTaskExecutor method
+	 */
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		Method newThreadPerTaskExecutor = null;
+
+		try {
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builderName = builderClass.getMethod("name", String.class, long.class);
+			builderFactory = builderClass.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			
+			// Preview API on JDK 19 / 20, fails without --enable-preview
+			ofVirtual.invoke(null);
+		} catch (Throwable e) {
+			logger.debug("Virtual threads are not supported by this runtime", e);
+			ofVirtual = null;
+		}
+
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	/**
+	 * Are virtual threads supported by the runtime
+	 * @return
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Create a thread factory for virtual threads (named prefix0, prefix1, ...)
+	 * @param prefix
+	 * @return the factory, null if virtual threads are not supported
+	 */
+	public static ThreadFactory newThreadFactory(final String prefix) {
+		if(! isSupported()) {
+			return null;
+		}
+
+		try {
+			final Object builder = OF_VIRTUAL.invoke(null);
+			BUILDER_NAME.invoke(builder, prefix, 0L);
+			return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Unable to create virtual thread factory", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Create an executor that starts a new virtual thread for each task
+	 * @param prefix
+	 * @return the executor, null if virtual threads are not supported
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(final String prefix) {
+		final ThreadFactory threadFactory = newThreadFactory(prefix);
+
+		if(threadFactory == null) {
+			return null;
+		}
+
+		try {
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Unable to create virtual thread executor", e);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+
+/**
+ * Access to the package-private channel filters, channel migrations and dual feeds 
+ * for the tests in the test packages
+ */
+public class ChannelTestHook {
+
+	/**
+	 * A channel on a mocked connection
+	 */
+	public static class TestChannel {
+
+		/**
+		 * The symbol of the channel
+		 */
+		private final BitfinexStreamSymbol symbol;
+
+		/**
+		 * The mocked connection
+		 */
+		private final SimpleBitfinexApiBroker client;
+
+		/**
+		 * Is the channel subscribed on the connection
+		 */
+		private final AtomicBoolean subscribed;
+
+		/**
+		 * The installed filter
+		 */
+		private ChannelFrameFilter filter;
+
+		private TestChannel(final BitfinexStreamSymbol symbol) {
+			this.symbol = symbol;
+			this.client = Mockito.mock(SimpleBitfinexApiBroker.class);
+			this.subscribed = new AtomicBoolean();
+			Mockito.when(client.isSubscribed(symbol)).thenAnswer(i -> subscribed.get());
+		}
+
+		/**
+		 * Capture the filter installed on the connection
+		 */
+		private void captureFilter() {
+			final ArgumentCaptor<ChannelFrameFilter> captor = ArgumentCaptor.forClass(ChannelFrameFilter.class);
+			Mockito.verify(client).setChannelFilter(Mockito.eq(symbol), captor.capture());
+			filter = captor.getValue();
+		}
+
+		/**
+		 * Set the subscription state of the connection
+		 * @param subscribed
+		 */
+		public void setSubscribed(final boolean subscribed) {
+			this.subscribed.set(subscribed);
+		}
+
+		/**
+		 * Pass a frame to the filter
+		 * @param frame
+		 * @param handler
+		 * @throws BitfinexClientException
+		 */
+		public void handleFrame(final String frame, final ChannelCallbackHandler handler) 
+				throws BitfinexClientException {
+			filter.handleChannelFrame(new ChannelMessageCursor().reset(frame), handler);
+		}
+
+		/**
+		 * The channel was subscribed
+		 * @return true if the event is consumed by the filter
+		 */
+		public boolean subscribed() {
+			return filter.subscribed();
+		}
+
+		/**
+		 * The channel was unsubscribed
+		 * @return true if the event is consumed by the filter
+		 */
+		public boolean unsubscribed() {
+			return filter.unsubscribed();
+		}
+	}
+
+	/**
+	 * A channel migration
+	 */
+	public static class TestMigration {
+
+		/**
+		 * The migration
+		 */
+		private final ChannelMigration migration;
+
+		private TestMigration(final ChannelMigration migration) {
+			this.migration = migration;
+		}
+
+		/**
+		 * Is the migration syncing the streams
+		 * @return
+		 */
+		public boolean isSyncing() {
+			return migration.getState() == ChannelMigration.State.SYNCING;
+		}
+
+		/**
+		 * Is the migration switched to the target
+		 * @return
+		 */
+		public boolean isSwitched() {
+			return migration.getState() == ChannelMigration.State.SWITCHED;
+		}
+
+		/**
+		 * Is the migration aborted
+		 * @return
+		 */
+		public boolean isAborted() {
+			return migration.getState() == ChannelMigration.State.ABORTED;
+		}
+
+		/**
+		 * Abort the migration
+		 */
+		public void abort() {
+			migration.abort();
+		}
+	}
+
+	/**
+	 * Build a channel on a mocked connection (not subscribed)
+	 * @param symbol
+	 * @return
+	 */
+	public static TestChannel newChannel(final BitfinexStreamSymbol symbol) {
+		return new TestChannel(symbol);
+	}
+
+	/**
+	 * Start the migration of the channel from the source to the target
+	 * @param source
+	 * @param target
+	 * @param executor
+	 * @param syncTimeout
+	 * @param timeUnit
+	 * @return
+	 */
+	public static TestMigration startMigration(final TestChannel source, final TestChannel target, 
+			final ScheduledExecutorService executor, final long syncTimeout, final TimeUnit timeUnit) {
+
+		final ChannelMigration migration = new ChannelMigration(source.symbol, source.client, 
+				target.client, executor);
+		migration.start(syncTimeout, timeUnit);
+		source.captureFilter();
+		target.captureFilter();
+		return new TestMigration(migration);
+	}
+
+	/**
+	 * Start the dual feed of the channel on the primary and the backup connection
+	 * @param primary
+	 * @param backup
+	 * @return
+	 */
+	public static DualFeed startDualFeed(final TestChannel primary, final TestChannel backup) {
+		final DualFeed dualFeed = new DualFeed(primary.symbol, new PooledConnection(0, primary.client), 
+				new PooledConnection(1, backup.client));
+		dualFeed.start();
+		primary.captureFilter();
+		backup.captureFilter();
+		return dualFeed;
+	}
+
+	/**
+	 * Get the connection independent key of a frame
+	 * @param cursor
+	 * @return
+	 */
+	public static String getFrameKey(final ChannelMessageCursor cursor) {
+		return ChannelMigration.getFrameKey(cursor);
+	}
+}
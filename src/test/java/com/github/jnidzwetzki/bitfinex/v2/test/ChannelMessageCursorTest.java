@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.SequenceNumberAuditor;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+
+public class ChannelMessageCursorTest {
+
+	/**
+	 * Test the header of a frame with action
+	 */
+	@Test
+	public void testHeaderWithAction() {
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		cursor.reset("[17470,\"te\",[401597395,1574694478808,0.005,7245.3],123]");
+
+		Assert.assertEquals(17470, cursor.getChannelId());
+		Assert.assertEquals("te", cursor.getAction());
+		Assert.assertEquals(4, cursor.length());
+		Assert.assertEquals(123, cursor.getLong(3));
+		Assert.assertTrue(cursor.hasPayload());
+		Assert.assertFalse(cursor.isPayloadNested());
+		Assert.assertFalse(cursor.isPayloadEmpty());
+	}
+
+	/**
+	 * Test the header of heartbeat and snapshot frames
+	 */
+	@Test
+	public void testHeaderWithoutPayload() {
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		cursor.reset("[12, \"hb\"]");
+		Assert.assertEquals(12, cursor.getChannelId());
+		Assert.assertEquals("hb", cursor.getAction());
+		Assert.assertFalse(cursor.hasPayload());
+
+		cursor.reset("[12,[[1,2,3],[4,5,6]]]");
+		Assert.assertNull(cursor.getAction());
+		Assert.assertTrue(cursor.hasPayload());
+		Assert.assertTrue(cursor.isPayloadNested());
+
+		cursor.reset("[12,[]]");
+		Assert.assertTrue(cursor.isPayloadEmpty());
+	}
+
+	/**
+	 * Test the reading of a snapshot
+	 */
+	@Test
+	public void testReadSnapshot() {
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		cursor.reset("[5,[[7254.7,3,3.3],[7254.6,2,-0.0499],[7254.5,5,1e-8]]]");
+
+		final StringBuilder sb = new StringBuilder();
+
+		cursor.enterArray();
+		while(cursor.hasNext()) {
+			cursor.enterArray();
+			final BigDecimal price = cursor.nextBigDecimal();
+			final int count = cursor.nextInt();
+			final BigDecimal amount = cursor.nextBigDecimal();
+			cursor.exitArray();
+			sb.append(price.toPlainString() + "/" + count + "/" + amount.toPlainString() + ";");
+		}
+		cursor.exitArray();
+
+		Assert.assertEquals("7254.7/3/3.3;7254.6/2/-0.0499;7254.5/5/0.00000001;", sb.toString());
+	}
+
+	/**
+	 * Test number parsing
+	 */
+	@Test
+	public void testNumbers() {
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		cursor.reset("[1,[-12,0.001,123456789012345678901234.5,2.5E+3,null,\"abc\\\"d\",-0.5,7]]");
+
+		cursor.enterArray();
+		Assert.assertEquals(-12, cursor.nextLong());
+		Assert.assertEquals(new BigDecimal("0.001"), cursor.nextBigDecimal());
+		Assert.assertEquals(new BigDecimal("123456789012345678901234.5"), cursor.nextBigDecimal());
+		Assert.assertEquals(2500.0, cursor.nextDouble(), 0.0001);
+		Assert.assertTrue(cursor.isNextNull());
+		Assert.assertNull(cursor.nextBigDecimalOrNull());
+		Assert.assertEquals("abc\"d", cursor.nextString());
+		Assert.assertEquals(-0.5, cursor.nextDouble(), 0.0);
+		Assert.assertEquals(7, cursor.nextInt());
+		Assert.assertFalse(cursor.hasNext());
+		cursor.exitArray();
+	}
+
+	/**
+	 * Test skipping of unread elements
+	 */
+	@Test
+	public void testExitSkipsElements() {
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		cursor.reset("[1,[[1,{\"a\":[1,2]},\"x]\"],[2]]]");
+
+		cursor.enterArray();
+		cursor.enterArray();
+		Assert.assertEquals(1, cursor.nextLong());
+		cursor.exitArray();
+		cursor.enterArray();
+		Assert.assertEquals(2, cursor.nextLong());
+		cursor.exitArray();
+		Assert.assertFalse(cursor.hasNext());
+		cursor.exitArray();
+	}
+
+	/**
+	 * Test invalid frames
+	 */
+	@Test(expected=BitfinexClientException.class)
+	public void testInvalidFrame() {
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		cursor.reset("[1,[1,2]");
+	}
+
+	/**
+	 * Test the sequence auditor with the cursor
+	 */
+	@Test
+	public void testSequenceAuditor() {
+		final SequenceNumberAuditor sequenceNumberAuditor = new SequenceNumberAuditor();
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+
+		sequenceNumberAuditor.auditPackage(cursor.reset("[2,[],1]"));
+		sequenceNumberAuditor.auditPackage(cursor.reset("[2,\"hb\",2]"));
+		sequenceNumberAuditor.auditPackage(cursor.reset("[0,\"te\",[],3,1]"));
+		Assert.assertFalse(sequenceNumberAuditor.isFailed());
+		Assert.assertEquals(3, sequenceNumberAuditor.getPublicSequence());
+		Assert.assertEquals(1, sequenceNumberAuditor.getPrivateSequence());
+
+		sequenceNumberAuditor.auditPackage(cursor.reset("[2,[],5]"));
+		Assert.assertTrue(sequenceNumberAuditor.isFailed());
+	}
+}
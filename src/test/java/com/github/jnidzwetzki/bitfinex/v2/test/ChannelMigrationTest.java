@@ -0,0 +1,199 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.ChannelTestHook;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelTestHook.TestChannel;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelTestHook.TestMigration;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+
+import static com.github.jnidzwetzki.bitfinex.v2.test.ChannelTestHelper.keys;
+
+public class ChannelMigrationTest {
+
+	/**
+	 * The channel id of the source connection
+	 */
+	private final static int SOURCE_CHANNEL = 10;
+
+	/**
+	 * The channel id of the target connection
+	 */
+	private final static int TARGET_CHANNEL = 20;
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	/**
+	 * The executor of the migration
+	 */
+	private ScheduledExecutorService executor;
+
+	/**
+	 * The sent and the delivered frames
+	 */
+	private ChannelTestHelper helper;
+
+	/**
+	 * The source and the target channel
+	 */
+	private TestChannel source;
+	private TestChannel target;
+
+	/**
+	 * The source and the target handler
+	 */
+	private ChannelCallbackHandler sourceHandler;
+	private ChannelCallbackHandler targetHandler;
+
+	/**
+	 * The migration
+	 */
+	private TestMigration migration;
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		currencyPair = ChannelTestHelper.registerCurrencyPair();
+	}
+
+	@Before
+	public void before() throws Exception {
+		executor = Executors.newSingleThreadScheduledExecutor();
+		helper = new ChannelTestHelper();
+		sourceHandler = helper.buildHandler();
+		targetHandler = helper.buildHandler();
+
+		final BitfinexExecutedTradeSymbol symbol = BitfinexSymbols.executedTrades(currencyPair);
+		source = ChannelTestHook.newChannel(symbol);
+		target = ChannelTestHook.newChannel(symbol);
+
+		migration = ChannelTestHook.startMigration(source, target, executor, 10, TimeUnit.SECONDS);
+		Assert.assertTrue(target.subscribed());
+	}
+
+	@After
+	public void after() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Send trades on the source connection
+	 * @param tradeIds
+	 * @throws Exception
+	 */
+	private void sourceFrames(final int... tradeIds) throws Exception {
+		helper.sendFrames(source, SOURCE_CHANNEL, sourceHandler, tradeIds);
+	}
+
+	/**
+	 * Send trades on the target connection
+	 * @param tradeIds
+	 * @throws Exception
+	 */
+	private void targetFrames(final int... tradeIds) throws Exception {
+		helper.sendFrames(target, TARGET_CHANNEL, targetHandler, tradeIds);
+	}
+
+	/**
+	 * A repeated frame is not mistaken as the position of the target
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testRepeatedFrames() throws Exception {
+		sourceFrames(1, 2, 3, 2);
+
+		// Snapshot, then the target starts at the first 2
+		targetFrames(0);
+		targetFrames(2, 3, 2, 4);
+		Assert.assertTrue(migration.isSyncing());
+
+		sourceFrames(4);
+		Assert.assertTrue(migration.isSwitched());
+
+		targetFrames(5);
+		sourceFrames(5);
+		Assert.assertEquals(keys(1, 2, 3, 2, 4, 5), helper.getDelivered());
+	}
+
+	/**
+	 * The target is ahead of the source
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testTargetAhead() throws Exception {
+		sourceFrames(1, 2);
+		targetFrames(0);
+		targetFrames(3, 4, 5, 6);
+		sourceFrames(3, 4);
+		Assert.assertTrue(migration.isSyncing());
+
+		sourceFrames(5);
+		Assert.assertTrue(migration.isSwitched());
+		Assert.assertEquals(keys(1, 2, 3, 4, 5, 6), helper.getDelivered());
+	}
+
+	/**
+	 * The source is ahead of the target
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testSourceAhead() throws Exception {
+		sourceFrames(1, 2, 3, 4, 5, 6);
+		targetFrames(0);
+		targetFrames(2, 3);
+		Assert.assertTrue(migration.isSyncing());
+
+		targetFrames(4);
+		Assert.assertTrue(migration.isSwitched());
+
+		targetFrames(5, 6, 7);
+		Assert.assertEquals(keys(1, 2, 3, 4, 5, 6, 7), helper.getDelivered());
+	}
+
+	/**
+	 * Streams of identical frames are never in sync
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testAmbiguousFrames() throws Exception {
+		sourceFrames(1, 1, 1, 1);
+		targetFrames(0);
+		targetFrames(1, 1, 1, 1, 1);
+		sourceFrames(1, 1);
+		Assert.assertTrue(migration.isSyncing());
+
+		migration.abort();
+		Assert.assertTrue(migration.isAborted());
+		Assert.assertEquals(keys(1, 1, 1, 1, 1, 1), helper.getDelivered());
+	}
+}
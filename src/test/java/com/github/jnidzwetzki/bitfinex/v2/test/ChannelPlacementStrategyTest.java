@@ -0,0 +1,247 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.ChannelPlacementStrategy;
+import com.github.jnidzwetzki.bitfinex.v2.PooledConnection;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+
+public class ChannelPlacementStrategyTest {
+
+	/**
+	 * The max channels per connection
+	 */
+	private final static int MAX_CHANNELS = 10;
+
+	/**
+	 * The symbols used in the tests
+	 */
+	private static List<BitfinexStreamSymbol> symbols;
+
+	@BeforeClass
+	public static void registerCurrencyPairs() {
+		symbols = new ArrayList<>();
+		
+		for(final String currency : Arrays.asList("PLA", "PLB", "PLC", "PLD", "PLE", "PLF", "PLG", "PLH")) {
+			BitfinexCurrencyPair currencyPair;
+			try {
+				currencyPair = BitfinexCurrencyPair.register(currency, "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+			} catch (IllegalArgumentException e) {
+				currencyPair = BitfinexCurrencyPair.of(currency, "USD");
+			}
+			symbols.add(BitfinexSymbols.ticker(currencyPair));
+			symbols.add(BitfinexSymbols.executedTrades(currencyPair));
+		}
+	}
+
+	/**
+	 * Build a mocked pool connection
+	 * @param index
+	 * @param subscribed
+	 * @param pending
+	 * @param messageRate
+	 * @return
+	 */
+	private static PooledConnection buildConnection(final int index, final int subscribed, 
+			final int pending, final double messageRate) {
+		
+		final PooledConnection connection = Mockito.mock(PooledConnection.class);
+		Mockito.when(connection.getIndex()).thenReturn(index);
+		Mockito.when(connection.getChannelCount()).thenReturn(subscribed + pending);
+		Mockito.when(connection.getSubscribedChannels()).thenReturn(symbols.subList(0, subscribed));
+		Mockito.when(connection.getSubscribedChannelCount()).thenReturn(subscribed);
+		Mockito.when(connection.getPendingSubscriptions()).thenReturn(new HashSet<>(symbols.subList(0, pending)));
+		Mockito.when(connection.getMessageRate()).thenReturn(messageRate);
+		return connection;
+	}
+
+	/**
+	 * Test the first fit placement
+	 */
+	@Test
+	public void testFirstFit() {
+		final BitfinexStreamSymbol symbol = symbols.get(0);
+		final ChannelPlacementStrategy strategy = ChannelPlacementStrategy.FIRST_FIT;
+		
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Collections.emptyList(), MAX_CHANNELS));
+		
+		Assert.assertEquals(1, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 10, 0, 0), buildConnection(1, 9, 0, 0), buildConnection(2, 0, 0, 0)), MAX_CHANNELS));
+		
+		Assert.assertEquals(2, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 5, 5, 0), buildConnection(1, 10, 0, 0)), MAX_CHANNELS));
+	}
+
+	/**
+	 * Test the least channels placement
+	 */
+	@Test
+	public void testLeastChannels() {
+		final BitfinexStreamSymbol symbol = symbols.get(0);
+		final ChannelPlacementStrategy strategy = ChannelPlacementStrategy.LEAST_CHANNELS;
+		
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Collections.emptyList(), MAX_CHANNELS));
+		
+		Assert.assertEquals(2, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 8, 0, 0), buildConnection(1, 5, 2, 0), buildConnection(2, 3, 1, 0)), MAX_CHANNELS));
+		
+		Assert.assertEquals(3, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 10, 0, 0), buildConnection(1, 9, 1, 0), buildConnection(2, 10, 0, 0)), MAX_CHANNELS));
+	}
+
+	/**
+	 * Test the least message rate placement
+	 */
+	@Test
+	public void testLeastMessageRate() {
+		final BitfinexStreamSymbol symbol = symbols.get(0);
+		final ChannelPlacementStrategy strategy = ChannelPlacementStrategy.LEAST_MESSAGE_RATE;
+		
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Collections.emptyList(), MAX_CHANNELS));
+		
+		// A few busy channels weigh more than many quiet channels
+		Assert.assertEquals(1, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 2, 0, 500), buildConnection(1, 8, 0, 20)), MAX_CHANNELS));
+		
+		// Full connections are skipped
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 2, 0, 500), buildConnection(1, 10, 0, 20)), MAX_CHANNELS));
+		
+		// Pending channels count with the average channel rate (120 / 10 = 12 per channel)
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 2, 0, 100), buildConnection(1, 8, 8, 20)), 20));
+		
+		// Same load, fewer channels wins
+		Assert.assertEquals(1, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 4, 0, 0), buildConnection(1, 2, 0, 0)), MAX_CHANNELS));
+	}
+
+	/**
+	 * Test the least channels placement with a fill ratio
+	 */
+	@Test
+	public void testLeastChannelsFillRatio() {
+		final BitfinexStreamSymbol symbol = symbols.get(0);
+		final ChannelPlacementStrategy strategy = ChannelPlacementStrategy.leastChannels(0.5);
+		
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Collections.emptyList(), MAX_CHANNELS));
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 4, 0, 0)), MAX_CHANNELS));
+		
+		// The auth connection holds half of the max channels, a new connection is opened
+		Assert.assertEquals(1, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 5, 0, 0)), MAX_CHANNELS));
+		Assert.assertEquals(1, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 5, 0, 0), buildConnection(1, 3, 1, 0)), MAX_CHANNELS));
+		Assert.assertEquals(2, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 5, 0, 0), buildConnection(1, 4, 1, 0)), MAX_CHANNELS));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testLeastChannelsInvalidFillRatio() {
+		ChannelPlacementStrategy.leastChannels(1.5);
+	}
+
+	/**
+	 * Test the least message rate placement with a max message rate
+	 */
+	@Test
+	public void testLeastMessageRateLimit() {
+		final BitfinexStreamSymbol symbol = symbols.get(0);
+		final ChannelPlacementStrategy strategy = ChannelPlacementStrategy.leastMessageRate(100);
+		
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Collections.emptyList(), MAX_CHANNELS));
+		Assert.assertEquals(0, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 2, 0, 80)), MAX_CHANNELS));
+		
+		// The auth connection exceeds the message rate, a new connection is opened
+		Assert.assertEquals(1, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 2, 0, 150)), MAX_CHANNELS));
+		Assert.assertEquals(1, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 2, 0, 150), buildConnection(1, 1, 0, 90)), MAX_CHANNELS));
+		Assert.assertEquals(2, strategy.selectConnection(symbol, Arrays.asList(
+				buildConnection(0, 2, 0, 150), buildConnection(1, 1, 0, 120)), MAX_CHANNELS));
+	}
+
+	/**
+	 * Test the sticky hash placement
+	 */
+	@Test
+	public void testStickyHash() {
+		final ChannelPlacementStrategy strategy = ChannelPlacementStrategy.stickyHash(4);
+		final List<PooledConnection> connections = Arrays.asList(buildConnection(0, 0, 0, 0), 
+				buildConnection(1, 0, 0, 0), buildConnection(2, 0, 0, 0), buildConnection(3, 0, 0, 0));
+		
+		final int[] placement = new int[symbols.size()];
+		final boolean[] used = new boolean[4];
+		
+		for(int i = 0; i < symbols.size(); i++) {
+			placement[i] = strategy.selectConnection(symbols.get(i), connections, MAX_CHANNELS);
+			Assert.assertTrue(placement[i] >= 0 && placement[i] < 4);
+			used[placement[i]] = true;
+			
+			// A new strategy instance (e.g., after a restart) places the symbol on the same connection
+			Assert.assertEquals(placement[i], ChannelPlacementStrategy.stickyHash(4)
+					.selectConnection(symbols.get(i), connections, MAX_CHANNELS));
+		}
+		
+		// The symbols are spread across the connections
+		int usedConnections = 0;
+		for(final boolean connectionUsed : used) {
+			usedConnections += connectionUsed ? 1 : 0;
+		}
+		Assert.assertTrue(usedConnections > 1);
+		
+		// Missing connections are requested by their slot
+		for(int i = 0; i < symbols.size(); i++) {
+			final int selected = strategy.selectConnection(symbols.get(i), Collections.emptyList(), MAX_CHANNELS);
+			Assert.assertEquals(placement[i], selected);
+		}
+		
+		// The home connection is full, the symbol is placed on the next slot
+		final List<PooledConnection> fullHome = new ArrayList<>(connections);
+		fullHome.set(placement[0], buildConnection(placement[0], 10, 0, 0));
+		final int fallback = strategy.selectConnection(symbols.get(0), fullHome, MAX_CHANNELS);
+		Assert.assertNotEquals(placement[0], fallback);
+		Assert.assertTrue(fallback >= 0 && fallback < 4);
+		
+		// All slots full, use a new connection
+		final List<PooledConnection> allFull = Arrays.asList(buildConnection(0, 10, 0, 0), 
+				buildConnection(1, 10, 0, 0), buildConnection(2, 10, 0, 0), buildConnection(3, 10, 0, 0));
+		Assert.assertEquals(4, strategy.selectConnection(symbols.get(0), allFull, MAX_CHANNELS));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testStickyHashInvalidConnections() {
+		ChannelPlacementStrategy.stickyHash(0);
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.ChannelTestHook;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelTestHook.TestChannel;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+
+/**
+ * Trade frames on two connections of a channel, the delivered frames are recorded
+ */
+public class ChannelTestHelper {
+
+	/**
+	 * The frames the managers received (without the channel id)
+	 */
+	private final List<String> delivered = new ArrayList<>();
+
+	/**
+	 * Register the currency pair used in the tests (without network access)
+	 * @return
+	 */
+	public static BitfinexCurrencyPair registerCurrencyPair() {
+		try {
+			return BitfinexCurrencyPair.register("CTH", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			return BitfinexCurrencyPair.of("CTH", "USD");
+		}
+	}
+
+	/**
+	 * Build a channel handler that records the delivered frames
+	 * @return
+	 * @throws BitfinexClientException
+	 */
+	public ChannelCallbackHandler buildHandler() throws BitfinexClientException {
+		final ChannelCallbackHandler handler = Mockito.mock(ChannelCallbackHandler.class);
+		Mockito.doAnswer(invocation -> {
+			final ChannelMessageCursor cursor = invocation.getArgument(0);
+			delivered.add(ChannelTestHook.getFrameKey(cursor));
+			return null;
+		}).when(handler).handleChannelFrame(Mockito.any(ChannelMessageCursor.class));
+		return handler;
+	}
+
+	/**
+	 * Send trades on a channel
+	 * @param channel
+	 * @param channelId
+	 * @param handler
+	 * @param tradeIds
+	 * @throws BitfinexClientException
+	 */
+	public void sendFrames(final TestChannel channel, final int channelId, 
+			final ChannelCallbackHandler handler, final int... tradeIds) throws BitfinexClientException {
+
+		for(final int tradeId : tradeIds) {
+			channel.handleFrame(buildFrame(channelId, tradeId), handler);
+		}
+	}
+
+	/**
+	 * The frames the managers received
+	 * @return
+	 */
+	public List<String> getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * Build a trade frame
+	 * @param channelId
+	 * @param tradeId
+	 * @return
+	 */
+	public static String buildFrame(final int channelId, final int tradeId) {
+		return "[" + channelId + ",\"te\",[" + tradeId + ",1533919880000,0.5,6500]]";
+	}
+
+	/**
+	 * The expected keys of the trades
+	 * @param tradeIds
+	 * @return
+	 */
+	public static List<String> keys(final Integer... tradeIds) {
+		final List<String> keys = new ArrayList<>();
+		for(final int tradeId : tradeIds) {
+			keys.add(ChannelTestHook.getFrameKey(new ChannelMessageCursor().reset(buildFrame(0, tradeId))));
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.ChannelTestHook;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelTestHook.TestChannel;
+import com.github.jnidzwetzki.bitfinex.v2.DualFeed;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+
+import static com.github.jnidzwetzki.bitfinex.v2.test.ChannelTestHelper.keys;
+
+public class DualFeedTest {
+
+	/**
+	 * The channel id of the primary connection
+	 */
+	private final static int PRIMARY_CHANNEL = 10;
+
+	/**
+	 * The channel id of the backup connection
+	 */
+	private final static int BACKUP_CHANNEL = 20;
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	/**
+	 * The sent and the delivered frames
+	 */
+	private ChannelTestHelper helper;
+
+	/**
+	 * The primary and the backup channel
+	 */
+	private TestChannel primary;
+	private TestChannel backup;
+
+	/**
+	 * The primary and the backup handler
+	 */
+	private ChannelCallbackHandler primaryHandler;
+	private ChannelCallbackHandler backupHandler;
+
+	/**
+	 * The dual feed
+	 */
+	private DualFeed dualFeed;
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		currencyPair = ChannelTestHelper.registerCurrencyPair();
+	}
+
+	@Before
+	public void before() throws Exception {
+		helper = new ChannelTestHelper();
+		primaryHandler = helper.buildHandler();
+		backupHandler = helper.buildHandler();
+
+		final BitfinexExecutedTradeSymbol symbol = BitfinexSymbols.executedTrades(currencyPair);
+		primary = ChannelTestHook.newChannel(symbol);
+		backup = ChannelTestHook.newChannel(symbol);
+		dualFeed = ChannelTestHook.startDualFeed(primary, backup);
+
+		// The snapshot of the primary connection is delivered, the snapshot of the backup is dropped
+		primary.setSubscribed(true);
+		Assert.assertFalse(primary.subscribed());
+		backup.setSubscribed(true);
+		Assert.assertTrue(backup.subscribed());
+		primaryFrames(0);
+		backupFrames(0);
+	}
+
+	/**
+	 * Send trades on the primary connection
+	 * @param tradeIds
+	 * @throws Exception
+	 */
+	private void primaryFrames(final int... tradeIds) throws Exception {
+		helper.sendFrames(primary, PRIMARY_CHANNEL, primaryHandler, tradeIds);
+	}
+
+	/**
+	 * Send trades on the backup connection
+	 * @param tradeIds
+	 * @throws Exception
+	 */
+	private void backupFrames(final int... tradeIds) throws Exception {
+		helper.sendFrames(backup, BACKUP_CHANNEL, backupHandler, tradeIds);
+	}
+
+	/**
+	 * A repeated frame is not mistaken as the position of the backup stream
+	 * @throws Exception
+	 */
+	@Test
+	public void testRepeatedFrames() throws Exception {
+		primaryFrames(1, 2, 3, 2);
+
+		// The backup starts at the first 2, the run 2, 3, 2 also fits at the last 2
+		backupFrames(2, 3, 2, 4);
+		Assert.assertEquals(keys(0, 1, 2, 3, 2), helper.getDelivered());
+		Assert.assertEquals(0, dualFeed.getDuplicateFrames());
+
+		primaryFrames(4);
+		Assert.assertEquals(4, dualFeed.getDuplicateFrames());
+
+		primaryFrames(5);
+		backupFrames(5);
+		Assert.assertEquals(keys(0, 1, 2, 3, 2, 4, 5), helper.getDelivered());
+		Assert.assertEquals(5, dualFeed.getDuplicateFrames());
+	}
+
+	/**
+	 * The backup stream is ahead and repeats frames the primary connection already delivered
+	 * @throws Exception
+	 */
+	@Test
+	public void testRepeatedFramesAhead() throws Exception {
+		primaryFrames(1, 2);
+
+		// Single frames of the backup match the older frames of the primary connection
+		backupFrames(3, 1, 2, 4);
+		Assert.assertEquals(keys(0, 1, 2), helper.getDelivered());
+
+		primaryFrames(3, 1);
+		Assert.assertEquals(keys(0, 1, 2, 3, 1), helper.getDelivered());
+
+		// Aligned, the backup delivers the frame it is ahead
+		primaryFrames(2);
+		Assert.assertEquals(keys(0, 1, 2, 3, 1, 2, 4), helper.getDelivered());
+		Assert.assertEquals(3, dualFeed.getDuplicateFrames());
+
+		primaryFrames(4, 2, 5);
+		backupFrames(2, 5);
+		Assert.assertEquals(keys(0, 1, 2, 3, 1, 2, 4, 2, 5), helper.getDelivered());
+		Assert.assertEquals(6, dualFeed.getDuplicateFrames());
+		Assert.assertEquals(1, dualFeed.getBackupFrames());
+	}
+
+	/**
+	 * Identical frames of aligned streams are delivered once per frame
+	 * @throws Exception
+	 */
+	@Test
+	public void testIdenticalFrames() throws Exception {
+		primaryFrames(1, 2, 3);
+		backupFrames(1, 2, 3);
+		Assert.assertEquals(3, dualFeed.getDuplicateFrames());
+
+		primaryFrames(7, 7);
+		backupFrames(7, 7, 7);
+		primaryFrames(7);
+		backupFrames(7);
+		primaryFrames(7, 7, 8);
+		backupFrames(7, 8);
+		Assert.assertEquals(keys(0, 1, 2, 3, 7, 7, 7, 7, 7, 8), helper.getDelivered());
+		Assert.assertEquals(9, dualFeed.getDuplicateFrames());
+	}
+
+	/**
+	 * The primary connection resubscribes while the backup is streaming, the managers 
+	 * keep their state (no subscribe event and no snapshot)
+	 * @throws Exception
+	 */
+	@Test
+	public void testPrimaryResubscribe() throws Exception {
+		primaryFrames(1, 2, 3);
+		backupFrames(1, 2, 3);
+
+		// Reconnect of the primary connection
+		primary.setSubscribed(false);
+		backupFrames(4);
+		primary.setSubscribed(true);
+		Assert.assertTrue(primary.subscribed());
+		primaryFrames(9);
+		backupFrames(5, 6);
+		primaryFrames(4, 5, 6);
+		Assert.assertEquals(keys(0, 1, 2, 3, 4, 5, 6), helper.getDelivered());
+
+		primaryFrames(7);
+		backupFrames(7);
+		Assert.assertEquals(keys(0, 1, 2, 3, 4, 5, 6, 7), helper.getDelivered());
+		Assert.assertEquals(7, dualFeed.getDuplicateFrames());
+	}
+
+	/**
+	 * The primary connection resubscribes while the backup is down, the subscribe 
+	 * event and the snapshot are passed on
+	 * @throws Exception
+	 */
+	@Test
+	public void testPrimaryResubscribeWithoutBackup() throws Exception {
+		primaryFrames(1, 2, 3);
+		backupFrames(1, 2, 3);
+
+		// Reconnect of both connections
+		primary.setSubscribed(false);
+		backup.setSubscribed(false);
+		primary.setSubscribed(true);
+		Assert.assertFalse(primary.subscribed());
+		primaryFrames(9);
+		Assert.assertEquals(keys(0, 1, 2, 3, 9), helper.getDelivered());
+
+		// The backup resubscribes while the snapshot of the primary is delivered
+		backup.setSubscribed(true);
+		Assert.assertTrue(backup.subscribed());
+		backupFrames(9);
+		primaryFrames(4, 5, 6);
+		backupFrames(4, 5, 6);
+		Assert.assertEquals(keys(0, 1, 2, 3, 9, 4, 5, 6), helper.getDelivered());
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexClientFactory;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.FrameJournalReplayer;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameJournalWriter;
+
+public class FrameJournalReplayerTest {
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		try {
+			currencyPair = BitfinexCurrencyPair.register("JRN", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			currencyPair = BitfinexCurrencyPair.of("JRN", "USD");
+		}
+	}
+
+	/**
+	 * Write a journal with a ticker subscription and 10 ticks
+	 * @param directory
+	 */
+	private void writeJournal(final Path directory) {
+		try (final FrameJournalWriter writer = new FrameJournalWriter(directory)) {
+			writer.append(0, "{\"event\":\"subscribed\",\"channel\":\"ticker\",\"chanId\":5,\"symbol\":\"tJRNUSD\",\"pair\":\"JRNUSD\"}");
+			for(int i = 0; i < 10; i++) {
+				writer.append(i * 10_000_000L, "[5,[100." + i + ",1,101,1,0,0,100." + i + ",1000,110,90]]");
+			}
+		}
+	}
+
+	/**
+	 * Test the replay as fast as possible
+	 */
+	@Test(timeout=10000)
+	public void testReplay() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+		writeJournal(directory);
+
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(new BitfinexWebsocketConfiguration());
+		final BitfinexTickerSymbol symbol = BitfinexSymbols.ticker(currencyPair);
+		final List<BitfinexTick> ticks = new ArrayList<>();
+		client.getQuoteManager().registerTickCallback(symbol, (s, t) -> ticks.add(t));
+
+		Assert.assertEquals(11, new FrameJournalReplayer(client, directory).replay());
+		Assert.assertEquals(10, ticks.size());
+		Assert.assertEquals(100.9, ticks.get(9).getLastPrice().doubleValue(), 0.0001);
+		Assert.assertTrue(client.getSubscribedChannels().contains(symbol));
+	}
+
+	/**
+	 * Test the replay with the recorded pace
+	 */
+	@Test(timeout=10000)
+	public void testReplayRecordedPace() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+		writeJournal(directory);
+
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(new BitfinexWebsocketConfiguration());
+		final long start = System.nanoTime();
+		Assert.assertEquals(11, new FrameJournalReplayer(client, directory).replay(1.0));
+
+		// The ticks are recorded within 90 ms
+		Assert.assertTrue(System.nanoTime() - start >= 90_000_000L);
+	}
+
+	/**
+	 * Test the replay of a journal shared by two connections with the same channel id
+	 */
+	@Test(timeout=10000)
+	public void testReplayConnection() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+
+		try (final FrameJournalWriter writer = new FrameJournalWriter(directory)) {
+			writer.append(0, 0, "{\"event\":\"subscribed\",\"channel\":\"ticker\",\"chanId\":5,\"symbol\":\"tJRNUSD\",\"pair\":\"JRNUSD\"}");
+			writer.append(0, 1, "{\"event\":\"subscribed\",\"channel\":\"trades\",\"chanId\":5,\"symbol\":\"tJRNUSD\",\"pair\":\"JRNUSD\"}");
+			for(int i = 0; i < 10; i++) {
+				writer.append(i * 1_000_000L, 0, "[5,[100." + i + ",1,101,1,0,0,100." + i + ",1000,110,90]]");
+				writer.append(i * 1_000_000L, 1, "[5,\"te\",[" + i + ",1574694475039,0.005,100." + i + "]]");
+			}
+		}
+
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(new BitfinexWebsocketConfiguration());
+		final BitfinexTickerSymbol symbol = BitfinexSymbols.ticker(currencyPair);
+		final List<BitfinexTick> ticks = new ArrayList<>();
+		client.getQuoteManager().registerTickCallback(symbol, (s, t) -> ticks.add(t));
+
+		final FrameJournalReplayer replayer = new FrameJournalReplayer(client, directory);
+		Assert.assertEquals(11, replayer.replayConnection(1.0, 0));
+		Assert.assertEquals(10, ticks.size());
+		Assert.assertEquals(100.9, ticks.get(9).getLastPrice().doubleValue(), 0.0001);
+		Assert.assertEquals(1, client.getSubscribedChannels().size());
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.handler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+
+public class OrderbookHandlerTest {
+
+	@BeforeClass
+	public static void registerDefaultCurrencyPairs() {
+		if(BitfinexCurrencyPair.values().size() < 10) {
+			BitfinexCurrencyPair.unregisterAll();
+			BitfinexCurrencyPair.registerDefaults();
+		}
+	}
+
+	/**
+	 * Test the checksum frame with and without a trailing sequence number (SEQ_ALL)
+	 * @throws BitfinexClientException
+	 */
+	@Test
+	public void testChecksumFrame() throws BitfinexClientException {
+		final BitfinexCurrencyPair currencyPair = BitfinexCurrencyPair.of("BTC", "USD");
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.orderBook(currencyPair,
+				BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25);
+
+		final AtomicInteger checksum = new AtomicInteger();
+		final OrderbookHandler handler = new OrderbookHandler(10, symbol);
+		handler.onChecksumEvent((s, c) -> checksum.set(c));
+
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		handler.handleChannelFrame(cursor.reset("[10,\"cs\",-1234567]"));
+		Assert.assertEquals(-1234567, checksum.get());
+
+		handler.handleChannelFrame(cursor.reset("[10,\"cs\",-7654321,42]"));
+		Assert.assertEquals(-7654321, checksum.get());
+	}
+
+	/**
+	 * Test the raw book checksum frame with and without a trailing sequence number (SEQ_ALL)
+	 * @throws BitfinexClientException
+	 */
+	@Test
+	public void testRawChecksumFrame() throws BitfinexClientException {
+		final BitfinexCurrencyPair currencyPair = BitfinexCurrencyPair.of("BTC", "USD");
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.rawOrderBook(currencyPair);
+
+		final AtomicInteger checksum = new AtomicInteger();
+		final RawOrderbookHandler handler = new RawOrderbookHandler(10, symbol);
+		handler.onChecksumEvent((s, c) -> checksum.set(c));
+
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		handler.handleChannelFrame(cursor.reset("[10,\"cs\",1234567]"));
+		Assert.assertEquals(1234567, checksum.get());
+
+		handler.handleChannelFrame(cursor.reset("[10,\"cs\",7654321,43]"));
+		Assert.assertEquals(7654321, checksum.get());
+	}
+}
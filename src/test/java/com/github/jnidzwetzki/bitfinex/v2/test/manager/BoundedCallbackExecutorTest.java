@@ -0,0 +1,318 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BiConsumerCallbackManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallbackExecutor;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallbackExecutor.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.manager.CallbackQueuePolicy;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class BoundedCallbackExecutorTest {
+
+	/**
+	 * The executor of the queues
+	 */
+	private ExecutorService executorService;
+
+	/**
+	 * Released to unblock the first task
+	 */
+	private CountDownLatch release;
+
+	/**
+	 * Counted down when the first task runs
+	 */
+	private CountDownLatch blocked;
+
+	@Before
+	public void before() {
+		executorService = Executors.newFixedThreadPool(2);
+		release = new CountDownLatch(1);
+		blocked = new CountDownLatch(1);
+	}
+
+	@After
+	public void after() throws InterruptedException {
+		release.countDown();
+		executorService.shutdown();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Submit a task that blocks the queue until release
+	 * @param queue
+	 * @throws InterruptedException
+	 */
+	private void blockQueue(final BoundedCallbackExecutor queue) throws InterruptedException {
+		queue.execute(() -> {
+			blocked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		blocked.await();
+	}
+
+	/**
+	 * Wait until all tasks are executed
+	 * @param queue
+	 * @throws InterruptedException
+	 */
+	private static void awaitTermination(final BoundedCallbackExecutor queue) throws InterruptedException {
+		queue.shutdown();
+		Assert.assertTrue(queue.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test the drop oldest policy
+	 */
+	@Test(timeout=10000)
+	public void testDropOldest() throws InterruptedException {
+		final BoundedCallbackExecutor queue = new BoundedCallbackExecutor("test", executorService, 3, OverflowPolicy.DROP_OLDEST);
+		final List<Integer> executed = new CopyOnWriteArrayList<>();
+		blockQueue(queue);
+
+		for(int i = 0; i < 10; i++) {
+			final int value = i;
+			queue.execute(() -> executed.add(value));
+		}
+
+		Assert.assertEquals(3, queue.getQueueDepth());
+		Assert.assertEquals(7, queue.getDroppedTasks());
+
+		release.countDown();
+		awaitTermination(queue);
+		Assert.assertEquals(Arrays.asList(7, 8, 9), executed);
+		Assert.assertEquals(3, queue.getMaxQueueDepth());
+	}
+
+	/**
+	 * Test the fail policy
+	 */
+	@Test(timeout=10000)
+	public void testFail() throws InterruptedException {
+		final BoundedCallbackExecutor queue = new BoundedCallbackExecutor("test", executorService, 2, OverflowPolicy.FAIL);
+		blockQueue(queue);
+		queue.execute(() -> {});
+		queue.execute(() -> {});
+
+		try {
+			queue.execute(() -> {});
+			Assert.fail("Exception expected");
+		} catch (RejectedExecutionException e) {
+			// Expected
+		}
+
+		Assert.assertEquals(1, queue.getRejectedTasks());
+		release.countDown();
+		awaitTermination(queue);
+		Assert.assertEquals(3, queue.getExecutedTasks());
+	}
+
+	/**
+	 * Test the block policy
+	 */
+	@Test(timeout=10000)
+	public void testBlock() throws Exception {
+		final BoundedCallbackExecutor queue = new BoundedCallbackExecutor("test", executorService, 2, OverflowPolicy.BLOCK);
+		final List<Integer> executed = new CopyOnWriteArrayList<>();
+		blockQueue(queue);
+
+		final Thread producer = new Thread(() -> {
+			for(int i = 0; i < 100; i++) {
+				final int value = i;
+				queue.execute(() -> executed.add(value));
+			}
+		});
+		producer.start();
+
+		// Producer is blocked by the full queue
+		producer.join(200);
+		Assert.assertTrue(producer.isAlive());
+		Assert.assertEquals(2, queue.getQueueDepth());
+
+		release.countDown();
+		producer.join();
+		awaitTermination(queue);
+		Assert.assertEquals(100, executed.size());
+		for(int i = 0; i < 100; i++) {
+			Assert.assertEquals(i, (int) executed.get(i));
+		}
+		Assert.assertEquals(0, queue.getDroppedTasks());
+	}
+
+	/**
+	 * Test a callback that submits a task into its own full queue
+	 */
+	@Test(timeout=10000)
+	public void testBlockFromCallback() throws InterruptedException {
+		final BoundedCallbackExecutor queue = new BoundedCallbackExecutor("test", executorService, 2, OverflowPolicy.BLOCK);
+		final List<Integer> executed = new CopyOnWriteArrayList<>();
+		final CountDownLatch done = new CountDownLatch(1);
+
+		queue.execute(() -> {
+			blocked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			// Queue is full, the task has to run after the queued tasks
+			queue.execute(() -> {
+				executed.add(3);
+				done.countDown();
+			});
+			executed.add(0);
+		});
+		blocked.await();
+
+		queue.execute(() -> executed.add(1));
+		queue.execute(() -> executed.add(2));
+
+		release.countDown();
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		awaitTermination(queue);
+		Assert.assertEquals(Arrays.asList(0, 1, 2, 3), executed);
+		Assert.assertEquals(3, queue.getMaxQueueDepth());
+		Assert.assertEquals(0, queue.getDroppedTasks());
+	}
+
+	/**
+	 * Test the conflate policy with a callback manager
+	 */
+	@Test(timeout=10000)
+	public void testConflate() throws InterruptedException {
+		final CallbackQueuePolicy policy = new CallbackQueuePolicy(2, OverflowPolicy.CONFLATE);
+		final BitfinexWebsocketClient client = Mockito.mock(BitfinexWebsocketClient.class);
+		final BitfinexWebsocketConfiguration configuration = new BitfinexWebsocketConfiguration();
+		configuration.setCallbackQueuePolicy(policy);
+		Mockito.when(client.getConfiguration()).thenReturn(configuration);
+
+		final BiConsumerCallbackManager<String, Integer> manager 
+			= new BiConsumerCallbackManager<>(executorService, client, "test");
+		Assert.assertEquals(1, policy.getQueues().size());
+		final BoundedCallbackExecutor queue = policy.getQueues().get(0);
+		Assert.assertEquals("test", queue.getName());
+
+		final List<Integer> receivedA = new CopyOnWriteArrayList<>();
+		final List<Integer> receivedB = new CopyOnWriteArrayList<>();
+		final BiConsumer<String, Integer> callback = (s, v) -> {
+			if(v == -1) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			} else if("a".equals(s)) {
+				receivedA.add(v);
+			} else {
+				receivedB.add(v);
+			}
+		};
+		manager.registerCallback("a", callback);
+		manager.registerCallback("b", callback);
+
+		manager.handleEvent("a", -1);
+		blocked.await();
+
+		manager.handleEvent("a", 1);
+		manager.handleEvent("b", 1);
+		for(int i = 2; i <= 10; i++) {
+			manager.handleEvent("a", i);
+			manager.handleEvent("b", i);
+		}
+
+		Assert.assertEquals(2, queue.getQueueDepth());
+
+		release.countDown();
+		awaitTermination(queue);
+		Assert.assertEquals(Arrays.asList(10), receivedA);
+		Assert.assertEquals(Arrays.asList(10), receivedB);
+		Assert.assertEquals(18, queue.getDroppedTasks());
+	}
+
+	/**
+	 * Test a throwing callback without a queue policy
+	 */
+	@Test(timeout=10000)
+	public void testThrowingCallback() {
+		final BitfinexWebsocketClient client = Mockito.mock(BitfinexWebsocketClient.class);
+		Mockito.when(client.getConfiguration()).thenReturn(new BitfinexWebsocketConfiguration());
+
+		final BiConsumerCallbackManager<String, Integer> manager 
+			= new BiConsumerCallbackManager<>(MoreExecutors.newDirectExecutorService(), client, "test");
+
+		final List<Integer> received = new CopyOnWriteArrayList<>();
+		manager.registerCallback("a", (s, v) -> {
+			throw new IllegalStateException("boom");
+		});
+		manager.registerCallback("a", (s, v) -> received.add(v));
+
+		manager.handleEvent("a", 1);
+		manager.handleEvent("a", 2);
+		Assert.assertEquals(Arrays.asList(1, 2), received);
+	}
+
+	/**
+	 * Test a throwing conflating callback, the pending event is still delivered
+	 */
+	@Test
+	public void testThrowingConflatingCallback() {
+		final BitfinexWebsocketClient client = Mockito.mock(BitfinexWebsocketClient.class);
+		Mockito.when(client.getConfiguration()).thenReturn(new BitfinexWebsocketConfiguration());
+
+		final BiConsumerCallbackManager<String, Integer> manager 
+			= new BiConsumerCallbackManager<>(MoreExecutors.newDirectExecutorService(), client, "test");
+
+		final List<Integer> received = new CopyOnWriteArrayList<>();
+		manager.registerCallback("a", (s, v) -> {
+			received.add(v);
+
+			// The next event arrives while the consumer is busy
+			if(v == 1) {
+				manager.handleEvent("a", 2);
+				throw new IllegalStateException("boom");
+			}
+		}, true);
+
+		manager.handleEvent("a", 1);
+		Assert.assertEquals(Arrays.asList(1, 2), received);
+	}
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderBuilder;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelAllCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelGroupCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderNewCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexApiKeyPermissions;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderType;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrderStatus;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderCommandBatcher;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexAccountSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class OrderCommandBatcherTest {
+
+	/**
+	 * The scheduler of the batcher
+	 */
+	private ScheduledExecutorService scheduler;
+
+	@BeforeClass
+	public static void registerDefaultCurrencyPairs() {
+		if(BitfinexCurrencyPair.values().size() < 10) {
+			BitfinexCurrencyPair.unregisterAll();
+			BitfinexCurrencyPair.registerDefaults();	
+		}
+	}
+
+	@Before
+	public void before() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Test the batching of commands
+	 */
+	@Test(timeout=10000)
+	public void testBatching() throws Exception {
+		final BlockingQueue<BitfinexCommand> sentCommands = new LinkedBlockingQueue<>();
+		final OrderCommandBatcher batcher = new OrderCommandBatcher(c -> {
+			sentCommands.add(c);
+			return CompletableFuture.completedFuture(null);
+		}, scheduler, TimeUnit.MILLISECONDS.toMicros(100));
+
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for(int i = 0; i < 20; i++) {
+			futures.add(batcher.submit(new OrderCancelCommand(i)));
+		}
+
+		// The first 15 commands are sent by the size limit
+		Assert.assertEquals(1, sentCommands.size());
+		final OrderMultiCommand firstFrame = (OrderMultiCommand) sentCommands.take();
+		Assert.assertEquals(OrderMultiCommand.MAX_COMMANDS, firstFrame.size());
+		Assert.assertTrue(futures.get(14).isDone());
+		Assert.assertFalse(futures.get(15).isDone());
+
+		// The remaining commands are sent when the window is closed
+		final OrderMultiCommand secondFrame = (OrderMultiCommand) sentCommands.take();
+		Assert.assertEquals(5, secondFrame.size());
+		
+		final JSONArray operations = new JSONArray(secondFrame.getCommand(null)).getJSONArray(3);
+		Assert.assertEquals(5, operations.length());
+		Assert.assertEquals("oc", operations.getJSONArray(0).getString(0));
+		Assert.assertEquals(15, operations.getJSONArray(0).getJSONObject(1).getLong("id"));
+		
+		for(final CompletableFuture<Void> future : futures) {
+			future.get();
+		}
+
+		// A single command is sent without ox_multi frame
+		batcher.submit(new OrderCancelCommand(99)).get();
+		Assert.assertTrue(sentCommands.take() instanceof OrderCancelCommand);
+		Assert.assertEquals(3, batcher.getSentFrames());
+		Assert.assertEquals(21, batcher.getSentCommands());
+	}
+
+	/**
+	 * Test the failed send of a batch
+	 */
+	@Test(timeout=10000)
+	public void testFailedBatch() throws InterruptedException {
+		final OrderCommandBatcher batcher = new OrderCommandBatcher(c -> {
+			throw new BitfinexClientException("Connection closed");
+		}, scheduler, 1000);
+
+		final CompletableFuture<Void> future1 = batcher.submit(new OrderCancelCommand(1));
+		final CompletableFuture<Void> future2 = batcher.submit(new OrderCancelCommand(2));
+
+		for(final CompletableFuture<Void> future : new CompletableFuture[] {future1, future2}) {
+			try {
+				future.get();
+				Assert.fail("Exception expected");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof BitfinexClientException);
+			}
+		}
+
+		Assert.assertEquals(0, batcher.getSentFrames());
+	}
+
+	/**
+	 * Test nested multi commands
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testNestedMultiCommand() {
+		final OrderMultiCommand multiCommand = new OrderMultiCommand(Arrays.asList(new OrderCancelCommand(1)));
+		new OrderMultiCommand(Arrays.asList(multiCommand));
+	}
+
+	/**
+	 * Test the batching of the order manager, each order is completed on its own
+	 */
+	@Test(timeout=10000)
+	public void testOrderManagerBatching() throws Exception {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		Mockito.when(client.getConfiguration().getOrderBatchWindowMicros()).thenReturn(TimeUnit.MILLISECONDS.toMicros(50));
+
+		final BlockingQueue<BitfinexCommand> sentCommands = new LinkedBlockingQueue<>();
+		Mockito.doAnswer(i -> sentCommands.add(i.getArgument(0))).when(client).sendCommand(Mockito.any());
+
+		final OrderManager orderManager = new OrderManager(client, MoreExecutors.newDirectExecutorService());
+		Assert.assertNotNull(orderManager.getOrderCommandBatcher());
+
+		final List<CompletableFuture<BitfinexSubmittedOrder>> futures = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			final BitfinexOrder order
+				= BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BTC", "USD"), BitfinexOrderType.LIMIT, 1).build();
+			order.setClientId(100 + i);
+			futures.add(orderManager.placeOrderAsync(order));
+		}
+
+		final OrderMultiCommand frame = (OrderMultiCommand) sentCommands.take();
+		Assert.assertEquals(3, frame.size());
+
+		final BitfinexAccountSymbol symbol = BitfinexSymbols.account(BitfinexApiKeyPermissions.ALL_PERMISSIONS, "apiKey");
+		for(int i = 2; i >= 0; i--) {
+			final BitfinexSubmittedOrder exchangeOrder = new BitfinexSubmittedOrder();
+			exchangeOrder.setOrderId(10L + i);
+			exchangeOrder.setClientId(100 + i);
+			exchangeOrder.setStatus(BitfinexSubmittedOrderStatus.ACTIVE);
+			orderManager.updateOrderCallback(symbol, exchangeOrder);
+			
+			Assert.assertTrue(futures.get(i).isDone());
+			Assert.assertEquals(10L + i, (long) futures.get(i).get().getOrderId());
+			
+			if(i > 0) {
+				Assert.assertFalse(futures.get(i - 1).isDone());
+			}
+		}
+	}
+
+	/**
+	 * Test that group and cancel all commands are batched in submission order
+	 */
+	@Test(timeout=10000)
+	public void testOrderManagerCancelAllBatching() throws Exception {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		Mockito.when(client.getConfiguration().getOrderBatchWindowMicros()).thenReturn(TimeUnit.MILLISECONDS.toMicros(50));
+
+		final BlockingQueue<BitfinexCommand> sentCommands = new LinkedBlockingQueue<>();
+		Mockito.doAnswer(i -> sentCommands.add(i.getArgument(0))).when(client).sendCommand(Mockito.any());
+
+		final OrderManager orderManager = new OrderManager(client, MoreExecutors.newDirectExecutorService());
+
+		final BitfinexOrder order
+			= BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BTC", "USD"), BitfinexOrderType.LIMIT, 1).build();
+		orderManager.placeOrderAsync(order);
+		orderManager.cancelOrderGroup(5);
+		orderManager.cancelAllOrders();
+
+		final OrderMultiCommand frame = (OrderMultiCommand) sentCommands.take();
+		Assert.assertEquals(3, frame.size());
+		Assert.assertTrue(frame.getCommands().get(0) instanceof OrderNewCommand);
+		Assert.assertTrue(frame.getCommands().get(1) instanceof OrderCancelGroupCommand);
+		Assert.assertTrue(frame.getCommands().get(2) instanceof OrderCancelAllCommand);
+		Assert.assertTrue(sentCommands.isEmpty());
+	}
+}
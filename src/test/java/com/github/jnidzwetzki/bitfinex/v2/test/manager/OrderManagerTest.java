@@ -17,6 +17,14 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test.manager;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import org.json.JSONArray;
@@ -29,6 +37,7 @@ import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderBuilder;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.account.info.NotificationHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.account.info.OrderHandler;
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexApiKeyPermissions;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderType;
@@ -39,6 +48,7 @@ import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
 import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexAccountSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.github.jnidzwetzki.bitfinex.v2.util.VirtualThreads;
 
 
 public class OrderManagerTest {
@@ -320,5 +330,253 @@ public class OrderManagerTest {
         orderManager.placeOrderAndWaitUntilActive(order);
     }
 
+    /**
+     * Test the submitted round-trips on the round-trip executor
+     *
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    @Test(timeout = 60000)
+    public void testSubmitOrderRoundTrips() throws InterruptedException, ExecutionException {
+        final int roundTrips = 200;
+
+        final BitfinexWebsocketClient bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        Mockito.when(bitfinexApiBroker.getConfiguration().getOrderExecutionMode())
+            .thenReturn(OrderManager.ExecutionMode.VIRTUAL_THREADS);
+
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+        final BitfinexAccountSymbol symbol = BitfinexSymbols.account(BitfinexApiKeyPermissions.ALL_PERMISSIONS, "apiKey");
+        final CountDownLatch allSent = new CountDownLatch(roundTrips);
+
+        // Activate the order when all round-trips are waiting
+        Mockito.doAnswer(i -> {
+            final BitfinexCommand command = i.getArgument(0);
+            final long clientId = new JSONArray(command.getCommand(bitfinexApiBroker))
+                    .getJSONObject(3).getLong("cid");
+
+            allSent.countDown();
+            allSent.await();
+
+            final BitfinexSubmittedOrder exchangeOrder = new BitfinexSubmittedOrder();
+            exchangeOrder.setOrderId(clientId);
+            exchangeOrder.setClientId(clientId);
+            exchangeOrder.setStatus(BitfinexSubmittedOrderStatus.ACTIVE);
+            orderManager.updateOrderCallback(symbol, exchangeOrder);
+            return null;
+        }).when(bitfinexApiBroker).sendCommand(Mockito.any());
+
+        final OrderManager.ExecutionMode expectedMode = VirtualThreads.isSupported() 
+                ? OrderManager.ExecutionMode.VIRTUAL_THREADS : OrderManager.ExecutionMode.PLATFORM_THREADS;
+        Assert.assertEquals(expectedMode, orderManager.getExecutionMode());
+
+        final List<Future<BitfinexSubmittedOrder>> futures = new ArrayList<>();
+        for (int i = 0; i < roundTrips; i++) {
+            final BitfinexOrder order
+                = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BTC", "USD"), BitfinexOrderType.MARKET, 1).build();
+            order.setClientId(1000 + i);
+            futures.add(orderManager.submitOrderAndWaitUntilActive(order));
+        }
+
+        allSent.await();
+
+        for (int i = 0; i < roundTrips; i++) {
+            final BitfinexSubmittedOrder placedOrder = futures.get(i).get();
+            Assert.assertEquals(1000 + i, (long) placedOrder.getClientId());
+            Assert.assertEquals(BitfinexSubmittedOrderStatus.ACTIVE, placedOrder.getStatus());
+        }
+
+        Assert.assertEquals(0, orderManager.getOutstandingRoundTrips());
+        Assert.assertEquals(roundTrips, orderManager.getOrders().size());
+
+        // Failed round-trips are reported by the future
+        Mockito.when(bitfinexApiBroker.getApiKeyPermissions()).thenReturn(BitfinexApiKeyPermissions.NO_PERMISSIONS);
+        final Future<Void> cancelFuture = orderManager.submitCancelOrderAndWaitForCompletion(1000);
+
+        try {
+            cancelFuture.get(10, TimeUnit.SECONDS);
+            Assert.fail("Exception expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof BitfinexClientException);
+        } catch (Exception e) {
+            Assert.fail("Unexpected exception: " + e);
+        }
+    }
+
+    /**
+     * Test the async order operations
+     *
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    @Test(timeout = 10000)
+    public void testAsyncOrderOperations() throws InterruptedException, ExecutionException {
+        final BitfinexWebsocketClient bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+        final BitfinexAccountSymbol symbol = BitfinexSymbols.account(BitfinexApiKeyPermissions.ALL_PERMISSIONS, "apiKey");
+
+        final BitfinexOrder order
+            = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BTC", "USD"), BitfinexOrderType.LIMIT, 1).build();
+        order.setClientId(4711);
+
+        final CompletableFuture<BitfinexSubmittedOrder> placement = orderManager.placeOrderAsync(order);
+        Mockito.verify(bitfinexApiBroker).sendCommand(Mockito.any());
+        Assert.assertFalse(placement.isDone());
+        Assert.assertEquals(1, orderManager.getPendingAsyncOperations());
+
+        // Unrelated order
+        final BitfinexSubmittedOrder otherOrder = new BitfinexSubmittedOrder();
+        otherOrder.setOrderId(1L);
+        otherOrder.setClientId(1);
+        otherOrder.setStatus(BitfinexSubmittedOrderStatus.ACTIVE);
+        orderManager.updateOrderCallback(symbol, otherOrder);
+        Assert.assertFalse(placement.isDone());
+
+        final BitfinexSubmittedOrder activeOrder = new BitfinexSubmittedOrder();
+        activeOrder.setOrderId(12L);
+        activeOrder.setClientId(4711);
+        activeOrder.setStatus(BitfinexSubmittedOrderStatus.ACTIVE);
+        orderManager.updateOrderCallback(symbol, activeOrder);
+        Assert.assertEquals(activeOrder, placement.get());
+
+        // Update
+        final CompletableFuture<BitfinexSubmittedOrder> update = orderManager.updateOrderAsync(activeOrder);
+        Assert.assertFalse(update.isDone());
+        final BitfinexSubmittedOrder updatedOrder = new BitfinexSubmittedOrder();
+        updatedOrder.setOrderId(12L);
+        updatedOrder.setClientId(4711);
+        updatedOrder.setStatus(BitfinexSubmittedOrderStatus.ACTIVE);
+        orderManager.updateOrderCallback(symbol, updatedOrder);
+        Assert.assertEquals(updatedOrder, update.get());
+
+        // Cancel
+        final CompletableFuture<BitfinexSubmittedOrder> cancelation = orderManager.cancelOrderAsync(12);
+        orderManager.updateOrderCallback(symbol, updatedOrder);
+        Assert.assertFalse(cancelation.isDone());
+
+        final BitfinexSubmittedOrder canceledOrder = new BitfinexSubmittedOrder();
+        canceledOrder.setOrderId(12L);
+        canceledOrder.setStatus(BitfinexSubmittedOrderStatus.CANCELED);
+        orderManager.updateOrderCallback(symbol, canceledOrder);
+        Assert.assertEquals(canceledOrder, cancelation.get());
+
+        Assert.assertEquals(0, orderManager.getPendingAsyncOperations());
+        Mockito.verify(bitfinexApiBroker, Mockito.times(3)).sendCommand(Mockito.any());
+    }
+
+    /**
+     * Test the failed async order operations
+     *
+     * @throws InterruptedException
+     */
+    @Test(timeout = 10000)
+    public void testAsyncOrderFailures() throws InterruptedException {
+        final BitfinexWebsocketClient bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+        final BitfinexAccountSymbol symbol = BitfinexSymbols.account(BitfinexApiKeyPermissions.ALL_PERMISSIONS, "apiKey");
+
+        // Error notification
+        final BitfinexOrder order
+            = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BTC", "USD"), BitfinexOrderType.LIMIT, 1).build();
+        order.setClientId(4711);
+        final CompletableFuture<BitfinexSubmittedOrder> placement = orderManager.placeOrderAsync(order);
+
+        // Already pending
+        assertFailed(orderManager.placeOrderAsync(order));
+        Mockito.verify(bitfinexApiBroker, Mockito.times(1)).sendCommand(Mockito.any());
+
+        final BitfinexSubmittedOrder errorOrder = new BitfinexSubmittedOrder();
+        errorOrder.setClientId(4711);
+        errorOrder.setStatus(BitfinexSubmittedOrderStatus.ERROR);
+        orderManager.updateOrderCallback(symbol, errorOrder);
+        assertFailed(placement);
+
+        // Timeout
+        orderManager.setAsyncOperationTimeout(100, TimeUnit.MILLISECONDS);
+        assertFailed(orderManager.cancelOrderAsync(12));
+
+        // Missing permissions
+        Mockito.when(bitfinexApiBroker.getApiKeyPermissions()).thenReturn(BitfinexApiKeyPermissions.NO_PERMISSIONS);
+        assertFailed(orderManager.cancelOrderAsync(13));
+
+        Assert.assertEquals(0, orderManager.getPendingAsyncOperations());
+    }
 
+    /**
+     * Test the async order update is completed by the event with the requested values
+     *
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    @Test(timeout = 10000)
+    public void testAsyncOrderUpdate() throws InterruptedException, ExecutionException {
+        final BitfinexWebsocketClient bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+        final BitfinexAccountSymbol symbol = BitfinexSymbols.account(BitfinexApiKeyPermissions.ALL_PERMISSIONS, "apiKey");
+
+        final BitfinexSubmittedOrder order = buildSubmittedOrder(12, "6500", "2", BitfinexSubmittedOrderStatus.ACTIVE);
+        order.setPrice(new BigDecimal("6600"));
+        final CompletableFuture<BitfinexSubmittedOrder> update = orderManager.updateOrderAsync(order);
+
+        // The order is changed again until the event arrives
+        order.setPrice(new BigDecimal("6700"));
+
+        // A fill before the update
+        orderManager.updateOrderCallback(symbol,
+                buildSubmittedOrder(12, "6500", "1.5", BitfinexSubmittedOrderStatus.PARTIALLY_FILLED));
+        Assert.assertFalse(update.isDone());
+
+        final BitfinexSubmittedOrder updatedOrder
+            = buildSubmittedOrder(12, "6600.0", "2.0", BitfinexSubmittedOrderStatus.ACTIVE);
+        orderManager.updateOrderCallback(symbol, updatedOrder);
+        Assert.assertEquals(updatedOrder, update.get());
+
+        // The order is executed before the update
+        order.setAmount(new BigDecimal("3"));
+        final CompletableFuture<BitfinexSubmittedOrder> executedUpdate = orderManager.updateOrderAsync(order);
+        orderManager.updateOrderCallback(symbol,
+                buildSubmittedOrder(12, "6600", "0", BitfinexSubmittedOrderStatus.EXECUTED));
+        assertFailed(executedUpdate);
+
+        // Errors complete the update
+        final CompletableFuture<BitfinexSubmittedOrder> failedUpdate = orderManager.updateOrderAsync(order);
+        orderManager.updateOrderCallback(symbol,
+                buildSubmittedOrder(12, "6600", "1.5", BitfinexSubmittedOrderStatus.ERROR));
+        assertFailed(failedUpdate);
+
+        Assert.assertEquals(0, orderManager.getPendingAsyncOperations());
+    }
+
+    /**
+     * Build an event of a submitted order
+     * @param orderId
+     * @param price
+     * @param amount
+     * @param status
+     * @return
+     */
+    private static BitfinexSubmittedOrder buildSubmittedOrder(final long orderId, final String price,
+            final String amount, final BitfinexSubmittedOrderStatus status) {
+
+        final BitfinexSubmittedOrder order = new BitfinexSubmittedOrder();
+        order.setOrderId(orderId);
+        order.setClientId(4711);
+        order.setPrice(new BigDecimal(price));
+        order.setAmount(new BigDecimal(amount));
+        order.setStatus(status);
+        return order;
+    }
+
+    /**
+     * Assert the future is completed with a client exception
+     * @param future
+     * @throws InterruptedException
+     */
+    private static void assertFailed(final CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+            Assert.fail("Exception expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof BitfinexClientException);
+        }
+    }
 }
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.command.BitfinexCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelAllCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderCancelGroupCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderNewCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.OrderUpdateCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrder;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderRateLimiter;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderRateLimiter.Lane;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class OrderRateLimiterTest {
+
+	/**
+	 * The scheduler of the limiter
+	 */
+	private ScheduledExecutorService scheduler;
+
+	@Before
+	public void before() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Test the priority lanes
+	 */
+	@Test(timeout=10000)
+	public void testPriorityLanes() throws Exception {
+		final List<BitfinexCommand> sentCommands = new CopyOnWriteArrayList<>();
+		final List<Long> waitTimes = new CopyOnWriteArrayList<>();
+		final OrderRateLimiter rateLimiter = new OrderRateLimiter(sentCommands::add, scheduler, 20, 3);
+		rateLimiter.setWaitTimeListener((c, w) -> waitTimes.add(w));
+
+		final List<BitfinexCommand> newOrders = new ArrayList<>();
+		for(int i = 0; i < 5; i++) {
+			newOrders.add(new OrderNewCommand(new BitfinexOrder()));
+		}
+		final BitfinexCommand update = new OrderUpdateCommand(new BitfinexSubmittedOrder());
+		final BitfinexCommand cancel = new OrderCancelCommand(1);
+
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		newOrders.forEach(c -> futures.add(rateLimiter.submit(c)));
+		futures.add(rateLimiter.submit(update));
+		futures.add(rateLimiter.submit(cancel));
+
+		// The burst is sent immediately
+		Assert.assertEquals(newOrders.subList(0, 3), new ArrayList<>(sentCommands));
+		Assert.assertEquals(4, rateLimiter.getQueuedCommands());
+		Assert.assertEquals(1, rateLimiter.getQueuedCommands(Lane.CANCEL));
+		Assert.assertEquals(2, rateLimiter.getQueuedCommands(Lane.NEW));
+		Assert.assertTrue(rateLimiter.getAvailableTokens() < 1);
+
+		for(final CompletableFuture<Void> future : futures) {
+			future.get();
+		}
+
+		// Cancels and updates are sent before the queued new orders
+		Assert.assertEquals(Arrays.asList(newOrders.get(0), newOrders.get(1), newOrders.get(2), 
+				cancel, update, newOrders.get(3), newOrders.get(4)), sentCommands);
+
+		Assert.assertEquals(0, rateLimiter.getQueuedCommands());
+		Assert.assertEquals(5, rateLimiter.getSentCommands(Lane.NEW));
+		Assert.assertEquals(1, rateLimiter.getSentCommands(Lane.CANCEL));
+		Assert.assertEquals(7, waitTimes.size());
+		Assert.assertTrue(rateLimiter.getAverageWaitTime(Lane.CANCEL, TimeUnit.MILLISECONDS) >= 20);
+		Assert.assertTrue(rateLimiter.getMaxWaitTime(Lane.NEW, TimeUnit.MILLISECONDS) 
+				>= rateLimiter.getMaxWaitTime(Lane.CANCEL, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Test that group and cancel all commands do not overtake the queued commands
+	 */
+	@Test(timeout=10000)
+	public void testBarrier() throws Exception {
+		final List<BitfinexCommand> sentCommands = new CopyOnWriteArrayList<>();
+		final OrderRateLimiter rateLimiter = new OrderRateLimiter(sentCommands::add, scheduler, 50, 1);
+
+		final BitfinexCommand newOrder1 = new OrderNewCommand(new BitfinexOrder());
+		final BitfinexCommand newOrder2 = new OrderNewCommand(new BitfinexOrder());
+		final BitfinexCommand update = new OrderUpdateCommand(new BitfinexSubmittedOrder());
+		final BitfinexCommand cancelAll = new OrderCancelAllCommand();
+		final BitfinexCommand cancel = new OrderCancelCommand(1);
+		final BitfinexCommand newOrder3 = new OrderNewCommand(new BitfinexOrder());
+
+		rateLimiter.submit(newOrder1);
+		rateLimiter.submit(newOrder2);
+		rateLimiter.submit(update);
+		rateLimiter.submit(cancelAll);
+		rateLimiter.submit(cancel);
+		rateLimiter.submit(newOrder3).get();
+
+		// The commands queued before the cancel all are sent first
+		Assert.assertEquals(Arrays.asList(newOrder1, newOrder2, update, cancelAll, cancel, newOrder3), 
+				sentCommands);
+
+		Assert.assertTrue(Lane.isBarrier(new OrderCancelGroupCommand(1)));
+		Assert.assertTrue(Lane.isBarrier(new OrderMultiCommand(Arrays.asList(new OrderCancelAllCommand()))));
+		Assert.assertFalse(Lane.isBarrier(cancel));
+	}
+
+	/**
+	 * Test the rate
+	 */
+	@Test(timeout=10000)
+	public void testRate() throws Exception {
+		final List<BitfinexCommand> sentCommands = new CopyOnWriteArrayList<>();
+		final OrderRateLimiter rateLimiter = new OrderRateLimiter(sentCommands::add, scheduler, 100, 1);
+
+		final long start = System.nanoTime();
+		CompletableFuture<Void> lastFuture = null;
+		for(int i = 0; i < 21; i++) {
+			lastFuture = rateLimiter.submit(new OrderCancelCommand(i));
+		}
+
+		lastFuture.get();
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		Assert.assertEquals(21, sentCommands.size());
+		Assert.assertTrue("Elapsed " + elapsedMillis, elapsedMillis >= 190);
+	}
+
+	/**
+	 * Test the lane of the commands
+	 */
+	@Test
+	public void testLanes() {
+		final OrderCancelCommand cancel = new OrderCancelCommand(1);
+		final OrderNewCommand newOrder = new OrderNewCommand(new BitfinexOrder());
+		
+		Assert.assertEquals(Lane.CANCEL, Lane.of(cancel));
+		Assert.assertEquals(Lane.NEW, Lane.of(newOrder));
+		Assert.assertEquals(Lane.NEW, Lane.of(new OrderMultiCommand(Arrays.asList(newOrder))));
+		Assert.assertEquals(Lane.CANCEL, Lane.of(new OrderMultiCommand(Arrays.asList(newOrder, cancel))));
+	}
+
+	/**
+	 * Test the rate limit of the order manager
+	 */
+	@Test(timeout=10000)
+	public void testOrderManagerRateLimit() throws Exception {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		Mockito.when(client.getConfiguration().getOrderRateLimit()).thenReturn(1000.0);
+		Mockito.when(client.getConfiguration().getOrderRateBurst()).thenReturn(2);
+
+		final OrderManager orderManager = new OrderManager(client, MoreExecutors.newDirectExecutorService());
+		final OrderRateLimiter rateLimiter = orderManager.getOrderRateLimiter();
+		Assert.assertNotNull(rateLimiter);
+
+		orderManager.cancelOrder(1);
+		orderManager.cancelOrder(2);
+		Mockito.verify(client, Mockito.times(2)).sendCommand(Mockito.any());
+
+		// Third cancel is queued, the async cancelation is failed by the timeout only
+		orderManager.setAsyncOperationTimeout(5, TimeUnit.SECONDS);
+		final CompletableFuture<BitfinexSubmittedOrder> cancelation = orderManager.cancelOrderAsync(3);
+		Mockito.verify(client, Mockito.timeout(5000).times(3)).sendCommand(Mockito.any());
+		Assert.assertEquals(3, rateLimiter.getSentCommands(Lane.CANCEL));
+		cancelation.cancel(true);
+	}
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrderStatus;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderStore;
+
+public class OrderStoreTest {
+
+	@BeforeClass
+	public static void registerDefaultCurrencyPairs() {
+		if(BitfinexCurrencyPair.values().size() < 10) {
+			BitfinexCurrencyPair.unregisterAll();
+			BitfinexCurrencyPair.registerDefaults();	
+		}
+	}
+
+	/**
+	 * Build an order
+	 * @param orderId
+	 * @param clientId
+	 * @param groupId
+	 * @param currencyPair
+	 * @param status
+	 * @return
+	 */
+	private static BitfinexSubmittedOrder buildOrder(final Long orderId, final long clientId, final Long groupId,
+			final BitfinexCurrencyPair currencyPair, final BitfinexSubmittedOrderStatus status) {
+		
+		final BitfinexSubmittedOrder order = new BitfinexSubmittedOrder();
+		order.setOrderId(orderId);
+		order.setClientId(clientId);
+		if(groupId != null) {
+			order.setClientGroupId(groupId);
+		}
+		order.setCurrencyPair(currencyPair);
+		order.setStatus(status);
+		return order;
+	}
+
+	/**
+	 * Test the indexes
+	 */
+	@Test(timeout=10000)
+	public void testIndexes() {
+		final BitfinexCurrencyPair btcUsd = BitfinexCurrencyPair.of("BTC", "USD");
+		final BitfinexCurrencyPair ethUsd = BitfinexCurrencyPair.of("ETH", "USD");
+		final OrderStore orderStore = new OrderStore();
+
+		final BitfinexSubmittedOrder order1 = buildOrder(1L, 11, 100L, btcUsd, BitfinexSubmittedOrderStatus.ACTIVE);
+		final BitfinexSubmittedOrder order2 = buildOrder(2L, 12, 100L, ethUsd, BitfinexSubmittedOrderStatus.ACTIVE);
+		final BitfinexSubmittedOrder order3 = buildOrder(3L, 13, null, btcUsd, BitfinexSubmittedOrderStatus.ACTIVE);
+		orderStore.update(order1);
+		orderStore.update(order2);
+		orderStore.update(order3);
+
+		Assert.assertEquals(3, orderStore.size());
+		Assert.assertEquals(order2, orderStore.getOrderById(2));
+		Assert.assertEquals(order3, orderStore.getOrderByClientId(13));
+		Assert.assertEquals(2, orderStore.getOrdersByGroupId(100).size());
+		Assert.assertEquals(2, orderStore.getOrdersByCurrencyPair(btcUsd).size());
+		Assert.assertTrue(orderStore.getOrdersByGroupId(200).isEmpty());
+
+		// Replace order 1 (moved to another group)
+		final BitfinexSubmittedOrder order1Update = buildOrder(1L, 11, 200L, btcUsd, 
+				BitfinexSubmittedOrderStatus.PARTIALLY_FILLED);
+		orderStore.update(order1Update);
+		Assert.assertEquals(3, orderStore.size());
+		Assert.assertEquals(BitfinexSubmittedOrderStatus.PARTIALLY_FILLED, orderStore.getOrderById(1).getStatus());
+		Assert.assertEquals(1, orderStore.getOrdersByGroupId(100).size());
+		Assert.assertEquals(1, orderStore.getOrdersByGroupId(200).size());
+
+		// Cancel order 3
+		orderStore.update(buildOrder(3L, 13, null, btcUsd, BitfinexSubmittedOrderStatus.CANCELED));
+		Assert.assertEquals(2, orderStore.size());
+		Assert.assertNull(orderStore.getOrderById(3));
+		Assert.assertNull(orderStore.getOrderByClientId(13));
+		Assert.assertEquals(1, orderStore.getOrdersByCurrencyPair(btcUsd).size());
+
+		orderStore.clear();
+		Assert.assertEquals(0, orderStore.size());
+		Assert.assertTrue(orderStore.getSnapshot().getOrders().isEmpty());
+	}
+
+	/**
+	 * Test rejected orders (without order id)
+	 */
+	@Test(timeout=10000)
+	public void testRejectedOrders() {
+		final BitfinexCurrencyPair btcUsd = BitfinexCurrencyPair.of("BTC", "USD");
+		final OrderStore orderStore = new OrderStore();
+
+		final BitfinexSubmittedOrder rejectedOrder = buildOrder(null, 11, null, btcUsd, BitfinexSubmittedOrderStatus.ERROR);
+		orderStore.update(rejectedOrder);
+		Assert.assertEquals(1, orderStore.size());
+		Assert.assertEquals(rejectedOrder, orderStore.getOrderByClientId(11));
+		Assert.assertEquals(rejectedOrder, orderStore.getSnapshot().getOrderByClientId(11));
+
+		// Retry with the same client id
+		final BitfinexSubmittedOrder activeOrder = buildOrder(5L, 11, null, btcUsd, BitfinexSubmittedOrderStatus.ACTIVE);
+		orderStore.update(activeOrder);
+		Assert.assertEquals(1, orderStore.size());
+		Assert.assertEquals(activeOrder, orderStore.getOrderByClientId(11));
+		Assert.assertEquals(activeOrder, orderStore.getSnapshot().getOrderById(5));
+	}
+
+	/**
+	 * Test the snapshots
+	 */
+	@Test(timeout=10000)
+	public void testSnapshot() {
+		final BitfinexCurrencyPair btcUsd = BitfinexCurrencyPair.of("BTC", "USD");
+		final OrderStore orderStore = new OrderStore();
+
+		orderStore.update(buildOrder(2L, 12, null, btcUsd, BitfinexSubmittedOrderStatus.ACTIVE));
+		orderStore.update(buildOrder(1L, 11, null, btcUsd, BitfinexSubmittedOrderStatus.ACTIVE));
+
+		final OrderStore.Snapshot snapshot = orderStore.getSnapshot();
+		Assert.assertEquals(2, snapshot.size());
+		Assert.assertEquals(orderStore.getVersion(), snapshot.getVersion());
+		Assert.assertSame(snapshot, orderStore.getSnapshot());
+
+		// Sorted by order id
+		Assert.assertEquals(1L, (long) snapshot.getOrders().get(0).getOrderId());
+		Assert.assertEquals(2L, (long) snapshot.getOrders().get(1).getOrderId());
+
+		try {
+			snapshot.getOrders().clear();
+			Assert.fail("Exception expected");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+
+		// Old snapshot is not changed
+		orderStore.update(buildOrder(3L, 13, null, btcUsd, BitfinexSubmittedOrderStatus.ACTIVE));
+		Assert.assertEquals(2, snapshot.size());
+		Assert.assertNull(snapshot.getOrderById(3));
+
+		final OrderStore.Snapshot newSnapshot = orderStore.getSnapshot();
+		Assert.assertNotSame(snapshot, newSnapshot);
+		Assert.assertTrue(newSnapshot.getVersion() > snapshot.getVersion());
+		Assert.assertEquals(3, newSnapshot.size());
+	}
+
+	/**
+	 * Test consistent snapshots with a concurrent writer
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=30000)
+	public void testConcurrentSnapshots() throws InterruptedException {
+		final BitfinexCurrencyPair btcUsd = BitfinexCurrencyPair.of("BTC", "USD");
+		final OrderStore orderStore = new OrderStore();
+		final int orders = 100;
+
+		for(long i = 0; i < orders; i++) {
+			orderStore.update(buildOrder(i, i, null, btcUsd, BitfinexSubmittedOrderStatus.ACTIVE));
+		}
+
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicReference<String> failure = new AtomicReference<>();
+
+		// Replace the orders while the snapshots are taken
+		final Thread writer = new Thread(() -> {
+			for(long i = 0; i < 50_000; i++) {
+				final long orderId = i % orders;
+				final BitfinexSubmittedOrder order = orderStore.getOrderById(orderId);
+				orderStore.update(buildOrder(orderId, order.getClientId(), null, btcUsd, 
+						BitfinexSubmittedOrderStatus.PARTIALLY_FILLED));
+			}
+			done.set(true);
+		});
+
+		writer.start();
+
+		long lastVersion = 0;
+		while(! done.get()) {
+			final OrderStore.Snapshot snapshot = orderStore.getSnapshot();
+			final List<BitfinexSubmittedOrder> snapshotOrders = snapshot.getOrders();
+
+			if(snapshotOrders.size() != orders) {
+				failure.set("Inconsistent snapshot: " + snapshotOrders.size());
+			}
+
+			if(snapshot.getVersion() < lastVersion || (snapshot.getVersion() & 1) != 0) {
+				failure.set("Invalid version: " + snapshot.getVersion());
+			}
+
+			lastVersion = snapshot.getVersion();
+		}
+
+		writer.join();
+		Assert.assertNull(failure.get());
+		Assert.assertEquals(orders, orderStore.getSnapshot().size());
+	}
+}
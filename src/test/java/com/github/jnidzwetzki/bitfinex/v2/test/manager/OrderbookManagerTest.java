@@ -0,0 +1,330 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.json.JSONArray;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeOrderbookCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBook;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class OrderbookManagerTest {
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		try {
+			currencyPair = BitfinexCurrencyPair.register("OBM", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			currencyPair = BitfinexCurrencyPair.of("OBM", "USD");
+		}
+	}
+
+	/**
+	 * Test the maintained order book
+	 */
+	@Test
+	public void testOrderbookMaintenance() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final OrderbookManager orderbookManager = new OrderbookManager(client, executorService);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.orderBook(currencyPair, 
+				BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25);
+
+		final OrderbookHandler handler = new OrderbookHandler(10, symbol);
+		handler.onOrderBookEvent(callbacks::acceptOrderBookEvent);
+
+		Assert.assertNull(orderbookManager.getOrderBook(symbol));
+
+		final List<Long> bestBids = new ArrayList<>();
+		orderbookManager.registerOrderBookStateCallback(symbol, (s, b) -> bestBids.add(b.getBestBidPrice()));
+
+		// Snapshot
+		handler.handleChannelData(null, new JSONArray("[[100.5,2,1.5],[100.1,1,0.5],[101,1,-2],[100.7,3,-1],[102,1,-0.25]]"));
+
+		final BitfinexOrderBook orderBook = orderbookManager.getOrderBook(symbol);
+		Assert.assertNotNull(orderBook);
+		Assert.assertEquals(1, bestBids.size());
+		Assert.assertEquals(toScaled("100.5"), (long) bestBids.get(0));
+		Assert.assertEquals(2, orderBook.getBidLevels());
+		Assert.assertEquals(3, orderBook.getAskLevels());
+		Assert.assertEquals(toScaled("100.5"), orderBook.getBestBidPrice());
+		Assert.assertEquals(toScaled("100.7"), orderBook.getBestAskPrice());
+		Assert.assertEquals(toScaled("101"), orderBook.getAskPrice(1));
+		Assert.assertEquals(toScaled("-2"), orderBook.getAskAmount(1));
+		Assert.assertEquals(3, orderBook.getAskCount(0));
+
+		// Update and insert
+		handler.handleChannelData(null, new JSONArray("[100.5,3,2.5]"));
+		handler.handleChannelData(null, new JSONArray("[100.6,1,1]"));
+		Assert.assertEquals(3, bestBids.size());
+		Assert.assertEquals(toScaled("100.6"), (long) bestBids.get(2));
+		Assert.assertEquals(toScaled("100.6"), orderBook.getBestBidPrice());
+		Assert.assertEquals(toScaled("2.5"), orderBook.getAmountAtPrice(toScaled("100.5")));
+		Assert.assertEquals(toScaled("-1"), orderBook.getAmountAtPrice(toScaled("100.7")));
+		Assert.assertEquals(0, orderBook.getAmountAtPrice(toScaled("99")));
+
+		// Cumulative volume
+		Assert.assertEquals(toScaled("3.5"), orderBook.getCumulativeBidAmount(toScaled("100.5")));
+		Assert.assertEquals(toScaled("4"), orderBook.getCumulativeBidAmount(toScaled("50")));
+		Assert.assertEquals(toScaled("-3"), orderBook.getCumulativeAskAmount(toScaled("101.5")));
+
+		// Delete (count = 0)
+		handler.handleChannelData(null, new JSONArray("[100.6,0,1]"));
+		handler.handleChannelData(null, new JSONArray("[100.7,0,-1]"));
+		Assert.assertEquals(toScaled("100.5"), orderBook.getBestBidPrice());
+		Assert.assertEquals(toScaled("101"), orderBook.getBestAskPrice());
+
+		final List<BitfinexOrderBookEntry> topAsks = orderBook.getTopAsks(5);
+		Assert.assertEquals(2, topAsks.size());
+		Assert.assertEquals(0, new BigDecimal("102").compareTo(topAsks.get(1).getPrice()));
+		Assert.assertEquals(0, new BigDecimal("-0.25").compareTo(topAsks.get(1).getAmount()));
+
+		// Resubscribe clears the book
+		callbacks.acceptSubscribeChannelEvent(symbol);
+		Assert.assertEquals(0, orderBook.getBidLevels());
+		Assert.assertEquals(0, orderBook.getAskLevels());
+		Assert.assertEquals(0, orderBook.getBestBidPrice());
+
+		// Unsubscribe removes the book
+		callbacks.acceptUnsubscribeChannelEvent(symbol);
+		Assert.assertNull(orderbookManager.getOrderBook(symbol));
+	}
+
+	/**
+	 * Test the checksum verification
+	 */
+	@Test
+	public void testOrderbookChecksum() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final OrderbookManager orderbookManager = new OrderbookManager(client, executorService);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.orderBook(currencyPair, 
+				BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25);
+
+		final OrderbookHandler handler = new OrderbookHandler(10, symbol);
+		handler.onOrderBookEvent(callbacks::acceptOrderBookEvent);
+		handler.onChecksumEvent(callbacks::acceptOrderBookChecksumEvent);
+
+		handler.handleChannelData(null, new JSONArray("[[100.5,2,1.5],[100.1,1,0.00000001],[101,1,-2],[100.7,3,-1]]"));
+
+		final int expected = crc32("100.5:1.5:100.7:-1:100.1:1e-8:101:-2");
+		Assert.assertEquals(expected, orderbookManager.getOrderBook(symbol).getChecksum());
+
+		// Matching checksum
+		handler.handleChannelData("cs", new JSONArray("[" + expected + "]"));
+		Mockito.verify(client, Mockito.never()).sendCommand(Mockito.any());
+
+		// Mismatching checksum
+		handler.handleChannelData("cs", new JSONArray("[" + (expected + 1) + "]"));
+		handler.handleChannelData("cs", new JSONArray("[" + (expected + 1) + "]"));
+		Mockito.verify(client, Mockito.times(1)).sendCommand(Mockito.any(UnsubscribeChannelCommand.class));
+
+		// The book is kept and the channel is subscribed again
+		callbacks.acceptUnsubscribeChannelEvent(symbol);
+		Assert.assertNotNull(orderbookManager.getOrderBook(symbol));
+		Mockito.verify(client, Mockito.times(1)).sendCommand(Mockito.any(SubscribeOrderbookCommand.class));
+
+		callbacks.acceptSubscribeChannelEvent(symbol);
+		Assert.assertEquals(0, orderbookManager.getOrderBook(symbol).getBidLevels());
+	}
+
+	/**
+	 * Test that a pending resubscription is cleared on reconnect and on timeout
+	 */
+	@Test
+	public void testOrderbookChecksumResubscribeRecovery() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final OrderbookManager orderbookManager = new OrderbookManager(client, executorService);
+		orderbookManager.setResubscribeTimeout(100, TimeUnit.MILLISECONDS);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.orderBook(currencyPair, 
+				BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25);
+
+		final OrderbookHandler handler = new OrderbookHandler(10, symbol);
+		handler.onOrderBookEvent(callbacks::acceptOrderBookEvent);
+		handler.onChecksumEvent(callbacks::acceptOrderBookChecksumEvent);
+
+		handler.handleChannelData(null, new JSONArray("[[100.5,2,1.5],[101,1,-2]]"));
+		final int checksum = orderbookManager.getOrderBook(symbol).getChecksum();
+
+		// The unsubscribe event is lost, the channel is subscribed again on reconnect
+		handler.handleChannelData("cs", new JSONArray("[" + (checksum + 1) + "]"));
+		Mockito.verify(client, Mockito.times(1)).sendCommand(Mockito.any(UnsubscribeChannelCommand.class));
+		callbacks.acceptSubscribeChannelEvent(symbol);
+
+		// The book is verified again
+		handler.handleChannelData(null, new JSONArray("[[100.5,2,1.5],[101,1,-2]]"));
+		handler.handleChannelData("cs", new JSONArray("[" + (checksum + 1) + "]"));
+		Mockito.verify(client, Mockito.times(2)).sendCommand(Mockito.any(UnsubscribeChannelCommand.class));
+
+		// The unsubscribe is not confirmed, the channel is subscribed after the timeout
+		Mockito.verify(client, Mockito.timeout(5000).times(1)).sendCommand(Mockito.any(SubscribeOrderbookCommand.class));
+		callbacks.acceptSubscribeChannelEvent(symbol);
+		
+		handler.handleChannelData(null, new JSONArray("[[100.5,2,1.5],[101,1,-2]]"));
+		handler.handleChannelData("cs", new JSONArray("[" + (checksum + 1) + "]"));
+		Mockito.verify(client, Mockito.times(3)).sendCommand(Mockito.any(UnsubscribeChannelCommand.class));
+	}
+
+	/**
+	 * Calculate the CRC32 of the given string
+	 * @param value
+	 * @return
+	 */
+	private int crc32(final String value) {
+		final CRC32 crc32 = new CRC32();
+		crc32.update(value.getBytes(StandardCharsets.US_ASCII));
+		return (int) crc32.getValue();
+	}
+
+	/**
+	 * Test that prices with more decimals than the scale are not merged
+	 */
+	@Test
+	public void testOrderbookScale() {
+		final BitfinexOrderBook orderBook = new BitfinexOrderBook(9);
+		orderBook.applyEntry(new BitfinexOrderBookEntry(null, new BigDecimal("0.000000012"), BigDecimal.ONE, 1));
+		orderBook.applyEntry(new BitfinexOrderBookEntry(null, new BigDecimal("0.000000014"), BigDecimal.ONE, 1));
+		Assert.assertEquals(2, orderBook.getBidLevels());
+		Assert.assertEquals(14, orderBook.getBestBidPrice());
+
+		// The scale of the book is increased for the entry
+		final BitfinexOrderBook scale8OrderBook = new BitfinexOrderBook(8);
+		scale8OrderBook.applyEntry(new BitfinexOrderBookEntry(null, new BigDecimal("0.00000002"), BigDecimal.ONE, 1));
+		scale8OrderBook.applyEntry(new BitfinexOrderBookEntry(null, new BigDecimal("0.000000012"), BigDecimal.ONE, 1));
+		Assert.assertEquals(9, scale8OrderBook.getScale());
+		Assert.assertEquals(2, scale8OrderBook.getBidLevels());
+		Assert.assertEquals(20, scale8OrderBook.getBestBidPrice());
+		Assert.assertEquals(12, scale8OrderBook.getBidPrice(1));
+		Assert.assertEquals(1000000000, scale8OrderBook.getBidAmount(1));
+
+		// The entry can not be represented with a long
+		try {
+			scale8OrderBook.applyEntry(new BitfinexOrderBookEntry(null, new BigDecimal("0.0000000000000000001"), BigDecimal.ONE, 1));
+			Assert.fail("Exception expected");
+		} catch (BitfinexClientException e) {
+			// Expected
+		}
+		Assert.assertEquals(9, scale8OrderBook.getScale());
+		Assert.assertEquals(2, scale8OrderBook.getBidLevels());
+	}
+
+	/**
+	 * Test that the callbacks get all entries when the book can not be maintained
+	 */
+	@Test
+	public void testOrderbookMaintenanceFailure() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final OrderbookManager orderbookManager = new OrderbookManager(client, executorService);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.orderBook(currencyPair, 
+				BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25);
+
+		final OrderbookHandler handler = new OrderbookHandler(10, symbol);
+		handler.onOrderBookEvent(callbacks::acceptOrderBookEvent);
+
+		final List<BitfinexOrderBookEntry> entries = new ArrayList<>();
+		orderbookManager.registerOrderbookCallback(symbol, (s, e) -> entries.add(e));
+
+		// More decimals than the scale of the currency pair
+		handler.handleChannelData(null, new JSONArray("[[100.123456789,1,1.5],[101,1,-2]]"));
+		Assert.assertEquals(2, entries.size());
+		Assert.assertEquals(9, orderbookManager.getOrderBook(symbol).getScale());
+		Assert.assertEquals(2, orderbookManager.getOrderBook(symbol).getBidLevels() 
+				+ orderbookManager.getOrderBook(symbol).getAskLevels());
+
+		// Too many decimals, the book is dropped until the next snapshot
+		handler.handleChannelData(null, new JSONArray("[[0.0000000000000000001,1,1.5],[100,1,1],[102,1,-2]]"));
+		Assert.assertEquals(5, entries.size());
+		Assert.assertNull(orderbookManager.getOrderBook(symbol));
+
+		handler.handleChannelData(null, new JSONArray("[100.5,1,1]"));
+		Assert.assertEquals(6, entries.size());
+		Assert.assertNull(orderbookManager.getOrderBook(symbol));
+
+		callbacks.acceptSubscribeChannelEvent(symbol);
+		handler.handleChannelData(null, new JSONArray("[[100.5,2,1.5],[101,1,-2]]"));
+		Assert.assertEquals(8, entries.size());
+		Assert.assertEquals(1, orderbookManager.getOrderBook(symbol).getBidLevels());
+	}
+
+	/**
+	 * Test the order book with many levels
+	 */
+	@Test
+	public void testOrderbookGrowth() {
+		final BitfinexOrderBook orderBook = new BitfinexOrderBook(2);
+
+		for(int i = 0; i < 100; i++) {
+			orderBook.applyLevel(10000 - i, 100, 1);
+			orderBook.applyLevel(20000 + i, -100, 1);
+		}
+
+		Assert.assertEquals(100, orderBook.getBidLevels());
+		Assert.assertEquals(100, orderBook.getAskLevels());
+		Assert.assertEquals(10000, orderBook.getBestBidPrice());
+		Assert.assertEquals(9901, orderBook.getBidPrice(99));
+		Assert.assertEquals(20000, orderBook.getBestAskPrice());
+		Assert.assertEquals(20099, orderBook.getAskPrice(99));
+	}
+
+	/**
+	 * Convert to the scale of the currency pair
+	 * @param value
+	 * @return
+	 */
+	private long toScaled(final String value) {
+		return new BigDecimal(value).movePointRight(currencyPair.getScale()).longValueExact();
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BiConsumerCallbackManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderedEventDispatcher;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderedEventDispatcher.WaitStrategy;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class OrderedEventDispatcherTest {
+
+	/**
+	 * Test the order of the events of a symbol with several producers
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout = 30_000)
+	public void testOrderPerSymbol() throws InterruptedException {
+		for(final WaitStrategy waitStrategy : WaitStrategy.values()) {
+			testOrderPerSymbol(waitStrategy);
+		}
+	}
+
+	/**
+	 * Test the order with the given wait strategy
+	 * @param waitStrategy
+	 * @throws InterruptedException
+	 */
+	private void testOrderPerSymbol(final WaitStrategy waitStrategy) throws InterruptedException {
+		final int symbols = 8;
+		final int eventsPerSymbol = 1_000;
+
+		// Small capacity, producers have to wait for the lanes
+		try(final OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(3, 64, waitStrategy)) {
+			final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+			final CountDownLatch latch = new CountDownLatch(symbols * eventsPerSymbol);
+
+			final BiConsumer<String, Integer> consumer = (symbol, value) -> {
+				received.computeIfAbsent(symbol, s -> Collections.synchronizedList(new ArrayList<>())).add(value);
+				latch.countDown();
+			};
+
+			// One producer per symbol
+			final List<Thread> producers = new ArrayList<>();
+			for(int s = 0; s < symbols; s++) {
+				final String symbol = "symbol-" + s;
+				final Thread producer = new Thread(() -> {
+					for(int i = 0; i < eventsPerSymbol; i++) {
+						dispatcher.dispatch(symbol, i, consumer);
+					}
+				});
+				producers.add(producer);
+				producer.start();
+			}
+
+			for(final Thread producer : producers) {
+				producer.join();
+			}
+
+			Assert.assertTrue(latch.await(20, TimeUnit.SECONDS));
+			Assert.assertEquals(symbols, received.size());
+
+			for(final List<Integer> values : received.values()) {
+				Assert.assertEquals(eventsPerSymbol, values.size());
+				for(int i = 0; i < eventsPerSymbol; i++) {
+					Assert.assertEquals(i, (int) values.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test the order of events that are dispatched by a callback of a full lane
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout = 30_000)
+	public void testDispatchFromFullLane() throws InterruptedException {
+		final int capacity = 4;
+		
+		try(final OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(1, capacity, WaitStrategy.PARK)) {
+			final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+			final CountDownLatch blocked = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			final CountDownLatch latch = new CountDownLatch(7);
+			
+			final BiConsumer<String, Integer> consumer = (symbol, value) -> {
+				received.add(value);
+				latch.countDown();
+			};
+			
+			// Block the lane, fill the ring buffer and dispatch two events from the lane thread
+			dispatcher.dispatch("a", 0, (symbol, value) -> {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				dispatcher.dispatch("a", 5, consumer);
+				dispatcher.dispatch("a", 6, consumer);
+				consumer.accept(symbol, value);
+			});
+			
+			Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+			for(int i = 1; i <= capacity; i++) {
+				dispatcher.dispatch("a", i, consumer);
+			}
+			release.countDown();
+			
+			Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), received);
+			
+			// The lane keeps working after the overflow
+			final CountDownLatch next = new CountDownLatch(1);
+			dispatcher.dispatch("a", 7, (symbol, value) -> {
+				consumer.accept(symbol, value);
+				next.countDown();
+			});
+			Assert.assertTrue(next.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), received);
+		}
+	}
+
+	/**
+	 * Test the ordered delivery in the callback manager
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout = 30_000)
+	public void testCallbackManager() throws InterruptedException {
+		try(final OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(2)) {
+			final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+			Mockito.when(client.getConfiguration().getEventDispatcher()).thenReturn(dispatcher);
+
+			final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+			final BiConsumerCallbackManager<String, Integer> manager = new BiConsumerCallbackManager<>(executorService, client);
+
+			final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+			final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+			final CountDownLatch latch = new CountDownLatch(6);
+
+			manager.registerCallback("a", (symbol, value) -> {
+				received.add(value);
+				threads.add(Thread.currentThread().getName());
+				latch.countDown();
+			});
+
+			manager.handleEvent("a", 1);
+			manager.handleEventsCollection("a", Arrays.asList(2, 3, 4));
+			manager.handleEvent("a", 5);
+			manager.handleEvent("b", 100);
+			manager.handleEvent("a", 6);
+
+			Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), received);
+			Assert.assertTrue(threads.stream().allMatch(t -> t.startsWith("bitfinex-dispatch-lane-")));
+		}
+	}
+
+	/**
+	 * Test the callback manager with a closed dispatcher, the events are dropped
+	 */
+	@Test(timeout = 30_000)
+	public void testClosedDispatcher() {
+		final OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(2);
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		Mockito.when(client.getConfiguration().getEventDispatcher()).thenReturn(dispatcher);
+
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final BiConsumerCallbackManager<String, Integer> manager = new BiConsumerCallbackManager<>(executorService, client);
+
+		final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		manager.registerCallback("a", (symbol, value) -> received.add(value));
+		dispatcher.close();
+
+		manager.handleEvent("a", 1);
+		manager.handleEventsCollection("a", Arrays.asList(2, 3));
+		Assert.assertTrue(received.isEmpty());
+	}
+}
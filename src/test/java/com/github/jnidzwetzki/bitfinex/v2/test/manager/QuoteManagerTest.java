@@ -0,0 +1,364 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandle;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandleTimeFrame;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexExecutedTrade;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.TimeSeriesBuffer;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class QuoteManagerTest {
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		try {
+			currencyPair = BitfinexCurrencyPair.register("QMG", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			currencyPair = BitfinexCurrencyPair.of("QMG", "USD");
+		}
+	}
+
+	/**
+	 * Build an executed trade
+	 * @param timestamp
+	 * @param amount
+	 * @param price
+	 * @return
+	 */
+	private static BitfinexExecutedTrade buildTrade(final long timestamp, final double amount, final double price) {
+		return buildTrade(timestamp, timestamp, amount, price);
+	}
+
+	/**
+	 * Build an executed trade
+	 * @param tradeId
+	 * @param timestamp
+	 * @param amount
+	 * @param price
+	 * @return
+	 */
+	private static BitfinexExecutedTrade buildTrade(final long tradeId, final long timestamp, 
+			final double amount, final double price) {
+		
+		final BitfinexExecutedTrade trade = new BitfinexExecutedTrade();
+		trade.setTradeId(tradeId);
+		trade.setTimestamp(timestamp);
+		trade.setAmount(BigDecimal.valueOf(amount));
+		trade.setPrice(BigDecimal.valueOf(price));
+		return trade;
+	}
+
+	/**
+	 * Test the local candle aggregation
+	 */
+	@Test
+	public void testCandleAggregation() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final QuoteManager quoteManager = new QuoteManager(client, MoreExecutors.newDirectExecutorService());
+
+		final BitfinexExecutedTradeSymbol tradeSymbol = BitfinexSymbols.executedTrades(currencyPair);
+		final BitfinexCandlestickSymbol seconds10 = BitfinexSymbols.candlesticks(currencyPair, 10_000);
+		final BitfinexCandlestickSymbol minutes1 = BitfinexSymbols.candlesticks(currencyPair, 60_000);
+		Assert.assertFalse(seconds10.isBitfinexTimeframe());
+		Assert.assertEquals(BitfinexCandleTimeFrame.MINUTES_1, minutes1.getTimeframe());
+
+		final List<BitfinexCandle> candles10s = new ArrayList<>();
+		final List<BitfinexCandle> candles1m = new ArrayList<>();
+		quoteManager.registerCandlestickCallback(seconds10, (s, c) -> candles10s.add(c));
+		quoteManager.registerCandlestickCallback(minutes1, (s, c) -> candles1m.add(c));
+		quoteManager.registerCandleAggregation(seconds10);
+		quoteManager.registerCandleAggregation(minutes1);
+
+		// Snapshot (newest first), one candle update per timeframe
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(
+				buildTrade(60_009_000, -2, 101), 
+				buildTrade(60_005_000, 1, 103), 
+				buildTrade(60_001_000, 1, 100)));
+
+		Assert.assertEquals(1, candles10s.size());
+		Assert.assertEquals(1, candles1m.size());
+		BitfinexCandle candle = candles10s.get(0);
+		Assert.assertEquals(60_000_000, candle.getTimestamp());
+		Assert.assertEquals(100, candle.getOpen().doubleValue(), 0.0001);
+		Assert.assertEquals(103, candle.getHigh().doubleValue(), 0.0001);
+		Assert.assertEquals(100, candle.getLow().doubleValue(), 0.0001);
+		Assert.assertEquals(101, candle.getClose().doubleValue(), 0.0001);
+		Assert.assertEquals(4, candle.getVolume().get().doubleValue(), 0.0001);
+
+		// Next 10 second candle, the 1 minute candle is updated
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(buildTrade(60_012_000, 0.5, 99)));
+		Assert.assertEquals(2, candles10s.size());
+		Assert.assertEquals(2, candles1m.size());
+		Assert.assertEquals(60_010_000, candles10s.get(1).getTimestamp());
+		Assert.assertEquals(99, candles10s.get(1).getOpen().doubleValue(), 0.0001);
+		candle = candles1m.get(1);
+		Assert.assertEquals(60_000_000, candle.getTimestamp());
+		Assert.assertEquals(99, candle.getLow().doubleValue(), 0.0001);
+		Assert.assertEquals(99, candle.getClose().doubleValue(), 0.0001);
+		Assert.assertEquals(4.5, candle.getVolume().get().doubleValue(), 0.0001);
+
+		// Late trade of a closed candle is ignored
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(buildTrade(60_013_000, 60_002_000, 1, 50)));
+		Assert.assertEquals(2, candles10s.size());
+		Assert.assertEquals(3, candles1m.size());
+		Assert.assertEquals(50, quoteManager.getAggregatedCandle(minutes1).getLow().doubleValue(), 0.0001);
+		Assert.assertEquals(99, quoteManager.getAggregatedCandle(seconds10).getLow().doubleValue(), 0.0001);
+
+		Assert.assertTrue(quoteManager.removeCandleAggregation(seconds10));
+		Assert.assertFalse(quoteManager.removeCandleAggregation(seconds10));
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(buildTrade(60_020_000, 1, 100)));
+		Assert.assertEquals(2, candles10s.size());
+		Assert.assertEquals(4, candles1m.size());
+		Assert.assertNull(quoteManager.getAggregatedCandle(seconds10));
+	}
+
+	/**
+	 * Test the aggregated volume beyond the long range of the fixed point values
+	 */
+	@Test
+	public void testCandleAggregationVolumeOverflow() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final QuoteManager quoteManager = new QuoteManager(client, MoreExecutors.newDirectExecutorService());
+
+		final BitfinexExecutedTradeSymbol tradeSymbol = BitfinexSymbols.executedTrades(currencyPair);
+		final BitfinexCandlestickSymbol minutes1 = BitfinexSymbols.candlesticks(currencyPair, 60_000);
+		quoteManager.registerCandleAggregation(minutes1);
+
+		// 5e10 fits into a long with scale 8, the sum of three trades does not
+		for(int i = 0; i < 3; i++) {
+			callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(buildTrade(60_001_000 + i, 5e10, 0.00001)));
+		}
+
+		final BitfinexCandle candle = quoteManager.getAggregatedCandle(minutes1);
+		Assert.assertEquals(0, new BigDecimal("150000000000").compareTo(candle.getVolume().get()));
+		Assert.assertEquals(0.00001, candle.getClose().doubleValue(), 0.0000001);
+	}
+
+	/**
+	 * Test that a replayed snapshot (e.g., after a resubscription) is not aggregated again
+	 */
+	@Test
+	public void testCandleAggregationReplayedSnapshot() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final QuoteManager quoteManager = new QuoteManager(client, MoreExecutors.newDirectExecutorService());
+
+		final BitfinexExecutedTradeSymbol tradeSymbol = BitfinexSymbols.executedTrades(currencyPair);
+		final BitfinexCandlestickSymbol minutes1 = BitfinexSymbols.candlesticks(currencyPair, 60_000);
+		final List<BitfinexCandle> candles = new ArrayList<>();
+		quoteManager.registerCandlestickCallback(minutes1, (s, c) -> candles.add(c));
+		quoteManager.registerCandleAggregation(minutes1);
+
+		final List<BitfinexExecutedTrade> snapshot = Arrays.asList(
+				buildTrade(60_009_000, -2, 101), 
+				buildTrade(60_005_000, 1, 103), 
+				buildTrade(60_001_000, 1, 100));
+
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, snapshot);
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, snapshot);
+		Assert.assertEquals(1, candles.size());
+
+		// The snapshot after the resubscription contains a new trade
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(
+				buildTrade(60_010_000, 0.5, 110), 
+				buildTrade(60_009_000, -2, 101), 
+				buildTrade(60_005_000, 1, 103)));
+		Assert.assertEquals(2, candles.size());
+
+		final BitfinexCandle candle = quoteManager.getAggregatedCandle(minutes1);
+		Assert.assertEquals(4.5, candle.getVolume().get().doubleValue(), 0.0001);
+		Assert.assertEquals(110, candle.getHigh().doubleValue(), 0.0001);
+		Assert.assertEquals(100, candle.getOpen().doubleValue(), 0.0001);
+		Assert.assertEquals(110, candle.getClose().doubleValue(), 0.0001);
+	}
+
+	/**
+	 * Test the time series of candles and trades
+	 */
+	@Test
+	public void testTimeSeries() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final QuoteManager quoteManager = new QuoteManager(client, MoreExecutors.newDirectExecutorService());
+
+		final BitfinexCandlestickSymbol candleSymbol = BitfinexSymbols.candlesticks(currencyPair, BitfinexCandleTimeFrame.MINUTES_1);
+		final BitfinexExecutedTradeSymbol tradeSymbol = BitfinexSymbols.executedTrades(currencyPair);
+		final TimeSeriesBuffer candles = quoteManager.enableTimeSeries(candleSymbol, 3);
+		final TimeSeriesBuffer trades = quoteManager.enableTimeSeries(tradeSymbol, 10);
+		Assert.assertSame(candles, quoteManager.enableTimeSeries(candleSymbol, 100));
+
+		// Snapshot and update of the current candle
+		callbacks.acceptCandlesticksEvent(candleSymbol, Arrays.asList(
+				new BitfinexCandle(60_000, 1, 2, 3, 0.5, 10), 
+				new BitfinexCandle(120_000, 2, 3, 4, 1.5, 11),
+				new BitfinexCandle(180_000, 3, 4, 5, 2.5, 12),
+				new BitfinexCandle(240_000, 4, 5, 6, 3.5, 13)));
+		callbacks.acceptCandlesticksEvent(candleSymbol, Arrays.asList(new BitfinexCandle(240_000, 4, 6, 7, 3.5, 14)));
+
+		Assert.assertEquals(3, candles.size());
+		Assert.assertEquals(120_000, (long) candles.read(v -> v.getTimestamp(0)));
+		Assert.assertEquals(6, candles.readLast(1, v -> v.getDouble(QuoteManager.CANDLE_CLOSE, 0)), 0.0001);
+		Assert.assertEquals(14, candles.readLast(1, v -> v.getValue(QuoteManager.CANDLE_VOLUME, 0)).doubleValue(), 0.0001);
+		Assert.assertEquals(2, (int) candles.readRange(150_000, 300_000, v -> v.size()));
+
+		// Trades (newest first) with the same timestamp
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(
+				buildTrade(2000, -1, 101), buildTrade(1000, 1, 100)));
+		final BitfinexExecutedTrade trade = buildTrade(2000, 2, 102);
+		trade.setTradeId(2001L);
+		callbacks.acceptExecutedTradeEvent(tradeSymbol, Arrays.asList(trade));
+
+		Assert.assertEquals(3, trades.size());
+		Assert.assertEquals(100, trades.read(v -> v.getDouble(QuoteManager.TRADE_PRICE, 0)), 0.0001);
+		Assert.assertEquals(2001, (long) trades.read(v -> v.getScaledValue(QuoteManager.TRADE_ID, 2)));
+		Assert.assertEquals(-1, trades.read(v -> v.getDouble(QuoteManager.TRADE_AMOUNT, 1)), 0.0001);
+
+		Assert.assertTrue(quoteManager.disableTimeSeries(tradeSymbol));
+		Assert.assertNull(quoteManager.getTimeSeries(tradeSymbol));
+	}
+
+	/**
+	 * Test the time series of ticks with a volume that does not fit into a long
+	 */
+	@Test
+	public void testTimeSeriesVolumeOverflow() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final QuoteManager quoteManager = new QuoteManager(client, MoreExecutors.newDirectExecutorService());
+		final BitfinexTickerSymbol symbol = BitfinexSymbols.ticker(currencyPair);
+		final TimeSeriesBuffer ticks = quoteManager.enableTimeSeries(symbol, 10);
+
+		final List<BitfinexTick> receivedTicks = new ArrayList<>();
+		quoteManager.registerTickCallback(symbol, (s, t) -> receivedTicks.add(t));
+
+		final BigDecimal one = BigDecimal.ONE;
+		final BigDecimal volume = new BigDecimal("250000000000.12345678");
+		quoteManager.handleNewTick(symbol, new BitfinexTick(one, one, one, one, one, one, 
+				BigDecimal.valueOf(0.00001), volume, one, one));
+
+		Assert.assertEquals(1, receivedTicks.size());
+		Assert.assertEquals(1, ticks.size());
+		Assert.assertEquals(QuoteManager.VOLUME_SCALE, ticks.getScale(QuoteManager.TICK_VOLUME));
+		Assert.assertEquals(new BigDecimal("250000000000.1235"), ticks.read(v -> v.getValue(QuoteManager.TICK_VOLUME, 0)));
+		Assert.assertEquals(0.00001, ticks.read(v -> v.getDouble(QuoteManager.TICK_LAST_PRICE, 0)), 0.0000001);
+
+		// A value that does not fit into a long is not recorded
+		final BigDecimal bidSize = new BigDecimal("250000000000");
+		quoteManager.handleNewTick(symbol, new BitfinexTick(one, bidSize, one, one, one, one, 
+				one, one, one, one));
+
+		Assert.assertEquals(2, receivedTicks.size());
+		Assert.assertEquals(1, ticks.size());
+		Assert.assertEquals(0.00001, ticks.read(v -> v.getDouble(QuoteManager.TICK_LAST_PRICE, 0)), 0.0000001);
+	}
+
+	/**
+	 * Test the conflating tick delivery
+	 */
+	@Test(timeout=10000)
+	public void testConflatingTickCallback() throws InterruptedException {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final ExecutorService executorService = Executors.newFixedThreadPool(2);
+		final QuoteManager quoteManager = new QuoteManager(client, executorService);
+		final BitfinexTickerSymbol symbol = BitfinexSymbols.ticker(currencyPair);
+
+		final CountDownLatch consumerBlocked = new CountDownLatch(1);
+		final CountDownLatch releaseConsumer = new CountDownLatch(1);
+		final CountDownLatch lastTickReceived = new CountDownLatch(1);
+		final List<BitfinexTick> slowTicks = new CopyOnWriteArrayList<>();
+		final AtomicInteger fastTicks = new AtomicInteger();
+
+		final BiConsumer<BitfinexTickerSymbol, BitfinexTick> slowConsumer = (s, t) -> {
+			slowTicks.add(t);
+			consumerBlocked.countDown();
+			try {
+				releaseConsumer.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if(t.getLastPrice().intValue() == 999) {
+				lastTickReceived.countDown();
+			}
+		};
+
+		quoteManager.registerTickCallback(symbol, slowConsumer, true);
+		quoteManager.registerTickCallback(symbol, (s, t) -> fastTicks.incrementAndGet());
+
+		final BigDecimal one = BigDecimal.ONE;
+		for(int i = 0; i < 1000; i++) {
+			quoteManager.handleNewTick(symbol, new BitfinexTick(one, one, one, one, one, one, 
+					BigDecimal.valueOf(i), one, one, one));
+			if(i == 0) {
+				consumerBlocked.await();
+			}
+		}
+
+		releaseConsumer.countDown();
+		lastTickReceived.await();
+
+		// The blocked tick and the latest tick
+		Assert.assertEquals(2, slowTicks.size());
+		Assert.assertEquals(999, slowTicks.get(1).getLastPrice().intValue());
+
+		executorService.shutdown();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+		Assert.assertEquals(1000, fastTicks.get());
+		Assert.assertTrue(quoteManager.removeTickCallback(symbol, slowConsumer));
+	}
+
+	/**
+	 * Local timeframes can not be subscribed
+	 */
+	@Test(expected=IllegalStateException.class)
+	public void testLocalTimeframeSubscribe() {
+		BitfinexSymbols.candlesticks(currencyPair, 10_000).toBifinexCandlestickString();
+	}
+}
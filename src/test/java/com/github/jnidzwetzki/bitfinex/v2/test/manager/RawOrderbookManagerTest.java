@@ -0,0 +1,320 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.json.JSONArray;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeOrderbookCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexRawOrderBook;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class RawOrderbookManagerTest {
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		try {
+			currencyPair = BitfinexCurrencyPair.register("ROB", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			currencyPair = BitfinexCurrencyPair.of("ROB", "USD");
+		}
+		currencyPair.setScale(2);
+	}
+
+	/**
+	 * Test the maintained raw order book
+	 */
+	@Test
+	public void testRawOrderbookMaintenance() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final RawOrderbookManager orderbookManager = new RawOrderbookManager(client, executorService);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.rawOrderBook(currencyPair);
+		final RawOrderbookHandler handler = new RawOrderbookHandler(10, symbol);
+		handler.onOrderbookEvent(callbacks::acceptRawOrderBookEvent);
+
+		// Snapshot: three bids at 100, one bid at 99, two asks at 101
+		handler.handleChannelData(null, new JSONArray("[[1,100,1],[2,100,2],[3,100,3],[4,99,5],[5,101,-1],[6,101,-2]]"));
+
+		final BitfinexRawOrderBook orderBook = orderbookManager.getOrderBook(symbol);
+		Assert.assertNotNull(orderBook);
+		Assert.assertEquals(6, orderBook.getNumberOfOrders());
+		Assert.assertEquals(2, orderBook.getQueuePosition(3));
+		Assert.assertEquals(300, orderBook.getAmountAhead(3));
+		Assert.assertEquals(-100, orderBook.getAmountAhead(6));
+
+		List<BitfinexOrderBookEntry> bids = orderBook.getAggregatedBids(10);
+		Assert.assertEquals(2, bids.size());
+		Assert.assertEquals(10000, bids.get(0).getScaledPrice());
+		Assert.assertEquals(600, bids.get(0).getScaledAmount());
+		Assert.assertEquals(3, (int) bids.get(0).getCount());
+		Assert.assertEquals(9900, bids.get(1).getScaledPrice());
+
+		// Amount change keeps the queue position
+		handler.handleChannelData(null, new JSONArray("[1,100,0.5]"));
+		Assert.assertEquals(0, orderBook.getQueuePosition(1));
+		Assert.assertEquals(250, orderBook.getAmountAhead(3));
+
+		// Price change moves the order to the end of the new level
+		handler.handleChannelData(null, new JSONArray("[2,99,2]"));
+		Assert.assertEquals(1, orderBook.getQueuePosition(2));
+		Assert.assertEquals(50, orderBook.getAmountAhead(3));
+
+		// Delete (price = 0)
+		handler.handleChannelData(null, new JSONArray("[1,0,1]"));
+		handler.handleChannelData(null, new JSONArray("[3,0,1]"));
+		Assert.assertFalse(orderBook.containsOrder(1));
+		Assert.assertEquals(-1, orderBook.getQueuePosition(1));
+		Assert.assertNull(orderBook.getOrder(3));
+
+		bids = orderBook.getAggregatedBids(10);
+		Assert.assertEquals(1, bids.size());
+		Assert.assertEquals(9900, bids.get(0).getScaledPrice());
+		Assert.assertEquals(700, bids.get(0).getScaledAmount());
+
+		final List<BitfinexOrderBookEntry> queue = orderBook.getOrdersAtPrice(9900, true);
+		Assert.assertEquals(4, (long) queue.get(0).getOrderId());
+		Assert.assertEquals(2, (long) queue.get(1).getOrderId());
+
+		final List<BitfinexOrderBookEntry> asks = orderBook.getAggregatedAsks(1);
+		Assert.assertEquals(1, asks.size());
+		Assert.assertEquals(10100, asks.get(0).getScaledPrice());
+		Assert.assertEquals(-300, asks.get(0).getScaledAmount());
+
+		// Resubscribe clears the book
+		callbacks.acceptSubscribeChannelEvent(symbol);
+		Assert.assertEquals(0, orderBook.getNumberOfOrders());
+		Assert.assertTrue(orderBook.getAggregatedAsks(10).isEmpty());
+
+		// Unsubscribe removes the book
+		callbacks.acceptUnsubscribeChannelEvent(symbol);
+		Assert.assertNull(orderbookManager.getOrderBook(symbol));
+	}
+
+	/**
+	 * Test the checksum verification of the raw order book
+	 */
+	@Test
+	public void testRawOrderbookChecksum() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final RawOrderbookManager orderbookManager = new RawOrderbookManager(client, executorService);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.rawOrderBook(currencyPair);
+		final RawOrderbookHandler handler = new RawOrderbookHandler(10, symbol);
+		handler.onOrderbookEvent(callbacks::acceptRawOrderBookEvent);
+		handler.onChecksumEvent(callbacks::acceptOrderBookChecksumEvent);
+
+		handler.handleChannelData(null, new JSONArray("[[1,100,1],[2,100,2],[3,100,3],[4,99,5],[5,101,-1],[6,101,-2.5]]"));
+
+		final CRC32 crc32 = new CRC32();
+		crc32.update("1:1:5:-1:2:2:6:-2.5:3:3:4:5".getBytes(StandardCharsets.US_ASCII));
+		final int expected = (int) crc32.getValue();
+		Assert.assertEquals(expected, orderbookManager.getOrderBook(symbol).getChecksum());
+
+		handler.handleChannelData("cs", new JSONArray("[" + expected + "]"));
+		Mockito.verify(client, Mockito.never()).sendCommand(Mockito.any());
+
+		handler.handleChannelData("cs", new JSONArray("[" + (expected - 1) + "]"));
+		Mockito.verify(client, Mockito.times(1)).sendCommand(Mockito.any(UnsubscribeChannelCommand.class));
+	}
+
+	/**
+	 * Test that a pending resubscription is cleared on reconnect and on timeout
+	 */
+	@Test
+	public void testRawOrderbookChecksumResubscribeRecovery() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final RawOrderbookManager orderbookManager = new RawOrderbookManager(client, executorService);
+		orderbookManager.setResubscribeTimeout(100, TimeUnit.MILLISECONDS);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.rawOrderBook(currencyPair);
+		final RawOrderbookHandler handler = new RawOrderbookHandler(10, symbol);
+		handler.onOrderbookEvent(callbacks::acceptRawOrderBookEvent);
+		handler.onChecksumEvent(callbacks::acceptOrderBookChecksumEvent);
+
+		handler.handleChannelData(null, new JSONArray("[[1,100,1],[5,101,-1]]"));
+		final int checksum = orderbookManager.getOrderBook(symbol).getChecksum();
+
+		// The unsubscribe event is lost, the channel is subscribed again on reconnect
+		handler.handleChannelData("cs", new JSONArray("[" + (checksum - 1) + "]"));
+		Mockito.verify(client, Mockito.times(1)).sendCommand(Mockito.any(UnsubscribeChannelCommand.class));
+		callbacks.acceptSubscribeChannelEvent(symbol);
+
+		handler.handleChannelData(null, new JSONArray("[[1,100,1],[5,101,-1]]"));
+		handler.handleChannelData("cs", new JSONArray("[" + (checksum - 1) + "]"));
+		Mockito.verify(client, Mockito.times(2)).sendCommand(Mockito.any(UnsubscribeChannelCommand.class));
+
+		// The unsubscribe is not confirmed, the channel is subscribed after the timeout
+		Mockito.verify(client, Mockito.timeout(5000).times(1)).sendCommand(Mockito.any(SubscribeOrderbookCommand.class));
+	}
+
+	/**
+	 * Test entries with more decimals than the scale of the currency pair
+	 */
+	@Test
+	public void testRawOrderbookScale() {
+		final BitfinexWebsocketClient client = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbacks = (BitfinexApiCallbackRegistry) client.getCallbacks();
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final RawOrderbookManager orderbookManager = new RawOrderbookManager(client, executorService);
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.rawOrderBook(currencyPair);
+		final RawOrderbookHandler handler = new RawOrderbookHandler(10, symbol);
+		handler.onOrderbookEvent(callbacks::acceptRawOrderBookEvent);
+
+		final List<BitfinexOrderBookEntry> entries = new ArrayList<>();
+		orderbookManager.registerOrderbookCallback(symbol, (s, e) -> entries.add(e));
+
+		handler.handleChannelData(null, new JSONArray("[[1,100,1],[2,100,2],[3,101,-1]]"));
+		handler.handleChannelData(null, new JSONArray("[4,100.125,1]"));
+
+		// The scale of the book is increased, the queues are kept
+		final BitfinexRawOrderBook orderBook = orderbookManager.getOrderBook(symbol);
+		Assert.assertEquals(4, entries.size());
+		Assert.assertEquals(3, orderBook.getScale());
+		Assert.assertEquals(1000, orderBook.getAmountAhead(2));
+
+		final List<BitfinexOrderBookEntry> bids = orderBook.getAggregatedBids(10);
+		Assert.assertEquals(2, bids.size());
+		Assert.assertEquals(100125, bids.get(0).getScaledPrice());
+		Assert.assertEquals(100000, bids.get(1).getScaledPrice());
+		Assert.assertEquals(3000, bids.get(1).getScaledAmount());
+		Assert.assertEquals(101000, orderBook.getAggregatedAsks(1).get(0).getScaledPrice());
+
+		handler.handleChannelData(null, new JSONArray("[2,0,1]"));
+		Assert.assertEquals(1000, orderBook.getAggregatedBids(10).get(1).getScaledAmount());
+
+		// Too many decimals, the book is dropped until the next snapshot
+		handler.handleChannelData(null, new JSONArray("[5,0.0000000000000000001,1]"));
+		handler.handleChannelData(null, new JSONArray("[6,100,1]"));
+		Assert.assertEquals(7, entries.size());
+		Assert.assertNull(orderbookManager.getOrderBook(symbol));
+
+		callbacks.acceptSubscribeChannelEvent(symbol);
+		handler.handleChannelData(null, new JSONArray("[[1,100,1],[3,101,-1]]"));
+		Assert.assertEquals(9, entries.size());
+		Assert.assertEquals(2, orderbookManager.getOrderBook(symbol).getNumberOfOrders());
+	}
+
+	/**
+	 * Test the slot reuse with many orders
+	 */
+	@Test
+	public void testManyOrders() {
+		final BitfinexRawOrderBook orderBook = new BitfinexRawOrderBook(0);
+
+		for(int round = 0; round < 3; round++) {
+			for(int i = 0; i < 1000; i++) {
+				orderBook.applyOrder(i, 1000 + (i % 50), (i % 2 == 0) ? 1 : -1);
+			}
+			Assert.assertEquals(1000, orderBook.getNumberOfOrders());
+
+			for(int i = 0; i < 1000; i++) {
+				Assert.assertTrue(orderBook.removeOrder(i));
+			}
+			Assert.assertEquals(0, orderBook.getNumberOfOrders());
+			Assert.assertTrue(orderBook.getAggregatedBids(100).isEmpty());
+		}
+	}
+
+	/**
+	 * Test the sorted levels with random updates
+	 */
+	@Test
+	public void testSortedLevels() {
+		final BitfinexRawOrderBook orderBook = new BitfinexRawOrderBook(0);
+		final Map<Long, long[]> orders = new HashMap<>();
+		final Random random = new Random(42);
+
+		for(int i = 0; i < 20000; i++) {
+			final long orderId = random.nextInt(500);
+
+			if(random.nextInt(4) == 0) {
+				orderBook.removeOrder(orderId);
+				orders.remove(orderId);
+			} else {
+				final long amount = random.nextBoolean() ? 1 + random.nextInt(5) : -1 - random.nextInt(5);
+				final long price = amount > 0 ? 900 + random.nextInt(100) : 1000 + random.nextInt(100);
+				orderBook.applyOrder(orderId, price, amount);
+				orders.put(orderId, new long[] {price, amount});
+			}
+		}
+
+		final TreeMap<Long, Long> bids = new TreeMap<>(Comparator.reverseOrder());
+		final TreeMap<Long, Long> asks = new TreeMap<>();
+		for(final long[] order : orders.values()) {
+			(order[1] > 0 ? bids : asks).merge(order[0], order[1], Long::sum);
+		}
+
+		assertLevels(bids, orderBook.getAggregatedBids(1000));
+		assertLevels(asks, orderBook.getAggregatedAsks(1000));
+		Assert.assertEquals(bids.firstKey().longValue(), orderBook.getAggregatedBids(1).get(0).getScaledPrice());
+	}
+
+	/**
+	 * Compare the expected levels (price to amount) with the aggregated levels
+	 * @param expected
+	 * @param levels
+	 */
+	private void assertLevels(final Map<Long, Long> expected, final List<BitfinexOrderBookEntry> levels) {
+		Assert.assertEquals(expected.size(), levels.size());
+		int pos = 0;
+
+		for(final Map.Entry<Long, Long> level : expected.entrySet()) {
+			Assert.assertEquals(level.getKey().longValue(), levels.get(pos).getScaledPrice());
+			Assert.assertEquals(level.getValue().longValue(), levels.get(pos).getScaledAmount());
+			pos++;
+		}
+	}
+}
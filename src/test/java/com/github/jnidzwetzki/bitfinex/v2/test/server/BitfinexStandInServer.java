@@ -0,0 +1,776 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.test.server.StandInChannel.Type;
+
+/**
+ * A local stand-in for the bitfinex websocket API (plain sockets, no 
+ * dependencies). The server speaks the subscribe, unsubscribe, auth, conf, 
+ * ping, on, ou, oc, oc_multi and ox_multi protocol and streams synthetic 
+ * ticker, book, raw book, trade and candle data at configurable rates. Like 
+ * on the exchange, all subscriptions of the same channel (on any connection) 
+ * get the same data feed.
+ * 
+ * Can be used in tests (new BitfinexStandInServer(0).start()) or started 
+ * standalone for load tests (main method, argument: port).
+ */
+public class BitfinexStandInServer implements Closeable {
+
+	/**
+	 * The max number of updates per channel and streaming round
+	 */
+	private final static int MAX_UPDATES_PER_ROUND = 10_000;
+
+	/**
+	 * The requested port (0 = any free port)
+	 */
+	private final int requestedPort;
+
+	/**
+	 * The server socket
+	 */
+	private ServerSocket serverSocket;
+
+	/**
+	 * The streaming executor
+	 */
+	private ScheduledExecutorService streamingExecutor;
+
+	/**
+	 * The open sessions
+	 */
+	private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The data feeds (subscription key to feed)
+	 */
+	private final Map<String, StandInChannel> feeds = new ConcurrentHashMap<>();
+
+	/**
+	 * The next channel id
+	 */
+	private final AtomicInteger nextChannelId = new AtomicInteger(100);
+
+	/**
+	 * The next feed id
+	 */
+	private final AtomicInteger nextFeedId = new AtomicInteger(0);
+
+	/**
+	 * The next order id
+	 */
+	private final AtomicLong nextOrderId = new AtomicLong(1);
+
+	/**
+	 * The number of accepted connections
+	 */
+	private final AtomicInteger acceptedConnections = new AtomicInteger();
+
+	/**
+	 * The number of received messages
+	 */
+	private final AtomicLong receivedMessages = new AtomicLong();
+
+	/**
+	 * The number of sent messages
+	 */
+	private final AtomicLong sentMessages = new AtomicLong();
+
+	/**
+	 * The update rates per channel type (updates per second and channel)
+	 */
+	private final Map<Type, Double> updatesPerSecond = new ConcurrentHashMap<>();
+
+	/**
+	 * The heartbeat interval of idle channels
+	 */
+	private volatile long heartbeatIntervalMillis = 5_000;
+
+	/**
+	 * The symbols whose subscriptions are rejected
+	 */
+	private final Set<String> rejectedSymbols = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BitfinexStandInServer.class);
+
+	public BitfinexStandInServer(final int port) {
+		this.requestedPort = port;
+
+		for(final Type type : Type.values()) {
+			updatesPerSecond.put(type, 10.0);
+		}
+	}
+
+	/**
+	 * Start the server
+	 * @return
+	 * @throws IOException
+	 */
+	public BitfinexStandInServer start() throws IOException {
+		serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort));
+
+		final Thread acceptThread = new Thread(this::acceptConnections, "stand-in-accept");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+
+		streamingExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "stand-in-streaming");
+			thread.setDaemon(true);
+			return thread;
+		});
+		streamingExecutor.scheduleAtFixedRate(this::streamUpdates, 1, 1, TimeUnit.MILLISECONDS);
+
+		logger.info("Stand-in server is listening on {}", getUri());
+		return this;
+	}
+
+	/**
+	 * Get the websocket URI of the server
+	 * @return
+	 */
+	public String getUri() {
+		return "ws://" + serverSocket.getInetAddress().getHostAddress() + ":" + getPort() + "/ws/2";
+	}
+
+	/**
+	 * Get the port of the server
+	 * @return
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Set the update rate of a channel type
+	 * @param type
+	 * @param rate - updates per second and channel
+	 */
+	public void setUpdatesPerSecond(final Type type, final double rate) {
+		updatesPerSecond.put(type, rate);
+	}
+
+	/**
+	 * Set the heartbeat interval of idle channels
+	 * @param heartbeatIntervalMillis
+	 */
+	public void setHeartbeatIntervalMillis(final long heartbeatIntervalMillis) {
+		this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+	}
+
+	/**
+	 * Reject the subscriptions of a symbol (e.g., tBTCUSD) with an error event
+	 * @param symbol
+	 */
+	public void rejectSubscriptions(final String symbol) {
+		rejectedSymbols.add(symbol);
+	}
+
+	/**
+	 * Get the number of accepted connections
+	 * @return
+	 */
+	public int getAcceptedConnections() {
+		return acceptedConnections.get();
+	}
+
+	/**
+	 * Get the number of open connections
+	 * @return
+	 */
+	public int getOpenConnections() {
+		return sessions.size();
+	}
+
+	/**
+	 * Get the number of subscribed channels of all connections
+	 * @return
+	 */
+	public int getSubscribedChannels() {
+		return sessions.stream().mapToInt(s -> s.channels.size()).sum();
+	}
+
+	/**
+	 * Get the number of received messages
+	 * @return
+	 */
+	public long getReceivedMessages() {
+		return receivedMessages.get();
+	}
+
+	/**
+	 * Get the number of sent messages
+	 * @return
+	 */
+	public long getSentMessages() {
+		return sentMessages.get();
+	}
+
+	/**
+	 * Drop all connections without a close handshake (simulates a connection loss)
+	 */
+	public void disconnectAll() {
+		for(final Session session : sessions) {
+			session.close();
+		}
+	}
+
+	/**
+	 * Drop the connections with a subscription of the channel without a close 
+	 * handshake (simulates the loss of single connections)
+	 * @param type
+	 * @param symbol - the symbol of the subscription (e.g., tBTCUSD)
+	 * @return the number of dropped connections
+	 */
+	public int disconnect(final Type type, final String symbol) {
+		int dropped = 0;
+		for(final Session session : sessions) {
+			final boolean subscribed = session.channels.values().stream()
+					.anyMatch(c -> c.getType() == type && symbol.equals(c.getSubscribedEvent().optString("symbol")));
+			
+			if(subscribed) {
+				session.close();
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+
+	/**
+	 * Stop the server
+	 */
+	@Override
+	public void close() {
+		if(streamingExecutor != null) {
+			streamingExecutor.shutdownNow();
+		}
+
+		try {
+			if(serverSocket != null) {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			logger.debug("Got exception while closing server socket", e);
+		}
+
+		disconnectAll();
+	}
+
+	/**
+	 * Accept new connections
+	 */
+	private void acceptConnections() {
+		while(! serverSocket.isClosed()) {
+			try {
+				final Socket socket = serverSocket.accept();
+				acceptedConnections.incrementAndGet();
+				final Session session = new Session(new StandInWebsocket(socket));
+				final Thread thread = new Thread(session, "stand-in-session-" + socket.getPort());
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				if(! serverSocket.isClosed()) {
+					logger.error("Got exception while accepting connection", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stream the due updates of all feeds to the subscribed channels
+	 */
+	private void streamUpdates() {
+		final long now = System.nanoTime();
+		final long heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMillis);
+
+		for(final StandInChannel feed : feeds.values()) {
+			synchronized (feed) {
+				final long due = Math.min(MAX_UPDATES_PER_ROUND, 
+						feed.getDueUpdates(now, updatesPerSecond.get(feed.getType())));
+
+				final List<String> messages = new ArrayList<>();
+				for(long i = 0; i < due; i++) {
+					messages.add(feed.nextUpdate());
+				}
+
+				if(due == 0 && feed.isHeartbeatDue(now, heartbeatIntervalNanos)) {
+					messages.add(feed.getHeartbeat());
+				}
+
+				if(messages.isEmpty()) {
+					continue;
+				}
+
+				feed.messageSent(now);
+
+				for(final Session session : sessions) {
+					try {
+						for(final Map.Entry<Integer, StandInChannel> channel : session.channels.entrySet()) {
+							if(channel.getValue() != feed) {
+								continue;
+							}
+							for(final String message : messages) {
+								session.send(withChannelId(message, channel.getKey()));
+							}
+						}
+					} catch (IOException e) {
+						logger.debug("Unable to send update, closing session", e);
+						session.close();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replace the channel id of a feed message
+	 * @param message
+	 * @param channelId
+	 * @return
+	 */
+	private static String withChannelId(final String message, final int channelId) {
+		return "[" + channelId + message.substring(message.indexOf(','));
+	}
+
+	private class Session implements Runnable {
+
+		/**
+		 * The websocket
+		 */
+		private final StandInWebsocket websocket;
+
+		/**
+		 * The subscribed channels
+		 */
+		private final Map<Integer, StandInChannel> channels = new ConcurrentHashMap<>();
+
+		/**
+		 * The orders of the session (order id to order array)
+		 */
+		private final Map<Long, JSONArray> orders = new ConcurrentHashMap<>();
+
+		private Session(final StandInWebsocket websocket) {
+			this.websocket = websocket;
+		}
+
+		@Override
+		public void run() {
+			try {
+				websocket.handshake();
+				sessions.add(this);
+				send("{\"event\":\"info\",\"version\":2,\"serverId\":\"stand-in\",\"platform\":{\"status\":1}}");
+
+				String message;
+				while((message = websocket.readMessage()) != null) {
+					receivedMessages.incrementAndGet();
+					handleMessage(message);
+				}
+			} catch (IOException e) {
+				logger.debug("Session closed", e);
+			} catch (Exception e) {
+				logger.error("Got exception while handling session", e);
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * Send a message to the client
+		 * @param message
+		 * @throws IOException
+		 */
+		private void send(final String message) throws IOException {
+			websocket.send(message);
+			sentMessages.incrementAndGet();
+		}
+
+		/**
+		 * Close the session
+		 */
+		private void close() {
+			sessions.remove(this);
+			channels.clear();
+			websocket.close();
+		}
+
+		/**
+		 * Handle a message of the client
+		 * @param message
+		 * @throws IOException
+		 */
+		private void handleMessage(final String message) throws IOException {
+			if(message.startsWith("{")) {
+				handleEvent(new JSONObject(message));
+			} else if(message.startsWith("[")) {
+				final JSONArray command = new JSONArray(message);
+				handleOrderCommand(command.getString(1), command.get(3));
+			} else {
+				logger.error("Unknown message: {}", message);
+			}
+		}
+
+		/**
+		 * Handle an event
+		 * @param event
+		 * @throws IOException
+		 */
+		private void handleEvent(final JSONObject event) throws IOException {
+			final String eventType = event.getString("event");
+
+			switch(eventType) {
+			case "ping":
+				final JSONObject pong = new JSONObject();
+				pong.put("event", "pong");
+				pong.put("ts", System.currentTimeMillis());
+				if(event.has("cid")) {
+					pong.put("cid", event.get("cid"));
+				}
+				send(pong.toString());
+				break;
+			case "conf":
+				final JSONObject conf = new JSONObject();
+				conf.put("event", "conf");
+				conf.put("status", "OK");
+				conf.put("flags", event.optInt("flags", 0));
+				send(conf.toString());
+				break;
+			case "auth":
+				handleAuth(event);
+				break;
+			case "subscribe":
+				handleSubscribe(event);
+				break;
+			case "unsubscribe":
+				final int channelId = event.getInt("chanId");
+				final StandInChannel removed = channels.remove(channelId);
+				final JSONObject unsubscribed = new JSONObject();
+				unsubscribed.put("event", removed != null ? "unsubscribed" : "error");
+				unsubscribed.put("status", removed != null ? "OK" : "FAILED");
+				unsubscribed.put("chanId", channelId);
+				if(removed != null) {
+					// Pending updates of the channel are sent before the unsubscribed event
+					synchronized (removed) {
+						send(unsubscribed.toString());
+					}
+				} else {
+					unsubscribed.put("msg", "unsubscribe: invalid");
+					unsubscribed.put("code", 10400);
+					send(unsubscribed.toString());
+				}
+				break;
+			default:
+				logger.error("Unknown event: {}", event);
+			}
+		}
+
+		/**
+		 * Handle the authentication, every non empty API key is accepted
+		 * @param event
+		 * @throws IOException
+		 */
+		private void handleAuth(final JSONObject event) throws IOException {
+			final boolean success = ! event.optString("apiKey", "").isEmpty();
+			final JSONObject auth = new JSONObject();
+			auth.put("event", "auth");
+			auth.put("status", success ? "OK" : "FAILED");
+			auth.put("chanId", 0);
+
+			if(! success) {
+				auth.put("msg", "apikey: invalid");
+				auth.put("code", 10100);
+				send(auth.toString());
+				return;
+			}
+
+			final JSONObject permission = new JSONObject();
+			permission.put("read", 1);
+			permission.put("write", 1);
+
+			final JSONObject caps = new JSONObject();
+			for(final String cap : new String[] {"orders", "account", "funding", "history", "wallets", "withdraw", "positions"}) {
+				caps.put(cap, permission);
+			}
+
+			auth.put("userId", 1);
+			auth.put("caps", caps);
+			send(auth.toString());
+
+			// Snapshots of the account
+			send("[0,\"ps\",[]]");
+			send("[0,\"ws\",[]]");
+			send("[0,\"os\",[]]");
+		}
+
+		/**
+		 * Send the error event of a rejected subscription
+		 * @param event
+		 * @param message
+		 * @throws IOException
+		 */
+		private void sendSubscribeError(final JSONObject event, final String message) throws IOException {
+			final JSONObject error = new JSONObject(event.toString());
+			error.put("event", "error");
+			error.put("msg", message);
+			error.put("code", 10300);
+			send(error.toString());
+		}
+
+		/**
+		 * Handle a subscription
+		 * @param event
+		 * @throws IOException
+		 */
+		private void handleSubscribe(final JSONObject event) throws IOException {
+			final String channelName = event.getString("channel");
+			final int channelId = nextChannelId.incrementAndGet();
+
+			final JSONObject subscribed = new JSONObject(event.toString());
+			subscribed.put("event", "subscribed");
+			subscribed.put("chanId", channelId);
+
+			final Type type;
+			switch(channelName) {
+			case "ticker":
+				type = Type.TICKER;
+				break;
+			case "book":
+				type = "R0".equals(event.optString("prec")) ? Type.RAW_BOOK : Type.BOOK;
+				break;
+			case "trades":
+				type = Type.TRADES;
+				break;
+			case "candles":
+				type = Type.CANDLES;
+				break;
+			default:
+				sendSubscribeError(event, "subscribe: invalid channel");
+				return;
+			}
+
+			if(rejectedSymbols.contains(event.optString("symbol"))) {
+				sendSubscribeError(event, "subscribe: invalid symbol");
+				return;
+			}
+
+			if(event.has("symbol")) {
+				subscribed.put("pair", event.getString("symbol").substring(1));
+			}
+
+			final String feedKey = channelName + ":" + event.optString("symbol") + ":" + event.optString("key") 
+					+ ":" + event.optString("prec") + ":" + event.optString("freq") + ":" + event.optString("len");
+			final StandInChannel feed = feeds.computeIfAbsent(feedKey, 
+					k -> new StandInChannel(nextFeedId.incrementAndGet(), type, subscribed));
+
+			synchronized (feed) {
+				channels.put(channelId, feed);
+				send(subscribed.toString());
+				send(withChannelId(feed.getSnapshot(), channelId));
+			}
+		}
+
+		/**
+		 * Handle an order command
+		 * @param command
+		 * @param payload
+		 * @throws IOException
+		 */
+		private void handleOrderCommand(final String command, final Object payload) throws IOException {
+			switch(command) {
+			case "on":
+				newOrder((JSONObject) payload);
+				break;
+			case "ou":
+				updateOrder((JSONObject) payload);
+				break;
+			case "oc":
+				cancelOrder(((JSONObject) payload).optLong("id", -1));
+				break;
+			case "oc_multi":
+				cancelOrders((JSONObject) payload);
+				break;
+			case "ox_multi":
+				final JSONArray operations = (JSONArray) payload;
+				for(int i = 0; i < operations.length(); i++) {
+					final JSONArray operation = operations.getJSONArray(i);
+					handleOrderCommand(operation.getString(0), operation.get(1));
+				}
+				break;
+			default:
+				logger.error("Unknown order command: {}", command);
+			}
+		}
+
+		/**
+		 * Create a new order
+		 * @param request
+		 * @throws IOException
+		 */
+		private void newOrder(final JSONObject request) throws IOException {
+			final long now = System.currentTimeMillis();
+			final JSONArray order = new JSONArray();
+
+			for(int i = 0; i < 32; i++) {
+				order.put(JSONObject.NULL);
+			}
+
+			final BigDecimal amount = new BigDecimal(request.get("amount").toString());
+			order.put(0, nextOrderId.getAndIncrement());
+			order.put(1, request.has("gid") ? request.get("gid") : JSONObject.NULL);
+			order.put(2, request.optLong("cid", now));
+			order.put(3, request.getString("symbol"));
+			order.put(4, now);
+			order.put(5, now);
+			order.put(6, amount);
+			order.put(7, amount);
+			order.put(8, request.getString("type"));
+			order.put(12, request.optInt("flags", 0));
+			order.put(13, "ACTIVE");
+			order.put(16, request.has("price") ? new BigDecimal(request.get("price").toString()) : BigDecimal.ZERO);
+			order.put(17, BigDecimal.ZERO);
+
+			orders.put(order.getLong(0), order);
+			send("[0,\"n\",[" + now + ",\"on-req\",null,null," + order + ",null,\"SUCCESS\",\"Submitting order\"]]");
+			send("[0,\"on\"," + order + "]");
+		}
+
+		/**
+		 * Update an order
+		 * @param request
+		 * @throws IOException
+		 */
+		private void updateOrder(final JSONObject request) throws IOException {
+			final JSONArray order = orders.get(request.optLong("id", -1));
+
+			if(order == null) {
+				sendOrderError("ou-req", "Order not found");
+				return;
+			}
+
+			if(request.has("amount")) {
+				order.put(6, new BigDecimal(request.get("amount").toString()));
+			}
+			if(request.has("price")) {
+				order.put(16, new BigDecimal(request.get("price").toString()));
+			}
+			order.put(5, System.currentTimeMillis());
+			send("[0,\"ou\"," + order + "]");
+		}
+
+		/**
+		 * Cancel an order
+		 * @param id
+		 * @throws IOException
+		 */
+		private void cancelOrder(final long id) throws IOException {
+			final JSONArray order = orders.remove(id);
+
+			if(order == null) {
+				sendOrderError("oc-req", "Order not found");
+				return;
+			}
+
+			order.put(5, System.currentTimeMillis());
+			order.put(13, "CANCELED");
+			send("[0,\"oc\"," + order + "]");
+		}
+
+		/**
+		 * Cancel several orders (by id, by group or all)
+		 * @param request
+		 * @throws IOException
+		 */
+		private void cancelOrders(final JSONObject request) throws IOException {
+			final boolean all = request.optInt("all", 0) == 1;
+			final JSONArray ids = request.optJSONArray("id");
+			final JSONArray groups = request.optJSONArray("gid");
+
+			for(final JSONArray order : orders.values()) {
+				boolean cancel = all;
+				for(int i = 0; ids != null && i < ids.length(); i++) {
+					cancel |= ids.getLong(i) == order.getLong(0);
+				}
+				for(int i = 0; groups != null && i < groups.length(); i++) {
+					cancel |= ! order.isNull(1) && groups.getLong(i) == order.getLong(1);
+				}
+				if(cancel) {
+					cancelOrder(order.getLong(0));
+				}
+			}
+		}
+
+		/**
+		 * Send an order error notification
+		 * @param type
+		 * @param text
+		 * @throws IOException
+		 */
+		private void sendOrderError(final String type, final String text) throws IOException {
+			send("[0,\"n\",[" + System.currentTimeMillis() + ",\"" + type + "\",null,null,"
+					+ "[null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,"
+					+ "null,null,null,null,null,null,null,null,null,null,null,null,null],null,\"ERROR\",\"" + text + "\"]]");
+		}
+	}
+
+	/**
+	 * Start a standalone server
+	 * @param args - [port] [updates per second and channel]
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		final BitfinexStandInServer server = new BitfinexStandInServer(port);
+
+		if(args.length > 1) {
+			for(final Type type : Type.values()) {
+				server.setUpdatesPerSecond(type, Double.parseDouble(args[1]));
+			}
+		}
+
+		server.start();
+		System.out.println("Stand-in server is listening on " + server.getUri());
+		Thread.currentThread().join();
+	}
+}
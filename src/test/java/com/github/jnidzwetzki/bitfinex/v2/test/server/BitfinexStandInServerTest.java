@@ -0,0 +1,674 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexClientFactory;
+import com.github.jnidzwetzki.bitfinex.v2.BootstrapProgress;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelPlacementStrategy;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelRebalancer;
+import com.github.jnidzwetzki.bitfinex.v2.DualFeed;
+import com.github.jnidzwetzki.bitfinex.v2.PooledBitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.PooledConnection;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderBuilder;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketClient;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexWebsocketConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeCandlesCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeOrderbookCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeTickerCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.SubscribeTradesCommand;
+import com.github.jnidzwetzki.bitfinex.v2.command.UnsubscribeChannelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandleTimeFrame;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderType;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexSubmittedOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameJournalWriter;
+
+public class BitfinexStandInServerTest {
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	/**
+	 * The second currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair secondCurrencyPair;
+
+	/**
+	 * The stand-in server
+	 */
+	private BitfinexStandInServer server;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		try {
+			currencyPair = BitfinexCurrencyPair.register("SRV", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			currencyPair = BitfinexCurrencyPair.of("SRV", "USD");
+		}
+		try {
+			secondCurrencyPair = BitfinexCurrencyPair.register("SRW", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			secondCurrencyPair = BitfinexCurrencyPair.of("SRW", "USD");
+		}
+	}
+
+	@Before
+	public void startServer() throws Exception {
+		server = new BitfinexStandInServer(0).start();
+		for(final StandInChannel.Type type : StandInChannel.Type.values()) {
+			server.setUpdatesPerSecond(type, 100);
+		}
+	}
+
+	@After
+	public void stopServer() {
+		server.close();
+	}
+
+	/**
+	 * Build a client configuration for the stand-in server
+	 * @return
+	 */
+	private BitfinexWebsocketConfiguration buildConfiguration() {
+		final BitfinexWebsocketConfiguration config = new BitfinexWebsocketConfiguration();
+		config.setEndpointUri(server.getUri());
+		config.setHeartbeatThreadActive(false);
+		return config;
+	}
+
+	/**
+	 * Test ticker, order book and trade subscriptions
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testMarketData() throws Exception {
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(buildConfiguration());
+		client.connect();
+
+		try {
+			final QuoteManager quoteManager = client.getQuoteManager();
+
+			final BitfinexTickerSymbol tickerSymbol = BitfinexSymbols.ticker(currencyPair);
+			final CountDownLatch tickLatch = new CountDownLatch(10);
+			quoteManager.registerTickCallback(tickerSymbol, (s, t) -> tickLatch.countDown());
+			quoteManager.subscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+
+			final BitfinexOrderBookSymbol bookSymbol = BitfinexSymbols.orderBook(currencyPair, 
+					BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25);
+			final CountDownLatch bookLatch = new CountDownLatch(100);
+			client.getOrderbookManager().registerOrderbookCallback(bookSymbol, (s, e) -> bookLatch.countDown());
+			client.getOrderbookManager().subscribeOrderbook(bookSymbol);
+
+			final BitfinexExecutedTradeSymbol tradeSymbol = BitfinexSymbols.executedTrades(currencyPair);
+			final CountDownLatch tradeLatch = new CountDownLatch(10);
+			quoteManager.registerExecutedTradeCallback(tradeSymbol, (s, t) -> tradeLatch.countDown());
+			quoteManager.subscribeExecutedTrades(tradeSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+
+			Assert.assertTrue(tickLatch.await(10, TimeUnit.SECONDS));
+			Assert.assertTrue(bookLatch.await(10, TimeUnit.SECONDS));
+			Assert.assertTrue(tradeLatch.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(3, client.getSubscribedChannels().size());
+			Assert.assertEquals(3, server.getSubscribedChannels());
+
+			quoteManager.unsubscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			Assert.assertEquals(2, client.getSubscribedChannels().size());
+			Assert.assertTrue(client.unsubscribeAllChannels());
+			Assert.assertTrue(client.getSubscribedChannels().isEmpty());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test the resubscription after a connection loss
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testReconnect() throws Exception {
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(buildConfiguration());
+		client.connect();
+
+		try {
+			final BitfinexTickerSymbol tickerSymbol = BitfinexSymbols.ticker(currencyPair);
+			client.getQuoteManager().subscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			Assert.assertEquals(1, server.getSubscribedChannels());
+
+			server.disconnectAll();
+			Assert.assertTrue(client.reconnect());
+			Assert.assertEquals(2, server.getAcceptedConnections());
+
+			final CountDownLatch tickLatch = new CountDownLatch(5);
+			client.getQuoteManager().registerTickCallback(tickerSymbol, (s, t) -> tickLatch.countDown());
+			Assert.assertTrue(tickLatch.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(1, server.getSubscribedChannels());
+			Assert.assertEquals(1, client.getSubscribedChannels().size());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test the symbol to channel index after subscribes, unsubscribes and a reconnect
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testSubscribedChannelIndex() throws Exception {
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(buildConfiguration());
+		client.connect();
+
+		try {
+			final BitfinexTickerSymbol tickerSymbol = BitfinexSymbols.ticker(currencyPair);
+			final BitfinexTickerSymbol secondTickerSymbol = BitfinexSymbols.ticker(secondCurrencyPair);
+			final BitfinexExecutedTradeSymbol tradeSymbol = BitfinexSymbols.executedTrades(currencyPair);
+			final QuoteManager quoteManager = client.getQuoteManager();
+
+			quoteManager.subscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			quoteManager.subscribeTicker(secondTickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			quoteManager.subscribeExecutedTrades(tradeSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			Assert.assertEquals(new HashSet<>(Arrays.asList(tickerSymbol, secondTickerSymbol, tradeSymbol)), 
+					new HashSet<>(client.getSubscribedChannels()));
+
+			// The returned channels are a copy
+			final Collection<BitfinexStreamSymbol> channels = client.getSubscribedChannels();
+			quoteManager.unsubscribeTicker(secondTickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			Assert.assertEquals(3, channels.size());
+			Assert.assertEquals(new HashSet<>(Arrays.asList(tickerSymbol, tradeSymbol)), 
+					new HashSet<>(client.getSubscribedChannels()));
+			Assert.assertEquals(2, server.getSubscribedChannels());
+
+			// The channel ids change with the reconnect, the unsubscribe uses the new id
+			server.disconnectAll();
+			Assert.assertTrue(client.reconnect());
+			Assert.assertEquals(new HashSet<>(Arrays.asList(tickerSymbol, tradeSymbol)), 
+					new HashSet<>(client.getSubscribedChannels()));
+			Assert.assertEquals(2, server.getSubscribedChannels());
+
+			quoteManager.unsubscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			Assert.assertEquals(Arrays.asList(tradeSymbol), new ArrayList<>(client.getSubscribedChannels()));
+			Assert.assertEquals(1, server.getSubscribedChannels());
+
+			// A resubscribed channel is indexed again
+			quoteManager.subscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			Assert.assertEquals(new HashSet<>(Arrays.asList(tickerSymbol, tradeSymbol)), 
+					new HashSet<>(client.getSubscribedChannels()));
+			Assert.assertTrue(client.unsubscribeAllChannels());
+			Assert.assertTrue(client.getSubscribedChannels().isEmpty());
+			Assert.assertEquals(0, server.getSubscribedChannels());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test that the frames are processed when the frame journal fails
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testFailedFrameJournal() throws Exception {
+		final FrameJournalWriter frameJournal = new FrameJournalWriter(folder.newFolder().toPath(), 4096);
+		frameJournal.close();
+
+		final BitfinexWebsocketConfiguration config = buildConfiguration();
+		config.setFrameJournal(frameJournal);
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(config);
+		client.connect();
+
+		try {
+			final BitfinexTickerSymbol tickerSymbol = BitfinexSymbols.ticker(currencyPair);
+			final CountDownLatch tickLatch = new CountDownLatch(5);
+			client.getQuoteManager().registerTickCallback(tickerSymbol, (s, t) -> tickLatch.countDown());
+			client.getQuoteManager().subscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			Assert.assertTrue(tickLatch.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(0, frameJournal.getRecords());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test placing and canceling orders on an authenticated connection
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testOrders() throws Exception {
+		final BitfinexWebsocketConfiguration config = buildConfiguration();
+		config.setApiCredentials("key", "secret");
+		final BitfinexWebsocketClient client = BitfinexClientFactory.newSimpleClient(config);
+		client.connect();
+
+		try {
+			Assert.assertTrue(client.isAuthenticated());
+			Assert.assertTrue(client.getApiKeyPermissions().isOrderWritePermission());
+
+			final BitfinexOrder order = BitfinexOrderBuilder.create(currencyPair, 
+					BitfinexOrderType.EXCHANGE_LIMIT, 0.5).withPrice(100).build();
+
+			final BitfinexSubmittedOrder submittedOrder = client.getOrderManager().placeOrderAndWaitUntilActive(order);
+			Assert.assertEquals(order.getClientId(), submittedOrder.getClientId());
+			Assert.assertEquals(1, client.getOrderManager().getOrders().size());
+
+			client.getOrderManager().cancelOrderAndWaitForCompletion(submittedOrder.getOrderId());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test the channel placement of the pooled client
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testPooledClient() throws Exception {
+		final BitfinexWebsocketConfiguration config = buildConfiguration();
+		config.setConnectionEstablishingDelay(10);
+		config.setChannelPlacementStrategy(ChannelPlacementStrategy.stickyHash(2));
+		final PooledBitfinexApiBroker client = (PooledBitfinexApiBroker) BitfinexClientFactory.newPooledClient(config, 5);
+		client.connect();
+
+		try {
+			final CountDownLatch subscribeLatch = new CountDownLatch(10);
+			client.getCallbacks().onSubscribeChannelEvent(s -> subscribeLatch.countDown());
+
+			for(final BitfinexCurrencyPair pair : Arrays.asList(currencyPair, secondCurrencyPair)) {
+				final List<SubscribeCommand> commands = Arrays.asList(
+						new SubscribeTickerCommand(BitfinexSymbols.ticker(pair)),
+						new SubscribeTradesCommand(BitfinexSymbols.executedTrades(pair)),
+						new SubscribeCandlesCommand(BitfinexSymbols.candlesticks(pair, BitfinexCandleTimeFrame.MINUTES_1)),
+						new SubscribeOrderbookCommand(BitfinexSymbols.orderBook(pair, 
+								BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25)),
+						new SubscribeOrderbookCommand(BitfinexSymbols.rawOrderBook(pair)));
+				commands.forEach(client::sendCommand);
+			}
+
+			Assert.assertTrue(subscribeLatch.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(10, client.getSubscribedChannels().size());
+			Assert.assertEquals(2, client.websocketConnCount());
+			Assert.assertEquals(2, server.getAcceptedConnections());
+
+			final BitfinexTickerSymbol tickerSymbol = BitfinexSymbols.ticker(currencyPair);
+			final CountDownLatch tickLatch = new CountDownLatch(5);
+			client.getQuoteManager().registerTickCallback(tickerSymbol, (s, t) -> tickLatch.countDown());
+			Assert.assertTrue(tickLatch.await(10, TimeUnit.SECONDS));
+
+			for(final PooledConnection connection : client.getConnections()) {
+				Assert.assertEquals(5, connection.getSubscribedChannels().size());
+				Assert.assertTrue(connection.getPendingSubscriptions().isEmpty());
+				Assert.assertTrue(connection.getClient().getTrafficMeter().getMessages() > 0);
+				
+				if(connection.getSubscribedChannels().contains(tickerSymbol)) {
+					Assert.assertTrue(connection.getClient().getTrafficMeter(tickerSymbol).getMessages() >= 5);
+				} else {
+					Assert.assertNull(connection.getClient().getTrafficMeter(tickerSymbol));
+				}
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test a channel subscribed on two pooled connections
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testDualFeed() throws Exception {
+		final BitfinexExecutedTradeSymbol tradeSymbol = BitfinexSymbols.executedTrades(currencyPair);
+		final BitfinexWebsocketConfiguration config = buildConfiguration();
+		config.setHeartbeatThreadActive(true);
+		config.setConnectionEstablishingDelay(10);
+		config.setDualFeedSymbols(Collections.singleton(tradeSymbol));
+		final PooledBitfinexApiBroker client = (PooledBitfinexApiBroker) BitfinexClientFactory.newPooledClient(config, 5);
+		client.connect();
+
+		try {
+			final List<Long> tradeIds = Collections.synchronizedList(new ArrayList<>());
+			client.getQuoteManager().registerExecutedTradeCallback(tradeSymbol, (s, t) -> tradeIds.add(t.getTradeId()));
+
+			final AtomicInteger subscribeEvents = new AtomicInteger();
+			final AtomicInteger unsubscribeEvents = new AtomicInteger();
+			client.getCallbacks().onSubscribeChannelEvent(s -> subscribeEvents.addAndGet(tradeSymbol.equals(s) ? 1 : 0));
+			client.getCallbacks().onUnsubscribeChannelEvent(s -> unsubscribeEvents.addAndGet(tradeSymbol.equals(s) ? 1 : 0));
+
+			// The ticker identifies the primary connection
+			final BitfinexTickerSymbol tickerSymbol = BitfinexSymbols.ticker(currencyPair);
+			client.getQuoteManager().subscribeTicker(tickerSymbol).waitForCompletion(10, TimeUnit.SECONDS);
+			client.sendCommand(new SubscribeTradesCommand(tradeSymbol));
+
+			final DualFeed dualFeed = client.getDualFeed(tradeSymbol);
+			Assert.assertNotNull(dualFeed);
+			Assert.assertEquals(0, dualFeed.getPrimary().getIndex());
+			Assert.assertEquals(1, dualFeed.getBackup().getIndex());
+
+			while(tradeIds.size() < 100 || dualFeed.getDuplicateFrames() == 0) {
+				Thread.sleep(50);
+			}
+			Assert.assertTrue(dualFeed.getPrimary().getSubscribedChannels().contains(tradeSymbol));
+			Assert.assertTrue(dualFeed.getBackup().getSubscribedChannels().contains(tradeSymbol));
+			Assert.assertEquals(3, server.getSubscribedChannels());
+			Assert.assertEquals(2, client.getSubscribedChannels().size());
+			Assert.assertEquals(1, subscribeEvents.get());
+
+			// The backup connection keeps streaming while the primary connection reconnects
+			Assert.assertEquals(1, server.disconnect(StandInChannel.Type.TICKER, currencyPair.toBitfinexString()));
+			while(client.getConnectionSupervisor().getReconnects() == 0) {
+				Thread.sleep(100);
+			}
+			final int tradesAfterReconnect = tradeIds.size();
+			Thread.sleep(500);
+			Assert.assertTrue(tradeIds.size() > tradesAfterReconnect);
+			Assert.assertTrue(dualFeed.getBackupFrames() > 0);
+			Assert.assertTrue(dualFeed.getPrimary().getSubscribedChannels().contains(tradeSymbol));
+
+			// The managers saw no gap and no duplicate, the backup subscription and the 
+			// resubscription of the primary connection are not visible
+			synchronized (tradeIds) {
+				for(int i = 1; i < tradeIds.size(); i++) {
+					Assert.assertEquals(tradeIds.get(i - 1) + 1, (long) tradeIds.get(i));
+				}
+			}
+			Assert.assertEquals(1, subscribeEvents.get());
+
+			final CountDownLatch unsubscribeLatch = new CountDownLatch(1);
+			client.getCallbacks().onUnsubscribeChannelEvent(s -> unsubscribeLatch.countDown());
+			client.sendCommand(new UnsubscribeChannelCommand(tradeSymbol));
+			Assert.assertTrue(unsubscribeLatch.await(10, TimeUnit.SECONDS));
+			Thread.sleep(200);
+
+			Assert.assertNull(client.getDualFeed(tradeSymbol));
+			Assert.assertEquals(1, unsubscribeEvents.get());
+			Assert.assertEquals(1, server.getSubscribedChannels());
+			Assert.assertEquals(Collections.singletonList(tickerSymbol), new ArrayList<>(client.getSubscribedChannels()));
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test the reconnect of a single pooled connection
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testPooledConnectionReconnect() throws Exception {
+		final BitfinexWebsocketConfiguration config = buildConfiguration();
+		config.setHeartbeatThreadActive(true);
+		config.setConnectionEstablishingDelay(10);
+		final PooledBitfinexApiBroker client = (PooledBitfinexApiBroker) BitfinexClientFactory.newPooledClient(config, 5);
+		client.connect();
+
+		try {
+			final List<BitfinexStreamSymbol> symbols = new ArrayList<>();
+			for(final BitfinexCurrencyPair pair : Arrays.asList(currencyPair, secondCurrencyPair)) {
+				symbols.add(BitfinexSymbols.ticker(pair));
+				symbols.add(BitfinexSymbols.executedTrades(pair));
+				symbols.add(BitfinexSymbols.candlesticks(pair, BitfinexCandleTimeFrame.MINUTES_1));
+				symbols.add(BitfinexSymbols.orderBook(pair, BitfinexOrderBookSymbol.Precision.P0, 
+						BitfinexOrderBookSymbol.Frequency.F0, 25));
+				symbols.add(BitfinexSymbols.rawOrderBook(pair));
+			}
+			client.bootstrap(symbols, p -> {}).get(10, TimeUnit.SECONDS);
+			Assert.assertEquals(2, server.getAcceptedConnections());
+
+			final BitfinexTickerSymbol tickerSymbol = BitfinexSymbols.ticker(currencyPair);
+			final PooledConnection failedConnection = client.getConnections().stream()
+					.filter(c -> c.getSubscribedChannels().contains(tickerSymbol))
+					.findFirst().get();
+			final PooledConnection otherConnection = client.getConnections().stream()
+					.filter(c -> c != failedConnection)
+					.findFirst().get();
+			final List<BitfinexStreamSymbol> otherChannels = new ArrayList<>(otherConnection.getSubscribedChannels());
+
+			final AtomicInteger otherSubscriptionEvents = new AtomicInteger();
+			client.getCallbacks().onSubscribeChannelEvent(s -> otherSubscriptionEvents.addAndGet(otherChannels.contains(s) ? 1 : 0));
+			client.getCallbacks().onUnsubscribeChannelEvent(s -> otherSubscriptionEvents.addAndGet(otherChannels.contains(s) ? 1 : 0));
+
+			// The heartbeat thread of the connection detects the loss, the supervisor reconnects it
+			Assert.assertEquals(1, server.disconnect(StandInChannel.Type.TICKER, currencyPair.toBitfinexString()));
+			final long otherMessages = otherConnection.getClient().getTrafficMeter().getMessages();
+
+			while(client.getConnectionSupervisor().getReconnects() == 0) {
+				Thread.sleep(100);
+			}
+
+			// Only the failed connection is reconnected and resubscribed
+			Assert.assertEquals(3, server.getAcceptedConnections());
+			Assert.assertEquals(0, client.getConnectionSupervisor().getFailedReconnects());
+			Assert.assertEquals(0, otherSubscriptionEvents.get());
+			Assert.assertEquals(otherChannels.size(), otherConnection.getSubscribedChannels().size());
+			Assert.assertTrue(otherConnection.getClient().getTrafficMeter().getMessages() > otherMessages);
+			Assert.assertEquals(10, client.getSubscribedChannels().size());
+			Assert.assertTrue(failedConnection.getSubscribedChannels().contains(tickerSymbol));
+
+			final CountDownLatch tickLatch = new CountDownLatch(5);
+			client.getQuoteManager().registerTickCallback(tickerSymbol, (s, t) -> tickLatch.countDown());
+			Assert.assertTrue(tickLatch.await(10, TimeUnit.SECONDS));
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test the concurrent bootstrap of a declared channel set
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testPooledBootstrap() throws Exception {
+		final BitfinexWebsocketConfiguration config = buildConfiguration();
+		config.setConnectionEstablishingDelay(500);
+		config.setConnectionBurst(2);
+		final PooledBitfinexApiBroker client = (PooledBitfinexApiBroker) BitfinexClientFactory.newPooledClient(config, 5);
+		client.connect();
+
+		try {
+			final List<BitfinexStreamSymbol> symbols = new ArrayList<>();
+			for(final BitfinexCurrencyPair pair : Arrays.asList(currencyPair, secondCurrencyPair)) {
+				symbols.add(BitfinexSymbols.ticker(pair));
+				symbols.add(BitfinexSymbols.executedTrades(pair));
+				symbols.add(BitfinexSymbols.rawOrderBook(pair));
+				for(final BitfinexCandleTimeFrame timeframe : Arrays.asList(BitfinexCandleTimeFrame.MINUTES_1, 
+						BitfinexCandleTimeFrame.MINUTES_5, BitfinexCandleTimeFrame.MINUTES_15)) {
+					symbols.add(BitfinexSymbols.candlesticks(pair, timeframe));
+				}
+				for(final BitfinexOrderBookSymbol.Precision precision : Arrays.asList(BitfinexOrderBookSymbol.Precision.P0, 
+						BitfinexOrderBookSymbol.Precision.P1, BitfinexOrderBookSymbol.Precision.P2, 
+						BitfinexOrderBookSymbol.Precision.P3)) {
+					symbols.add(BitfinexSymbols.orderBook(pair, precision, BitfinexOrderBookSymbol.Frequency.F0, 25));
+				}
+			}
+
+			final List<BootstrapProgress> progress = new CopyOnWriteArrayList<>();
+			final BootstrapProgress result = client.bootstrap(symbols, progress::add).get(20, TimeUnit.SECONDS);
+
+			// 20 channels need 4 connections with 5 channels each
+			Assert.assertTrue(result.isDone());
+			Assert.assertEquals(4, result.getConnections());
+			Assert.assertEquals(4, result.getConnectedConnections());
+			Assert.assertEquals(20, result.getSubscribedChannels());
+			Assert.assertEquals(4, client.websocketConnCount());
+			Assert.assertEquals(4, server.getAcceptedConnections());
+			Assert.assertEquals(20, client.getSubscribedChannels().size());
+
+			// One progress report per connection and per channel
+			Assert.assertEquals(24, progress.size());
+			Assert.assertEquals(result.toString(), progress.get(progress.size() - 1).toString());
+			for(int i = 1; i < progress.size(); i++) {
+				Assert.assertTrue(progress.get(i).getSubscribedChannels() >= progress.get(i - 1).getSubscribedChannels());
+				Assert.assertTrue(progress.get(i).getConnectedConnections() >= progress.get(i - 1).getConnectedConnections());
+			}
+
+			// 4 connects with a burst of 2 need a second timeslot
+			Assert.assertTrue(result.getElapsedMillis() >= 500);
+
+			for(final PooledConnection connection : client.getConnections()) {
+				Assert.assertEquals(5, connection.getSubscribedChannels().size());
+				Assert.assertTrue(connection.getPendingSubscriptions().isEmpty());
+			}
+
+			// Already subscribed channels are skipped
+			final BootstrapProgress second = client.bootstrap(symbols, progress::add).get(1, TimeUnit.SECONDS);
+			Assert.assertTrue(second.isDone());
+			Assert.assertEquals(0, second.getChannels());
+			Assert.assertEquals(4, server.getAcceptedConnections());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test a bootstrap with a rejected subscription
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testPooledBootstrapRejectedSubscription() throws Exception {
+		server.rejectSubscriptions(secondCurrencyPair.toBitfinexString());
+
+		final PooledBitfinexApiBroker client = (PooledBitfinexApiBroker) BitfinexClientFactory.newPooledClient(buildConfiguration(), 5);
+		client.connect();
+
+		try {
+			final List<BitfinexStreamSymbol> symbols = Arrays.asList(
+					BitfinexSymbols.ticker(currencyPair), BitfinexSymbols.ticker(secondCurrencyPair));
+
+			final CompletableFuture<BootstrapProgress> result = client.bootstrap(symbols, p -> {}, 500, TimeUnit.MILLISECONDS);
+
+			try {
+				result.get(10, TimeUnit.SECONDS);
+				Assert.fail("Exception expected");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof BitfinexClientException);
+			}
+
+			// The slot of the rejected channel is released
+			Assert.assertEquals(1, client.getSubscribedChannels().size());
+			for(final PooledConnection connection : client.getConnections()) {
+				Assert.assertTrue(connection.getPendingSubscriptions().isEmpty());
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Test moving a hot channel of the pooled client to another connection
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testChannelRebalancing() throws Exception {
+		for(final StandInChannel.Type type : StandInChannel.Type.values()) {
+			server.setUpdatesPerSecond(type, 2);
+		}
+		server.setUpdatesPerSecond(StandInChannel.Type.TRADES, 300);
+
+		final BitfinexWebsocketConfiguration config = buildConfiguration();
+		config.setConnectionEstablishingDelay(10);
+		final PooledBitfinexApiBroker client = (PooledBitfinexApiBroker) BitfinexClientFactory.newPooledClient(config, 5);
+		client.connect();
+
+		try {
+			final List<BitfinexExecutedTradeSymbol> tradeSymbols = Arrays.asList(
+					BitfinexSymbols.executedTrades(currencyPair), BitfinexSymbols.executedTrades(secondCurrencyPair));
+			final List<List<Long>> tradeIds = new ArrayList<>();
+
+			for(final BitfinexExecutedTradeSymbol tradeSymbol : tradeSymbols) {
+				final List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+				client.getQuoteManager().registerExecutedTradeCallback(tradeSymbol, (s, t) -> ids.add(t.getTradeId()));
+				tradeIds.add(ids);
+			}
+
+			// The hot trade channels are placed on the first connection
+			final CountDownLatch subscribeLatch = new CountDownLatch(6);
+			client.getCallbacks().onSubscribeChannelEvent(s -> subscribeLatch.countDown());
+			tradeSymbols.forEach(s -> client.sendCommand(new SubscribeTradesCommand(s)));
+			for(final BitfinexCurrencyPair pair : Arrays.asList(currencyPair, secondCurrencyPair)) {
+				client.sendCommand(new SubscribeTickerCommand(BitfinexSymbols.ticker(pair)));
+				client.sendCommand(new SubscribeCandlesCommand(BitfinexSymbols.candlesticks(pair, BitfinexCandleTimeFrame.MINUTES_1)));
+			}
+			Assert.assertTrue(subscribeLatch.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(2, client.websocketConnCount());
+
+			final AtomicInteger subscriptionEvents = new AtomicInteger();
+			client.getCallbacks().onSubscribeChannelEvent(s -> subscriptionEvents.addAndGet(tradeSymbols.contains(s) ? 1 : 0));
+			client.getCallbacks().onUnsubscribeChannelEvent(s -> subscriptionEvents.addAndGet(tradeSymbols.contains(s) ? 1 : 0));
+
+			// Measure the rates
+			client.getConnections().forEach(c -> c.getMessageRate());
+			Thread.sleep(1000);
+
+			final ChannelRebalancer rebalancer = client.getChannelRebalancer();
+			Assert.assertTrue(rebalancer.rebalance().get(15, TimeUnit.SECONDS));
+			Assert.assertEquals(1, rebalancer.getMovedChannels());
+
+			final PooledConnection first = client.getConnections().get(0);
+			final PooledConnection second = client.getConnections().get(1);
+			Assert.assertEquals(4, first.getSubscribedChannels().size());
+			Assert.assertEquals(2, second.getSubscribedChannels().size());
+			Assert.assertTrue(tradeSymbols.stream().anyMatch(s -> second.getSubscribedChannels().contains(s)));
+			Assert.assertEquals(6, client.getSubscribedChannels().size());
+			Assert.assertEquals(6, server.getSubscribedChannels());
+
+			// Collect trades from the new connection, the managers saw no gap and no duplicate
+			Thread.sleep(500);
+			for(final List<Long> ids : tradeIds) {
+				synchronized (ids) {
+					Assert.assertTrue(ids.size() > 100);
+					for(int i = 1; i < ids.size(); i++) {
+						Assert.assertEquals(ids.get(i - 1) + 1, (long) ids.get(i));
+					}
+				}
+			}
+			Assert.assertEquals(0, subscriptionEvents.get());
+		} finally {
+			client.close();
+		}
+	}
+}
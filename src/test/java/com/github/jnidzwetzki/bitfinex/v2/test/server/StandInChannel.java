@@ -0,0 +1,390 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.json.JSONObject;
+
+/**
+ * A data feed of the stand-in server, produces synthetic snapshots and updates 
+ * (the channel id of the messages is replaced for every subscribed channel). All prices are in ticks of 0.1 around a fixed base price, so
+ * the books stay consistent.
+ */
+public class StandInChannel {
+
+	public enum Type {
+		TICKER, BOOK, RAW_BOOK, TRADES, CANDLES
+	}
+
+	/**
+	 * The base price in ticks (10000.0)
+	 */
+	private final static long BASE_PRICE = 100_000;
+
+	/**
+	 * The number of price levels per side
+	 */
+	private final static int LEVELS = 25;
+
+	/**
+	 * The number of trades in the snapshot
+	 */
+	private final static int RECENT_TRADES = 5;
+
+	/**
+	 * The channel id (the id of the feed)
+	 */
+	private final int channelId;
+
+	/**
+	 * The type of the channel
+	 */
+	private final Type type;
+
+	/**
+	 * The subscribed event
+	 */
+	private final JSONObject subscribedEvent;
+
+	/**
+	 * The random source
+	 */
+	private final Random random;
+
+	/**
+	 * The creation time of the channel
+	 */
+	private final long startNanos;
+
+	/**
+	 * The number of sent updates
+	 */
+	private long sentUpdates;
+
+	/**
+	 * The time of the last message
+	 */
+	private long lastMessageNanos;
+
+	/**
+	 * The book levels (P0): bids [0, LEVELS), asks [LEVELS, 2 * LEVELS)
+	 */
+	private final boolean[] levelPresent = new boolean[2 * LEVELS];
+
+	/**
+	 * The raw book orders: id, price, amount (in 1/1000)
+	 */
+	private final List<long[]> orders = new ArrayList<>();
+
+	/**
+	 * The recent trades (the snapshot of the trades channel)
+	 */
+	private final ArrayDeque<String> recentTrades = new ArrayDeque<>();
+
+	/**
+	 * The next order / trade id
+	 */
+	private long nextId;
+
+	/**
+	 * The last price in ticks
+	 */
+	private long lastPrice = BASE_PRICE;
+
+	public StandInChannel(final int channelId, final Type type, final JSONObject subscribedEvent) {
+		this.channelId = channelId;
+		this.type = type;
+		this.subscribedEvent = subscribedEvent;
+		this.random = new Random(channelId);
+		this.startNanos = System.nanoTime();
+		this.lastMessageNanos = startNanos;
+		this.nextId = 1_000_000L * channelId;
+	}
+
+	/**
+	 * Get the snapshot of the channel
+	 * @return
+	 */
+	public String getSnapshot() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('[').append(channelId).append(",[");
+
+		switch(type) {
+		case TICKER:
+			appendTicker(sb);
+			break;
+		case BOOK:
+			for(int level = 0; level < 2 * LEVELS; level++) {
+				levelPresent[level] = true;
+				if(level > 0) {
+					sb.append(',');
+				}
+				appendLevel(sb, level, true);
+			}
+			break;
+		case RAW_BOOK:
+			for(int i = 0; i < 2 * LEVELS; i++) {
+				if(i > 0) {
+					sb.append(',');
+				}
+				appendNewOrder(sb);
+			}
+			break;
+		case TRADES:
+			while(recentTrades.size() < RECENT_TRADES) {
+				nextTrade();
+			}
+			sb.append(String.join(",", recentTrades));
+			break;
+		case CANDLES:
+			appendCandle(sb);
+			break;
+		}
+
+		sb.append("]]");
+		return sb.toString();
+	}
+
+	/**
+	 * Get the next update of the channel
+	 * @return
+	 */
+	public String nextUpdate() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('[').append(channelId).append(',');
+
+		switch(type) {
+		case TICKER:
+			sb.append('[');
+			appendTicker(sb);
+			sb.append(']');
+			break;
+		case BOOK:
+			final int level = random.nextInt(2 * LEVELS);
+			final boolean add = ! levelPresent[level] || random.nextInt(3) != 0;
+			levelPresent[level] = add;
+			appendLevel(sb, level, add);
+			break;
+		case RAW_BOOK:
+			if(orders.size() < LEVELS || (orders.size() < 4 * LEVELS && random.nextBoolean())) {
+				appendNewOrder(sb);
+			} else {
+				final long[] order = orders.remove(random.nextInt(orders.size()));
+				sb.append('[').append(order[0]).append(",0,");
+				appendFixed(sb, order[2], 3);
+				sb.append(']');
+			}
+			break;
+		case TRADES:
+			sb.append("\"te\",").append(nextTrade());
+			break;
+		case CANDLES:
+			appendCandle(sb);
+			break;
+		}
+
+		sb.append(']');
+		sentUpdates++;
+		return sb.toString();
+	}
+
+	/**
+	 * Append a ticker
+	 * @param sb
+	 */
+	private void appendTicker(final StringBuilder sb) {
+		lastPrice += random.nextInt(3) - 1;
+		appendFixed(sb, lastPrice - 1, 1);
+		sb.append(',').append(1 + random.nextInt(20)).append(',');
+		appendFixed(sb, lastPrice + 1, 1);
+		sb.append(',').append(1 + random.nextInt(20)).append(',');
+		appendFixed(sb, lastPrice - BASE_PRICE, 1);
+		sb.append(",0.01,");
+		appendFixed(sb, lastPrice, 1);
+		sb.append(",12345.678,");
+		appendFixed(sb, BASE_PRICE + 500, 1);
+		sb.append(',');
+		appendFixed(sb, BASE_PRICE - 500, 1);
+	}
+
+	/**
+	 * Append a price level
+	 * @param sb
+	 * @param level
+	 * @param present
+	 */
+	private void appendLevel(final StringBuilder sb, final int level, final boolean present) {
+		final boolean bid = level < LEVELS;
+		final long price = bid ? BASE_PRICE - 1 - level : BASE_PRICE + 1 + (level - LEVELS);
+		final long amount = (1 + random.nextInt(5000)) * (bid ? 1 : -1);
+
+		sb.append('[');
+		appendFixed(sb, price, 1);
+		sb.append(',').append(present ? 1 + random.nextInt(5) : 0).append(',');
+		appendFixed(sb, present ? amount : (bid ? 1000 : -1000), 3);
+		sb.append(']');
+	}
+
+	/**
+	 * Append a new raw book order
+	 * @param sb
+	 */
+	private void appendNewOrder(final StringBuilder sb) {
+		final boolean bid = random.nextBoolean();
+		final long offset = 1 + random.nextInt(LEVELS);
+		final long price = bid ? BASE_PRICE - offset : BASE_PRICE + offset;
+		final long amount = (1 + random.nextInt(5000)) * (bid ? 1 : -1);
+		final long[] order = {nextId++, price, amount};
+		orders.add(order);
+
+		sb.append('[').append(order[0]).append(',');
+		appendFixed(sb, price, 1);
+		sb.append(',');
+		appendFixed(sb, amount, 3);
+		sb.append(']');
+	}
+
+	/**
+	 * Create the next trade (also kept as recent trade)
+	 * @return
+	 */
+	private String nextTrade() {
+		final StringBuilder sb = new StringBuilder();
+		appendTrade(sb);
+		
+		recentTrades.addLast(sb.toString());
+		if(recentTrades.size() > RECENT_TRADES) {
+			recentTrades.removeFirst();
+		}
+		
+		return sb.toString();
+	}
+
+	/**
+	 * Append a new trade
+	 * @param sb
+	 */
+	private void appendTrade(final StringBuilder sb) {
+		lastPrice += random.nextInt(3) - 1;
+		final long amount = (1 + random.nextInt(5000)) * (random.nextBoolean() ? 1 : -1);
+
+		sb.append('[').append(nextId++).append(',').append(System.currentTimeMillis()).append(',');
+		appendFixed(sb, amount, 3);
+		sb.append(',');
+		appendFixed(sb, lastPrice, 1);
+		sb.append(']');
+	}
+
+	/**
+	 * Append a candle of the current minute
+	 * @param sb
+	 */
+	private void appendCandle(final StringBuilder sb) {
+		lastPrice += random.nextInt(3) - 1;
+		final long minute = System.currentTimeMillis() / 60_000 * 60_000;
+
+		sb.append('[').append(minute).append(',');
+		appendFixed(sb, BASE_PRICE, 1);
+		sb.append(',');
+		appendFixed(sb, lastPrice, 1);
+		sb.append(',');
+		appendFixed(sb, Math.max(BASE_PRICE, lastPrice), 1);
+		sb.append(',');
+		appendFixed(sb, Math.min(BASE_PRICE, lastPrice), 1);
+		sb.append(",42.5]");
+	}
+
+	/**
+	 * Append a fixed point value
+	 * @param sb
+	 * @param value
+	 * @param scale
+	 */
+	private static void appendFixed(final StringBuilder sb, final long value, final int scale) {
+		long divisor = 1;
+		for(int i = 0; i < scale; i++) {
+			divisor *= 10;
+		}
+
+		if(value < 0) {
+			sb.append('-');
+		}
+
+		final long absValue = Math.abs(value);
+		sb.append(absValue / divisor);
+
+		final long fraction = absValue % divisor;
+		if(fraction != 0) {
+			final String digits = Long.toString(divisor + fraction).substring(1);
+			sb.append('.').append(digits);
+		}
+	}
+
+	/**
+	 * Get the number of updates that are due at the given time
+	 * @param nowNanos
+	 * @param updatesPerSecond
+	 * @return
+	 */
+	public long getDueUpdates(final long nowNanos, final double updatesPerSecond) {
+		final double elapsedSeconds = (nowNanos - startNanos) / 1_000_000_000.0;
+		return Math.max(0, (long) (elapsedSeconds * updatesPerSecond) - sentUpdates);
+	}
+
+	/**
+	 * Is a heartbeat due
+	 * @param nowNanos
+	 * @param intervalNanos
+	 * @return
+	 */
+	public boolean isHeartbeatDue(final long nowNanos, final long intervalNanos) {
+		return nowNanos - lastMessageNanos >= intervalNanos;
+	}
+
+	/**
+	 * Mark that a message was sent on the channel
+	 * @param nowNanos
+	 */
+	public void messageSent(final long nowNanos) {
+		lastMessageNanos = nowNanos;
+	}
+
+	/**
+	 * Get the heartbeat message
+	 * @return
+	 */
+	public String getHeartbeat() {
+		return "[" + channelId + ",\"hb\"]";
+	}
+
+	public int getChannelId() {
+		return channelId;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public JSONObject getSubscribedEvent() {
+		return subscribedEvent;
+	}
+}
@@ -0,0 +1,304 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * A minimal server side websocket (RFC 6455) on a plain socket: handshake, 
+ * (fragmented) text messages, ping / pong and close. No extensions.
+ */
+public class StandInWebsocket implements Closeable {
+
+	/**
+	 * The GUID of the websocket handshake
+	 */
+	private final static String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+	private final static int OPCODE_CONTINUATION = 0x0;
+	private final static int OPCODE_TEXT = 0x1;
+	private final static int OPCODE_BINARY = 0x2;
+	private final static int OPCODE_CLOSE = 0x8;
+	private final static int OPCODE_PING = 0x9;
+	private final static int OPCODE_PONG = 0xA;
+
+	/**
+	 * The socket
+	 */
+	private final Socket socket;
+
+	/**
+	 * The input stream
+	 */
+	private final InputStream inputStream;
+
+	/**
+	 * The output stream
+	 */
+	private final OutputStream outputStream;
+
+	/**
+	 * The buffer for fragmented messages
+	 */
+	private final ByteArrayOutputStream messageBuffer = new ByteArrayOutputStream();
+
+	public StandInWebsocket(final Socket socket) throws IOException {
+		this.socket = socket;
+		this.socket.setTcpNoDelay(true);
+		this.inputStream = new BufferedInputStream(socket.getInputStream());
+		this.outputStream = new BufferedOutputStream(socket.getOutputStream());
+	}
+
+	/**
+	 * Perform the opening handshake
+	 * @throws IOException
+	 */
+	public void handshake() throws IOException {
+		String websocketKey = null;
+		String line;
+
+		while(! (line = readLine()).isEmpty()) {
+			final int separator = line.indexOf(':');
+			if(separator > 0 && line.substring(0, separator).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+				websocketKey = line.substring(separator + 1).trim();
+			}
+		}
+
+		if(websocketKey == null) {
+			throw new IOException("Missing Sec-WebSocket-Key header");
+		}
+
+		final String response = "HTTP/1.1 101 Switching Protocols\r\n"
+				+ "Upgrade: websocket\r\n"
+				+ "Connection: Upgrade\r\n"
+				+ "Sec-WebSocket-Accept: " + acceptKey(websocketKey) + "\r\n\r\n";
+
+		synchronized (outputStream) {
+			outputStream.write(response.getBytes(StandardCharsets.US_ASCII));
+			outputStream.flush();
+		}
+	}
+
+	/**
+	 * Read the next text message
+	 * @return the message or null if the connection is closed
+	 * @throws IOException
+	 */
+	public String readMessage() throws IOException {
+		while(true) {
+			final int firstByte = inputStream.read();
+
+			if(firstByte == -1) {
+				return null;
+			}
+
+			final boolean fin = (firstByte & 0x80) != 0;
+			final int opcode = firstByte & 0x0F;
+			final int secondByte = readByte();
+			final boolean masked = (secondByte & 0x80) != 0;
+			long length = secondByte & 0x7F;
+
+			if(length == 126) {
+				length = (readByte() << 8) | readByte();
+			} else if(length == 127) {
+				length = 0;
+				for(int i = 0; i < 8; i++) {
+					length = (length << 8) | readByte();
+				}
+			}
+
+			if(length > Integer.MAX_VALUE) {
+				throw new IOException("Frame too large: " + length);
+			}
+
+			final byte[] mask = new byte[4];
+			if(masked) {
+				readFully(mask);
+			}
+
+			final byte[] payload = new byte[(int) length];
+			readFully(payload);
+
+			if(masked) {
+				for(int i = 0; i < payload.length; i++) {
+					payload[i] ^= mask[i & 3];
+				}
+			}
+
+			switch(opcode) {
+			case OPCODE_CLOSE:
+				sendFrame(OPCODE_CLOSE, payload);
+				return null;
+			case OPCODE_PING:
+				sendFrame(OPCODE_PONG, payload);
+				break;
+			case OPCODE_PONG:
+				break;
+			case OPCODE_TEXT:
+			case OPCODE_BINARY:
+			case OPCODE_CONTINUATION:
+				messageBuffer.write(payload);
+				if(fin) {
+					final String message = new String(messageBuffer.toByteArray(), StandardCharsets.UTF_8);
+					messageBuffer.reset();
+					return message;
+				}
+				break;
+			default:
+				throw new IOException("Unknown opcode: " + opcode);
+			}
+		}
+	}
+
+	/**
+	 * Send a text message
+	 * @param message
+	 * @throws IOException
+	 */
+	public void send(final String message) throws IOException {
+		sendFrame(OPCODE_TEXT, message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Send a frame (server frames are not masked)
+	 * @param opcode
+	 * @param payload
+	 * @throws IOException
+	 */
+	private void sendFrame(final int opcode, final byte[] payload) throws IOException {
+		synchronized (outputStream) {
+			outputStream.write(0x80 | opcode);
+
+			if(payload.length < 126) {
+				outputStream.write(payload.length);
+			} else if(payload.length <= 0xFFFF) {
+				outputStream.write(126);
+				outputStream.write(payload.length >>> 8);
+				outputStream.write(payload.length);
+			} else {
+				outputStream.write(127);
+				for(int shift = 56; shift >= 0; shift -= 8) {
+					outputStream.write((int) ((long) payload.length >>> shift));
+				}
+			}
+
+			outputStream.write(payload);
+			outputStream.flush();
+		}
+	}
+
+	/**
+	 * Close the socket without a close handshake (simulates a connection loss)
+	 */
+	@Override
+	public void close() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Ignore
+		}
+	}
+
+	/**
+	 * Is the socket closed
+	 * @return
+	 */
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+
+	/**
+	 * Read a line of the HTTP header
+	 * @return
+	 * @throws IOException
+	 */
+	private String readLine() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+
+		while(true) {
+			final int value = readByte();
+			if(value == '\n') {
+				break;
+			}
+			if(value != '\r') {
+				sb.append((char) value);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Read one byte
+	 * @return
+	 * @throws IOException
+	 */
+	private int readByte() throws IOException {
+		final int value = inputStream.read();
+
+		if(value == -1) {
+			throw new EOFException();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Read the complete buffer
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private void readFully(final byte[] buffer) throws IOException {
+		int read = 0;
+
+		while(read < buffer.length) {
+			final int result = inputStream.read(buffer, read, buffer.length - read);
+			if(result == -1) {
+				throw new EOFException();
+			}
+			read += result;
+		}
+	}
+
+	/**
+	 * Calculate the Sec-WebSocket-Accept value
+	 * @param key
+	 * @return
+	 */
+	private static String acceptKey(final String key) {
+		try {
+			final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+			final byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+			return Base64.getEncoder().encodeToString(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
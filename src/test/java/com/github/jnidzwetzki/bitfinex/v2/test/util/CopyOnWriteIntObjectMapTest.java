@@ -0,0 +1,93 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.CopyOnWriteIntObjectMap;
+
+public class CopyOnWriteIntObjectMapTest {
+
+	/**
+	 * Test the basic operations
+	 */
+	@Test
+	public void testPutGetRemove() {
+		final CopyOnWriteIntObjectMap<String> map = new CopyOnWriteIntObjectMap<>();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(1));
+
+		Assert.assertNull(map.put(1, "a"));
+		Assert.assertEquals("a", map.put(1, "b"));
+		map.put(Integer.MAX_VALUE, "c");
+		map.put(-5, "d");
+		map.put(0, "e");
+
+		Assert.assertEquals(4, map.size());
+		Assert.assertEquals("b", map.get(1));
+		Assert.assertEquals("c", map.get(Integer.MAX_VALUE));
+		Assert.assertEquals("d", map.get(-5));
+		Assert.assertEquals("e", map.get(0));
+
+		final List<String> snapshot = map.values();
+		Assert.assertEquals("b", map.remove(1));
+		Assert.assertNull(map.remove(1));
+		Assert.assertFalse(map.containsKey(1));
+		Assert.assertEquals(3, map.size());
+		Assert.assertEquals(4, snapshot.size());
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertFalse(map.containsKey(-5));
+		Assert.assertTrue(map.values().isEmpty());
+	}
+
+	/**
+	 * Test the map against a hash map
+	 */
+	@Test
+	public void testRandomOperations() {
+		final CopyOnWriteIntObjectMap<Integer> map = new CopyOnWriteIntObjectMap<>();
+		final Map<Integer, Integer> expected = new HashMap<>();
+		final Random random = new Random(42);
+
+		for(int i = 0; i < 5000; i++) {
+			final int key = random.nextInt(300);
+			if(random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				Assert.assertEquals(expected.put(key, i), map.put(key, i));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+
+		for(int key = 0; key < 300; key++) {
+			Assert.assertEquals(expected.get(key), map.get(key));
+		}
+
+		final Map<Integer, Integer> content = new HashMap<>();
+		map.forEach(content::put);
+		Assert.assertEquals(expected, content);
+	}
+}
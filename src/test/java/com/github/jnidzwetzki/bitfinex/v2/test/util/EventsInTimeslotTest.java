@@ -17,6 +17,13 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
@@ -156,4 +163,50 @@ public class EventsInTimeslotTest {
 		Assert.assertEquals(2, eventsInTimeslotManager.getNumberOfEventsInTimeslot());
 	}
 
+	@Test(timeout=5000)
+	public void testAcquire1() throws InterruptedException {
+		final EventsInTimeslotManager eventsInTimeslotManager = new EventsInTimeslotManager(2, 500, TimeUnit.MILLISECONDS);
+		
+		final long start = System.currentTimeMillis();
+		eventsInTimeslotManager.acquireEvent();
+		eventsInTimeslotManager.acquireEvent();
+		Assert.assertTrue(System.currentTimeMillis() - start < 500);
+		Assert.assertEquals(2, eventsInTimeslotManager.getNumberOfEventsInTimeslot());
+		
+		eventsInTimeslotManager.acquireEvent();
+		Assert.assertTrue(System.currentTimeMillis() - start >= 500);
+		Assert.assertTrue(eventsInTimeslotManager.getNumberOfEventsInTimeslot() <= 2);
+	}
+	
+	@Test(timeout=10000)
+	public void testAcquire2() throws Exception {
+		final EventsInTimeslotManager eventsInTimeslotManager = new EventsInTimeslotManager(2, 500, TimeUnit.MILLISECONDS);
+		final List<Long> acquireTimes = new CopyOnWriteArrayList<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(6);
+		
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for(int i = 0; i < 6; i++) {
+				futures.add(executor.submit(() -> {
+					eventsInTimeslotManager.acquireEvent();
+					acquireTimes.add(System.currentTimeMillis());
+					return null;
+				}));
+			}
+			
+			for(final Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		// Never more than 2 events in any timeslot (the times are taken after the acquire)
+		Collections.sort(acquireTimes);
+		Assert.assertEquals(6, acquireTimes.size());
+		for(int i = 2; i < acquireTimes.size(); i++) {
+			Assert.assertTrue(acquireTimes.get(i) - acquireTimes.get(i - 2) >= 450);
+		}
+	}
+
 }
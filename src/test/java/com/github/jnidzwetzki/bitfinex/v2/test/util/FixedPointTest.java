@@ -0,0 +1,281 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelMessageCursor;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexExecutedTrade;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderBookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.currency.BitfinexCurrencyType;
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexOrderBookSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.symbol.BitfinexSymbols;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
+public class FixedPointTest {
+
+	/**
+	 * The currency pair used in the tests
+	 */
+	private static BitfinexCurrencyPair currencyPair;
+
+	@BeforeClass
+	public static void registerCurrencyPair() {
+		try {
+			currencyPair = BitfinexCurrencyPair.register("FXP", "USD", BitfinexCurrencyType.CURRENCY, 0.001);
+		} catch (IllegalArgumentException e) {
+			currencyPair = BitfinexCurrencyPair.of("FXP", "USD");
+		}
+	}
+
+	/**
+	 * Test the conversion
+	 */
+	@Test
+	public void testConversion() {
+		Assert.assertEquals(725450000000L, FixedPoint.fromBigDecimal(new BigDecimal("7254.5"), 8));
+		Assert.assertEquals(-4990000L, FixedPoint.fromBigDecimal(new BigDecimal("-0.0499"), 8));
+		Assert.assertEquals(new BigDecimal("7254.50000000"), FixedPoint.toBigDecimal(725450000000L, 8));
+		Assert.assertEquals(7254.5, FixedPoint.toDouble(725450000000L, 8), 0.0);
+		Assert.assertEquals(1000, FixedPoint.powerOfTen(3));
+	}
+
+	/**
+	 * Test the rescaling
+	 */
+	@Test
+	public void testRescale() {
+		Assert.assertEquals(12345000, FixedPoint.rescale(12345, 2, 5));
+		Assert.assertEquals(123, FixedPoint.rescale(12300, 4, 2));
+		Assert.assertEquals(123, FixedPoint.rescale(12345, 4, 2, RoundingMode.HALF_UP));
+		Assert.assertEquals(124, FixedPoint.rescale(12350, 4, 2, RoundingMode.HALF_UP));
+		Assert.assertEquals(-124, FixedPoint.rescale(-12350, 4, 2, RoundingMode.HALF_UP));
+		Assert.assertEquals(-123, FixedPoint.rescale(-12349, 4, 2, RoundingMode.HALF_UP));
+		Assert.assertEquals(-124, FixedPoint.rescale(-12349, 4, 2, RoundingMode.FLOOR));
+	}
+
+	/**
+	 * Test that inexact conversions are rejected
+	 */
+	@Test
+	public void testInexactConversion() {
+		try {
+			FixedPoint.rescale(12345, 4, 2);
+			Assert.fail("Exception expected");
+		} catch (ArithmeticException e) {
+			// Expected
+		}
+
+		try {
+			FixedPoint.fromBigDecimal(new BigDecimal("0.000000012"), 8);
+			Assert.fail("Exception expected");
+		} catch (BitfinexClientException e) {
+			// Expected
+		}
+
+		Assert.assertEquals(12, FixedPoint.fromBigDecimal(new BigDecimal("0.000000012"), 9));
+		Assert.assertEquals(1, FixedPoint.fromBigDecimal(new BigDecimal("0.000000012"), 8, RoundingMode.HALF_UP));
+		Assert.assertEquals(1, FixedPoint.fromBigDecimal(new BigDecimal("0.0000000100"), 8));
+	}
+
+	/**
+	 * Test the overflow handling
+	 */
+	@Test(expected=ArithmeticException.class)
+	public void testRescaleOverflow() {
+		FixedPoint.rescale(Long.MAX_VALUE / 10, 0, 2);
+	}
+
+	/**
+	 * Test the overflow handling
+	 */
+	@Test(expected=BitfinexClientException.class)
+	public void testConversionOverflow() {
+		FixedPoint.fromBigDecimal(new BigDecimal("123456789012345"), 8);
+	}
+
+	/**
+	 * Test the cursor
+	 */
+	@Test
+	public void testCursor() {
+		final ChannelMessageCursor cursor = new ChannelMessageCursor();
+		cursor.reset("[1,[7254.5,-0.0499,1e-8,0.000000005,3,123456789012345678.0,0.000000005]]");
+
+		cursor.enterArray();
+		Assert.assertEquals(725450000000L, cursor.nextScaledLong(8));
+		Assert.assertEquals(-4990000L, cursor.nextScaledLong(8));
+		Assert.assertEquals(1L, cursor.nextScaledLong(8));
+		Assert.assertEquals(5L, cursor.nextScaledLong(9));
+		Assert.assertEquals(300, cursor.nextScaledLong(2));
+		Assert.assertEquals(123456789012345678L, cursor.nextScaledLong(0));
+
+		// More decimals than the scale
+		try {
+			cursor.nextScaledLong(8);
+			Assert.fail("Exception expected");
+		} catch (BitfinexClientException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Test the fixed point order book entries
+	 */
+	@Test
+	public void testOrderbookEntries() {
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.rawOrderBook(currencyPair);
+		final RawOrderbookHandler handler = new RawOrderbookHandler(10, symbol);
+		handler.setFixedPointMode(true);
+
+		final List<BitfinexOrderBookEntry> entries = new ArrayList<>();
+		handler.onOrderbookEvent((s, e) -> entries.addAll(e));
+		handler.handleChannelData(null, new JSONArray("[[1234,7254.5,0.5],[1235,7254.6,-1.25]]"));
+
+		Assert.assertEquals(2, entries.size());
+
+		final BitfinexOrderBookEntry entry = entries.get(1);
+		Assert.assertTrue(entry.isFixedPoint());
+		Assert.assertEquals(1235, (long) entry.getOrderId());
+		Assert.assertEquals(725460000000L, entry.getScaledPrice());
+		Assert.assertEquals(-125000000L, entry.getScaledAmount());
+		Assert.assertEquals(0, new BigDecimal("7254.6").compareTo(entry.getPrice()));
+		Assert.assertEquals(0, new BigDecimal("-1.25").compareTo(entry.getAmount()));
+
+		// Big decimal entries provide the fixed point values as well
+		final BitfinexOrderBookEntry decimalEntry = new BitfinexOrderBookEntry(1L, 
+				new BigDecimal("7254.6"), new BigDecimal("-1.25"), null);
+		Assert.assertFalse(decimalEntry.isFixedPoint());
+		Assert.assertEquals(725460000000L, decimalEntry.getScaledPrice());
+
+		// The scale of big decimal entries holds the values without rounding
+		final BitfinexOrderBookEntry preciseEntry = new BitfinexOrderBookEntry(1L, 
+				new BigDecimal("0.000000012"), new BigDecimal("-1.25"), null);
+		Assert.assertEquals(9, preciseEntry.getScale());
+		Assert.assertEquals(12, preciseEntry.getScaledPrice());
+		Assert.assertEquals(-1250000000L, preciseEntry.getScaledAmount());
+	}
+
+	/**
+	 * Test the fixed point trades
+	 */
+	@Test
+	public void testExecutedTrades() {
+		final ExecutedTradeHandler handler = new ExecutedTradeHandler(10, BitfinexSymbols.executedTrades(currencyPair));
+		handler.setFixedPointMode(true);
+
+		final List<BitfinexExecutedTrade> trades = new ArrayList<>();
+		handler.onExecutedTradeEvent((s, t) -> trades.addAll(t));
+		handler.handleChannelData("te", new JSONArray("[401597395,1574694478808,0.005,7245.3]"));
+
+		Assert.assertEquals(1, trades.size());
+		final BitfinexExecutedTrade trade = trades.get(0);
+		Assert.assertTrue(trade.isFixedPoint());
+		Assert.assertEquals(500000L, trade.getScaledAmount());
+		Assert.assertEquals(724530000000L, trade.getScaledPrice());
+		Assert.assertEquals(0, new BigDecimal("7245.3").compareTo(trade.getPrice()));
+		Assert.assertNull(trade.getRate());
+
+		// Setting a value with more decimals switches to big decimal values
+		trade.setPrice(new BigDecimal("7245.300000001"));
+		Assert.assertFalse(trade.isFixedPoint());
+		Assert.assertEquals(9, trade.getScale());
+		Assert.assertEquals(5000000L, trade.getScaledAmount());
+		Assert.assertEquals(7245300000001L, trade.getScaledPrice());
+
+		// Big decimal trades are not rounded
+		final BitfinexExecutedTrade decimalTrade = new BitfinexExecutedTrade();
+		decimalTrade.setAmount(new BigDecimal("0.5"));
+		decimalTrade.setPrice(new BigDecimal("0.000000012"));
+		Assert.assertEquals(9, decimalTrade.getScale());
+		Assert.assertEquals(12, decimalTrade.getScaledPrice());
+
+		// Funding trades keep the precision of the rate
+		handler.handleChannelData("te", new JSONArray("[401597396,1574694478808,100.5,0.000123456789,30]"));
+		Assert.assertEquals(2, trades.size());
+		final BitfinexExecutedTrade fundingTrade = trades.get(1);
+		Assert.assertFalse(fundingTrade.isFixedPoint());
+		Assert.assertEquals(0, new BigDecimal("0.000123456789").compareTo(fundingTrade.getRate()));
+		Assert.assertEquals(0, new BigDecimal("100.5").compareTo(fundingTrade.getAmount()));
+		Assert.assertEquals(30, (long) fundingTrade.getPeriod());
+	}
+
+	/**
+	 * Test values with more decimals than the scale of the currency pair, only 
+	 * these entries keep big decimal values
+	 */
+	@Test
+	public void testPreciseValues() {
+		final BitfinexOrderBookSymbol rawSymbol = BitfinexSymbols.rawOrderBook(currencyPair);
+		final RawOrderbookHandler rawHandler = new RawOrderbookHandler(10, rawSymbol);
+		rawHandler.setFixedPointMode(true);
+
+		final List<BitfinexOrderBookEntry> rawEntries = new ArrayList<>();
+		rawHandler.onOrderbookEvent((s, e) -> rawEntries.addAll(e));
+		rawHandler.handleChannelData(null, new JSONArray("[[1234,7254.5,0.5],[1235,0.000000012,-1.25],[1236,7254.7,1]]"));
+
+		Assert.assertEquals(3, rawEntries.size());
+		Assert.assertTrue(rawEntries.get(0).isFixedPoint());
+		Assert.assertFalse(rawEntries.get(1).isFixedPoint());
+		Assert.assertEquals(1235, (long) rawEntries.get(1).getOrderId());
+		Assert.assertEquals(9, rawEntries.get(1).getScale());
+		Assert.assertEquals(12, rawEntries.get(1).getScaledPrice());
+		Assert.assertTrue(rawEntries.get(2).isFixedPoint());
+
+		final BitfinexOrderBookSymbol symbol = BitfinexSymbols.orderBook(currencyPair, 
+				BitfinexOrderBookSymbol.Precision.P0, BitfinexOrderBookSymbol.Frequency.F0, 25);
+		final OrderbookHandler handler = new OrderbookHandler(11, symbol);
+		handler.setFixedPointMode(true);
+
+		final List<BitfinexOrderBookEntry> entries = new ArrayList<>();
+		handler.onOrderBookEvent((s, e) -> entries.addAll(e));
+		handler.handleChannelData(null, new JSONArray("[[7254.5,1,0.5],[7254.6,2,-1.000000001]]"));
+
+		Assert.assertEquals(2, entries.size());
+		Assert.assertTrue(entries.get(0).isFixedPoint());
+		Assert.assertFalse(entries.get(1).isFixedPoint());
+		Assert.assertEquals(2, (int) entries.get(1).getCount());
+		Assert.assertEquals(0, new BigDecimal("-1.000000001").compareTo(entries.get(1).getAmount()));
+
+		final ExecutedTradeHandler tradeHandler = new ExecutedTradeHandler(12, BitfinexSymbols.executedTrades(currencyPair));
+		tradeHandler.setFixedPointMode(true);
+
+		final List<BitfinexExecutedTrade> trades = new ArrayList<>();
+		tradeHandler.onExecutedTradeEvent((s, t) -> trades.addAll(t));
+		tradeHandler.handleChannelData("te", new JSONArray("[401597395,1574694478808,0.005,0.000000012]"));
+
+		Assert.assertEquals(1, trades.size());
+		Assert.assertFalse(trades.get(0).isFixedPoint());
+		Assert.assertEquals(401597395, (long) trades.get(0).getTradeId());
+		Assert.assertEquals(12, trades.get(0).getScaledPrice());
+		Assert.assertEquals(0, new BigDecimal("0.005").compareTo(trades.get(0).getAmount()));
+	}
+}
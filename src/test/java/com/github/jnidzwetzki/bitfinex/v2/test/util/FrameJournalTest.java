@@ -0,0 +1,172 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.jnidzwetzki.bitfinex.v2.exception.BitfinexClientException;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameJournalReader;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameJournalWriter;
+
+public class FrameJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test writing and reading records across several segments
+	 */
+	@Test
+	public void testWriteAndRead() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+		final List<String> frames = new ArrayList<>();
+		final List<Long> timestamps = new ArrayList<>();
+
+		try (final FrameJournalWriter writer = new FrameJournalWriter(directory, 4096)) {
+			for(int i = 0; i < 1000; i++) {
+				final String frame = "[" + i + ",[10000.1,2,\"äöü €\"]]";
+				frames.add(frame);
+				timestamps.add(i * 1000L);
+				writer.append(i * 1000L, frame);
+			}
+			Assert.assertEquals(1000, writer.getRecords());
+		}
+
+		Assert.assertTrue(directory.toFile().list().length > 1);
+
+		final List<String> readFrames = new ArrayList<>();
+		final List<Long> readTimestamps = new ArrayList<>();
+		final long records = new FrameJournalReader(directory).forEach((frame, timestamp) -> {
+			readFrames.add(frame);
+			readTimestamps.add(timestamp);
+		});
+
+		Assert.assertEquals(1000, records);
+		Assert.assertEquals(frames, readFrames);
+		Assert.assertEquals(timestamps, readTimestamps);
+	}
+
+	/**
+	 * Test appending to an existing journal
+	 */
+	@Test
+	public void testReopen() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+
+		try (final FrameJournalWriter writer = new FrameJournalWriter(directory, 4096)) {
+			writer.append("a");
+		}
+
+		try (final FrameJournalWriter writer = new FrameJournalWriter(directory, 4096)) {
+			writer.append("b");
+		}
+
+		final List<String> frames = new ArrayList<>();
+		final List<Long> timestamps = new ArrayList<>();
+		new FrameJournalReader(directory).forEach((frame, timestamp) -> {
+			frames.add(frame);
+			timestamps.add(timestamp);
+		});
+		Assert.assertEquals(2, frames.size());
+		Assert.assertEquals("a", frames.get(0));
+		Assert.assertEquals("b", frames.get(1));
+
+		// The timestamps are based on the epoch
+		Assert.assertTrue(timestamps.get(0) <= timestamps.get(1));
+		Assert.assertTrue(Math.abs(TimeUnit.NANOSECONDS.toMillis(timestamps.get(1)) 
+				- System.currentTimeMillis()) < TimeUnit.MINUTES.toMillis(1));
+	}
+
+	/**
+	 * Test the connection tag of the records
+	 */
+	@Test
+	public void testConnectionTag() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+
+		try (final FrameJournalWriter writer = new FrameJournalWriter(directory, 4096)) {
+			writer.append(1, 0, "a");
+			writer.append(2, 3, "b");
+			writer.append(3, "c");
+		}
+
+		final List<String> records = new ArrayList<>();
+		new FrameJournalReader(directory).forEach((frame, timestamp, connection) -> 
+			records.add(frame + "/" + timestamp + "/" + connection));
+		Assert.assertEquals(Arrays.asList("a/1/0", "b/2/3", "c/3/0"), records);
+	}
+
+	/**
+	 * Test reading a journal with an incomplete record
+	 */
+	@Test
+	public void testIncompleteRecord() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+
+		try (final FrameJournalWriter writer = new FrameJournalWriter(directory, 4096)) {
+			writer.append("complete");
+		}
+
+		// A length field without a payload (e.g., crash while writing)
+		final File segment = directory.toFile().listFiles()[0];
+		try (final RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(4 + 8 + 4 + "complete".length());
+			file.writeInt(5000);
+		}
+
+		final List<String> frames = new ArrayList<>();
+		Assert.assertEquals(1, new FrameJournalReader(directory).forEach((frame, timestamp) -> frames.add(frame)));
+		Assert.assertEquals("complete", frames.get(0));
+	}
+
+	/**
+	 * Test the error handling
+	 */
+	@Test
+	public void testErrors() throws Exception {
+		final Path directory = folder.newFolder().toPath();
+		final FrameJournalWriter writer = new FrameJournalWriter(directory, 128);
+
+		try {
+			writer.append(new String(new char[100]));
+			Assert.fail("Exception expected");
+		} catch (BitfinexClientException e) {
+			// Expected
+		}
+
+		writer.close();
+
+		try {
+			writer.append("a");
+			Assert.fail("Exception expected");
+		} catch (BitfinexClientException e) {
+			// Expected
+		}
+	}
+}
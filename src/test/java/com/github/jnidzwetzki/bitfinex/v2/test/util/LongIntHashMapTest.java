@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.LongIntHashMap;
+
+public class LongIntHashMapTest {
+
+	/**
+	 * Test the basic operations
+	 */
+	@Test
+	public void testPutGetRemove() {
+		final LongIntHashMap map = new LongIntHashMap();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.get(1));
+
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.put(1, 10));
+		Assert.assertEquals(10, map.put(1, 11));
+		map.put(Long.MAX_VALUE, 12);
+		map.put(-5, 13);
+
+		Assert.assertEquals(3, map.size());
+		Assert.assertEquals(11, map.get(1));
+		Assert.assertEquals(12, map.get(Long.MAX_VALUE));
+		Assert.assertEquals(13, map.get(-5));
+
+		Assert.assertEquals(11, map.remove(1));
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.remove(1));
+		Assert.assertFalse(map.containsKey(1));
+		Assert.assertEquals(2, map.size());
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertFalse(map.containsKey(-5));
+	}
+
+	/**
+	 * Compare the map with a java.util.HashMap
+	 */
+	@Test
+	public void testRandomOperations() {
+		final LongIntHashMap map = new LongIntHashMap(4);
+		final Map<Long, Integer> reference = new HashMap<>();
+		final Random random = new Random(42);
+
+		for(int i = 0; i < 100000; i++) {
+			final long key = random.nextInt(2000) * 1000003L;
+
+			if(random.nextBoolean()) {
+				final int value = random.nextInt(100000);
+				final Integer oldValue = reference.put(key, value);
+				Assert.assertEquals(oldValue == null ? LongIntHashMap.NO_VALUE : oldValue, map.put(key, value));
+			} else {
+				final Integer oldValue = reference.remove(key);
+				Assert.assertEquals(oldValue == null ? LongIntHashMap.NO_VALUE : oldValue, map.remove(key));
+			}
+		}
+
+		Assert.assertEquals(reference.size(), map.size());
+		reference.forEach((k, v) -> Assert.assertEquals((int) v, map.get(k)));
+	}
+}
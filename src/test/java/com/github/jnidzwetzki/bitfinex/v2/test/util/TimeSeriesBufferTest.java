@@ -0,0 +1,143 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.TimeSeriesBuffer;
+import com.github.jnidzwetzki.bitfinex.v2.util.TimeSeriesBuffer.MergePolicy;
+
+public class TimeSeriesBufferTest {
+
+	/**
+	 * Test the ring buffer and the merge by timestamp
+	 */
+	@Test
+	public void testReplaceSameTimestamp() {
+		final TimeSeriesBuffer buffer = new TimeSeriesBuffer(4, 2, 2, MergePolicy.REPLACE_SAME_TIMESTAMP);
+
+		for(int i = 1; i <= 6; i++) {
+			Assert.assertTrue(buffer.put(i * 10, i, i * 100));
+		}
+
+		Assert.assertEquals(4, buffer.size());
+		Assert.assertEquals(30, (long) buffer.read(v -> v.getTimestamp(0)));
+		Assert.assertEquals(60, (long) buffer.read(v -> v.getTimestamp(3)));
+
+		// Update of an existing entry
+		Assert.assertTrue(buffer.put(50, 7, 700));
+		Assert.assertEquals(4, buffer.size());
+		Assert.assertEquals(7, (long) buffer.read(v -> v.getScaledValue(0, 2)));
+		Assert.assertEquals(7.0, buffer.read(v -> v.getDouble(1, 2)), 0.0001);
+
+		// Out of order entry, the oldest entry is dropped
+		Assert.assertTrue(buffer.put(45, 8, 800));
+		Assert.assertArrayEquals(new long[] {40, 45, 50, 60}, timestamps(buffer));
+
+		// Older than all entries of a full buffer
+		Assert.assertFalse(buffer.put(10, 9, 900));
+		Assert.assertArrayEquals(new long[] {40, 45, 50, 60}, timestamps(buffer));
+
+		buffer.clear();
+		Assert.assertEquals(0, buffer.size());
+		Assert.assertTrue(buffer.read(v -> v.isEmpty()));
+	}
+
+	/**
+	 * Test columns with their own scale
+	 */
+	@Test
+	public void testColumnScales() {
+		final TimeSeriesBuffer buffer = new TimeSeriesBuffer(4, 8, new int[] {8, 4}, MergePolicy.APPEND);
+		buffer.put(10, 150_000_000, 25_000);
+
+		Assert.assertEquals(8, buffer.getScale());
+		Assert.assertEquals(8, buffer.getScale(0));
+		Assert.assertEquals(4, buffer.getScale(1));
+		Assert.assertEquals(1.5, buffer.read(v -> v.getDouble(0, 0)), 0.0001);
+		Assert.assertEquals(2.5, buffer.read(v -> v.getDouble(1, 0)), 0.0001);
+		Assert.assertEquals(4, (int) buffer.read(v -> v.getScale(1)));
+	}
+
+	/**
+	 * Test the merge policies with the same timestamp
+	 */
+	@Test
+	public void testMergePolicies() {
+		final TimeSeriesBuffer keyed = new TimeSeriesBuffer(10, 2, 0, MergePolicy.REPLACE_SAME_KEY);
+		keyed.put(10, 1, 5);
+		keyed.put(10, 2, 6);
+		keyed.put(10, 1, 7);
+		Assert.assertEquals(2, keyed.size());
+		Assert.assertEquals(7, (long) keyed.read(v -> v.getScaledValue(1, 0)));
+
+		final TimeSeriesBuffer append = new TimeSeriesBuffer(10, 1, 0, MergePolicy.APPEND);
+		append.put(10, 1);
+		append.put(10, 2);
+		append.put(5, 3);
+		Assert.assertEquals(3, append.size());
+		Assert.assertEquals(3, (long) append.read(v -> v.getScaledValue(0, 0)));
+		Assert.assertEquals(2, (long) append.read(v -> v.getScaledValue(0, 2)));
+	}
+
+	/**
+	 * Test the range queries
+	 */
+	@Test
+	public void testRange() {
+		final TimeSeriesBuffer buffer = new TimeSeriesBuffer(100, 1, 0, MergePolicy.REPLACE_SAME_TIMESTAMP);
+
+		// Wrap the ring
+		for(int i = 0; i < 150; i++) {
+			buffer.put(i * 10, i);
+		}
+
+		Assert.assertEquals(3, (int) buffer.readRange(1000, 1020, v -> v.size()));
+		Assert.assertEquals(100, (long) buffer.readRange(995, 1025, v -> v.getScaledValue(0, 0)));
+		Assert.assertEquals(102, (long) buffer.readRange(995, 1025, v -> v.getScaledValue(0, 2)));
+		Assert.assertEquals(0, (int) buffer.readRange(1001, 1009, v -> v.size()));
+		Assert.assertEquals(0, (int) buffer.readRange(2000, 1000, v -> v.size()));
+		Assert.assertEquals(100, (int) buffer.readRange(0, Long.MAX_VALUE, v -> v.size()));
+
+		Assert.assertEquals(1480, (long) buffer.readLast(3, v -> v.getTimestamp(1)));
+		Assert.assertEquals(100, (int) buffer.readLast(500, v -> v.size()));
+
+		try {
+			buffer.readLast(3, v -> v.getTimestamp(3));
+			Assert.fail("Exception expected");
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Get the timestamps of the buffer
+	 * @param buffer
+	 * @return
+	 */
+	private static long[] timestamps(final TimeSeriesBuffer buffer) {
+		return buffer.read(v -> {
+			final long[] result = new long[v.size()];
+			for(int i = 0; i < v.size(); i++) {
+				result[i] = v.getTimestamp(i);
+			}
+			return result;
+		});
+	}
+}
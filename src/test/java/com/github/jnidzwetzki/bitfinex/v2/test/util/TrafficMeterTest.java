@@ -0,0 +1,90 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.TrafficMeter;
+
+public class TrafficMeterTest {
+
+	/**
+	 * The delta for double comparisons
+	 */
+	private final static double DELTA = 0.0001;
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testConstruct() {
+		new TrafficMeter(0, TimeUnit.SECONDS, System::nanoTime);
+	}
+
+	/**
+	 * Test the message and byte counters
+	 */
+	@Test
+	public void testCounters() {
+		final TrafficMeter trafficMeter = new TrafficMeter();
+		Assert.assertEquals(0, trafficMeter.getMessages());
+		Assert.assertEquals(0, trafficMeter.getBytes());
+		
+		trafficMeter.record(10);
+		trafficMeter.record(20);
+		Assert.assertEquals(2, trafficMeter.getMessages());
+		Assert.assertEquals(30, trafficMeter.getBytes());
+	}
+
+	/**
+	 * Test the moving average of the rates
+	 */
+	@Test
+	public void testRates() {
+		final AtomicLong clock = new AtomicLong(0);
+		final TrafficMeter trafficMeter = new TrafficMeter(10, TimeUnit.SECONDS, clock::get);
+		
+		for(int i = 0; i < 100; i++) {
+			trafficMeter.record(50);
+		}
+		
+		// Below the sample interval, no sample is taken
+		clock.set(TimeUnit.MILLISECONDS.toNanos(100));
+		Assert.assertEquals(0, trafficMeter.getMessageRate(), DELTA);
+		
+		// The first sample initializes the average
+		clock.set(TimeUnit.SECONDS.toNanos(1));
+		Assert.assertEquals(100, trafficMeter.getMessageRate(), DELTA);
+		Assert.assertEquals(5000, trafficMeter.getByteRate(), DELTA);
+		
+		// One silent time constant later
+		clock.set(TimeUnit.SECONDS.toNanos(11));
+		final double expected = 100 * Math.exp(-1);
+		Assert.assertEquals(expected, trafficMeter.getMessageRate(), DELTA);
+		Assert.assertEquals(expected * 50, trafficMeter.getByteRate(), DELTA);
+		
+		// A burst moves the average towards the new rate
+		for(int i = 0; i < 1000; i++) {
+			trafficMeter.record(50);
+		}
+		clock.set(TimeUnit.SECONDS.toNanos(12));
+		final double alpha = 1.0 - Math.exp(-0.1);
+		Assert.assertEquals(expected + alpha * (1000 - expected), trafficMeter.getMessageRate(), DELTA);
+	}
+}